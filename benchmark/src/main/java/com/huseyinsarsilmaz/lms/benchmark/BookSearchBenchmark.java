@@ -0,0 +1,209 @@
+package com.huseyinsarsilmaz.lms.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One page of search results, with its total count, on a books table of bookCount rows: the old
+// lower(col) LIKE '%q%' scans, the portable LIKE fallback and the ranked tsvector search through its GIN index.
+// Needs PostgreSQL, by default the one from docker-compose.yml.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookSearchBenchmark {
+
+    private static final String TABLE = "benchmark_books";
+    private static final int BATCH_SIZE = 10_000;
+    private static final int PAGE_SIZE = 10;
+    private static final String[] SYLLABLES = { "ka", "lo", "mi", "ne", "ra", "to", "su", "vi", "de", "po", "an",
+            "el", "or", "un", "is", "ber", "tan", "gor", "lin", "mas" };
+    private static final int WORD_COUNT = SYLLABLES.length * SYLLABLES.length * SYLLABLES.length;
+
+    @Param("1000000")
+    public int bookCount;
+
+    @Param("jdbc:postgresql://localhost:5432/lmsdb")
+    public String jdbcUrl;
+
+    @Param("huseyin")
+    public String jdbcUser;
+
+    @Param("12345678")
+    public String jdbcPassword;
+
+    @Setup(Level.Trial)
+    public void createBooks() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            // Same columns and search vector as books after BookSearchVectorMigration
+            statement.execute("CREATE TABLE " + TABLE + " ("
+                    + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "title VARCHAR(255) NOT NULL, "
+                    + "author VARCHAR(255) NOT NULL, "
+                    + "description VARCHAR(2048), "
+                    + "isbn VARCHAR(255) NOT NULL, "
+                    + "search_vector tsvector GENERATED ALWAYS AS ("
+                    + "setweight(to_tsvector('english', coalesce(title, '')), 'A') || "
+                    + "setweight(to_tsvector('english', coalesce(author, '')), 'B') || "
+                    + "setweight(to_tsvector('english', coalesce(description, '')), 'C')) STORED)");
+
+            Random random = new Random(42);
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + TABLE
+                    + " (title, author, description, isbn) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < bookCount; i++) {
+                    insert.setString(1, words(random, 3 + random.nextInt(3)));
+                    insert.setString(2, words(random, 2));
+                    insert.setString(3, words(random, 20));
+                    insert.setString(4, String.format("978%010d", i));
+                    insert.addBatch();
+
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                        connection.commit();
+                    }
+                }
+                insert.executeBatch();
+                connection.commit();
+            }
+
+            statement.execute("CREATE INDEX ix_" + TABLE + "_search_vector ON " + TABLE + " USING GIN (search_vector)");
+            statement.execute("ANALYZE " + TABLE);
+            connection.commit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void dropBooks() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE " + TABLE);
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword);
+    }
+
+    private static String word(int index) {
+        int n = SYLLABLES.length;
+        return SYLLABLES[index / (n * n)] + SYLLABLES[index / n % n] + SYLLABLES[index % n];
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(word(random.nextInt(WORD_COUNT)));
+        }
+        return text.toString();
+    }
+
+    // One connection and set of prepared statements per benchmark thread
+    @State(Scope.Thread)
+    public static class Session {
+
+        private Connection connection;
+        private PreparedStatement titleLike;
+        private PreparedStatement titleLikeCount;
+        private PreparedStatement fallbackLike;
+        private PreparedStatement fallbackLikeCount;
+        private PreparedStatement fullText;
+        private PreparedStatement fullTextCount;
+
+        @Setup(Level.Trial)
+        public void open(BookSearchBenchmark benchmark) throws SQLException {
+            connection = benchmark.connect();
+            titleLike = connection.prepareStatement("SELECT * FROM " + TABLE
+                    + " WHERE lower(title) LIKE ? ORDER BY title LIMIT " + PAGE_SIZE);
+            titleLikeCount = connection.prepareStatement("SELECT COUNT(*) FROM " + TABLE
+                    + " WHERE lower(title) LIKE ?");
+
+            String anyField = " WHERE lower(coalesce(title, '')) LIKE ? OR lower(coalesce(author, '')) LIKE ?"
+                    + " OR lower(coalesce(description, '')) LIKE ?";
+            fallbackLike = connection.prepareStatement("SELECT * FROM " + TABLE + anyField
+                    + " ORDER BY title LIMIT " + PAGE_SIZE);
+            fallbackLikeCount = connection.prepareStatement("SELECT COUNT(*) FROM " + TABLE + anyField);
+
+            fullText = connection.prepareStatement("SELECT b.* FROM " + TABLE
+                    + " b, websearch_to_tsquery('english', ?) q WHERE b.search_vector @@ q"
+                    + " ORDER BY ts_rank_cd(b.search_vector, q) DESC, b.id LIMIT " + PAGE_SIZE);
+            fullTextCount = connection.prepareStatement("SELECT COUNT(*) FROM " + TABLE
+                    + " b WHERE b.search_vector @@ websearch_to_tsquery('english', ?)");
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            connection.close();
+        }
+
+        private String randomWord() {
+            return word(ThreadLocalRandom.current().nextInt(WORD_COUNT));
+        }
+    }
+
+    // The previous TITLE search, findByTitleContainingIgnoreCase
+    @Benchmark
+    public long legacyTitleContains(Session session) throws SQLException {
+        String pattern = "%" + session.randomWord() + "%";
+        session.titleLike.setString(1, pattern);
+        session.titleLikeCount.setString(1, pattern);
+        return readPage(session.titleLike, session.titleLikeCount);
+    }
+
+    // LikeBookFullTextSearch for a one word query
+    @Benchmark
+    public long likeFallback(Session session) throws SQLException {
+        String pattern = "%" + session.randomWord() + "%";
+        for (int i = 1; i <= 3; i++) {
+            session.fallbackLike.setString(i, pattern);
+            session.fallbackLikeCount.setString(i, pattern);
+        }
+        return readPage(session.fallbackLike, session.fallbackLikeCount);
+    }
+
+    @Benchmark
+    public long fullText(Session session) throws SQLException {
+        String query = session.randomWord();
+        session.fullText.setString(1, query);
+        session.fullTextCount.setString(1, query);
+        return readPage(session.fullText, session.fullTextCount);
+    }
+
+    private static long readPage(PreparedStatement page, PreparedStatement count) throws SQLException {
+        long checksum = 0;
+        try (ResultSet rows = page.executeQuery()) {
+            while (rows.next()) {
+                checksum += rows.getLong("id");
+            }
+        }
+        try (ResultSet total = count.executeQuery()) {
+            total.next();
+            return checksum + total.getLong(1);
+        }
+    }
+}
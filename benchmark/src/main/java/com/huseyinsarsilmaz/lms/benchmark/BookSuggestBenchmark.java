@@ -0,0 +1,192 @@
+package com.huseyinsarsilmaz.lms.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.huseyinsarsilmaz.lms.model.dto.response.BookSuggestion;
+import com.huseyinsarsilmaz.lms.search.BookSuggestIndex;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Typeahead latency distribution, read the p0.99 line, on bookCount titles with random borrowings: the suggestion
+// index for 1 to 4 typed characters, against the title prefix query it falls back to while it is being built.
+// Runs on in-memory H2 unless jdbcUrl, jdbcUser and jdbcPassword point elsewhere.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class BookSuggestBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final int LIMIT = 10;
+    private static final String[] SYLLABLES = { "ka", "lo", "mi", "ne", "ra", "to", "su", "vi", "de", "po", "an",
+            "el", "or", "un", "is", "ber", "tan", "gor", "lin", "mas" };
+    private static final int WORD_COUNT = SYLLABLES.length * SYLLABLES.length * SYLLABLES.length;
+
+    @Param("1000000")
+    public int bookCount;
+
+    @Param("jdbc:h2:mem:suggest;DB_CLOSE_DELAY=-1")
+    public String jdbcUrl;
+
+    @Param("sa")
+    public String jdbcUser;
+
+    @Param("")
+    public String jdbcPassword;
+
+    private BookSuggestIndex index;
+
+    @Setup(Level.Trial)
+    public void createBooks() throws SQLException, InterruptedException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS borrowings");
+            statement.execute("DROP TABLE IF EXISTS books");
+            // The columns BookSuggestIndex loads from
+            statement.execute("CREATE TABLE books (id BIGINT PRIMARY KEY, title VARCHAR(255) NOT NULL, "
+                    + "author VARCHAR(255) NOT NULL)");
+            statement.execute("CREATE TABLE borrowings (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "book_id BIGINT NOT NULL)");
+
+            Random random = new Random(42);
+            connection.setAutoCommit(false);
+            try (PreparedStatement insertBook = connection.prepareStatement(
+                    "INSERT INTO books (id, title, author) VALUES (?, ?, ?)");
+                    PreparedStatement insertBorrowing = connection.prepareStatement(
+                            "INSERT INTO borrowings (book_id) VALUES (?)")) {
+                for (int i = 0; i < bookCount; i++) {
+                    insertBook.setLong(1, i + 1);
+                    insertBook.setString(2, words(random, 2 + random.nextInt(3)));
+                    insertBook.setString(3, words(random, 2));
+                    insertBook.addBatch();
+
+                    // Skewed popularity, a few books are borrowed far more than the rest
+                    int borrows = random.nextInt(100) < 10 ? random.nextInt(50) : 0;
+                    for (int b = 0; b < borrows; b++) {
+                        insertBorrowing.setLong(1, i + 1);
+                        insertBorrowing.addBatch();
+                    }
+
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        insertBook.executeBatch();
+                        insertBorrowing.executeBatch();
+                        connection.commit();
+                    }
+                }
+                insertBook.executeBatch();
+                insertBorrowing.executeBatch();
+                connection.commit();
+            }
+
+            statement.execute("CREATE INDEX ix_books_title ON books (title)");
+            connection.commit();
+        }
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(jdbcUrl, jdbcUser, jdbcPassword);
+        index = new BookSuggestIndex(new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource),
+                new SimpleMeterRegistry(), true);
+        index.startBuild();
+        while (index.suggest("a", 1).isEmpty()) {
+            Thread.sleep(100);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void dropBooks() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE borrowings");
+            statement.execute("DROP TABLE books");
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword);
+    }
+
+    private static String word(int index) {
+        int n = SYLLABLES.length;
+        return SYLLABLES[index / (n * n)] + SYLLABLES[index / n % n] + SYLLABLES[index % n];
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(word(random.nextInt(WORD_COUNT)));
+        }
+        return text.toString();
+    }
+
+    // What a user has typed so far, one to four characters of a word
+    private static String randomPrefix() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return word(random.nextInt(WORD_COUNT)).substring(0, 1 + random.nextInt(4));
+    }
+
+    // One connection and prepared statement per benchmark thread
+    @State(Scope.Thread)
+    public static class Session {
+
+        private Connection connection;
+        private PreparedStatement titlePrefix;
+
+        @Setup(Level.Trial)
+        public void open(BookSuggestBenchmark benchmark) throws SQLException {
+            connection = benchmark.connect();
+            titlePrefix = connection.prepareStatement("SELECT title FROM books WHERE lower(title) LIKE ?"
+                    + " ORDER BY title LIMIT " + LIMIT);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public List<BookSuggestion> suggestIndex() {
+        return index.suggest(randomPrefix(), LIMIT).orElseThrow();
+    }
+
+    // BookRepository.findByTitleStartingWithIgnoreCaseOrderByTitle
+    @Benchmark
+    public int titlePrefixQuery(Session session) throws SQLException {
+        session.titlePrefix.setString(1, randomPrefix() + "%");
+        int rows = 0;
+        try (ResultSet result = session.titlePrefix.executeQuery()) {
+            while (result.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,84 @@
+package com.huseyinsarsilmaz.lms.benchmark;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.huseyinsarsilmaz.lms.model.entity.User;
+import com.huseyinsarsilmaz.lms.security.JwtService;
+import com.huseyinsarsilmaz.lms.security.VerifiedToken;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+// Compares the per request token work of JwtAuthFilter before and after the single parse + cache change
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "5e1b2f2f99bdb5b33f7926e69c9f250c232e10d80fe3e07397edb2f8a2c23ae2";
+    private static final String EMAIL = "benchmark@lms.com";
+
+    private JwtService cachingJwtService;
+    private JwtService nonCachingJwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cachingJwtService = new JwtService(SECRET, 10_000);
+        nonCachingJwtService = new JwtService(SECRET, 0);
+        User user = User.builder()
+                .email(EMAIL)
+                .roleMask(User.Role.ROLE_PATRON.bit())
+                .build();
+        user.setId(1L);
+        token = cachingJwtService.generateToken(user);
+    }
+
+    // The previous path: extractEmail, then validateToken calling extractEmail and extractExpiration,
+    // each one decoding the secret and building a new key and parser
+    @Benchmark
+    public boolean legacyTripleParse() {
+        String email = legacyExtractAllClaims(token).getSubject();
+        String validatedEmail = legacyExtractAllClaims(token).getSubject();
+        Date expiration = legacyExtractAllClaims(token).getExpiration();
+
+        return email.equals(validatedEmail) && !expiration.before(new Date());
+    }
+
+    @Benchmark
+    public VerifiedToken singleParse() {
+        return nonCachingJwtService.verify(token);
+    }
+
+    @Benchmark
+    public VerifiedToken cachedVerification() {
+        return cachingJwtService.verify(token);
+    }
+
+    private static Claims legacyExtractAllClaims(String token) {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,169 @@
+package com.huseyinsarsilmaz.lms.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.huseyinsarsilmaz.lms.model.entity.User;
+
+// Lookup latency on a users table of userCount rows: the old unindexed email queries against the
+// indexed normalized_email ones. Runs on in-memory H2 unless jdbcUrl, jdbcUser and jdbcPassword point elsewhere.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserEmailLookupBenchmark {
+
+    private static final String TABLE = "benchmark_users";
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param("1000000")
+    public int userCount;
+
+    @Param("jdbc:h2:mem:lookup;DB_CLOSE_DELAY=-1")
+    public String jdbcUrl;
+
+    @Param("sa")
+    public String jdbcUser;
+
+    @Param("")
+    public String jdbcPassword;
+
+    @Setup(Level.Trial)
+    public void createUsers() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            statement.execute("CREATE TABLE " + TABLE + " ("
+                    + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "email VARCHAR(255) NOT NULL, "
+                    + "normalized_email VARCHAR(255) NOT NULL, "
+                    + "password VARCHAR(255) NOT NULL, "
+                    + "name VARCHAR(255) NOT NULL, "
+                    + "surname VARCHAR(255) NOT NULL, "
+                    + "phone_number VARCHAR(255) NOT NULL, "
+                    + "role_mask INT NOT NULL, "
+                    + "is_active BOOLEAN NOT NULL)");
+
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + TABLE
+                    + " (email, normalized_email, password, name, surname, phone_number, role_mask, is_active)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < userCount; i++) {
+                    String email = email(i);
+                    insert.setString(1, email);
+                    insert.setString(2, User.normalizeEmail(email));
+                    insert.setString(3, "$2a$10$7EqJtq98hPqEX7fNZaFWoO5uYw6rJh4rCw6bV5H8N9uP7bI1Yt9vG");
+                    insert.setString(4, "Name" + i);
+                    insert.setString(5, "Surname" + i);
+                    insert.setString(6, "5051112233");
+                    insert.setInt(7, User.Role.ROLE_PATRON.bit());
+                    insert.setBoolean(8, true);
+                    insert.addBatch();
+
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                        connection.commit();
+                    }
+                }
+                insert.executeBatch();
+                connection.commit();
+            }
+
+            statement.execute("CREATE UNIQUE INDEX ux_" + TABLE + "_normalized_email ON " + TABLE
+                    + " (normalized_email)");
+            connection.commit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void dropUsers() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE " + TABLE);
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword);
+    }
+
+    private static String email(int i) {
+        return "Patron" + i + "@Lms.com";
+    }
+
+    // One connection and set of prepared statements per benchmark thread
+    @State(Scope.Thread)
+    public static class Session {
+
+        private Connection connection;
+        private PreparedStatement findByEmail;
+        private PreparedStatement findByNormalizedEmail;
+        private PreparedStatement existsByNormalizedEmail;
+        private int userCount;
+
+        @Setup(Level.Trial)
+        public void open(UserEmailLookupBenchmark benchmark) throws SQLException {
+            connection = benchmark.connect();
+            findByEmail = connection.prepareStatement("SELECT * FROM " + TABLE + " WHERE email = ?");
+            findByNormalizedEmail = connection.prepareStatement(
+                    "SELECT * FROM " + TABLE + " WHERE normalized_email = ?");
+            existsByNormalizedEmail = connection.prepareStatement(
+                    "SELECT id FROM " + TABLE + " WHERE normalized_email = ? FETCH FIRST 1 ROWS ONLY");
+            userCount = benchmark.userCount;
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            connection.close();
+        }
+
+        private String randomEmail() {
+            return email(ThreadLocalRandom.current().nextInt(userCount));
+        }
+    }
+
+    // The previous findByEmail, also used by isEmailTaken before it became an existence check
+    @Benchmark
+    public long legacyFindByEmail(Session session) throws SQLException {
+        session.findByEmail.setString(1, session.randomEmail());
+        return readId(session.findByEmail);
+    }
+
+    @Benchmark
+    public long findByNormalizedEmail(Session session) throws SQLException {
+        session.findByNormalizedEmail.setString(1, User.normalizeEmail(session.randomEmail()));
+        return readId(session.findByNormalizedEmail);
+    }
+
+    @Benchmark
+    public long existsByNormalizedEmail(Session session) throws SQLException {
+        session.existsByNormalizedEmail.setString(1, User.normalizeEmail(session.randomEmail()));
+        return readId(session.existsByNormalizedEmail);
+    }
+
+    private static long readId(PreparedStatement query) throws SQLException {
+        try (ResultSet result = query.executeQuery()) {
+            return result.next() ? result.getLong("id") : -1;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.huseyinsarsilmaz.lms.catalog;
+
+import org.springframework.http.MediaType;
+
+public enum BookImportFormat {
+    CSV,
+    NDJSON;
+
+    public static final String CSV_VALUE = "text/csv";
+
+    // The endpoint only consumes these two types, anything else is rejected before reaching here
+    public static BookImportFormat of(MediaType contentType) {
+        return MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType) ? NDJSON : CSV;
+    }
+}
@@ -0,0 +1,288 @@
+package com.huseyinsarsilmaz.lms.catalog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huseyinsarsilmaz.lms.model.dto.request.BookCreateRequest;
+import com.huseyinsarsilmaz.lms.model.dto.response.BookImportReport;
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+import com.huseyinsarsilmaz.lms.model.mapper.BookMapper;
+import com.huseyinsarsilmaz.lms.repository.BookRepository;
+import com.huseyinsarsilmaz.lms.search.BookIsbnFilter;
+import com.huseyinsarsilmaz.lms.search.BookSearchIndex;
+import com.huseyinsarsilmaz.lms.search.BookSuggestIndex;
+import com.huseyinsarsilmaz.lms.util.IsbnParser;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+
+// Bulk import of books read from the request body one row at a time. Rows are validated like POST /books, then
+// collected into batches that are checked against the stored ISBNs with one query and written with one JDBC batch
+// insert in their own transaction, so memory stays at one batch whatever the size of the body. Batches committed
+// before a failure stay imported.
+//
+// Hibernate cannot batch inserts of IDENTITY ids, the insert goes through JDBC and reads the ids back from the
+// generated keys of the batch.
+@Slf4j
+@Component
+public class BookImporter {
+
+    private static final String INSERT = "INSERT INTO books"
+            + " (title, author, description, isbn, publication_date, genre, is_available, created_at, updated_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookRepository bookRepository;
+    private final BookMapper bookMapper;
+    private final BookIsbnFilter bookIsbnFilter;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggestIndex bookSuggestIndex;
+    private final Validator validator;
+    private final MessageSource messageSource;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    private final Counter importedRows;
+    private final Counter duplicateRows;
+    private final Counter failedRows;
+
+    public BookImporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            BookRepository bookRepository, BookMapper bookMapper, BookIsbnFilter bookIsbnFilter,
+            BookSearchIndex bookSearchIndex, BookSuggestIndex bookSuggestIndex, Validator validator,
+            MessageSource messageSource, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${book.import.batch-size:1000}") int batchSize,
+            @Value("${book.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookRepository = bookRepository;
+        this.bookMapper = bookMapper;
+        this.bookIsbnFilter = bookIsbnFilter;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookSuggestIndex = bookSuggestIndex;
+        this.validator = validator;
+        this.messageSource = messageSource;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+
+        String description = "Rows of bulk book imports by outcome";
+        importedRows = Counter.builder("lms.books.import.rows").description(description)
+                .tag("outcome", "imported")
+                .register(meterRegistry);
+        duplicateRows = Counter.builder("lms.books.import.rows").description(description)
+                .tag("outcome", "duplicate")
+                .register(meterRegistry);
+        failedRows = Counter.builder("lms.books.import.rows").description(description)
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+    }
+
+    public BookImportReport importBooks(InputStream body, BookImportFormat format) {
+        long start = System.nanoTime();
+        BookImportReport report = new BookImportReport();
+
+        try {
+            Reader reader = new InputStreamReader(body, StandardCharsets.UTF_8);
+            BookRowReader rows = format == BookImportFormat.NDJSON
+                    ? new NdjsonBookRowReader(reader, objectMapper)
+                    : new CsvBookRowReader(reader);
+
+            List<BookRow> batch = new ArrayList<>(batchSize);
+            BookRow row;
+            while ((row = rows.next()) != null) {
+                report.setReceived(report.getReceived() + 1);
+                if (accept(row, report)) {
+                    batch.add(row);
+                }
+                if (batch.size() == batchSize) {
+                    flush(batch, report);
+                    batch.clear();
+                }
+            }
+            flush(batch, report);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        report.setDurationMillis(durationMillis);
+        report.setBooksPerSecond(durationMillis == 0 ? report.getImported()
+                : report.getImported() * 1000.0 / durationMillis);
+
+        importedRows.increment(report.getImported());
+        duplicateRows.increment(report.getDuplicates());
+        failedRows.increment(report.getFailed());
+        log.info("Imported {} of {} books in {} ms ({} books/s), {} duplicates, {} failed", report.getImported(),
+                report.getReceived(), durationMillis, Math.round(report.getBooksPerSecond()),
+                report.getDuplicates(), report.getFailed());
+        return report;
+    }
+
+    // Validates the row and canonicalizes its ISBN, false with the error reported when it cannot be imported
+    private boolean accept(BookRow row, BookImportReport report) {
+        if (row.invalidField() != null) {
+            fail(report, row.line(), message("fail.invalid", row.invalidField()));
+            return false;
+        }
+
+        BookCreateRequest req = row.request();
+        Set<ConstraintViolation<BookCreateRequest>> violations = validator.validate(req);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<BookCreateRequest> first = violations.stream()
+                    .min(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+                    .get();
+            fail(report, row.line(), first.getMessage());
+            return false;
+        }
+
+        req.setIsbn(IsbnParser.canonicalize(req.getIsbn()));
+        return true;
+    }
+
+    private void flush(List<BookRow> batch, BookImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<String, BookRow> rowsByIsbn = new LinkedHashMap<>();
+        for (BookRow row : batch) {
+            if (rowsByIsbn.putIfAbsent(row.request().getIsbn(), row) != null) {
+                duplicate(report, row.line());
+            }
+        }
+        removeStored(rowsByIsbn, false, report);
+
+        try {
+            insert(rowsByIsbn, report);
+        } catch (DataIntegrityViolationException ex) {
+            // Another request stored some of these ISBNs after they were checked, check them all and retry once
+            removeStored(rowsByIsbn, true, report);
+            insert(rowsByIsbn, report);
+        }
+    }
+
+    // Drops the rows whose ISBN is already stored, the filter spares the query for ISBNs it has never seen
+    private void removeStored(Map<String, BookRow> rowsByIsbn, boolean bypassFilter, BookImportReport report) {
+        List<String> candidates = new ArrayList<>(rowsByIsbn.size());
+        for (String isbn : rowsByIsbn.keySet()) {
+            if (bypassFilter || bookIsbnFilter.mightExist(isbn)) {
+                candidates.add(isbn);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        for (String isbn : bookRepository.findExistingIsbns(candidates)) {
+            BookRow row = rowsByIsbn.remove(isbn);
+            if (row != null) {
+                duplicate(report, row.line());
+            }
+        }
+    }
+
+    private void insert(Map<String, BookRow> rowsByIsbn, BookImportReport report) {
+        if (rowsByIsbn.isEmpty()) {
+            return;
+        }
+
+        List<BookCreateRequest> requests = new ArrayList<>(rowsByIsbn.size());
+        rowsByIsbn.values().forEach(row -> requests.add(row.request()));
+        LocalDateTime now = LocalDateTime.now();
+
+        List<Book> books = transactionTemplate.execute(status -> {
+            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT, new String[] { "id" }),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement statement, int i) throws SQLException {
+                            BookCreateRequest req = requests.get(i);
+                            statement.setString(1, req.getTitle());
+                            statement.setString(2, req.getAuthor());
+                            statement.setString(3, req.getDescription());
+                            statement.setString(4, req.getIsbn());
+                            statement.setObject(5, req.getPublicationDate());
+                            statement.setString(6, req.getGenre().name());
+                            statement.setBoolean(7, true);
+                            statement.setObject(8, now);
+                            statement.setObject(9, now);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return requests.size();
+                        }
+                    }, keyHolder);
+
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            List<Book> inserted = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                Book book = bookMapper.toEntity(requests.get(i));
+                book.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+                book.setCreatedAt(now);
+                book.setUpdatedAt(now);
+                // Applied once the batch commits
+                bookSearchIndex.index(book);
+                bookSuggestIndex.index(book);
+                inserted.add(book);
+            }
+            return inserted;
+        });
+
+        books.forEach(book -> bookIsbnFilter.add(book.getIsbn()));
+        report.setImported(report.getImported() + books.size());
+    }
+
+    private void duplicate(BookImportReport report, long line) {
+        report.setDuplicates(report.getDuplicates() + 1);
+        addError(report, line, message("fail.already.exists", "Book", "isbn"));
+    }
+
+    private void fail(BookImportReport report, long line, String message) {
+        report.setFailed(report.getFailed() + 1);
+        addError(report, line, message);
+    }
+
+    private void addError(BookImportReport report, long line, String message) {
+        if (report.getErrors().size() < maxReportedErrors) {
+            report.getErrors().add(new BookImportReport.RowError(line, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    private String message(String code, Object... args) {
+        return messageSource.getMessage(code, args, Locale.getDefault());
+    }
+}
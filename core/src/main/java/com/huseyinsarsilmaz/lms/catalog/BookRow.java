@@ -0,0 +1,16 @@
+package com.huseyinsarsilmaz.lms.catalog;
+
+import com.huseyinsarsilmaz.lms.model.dto.request.BookCreateRequest;
+
+// One record of an import, line is where it starts in the body. invalidField names the value that could not be
+// read, request is null in that case.
+record BookRow(long line, BookCreateRequest request, String invalidField) {
+
+    static BookRow valid(long line, BookCreateRequest request) {
+        return new BookRow(line, request, null);
+    }
+
+    static BookRow invalid(long line, String field) {
+        return new BookRow(line, null, field);
+    }
+}
@@ -0,0 +1,10 @@
+package com.huseyinsarsilmaz.lms.catalog;
+
+import java.io.IOException;
+
+// Reads an import body one record at a time, so only the current record is held in memory
+interface BookRowReader {
+
+    // Null once the body is exhausted
+    BookRow next() throws IOException;
+}
@@ -0,0 +1,202 @@
+package com.huseyinsarsilmaz.lms.catalog;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.huseyinsarsilmaz.lms.exception.InvalidImportHeaderException;
+import com.huseyinsarsilmaz.lms.model.dto.request.BookCreateRequest;
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+// RFC 4180 CSV with a header row naming the columns in any order, publicationDate as an ISO date and genre by name.
+// Quoted fields may hold commas, doubled quotes and line breaks. Columns it does not know are ignored.
+final class CsvBookRowReader implements BookRowReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private enum Column {
+        TITLE("title"),
+        AUTHOR("author"),
+        DESCRIPTION("description"),
+        ISBN("isbn"),
+        PUBLICATION_DATE("publicationdate"),
+        GENRE("genre");
+
+        private final String header;
+
+        Column(String header) {
+            this.header = header;
+        }
+    }
+
+    private final Reader reader;
+    // Buffered here rather than through BufferedReader, whose read() takes a lock for every character
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long line = 1;
+
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    // Position of every column in a record
+    private final int[] positions = new int[Column.values().length];
+
+    CsvBookRowReader(Reader reader) throws IOException {
+        this.reader = reader;
+
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new InvalidImportHeaderException();
+        }
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < header.size(); i++) {
+            String name = normalizeHeader(header.get(i));
+            for (Column column : Column.values()) {
+                if (column.header.equals(name)) {
+                    positions[column.ordinal()] = i;
+                }
+            }
+        }
+        for (int index : positions) {
+            if (index < 0) {
+                throw new InvalidImportHeaderException();
+            }
+        }
+    }
+
+    // publicationDate, publication_date and "Publication Date" all name the same column
+    private static String normalizeHeader(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    @Override
+    public BookRow next() throws IOException {
+        while (true) {
+            long start = line;
+            List<String> record = readRecord();
+            if (record == null) {
+                return null;
+            }
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            return toRow(start, record);
+        }
+    }
+
+    private BookRow toRow(long start, List<String> record) {
+        BookCreateRequest req = new BookCreateRequest();
+        req.setTitle(value(record, Column.TITLE));
+        req.setAuthor(value(record, Column.AUTHOR));
+        req.setDescription(value(record, Column.DESCRIPTION));
+        req.setIsbn(value(record, Column.ISBN));
+
+        String publicationDate = value(record, Column.PUBLICATION_DATE);
+        if (publicationDate != null) {
+            try {
+                req.setPublicationDate(LocalDate.parse(publicationDate));
+            } catch (DateTimeParseException e) {
+                return BookRow.invalid(start, "publication date");
+            }
+        }
+
+        String genre = value(record, Column.GENRE);
+        if (genre != null) {
+            try {
+                req.setGenre(Book.Genre.valueOf(genre.toUpperCase(Locale.ROOT).replace('-', '_')));
+            } catch (IllegalArgumentException e) {
+                return BookRow.invalid(start, "genre");
+            }
+        }
+
+        return BookRow.valid(start, req);
+    }
+
+    // Trimmed, null when the record is too short or the value is blank
+    private String value(List<String> record, Column column) {
+        int index = positions[column.ordinal()];
+        if (index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    // Fields of the next record, null at the end of the body. The list is reused by the following call.
+    private List<String> readRecord() throws IOException {
+        fields.clear();
+        field.setLength(0);
+
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        // Byte order mark some spreadsheet exports start with
+        if (c == '\uFEFF' && line == 1) {
+            c = read();
+        }
+
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    // Unterminated quote, the rest of the body is the last field
+                    fields.add(field.toString());
+                    return fields;
+                }
+                if (c == '"') {
+                    int following = read();
+                    if (following != '"') {
+                        quoted = false;
+                        c = following;
+                        continue;
+                    }
+                    field.append('"');
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                if (c == '\n') {
+                    line++;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.huseyinsarsilmaz.lms.catalog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.huseyinsarsilmaz.lms.model.dto.request.BookCreateRequest;
+
+// One JSON object per line with the fields of POST /books. Blank lines are skipped.
+final class NdjsonBookRowReader implements BookRowReader {
+
+    private final BufferedReader reader;
+    private final ObjectReader objectReader;
+    private long line;
+
+    NdjsonBookRowReader(Reader reader, ObjectMapper objectMapper) {
+        this.reader = new BufferedReader(reader);
+        this.objectReader = objectMapper.readerFor(BookCreateRequest.class);
+    }
+
+    @Override
+    public BookRow next() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            try {
+                return BookRow.valid(line, objectReader.readValue(text));
+            } catch (JsonMappingException e) {
+                return BookRow.invalid(line, fieldOf(e));
+            } catch (JsonProcessingException e) {
+                return BookRow.invalid(line, "JSON");
+            }
+        }
+        return null;
+    }
+
+    // The field whose value could not be bound, or JSON when the line is not an object at all
+    private static String fieldOf(JsonMappingException e) {
+        List<JsonMappingException.Reference> path = e.getPath();
+        if (path.isEmpty() || path.get(path.size() - 1).getFieldName() == null) {
+            return "JSON";
+        }
+        return path.get(path.size() - 1).getFieldName();
+    }
+}
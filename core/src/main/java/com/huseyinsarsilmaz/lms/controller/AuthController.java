@@ -13,6 +13,8 @@ import com.huseyinsarsilmaz.lms.model.dto.response.LmsApiResponse;
 import com.huseyinsarsilmaz.lms.model.dto.response.LoginResponse;
 import com.huseyinsarsilmaz.lms.model.dto.response.RegisterResponse;
 import com.huseyinsarsilmaz.lms.model.entity.User;
+import com.huseyinsarsilmaz.lms.security.CurrentUser;
+import com.huseyinsarsilmaz.lms.security.VerifiedToken;
 import com.huseyinsarsilmaz.lms.service.AuthService;
 import com.huseyinsarsilmaz.lms.service.UserService;
 import com.huseyinsarsilmaz.lms.util.LmsResponseBuilder;
@@ -64,4 +66,16 @@ public class AuthController {
 
         return responseBuilder.success("User", "logged in", response, HttpStatus.OK);
     }
+
+    @PostMapping("/logout")
+    @Operation(summary = "User logout", description = "Revokes the JWT token used for this request, it is rejected from then on.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Logout successful", content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "401", description = "Unauthorized - Missing, invalid or already revoked token", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<Void>> logout(@CurrentUser VerifiedToken token) {
+        authService.logout(token);
+
+        return responseBuilder.success("User", "logged out", null, HttpStatus.OK);
+    }
 }
@@ -1,9 +1,16 @@
 package com.huseyinsarsilmaz.lms.controller;
 
+import java.io.InputStream;
+import java.util.List;
+
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,19 +19,31 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import com.huseyinsarsilmaz.lms.catalog.BookImportFormat;
 import com.huseyinsarsilmaz.lms.model.dto.request.BookCreateRequest;
+import com.huseyinsarsilmaz.lms.model.dto.request.BookSearchRequest;
 import com.huseyinsarsilmaz.lms.model.dto.request.BookUpdateRequest;
 import com.huseyinsarsilmaz.lms.model.dto.response.LmsApiResponse;
+import com.huseyinsarsilmaz.lms.model.dto.response.BookImportReport;
 import com.huseyinsarsilmaz.lms.model.dto.response.BookSimple;
+import com.huseyinsarsilmaz.lms.model.dto.response.BookSuggestion;
+import com.huseyinsarsilmaz.lms.model.dto.response.CountResponse;
+import com.huseyinsarsilmaz.lms.model.dto.response.CursorResponse;
 import com.huseyinsarsilmaz.lms.model.dto.response.PagedResponse;
+import com.huseyinsarsilmaz.lms.model.dto.response.SliceResponse;
 import com.huseyinsarsilmaz.lms.model.entity.Book;
 import com.huseyinsarsilmaz.lms.model.mapper.BookMapper;
 import com.huseyinsarsilmaz.lms.service.BookService;
+import com.huseyinsarsilmaz.lms.util.ETags;
+import com.huseyinsarsilmaz.lms.util.IsbnParser;
 import com.huseyinsarsilmaz.lms.util.LmsResponseBuilder;
+import com.huseyinsarsilmaz.lms.util.PageCursor;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -56,14 +75,35 @@ public class BookController {
         return responseBuilder.success("Book", "created", bookMapper.toDtoSimple(newBook), HttpStatus.CREATED);
     }
 
+    @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
+    @PostMapping(value = "/import", consumes = { BookImportFormat.CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+    @Operation(summary = "Import books in bulk", description = "Streams books from a CSV body with a title, author, description, isbn, publicationDate and genre header, or from NDJSON with one POST /books object per line. Rows are validated like single creates, ISBNs already stored or repeated in the body are skipped and every rejected row is reported with its line. Only librarians can import books.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Books imported, see the report for skipped rows", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookImportReport.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request - CSV header is missing a column", content = @Content),
+            @ApiResponse(responseCode = "415", description = "Unsupported Media Type - Body is neither CSV nor NDJSON", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<BookImportReport>> importBooks(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+
+        BookImportReport report = bookService.importBooks(body,
+                BookImportFormat.of(MediaType.parseMediaType(contentType)));
+        return responseBuilder.success("Books", "imported", report, HttpStatus.OK);
+    }
+
     @GetMapping("/{id}")
-    @Operation(summary = "Get book by ID", description = "Fetches a book by its unique ID.")
+    @Operation(summary = "Get book by ID", description = "Fetches a book by its unique ID. Responses carry an ETag and Last-Modified, send them back in If-None-Match or If-Modified-Since to get a 304 while the book is unchanged.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Book found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookSimple.class))),
+            @ApiResponse(responseCode = "304", description = "Not Modified - The book has not changed since the given ETag or date", content = @Content),
             @ApiResponse(responseCode = "404", description = "Not Found - Book not found with the provided ID", content = @Content)
     })
-    public ResponseEntity<LmsApiResponse<BookSimple>> getById(@PathVariable long id) {
+    public ResponseEntity<LmsApiResponse<BookSimple>> getById(@PathVariable long id, ServletWebRequest request) {
         Book book = bookService.getById(id);
+        if (ETags.notModified(request, book)) {
+            return null;
+        }
         return responseBuilder.success("Book", "fetched", bookMapper.toDtoSimple(book), HttpStatus.OK);
     }
 
@@ -81,7 +121,7 @@ public class BookController {
 
         Book book = bookService.getById(id);
 
-        if (!book.getIsbn().equals(req.getIsbn())) {
+        if (!book.getIsbn().equals(IsbnParser.canonicalize(req.getIsbn()))) {
             bookService.isIsbnTaken(req.getIsbn());
         }
 
@@ -105,7 +145,7 @@ public class BookController {
     }
 
     @GetMapping("/search")
-    @Operation(summary = "Search books", description = "Searches for books based on different search criteria (title, author, ISBN, genre).")
+    @Operation(summary = "Search books", description = "Searches for books based on different search criteria (title, author, ISBN, genre). FULL_TEXT matches title, author and description with web search syntax and ranks by relevance.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Books successfully fetched", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PagedResponse.class))),
             @ApiResponse(responseCode = "400", description = "Bad Request - Invalid search type or query", content = @Content)
@@ -121,4 +161,82 @@ public class BookController {
         return responseBuilder.success("Books", "fetched", new PagedResponse<>(results), HttpStatus.OK);
     }
 
+    @GetMapping("/suggest")
+    @Operation(summary = "Suggest titles and authors", description = "Completes what has been typed so far to the most borrowed titles and authors. Matching ignores case, accents and punctuation, titles also match without a leading article and authors from any word of their name. limit is capped at 20.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Suggestions successfully fetched", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookSuggestion.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request - Missing query", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<List<BookSuggestion>>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        return responseBuilder.success("Suggestions", "fetched", bookService.suggest(q, limit), HttpStatus.OK);
+    }
+
+    @GetMapping("/search/advanced")
+    @Operation(summary = "Search books by several criteria", description = "Combines any of title, author, genre, availability and a publication date range, all given criteria must match. Title and author match case insensitively anywhere in the value, publishedFrom and publishedTo are inclusive ISO dates.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Books successfully fetched", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PagedResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request - Invalid criteria or date range", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<PagedResponse<BookSimple>>> advancedSearch(
+            @Valid @ParameterObject BookSearchRequest req,
+            @PageableDefault(size = 10, sort = "title") Pageable pageable) {
+
+        Page<BookSimple> results = bookService.searchBooks(req, pageable).map(bookMapper::toDtoSimple);
+
+        return responseBuilder.success("Books", "fetched", new PagedResponse<>(results), HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/search", params = { "total=false", "!cursor" })
+    @Operation(summary = "Search books without totals", description = "Same search without the total count, the page is read with one extra row to tell whether there is a next one. Totals are served by /books/search/count.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Books successfully fetched", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SliceResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request - Invalid search type or query", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<SliceResponse<BookSimple>>> searchSlice(
+            @RequestParam Book.SearchType type,
+            @RequestParam String query,
+            @PageableDefault(size = 10, sort = "title") Pageable pageable) {
+
+        Slice<BookSimple> results = bookService.searchBooksSlice(type, query, pageable)
+                .map(bookMapper::toDtoSimple);
+
+        return responseBuilder.success("Books", "fetched", new SliceResponse<>(results), HttpStatus.OK);
+    }
+
+    @GetMapping("/search/count")
+    @Operation(summary = "Count search results", description = "Total number of books matching a search. Totals are cached for a short time, so they can lag behind recent changes.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Book count fetched", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CountResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request - Invalid search type or query", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<CountResponse>> countSearch(
+            @RequestParam Book.SearchType type,
+            @RequestParam String query) {
+
+        return responseBuilder.success("Book count", "fetched", bookService.countBooks(type, query), HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/search", params = "cursor")
+    @Operation(summary = "Search books by cursor", description = "Keyset paginated variant of the search ordered by title, pass an empty cursor for the first page and nextCursor for the following ones. Not available for FULL_TEXT.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Books successfully fetched", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request - Invalid search type, query or cursor", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<CursorResponse<BookSimple>>> searchByCursor(
+            @RequestParam Book.SearchType type,
+            @RequestParam String query,
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+
+        int pageSize = PageCursor.clampSize(size);
+        List<Book> rows = bookService.searchBooksAfter(type, query, PageCursor.decode(cursor), pageSize);
+        CursorResponse<BookSimple> results = CursorResponse.of(rows, pageSize,
+                book -> new PageCursor(book.getTitle(), book.getId()), bookMapper::toDtoSimple);
+
+        return responseBuilder.success("Books", "fetched", results, HttpStatus.OK);
+    }
+
 }
@@ -1,9 +1,17 @@
 package com.huseyinsarsilmaz.lms.controller;
 
+import java.util.List;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,19 +21,29 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import com.huseyinsarsilmaz.lms.job.OverdueReportExporter;
+import com.huseyinsarsilmaz.lms.job.ReportFormat;
 import com.huseyinsarsilmaz.lms.model.dto.request.BorrowRequest;
 import com.huseyinsarsilmaz.lms.model.dto.response.LmsApiResponse;
 import com.huseyinsarsilmaz.lms.model.dto.response.BorrowingDetailed;
 import com.huseyinsarsilmaz.lms.model.dto.response.BorrowingSimple;
+import com.huseyinsarsilmaz.lms.model.dto.response.CountResponse;
+import com.huseyinsarsilmaz.lms.model.dto.response.CursorResponse;
 import com.huseyinsarsilmaz.lms.model.dto.response.PagedResponse;
+import com.huseyinsarsilmaz.lms.model.dto.response.ReportExport;
+import com.huseyinsarsilmaz.lms.model.dto.response.SliceResponse;
 import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lms.model.entity.User;
 import com.huseyinsarsilmaz.lms.model.mapper.BorrowingMapper;
+import com.huseyinsarsilmaz.lms.security.AuthenticatedUser;
 import com.huseyinsarsilmaz.lms.security.CurrentUser;
 import com.huseyinsarsilmaz.lms.service.BorrowingService;
 import com.huseyinsarsilmaz.lms.service.UserService;
+import com.huseyinsarsilmaz.lms.util.ETags;
 import com.huseyinsarsilmaz.lms.util.LmsResponseBuilder;
+import com.huseyinsarsilmaz.lms.util.PageCursor;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -51,7 +69,7 @@ public class BorrowingController {
             @ApiResponse(responseCode = "400", description = "Bad Request - Invalid borrowing request data", content = @Content)
     })
     public ResponseEntity<LmsApiResponse<BorrowingSimple>> createBorrowing(
-            @CurrentUser User myUser,
+            @CurrentUser AuthenticatedUser myUser,
             @Valid @RequestBody BorrowRequest req) {
 
         if (req.getBorrowerId() != null) {
@@ -76,12 +94,12 @@ public class BorrowingController {
             @ApiResponse(responseCode = "404", description = "Not Found - Borrowing record not found", content = @Content)
     })
     public ResponseEntity<LmsApiResponse<BorrowingDetailed>> returnBorrowing(
-            @CurrentUser User myUser,
+            @CurrentUser AuthenticatedUser myUser,
             @PathVariable("id") long id) {
 
         Borrowing borrowing = borrowingService.getById(id);
 
-        borrowingService.checkOwnership(myUser, borrowing);
+        borrowingService.checkOwnership(myUser.getId(), borrowing);
         borrowingService.checkReturnable(borrowing);
 
         borrowing = borrowingService.returnBorrowing(borrowing);
@@ -93,36 +111,171 @@ public class BorrowingController {
     @GetMapping("/my")
     @Operation(summary = "Get current user's borrowing history", description = "Fetches the borrowing history of the currently authenticated user.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Borrowing history fetched successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PagedResponse.class)))
+            @ApiResponse(responseCode = "200", description = "Borrowing history fetched successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PagedResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Not Modified - The history has not changed since the given ETag", content = @Content)
     })
     public ResponseEntity<LmsApiResponse<PagedResponse<BorrowingSimple>>> getMyBorrowingHistory(
-            @CurrentUser User myUser,
-            @PageableDefault(size = 10, sort = "borrower") Pageable pageable) {
+            @CurrentUser AuthenticatedUser myUser,
+            @PageableDefault(size = 10, sort = "borrower") Pageable pageable,
+            ServletWebRequest request) {
 
         Page<Borrowing> borrowings = borrowingService.getByBorrowerId(myUser.getId(), pageable);
+        if (ETags.notModified(request, borrowings.getContent(), borrowings.getTotalElements())) {
+            return null;
+        }
         Page<BorrowingSimple> page = borrowings.map(borrowingMapper::toDtoDetailed);
 
         return responseBuilder.success("Borrowing history", "fetched", new PagedResponse<>(page), HttpStatus.OK);
     }
 
+    @GetMapping(value = "/my", params = { "total=false", "!cursor" })
+    @Operation(summary = "Get current user's borrowing history without totals", description = "Same history without the total count, totals are served by /borrowings/my/count.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Borrowing history fetched successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SliceResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Not Modified - The history has not changed since the given ETag", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<SliceResponse<BorrowingSimple>>> getMyBorrowingHistorySlice(
+            @CurrentUser AuthenticatedUser myUser,
+            @PageableDefault(size = 10, sort = "borrower") Pageable pageable,
+            ServletWebRequest request) {
+
+        Slice<Borrowing> borrowings = borrowingService.getSliceByBorrowerId(myUser.getId(), pageable);
+        if (ETags.notModified(request, borrowings.getContent(), borrowings.hasNext() ? 1 : 0)) {
+            return null;
+        }
+        Slice<BorrowingSimple> page = borrowings.map(borrowingMapper::toDtoDetailed);
+
+        return responseBuilder.success("Borrowing history", "fetched", new SliceResponse<>(page), HttpStatus.OK);
+    }
+
+    @GetMapping("/my/count")
+    @Operation(summary = "Count current user's borrowings", description = "Total number of borrowings of the currently authenticated user, cached for a short time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Borrowing count fetched", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CountResponse.class)))
+    })
+    public ResponseEntity<LmsApiResponse<CountResponse>> countMyBorrowings(@CurrentUser AuthenticatedUser myUser) {
+
+        return responseBuilder.success("Borrowing count", "fetched", borrowingService.countByBorrowerId(myUser.getId()),
+                HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/my", params = "cursor")
+    @Operation(summary = "Get current user's borrowing history by cursor", description = "Keyset paginated variant ordered by borrowing id, pass an empty cursor for the first page and nextCursor for the following ones.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Borrowing history fetched successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Not Modified - The history has not changed since the given ETag", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Bad Request - Invalid cursor", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<CursorResponse<BorrowingSimple>>> getMyBorrowingHistoryByCursor(
+            @CurrentUser AuthenticatedUser myUser,
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            ServletWebRequest request) {
+
+        int pageSize = PageCursor.clampSize(size);
+        List<Borrowing> rows = borrowingService.getByBorrowerIdAfter(myUser.getId(), PageCursor.decode(cursor),
+                pageSize);
+        // The extra row read past the page is part of the tag, it decides nextCursor
+        if (ETags.notModified(request, rows)) {
+            return null;
+        }
+        CursorResponse<BorrowingSimple> page = CursorResponse.of(rows, pageSize,
+                borrowing -> new PageCursor(String.valueOf(myUser.getId()), borrowing.getId()),
+                borrowingMapper::toDtoDetailed);
+
+        return responseBuilder.success("Borrowing history", "fetched", page, HttpStatus.OK);
+    }
+
     @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
     @GetMapping("/user/{id}")
     @Operation(summary = "Get a user's borrowing history", description = "Fetches the borrowing history of a specific user by their ID.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Borrowing history fetched successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PagedResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Not Modified - The history has not changed since the given ETag", content = @Content),
             @ApiResponse(responseCode = "404", description = "Not Found - User not found", content = @Content)
     })
     public ResponseEntity<LmsApiResponse<PagedResponse<BorrowingDetailed>>> getBorrowingHistory(
             @PathVariable("id") long id,
-            @PageableDefault(size = 10, sort = "borrower") Pageable pageable) {
+            @PageableDefault(size = 10, sort = "borrower") Pageable pageable,
+            ServletWebRequest request) {
 
         User borrowedUser = userService.getById(id);
         Page<Borrowing> borrowings = borrowingService.getByBorrowerId(borrowedUser.getId(), pageable);
+        if (ETags.notModified(request, borrowings.getContent(), borrowings.getTotalElements())) {
+            return null;
+        }
         Page<BorrowingDetailed> page = borrowings.map(borrowingMapper::toDtoDetailed);
 
         return responseBuilder.success("Borrowing history", "fetched", new PagedResponse<>(page), HttpStatus.OK);
     }
 
+    @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
+    @GetMapping(value = "/user/{id}", params = { "total=false", "!cursor" })
+    @Operation(summary = "Get a user's borrowing history without totals", description = "Same history without the total count, totals are served by /borrowings/user/{id}/count.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Borrowing history fetched successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SliceResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Not Modified - The history has not changed since the given ETag", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Not Found - User not found", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<SliceResponse<BorrowingDetailed>>> getBorrowingHistorySlice(
+            @PathVariable("id") long id,
+            @PageableDefault(size = 10, sort = "borrower") Pageable pageable,
+            ServletWebRequest request) {
+
+        User borrowedUser = userService.getById(id);
+        Slice<Borrowing> borrowings = borrowingService.getSliceByBorrowerId(borrowedUser.getId(), pageable);
+        if (ETags.notModified(request, borrowings.getContent(), borrowings.hasNext() ? 1 : 0)) {
+            return null;
+        }
+        Slice<BorrowingDetailed> page = borrowings.map(borrowingMapper::toDtoDetailed);
+
+        return responseBuilder.success("Borrowing history", "fetched", new SliceResponse<>(page), HttpStatus.OK);
+    }
+
+    @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
+    @GetMapping("/user/{id}/count")
+    @Operation(summary = "Count a user's borrowings", description = "Total number of borrowings of a specific user, cached for a short time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Borrowing count fetched", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CountResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Not Found - User not found", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<CountResponse>> countBorrowings(@PathVariable("id") long id) {
+
+        User borrowedUser = userService.getById(id);
+
+        return responseBuilder.success("Borrowing count", "fetched",
+                borrowingService.countByBorrowerId(borrowedUser.getId()), HttpStatus.OK);
+    }
+
+    @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
+    @GetMapping(value = "/user/{id}", params = "cursor")
+    @Operation(summary = "Get a user's borrowing history by cursor", description = "Keyset paginated variant ordered by borrowing id, pass an empty cursor for the first page and nextCursor for the following ones.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Borrowing history fetched successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Not Modified - The history has not changed since the given ETag", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Bad Request - Invalid cursor", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Not Found - User not found", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<CursorResponse<BorrowingDetailed>>> getBorrowingHistoryByCursor(
+            @PathVariable("id") long id,
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            ServletWebRequest request) {
+
+        User borrowedUser = userService.getById(id);
+        int pageSize = PageCursor.clampSize(size);
+        List<Borrowing> rows = borrowingService.getByBorrowerIdAfter(borrowedUser.getId(), PageCursor.decode(cursor),
+                pageSize);
+        if (ETags.notModified(request, rows)) {
+            return null;
+        }
+        CursorResponse<BorrowingDetailed> page = CursorResponse.of(rows, pageSize,
+                borrowing -> new PageCursor(String.valueOf(borrowedUser.getId()), borrowing.getId()),
+                borrowingMapper::toDtoDetailed);
+
+        return responseBuilder.success("Borrowing history", "fetched", page, HttpStatus.OK);
+    }
+
     @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
     @GetMapping("/report")
     @Operation(summary = "Get borrowing overdue report", description = "Generates a report of overdue borrowings, either for all users or a specific user.")
@@ -142,12 +295,139 @@ public class BorrowingController {
         }
 
         Page<BorrowingDetailed> page = borrowings.map(borrowingMapper::toDtoDetailed);
-        borrowingService.printOverdueReport(page);
 
         return responseBuilder.success("Borrowing overdue report", "acquired", new PagedResponse<>(page),
                 HttpStatus.OK);
     }
 
+    @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
+    @GetMapping(value = "/report", params = { "total=false", "!cursor" })
+    @Operation(summary = "Get borrowing overdue report without totals", description = "Same report without the total count, totals are served by /borrowings/report/count.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Overdue borrowing report fetched successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SliceResponse.class)))
+    })
+    public ResponseEntity<LmsApiResponse<SliceResponse<BorrowingDetailed>>> getBorrowingReportSlice(
+            @RequestParam(required = false) Long borrowerId,
+            @PageableDefault(size = 10, sort = "borrower") Pageable pageable) {
+
+        Slice<Borrowing> borrowings;
+        if (borrowerId == null) {
+            borrowings = borrowingService.getAllOverdueSlice(pageable);
+        } else {
+            User reportUser = userService.getById(borrowerId);
+            borrowings = borrowingService.getOverdueSliceByBorrowerId(reportUser.getId(), pageable);
+        }
+
+        Slice<BorrowingDetailed> page = borrowings.map(borrowingMapper::toDtoDetailed);
+
+        return responseBuilder.success("Borrowing overdue report", "acquired", new SliceResponse<>(page),
+                HttpStatus.OK);
+    }
+
+    @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
+    @GetMapping("/report/count")
+    @Operation(summary = "Count overdue report entries", description = "Total number of entries of the overdue report, for all users or a specific user, cached for a short time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Overdue borrowing count fetched", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CountResponse.class)))
+    })
+    public ResponseEntity<LmsApiResponse<CountResponse>> countBorrowingReport(
+            @RequestParam(required = false) Long borrowerId) {
+
+        CountResponse count;
+        if (borrowerId == null) {
+            count = borrowingService.countAllOverdue();
+        } else {
+            User reportUser = userService.getById(borrowerId);
+            count = borrowingService.countOverdueByBorrowerId(reportUser.getId());
+        }
+
+        return responseBuilder.success("Overdue borrowing count", "fetched", count, HttpStatus.OK);
+    }
+
+    @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
+    @GetMapping(value = "/report", params = "cursor")
+    @Operation(summary = "Get borrowing overdue report by cursor", description = "Keyset paginated variant ordered by borrower and borrowing id, pass an empty cursor for the first page and nextCursor for the following ones.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Overdue borrowing report fetched successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CursorResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request - Invalid cursor", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<CursorResponse<BorrowingDetailed>>> getBorrowingReportByCursor(
+            @RequestParam(required = false) Long borrowerId,
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+
+        int pageSize = PageCursor.clampSize(size);
+        PageCursor after = PageCursor.decode(cursor);
+        List<Borrowing> rows;
+        if (borrowerId == null) {
+            rows = borrowingService.getAllOverdueAfter(after, pageSize);
+        } else {
+            User reportUser = userService.getById(borrowerId);
+            rows = borrowingService.getOverdueByBorrowerIdAfter(reportUser.getId(), after, pageSize);
+        }
+
+        CursorResponse<BorrowingDetailed> page = CursorResponse.of(rows, pageSize,
+                borrowing -> new PageCursor(String.valueOf(borrowing.getBorrower().getId()), borrowing.getId()),
+                borrowingMapper::toDtoDetailed);
+
+        return responseBuilder.success("Borrowing overdue report", "acquired", page, HttpStatus.OK);
+    }
+
+    @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
+    @PostMapping("/report/exports")
+    @Operation(summary = "Export the overdue report", description = "Starts writing the whole overdue report, for all users or a specific user, to a CSV or NDJSON file in the background. Poll the returned export until it has SUCCEEDED, then download it.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Overdue report export started", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ReportExport.class))),
+            @ApiResponse(responseCode = "404", description = "Not Found - Borrower not found", content = @Content),
+            @ApiResponse(responseCode = "503", description = "Service Unavailable - Too many exports are running", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<ReportExport>> startReportExport(
+            @RequestParam(required = false) Long borrowerId,
+            @RequestParam(defaultValue = "CSV") ReportFormat format) {
+
+        if (borrowerId != null) {
+            userService.getById(borrowerId);
+        }
+
+        ReportExport export = borrowingService.startOverdueReportExport(format, borrowerId);
+
+        return responseBuilder.success("Overdue report export", "started", export, HttpStatus.ACCEPTED);
+    }
+
+    @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
+    @GetMapping("/report/exports/{id}")
+    @Operation(summary = "Get an overdue report export", description = "Status of an export and the number of rows written so far.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Overdue report export fetched", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ReportExport.class))),
+            @ApiResponse(responseCode = "404", description = "Not Found - Unknown or expired export", content = @Content)
+    })
+    public ResponseEntity<LmsApiResponse<ReportExport>> getReportExport(@PathVariable("id") String id) {
+        return responseBuilder.success("Overdue report export", "fetched", borrowingService.getOverdueReportExport(id),
+                HttpStatus.OK);
+    }
+
+    @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
+    @GetMapping("/report/exports/{id}/file")
+    @Operation(summary = "Download an overdue report export", description = "Streams the file of a finished export.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Overdue report file", content = {
+                    @Content(mediaType = "text/csv"), @Content(mediaType = "application/x-ndjson") }),
+            @ApiResponse(responseCode = "404", description = "Not Found - Unknown or expired export", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Conflict - The export has not finished", content = @Content)
+    })
+    public ResponseEntity<Resource> downloadReportExport(@PathVariable("id") String id) {
+        OverdueReportExporter.ExportFile file = borrowingService.getOverdueReportExportFile(id);
+        ReportFormat format = file.export().getFormat();
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("overdue-report-" + id + "." + format.getExtension())
+                        .build()
+                        .toString())
+                .body(new FileSystemResource(file.path()));
+    }
+
     @PreAuthorize("hasRole('ROLE_LIBRARIAN')")
     @PostMapping("/{id}/excuse")
     @Operation(summary = "Excuse a returned overdue borrowing", description = "Excuses a returned borrowing that was overdue, effectively removing penalties.")
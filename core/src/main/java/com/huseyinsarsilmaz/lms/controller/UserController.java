@@ -21,6 +21,7 @@ import com.huseyinsarsilmaz.lms.model.dto.response.UserDetailed;
 import com.huseyinsarsilmaz.lms.model.dto.response.UserSimple;
 import com.huseyinsarsilmaz.lms.model.entity.User;
 import com.huseyinsarsilmaz.lms.model.mapper.UserMapper;
+import com.huseyinsarsilmaz.lms.security.AuthenticatedUser;
 import com.huseyinsarsilmaz.lms.security.CurrentUser;
 import com.huseyinsarsilmaz.lms.service.BorrowingService;
 import com.huseyinsarsilmaz.lms.service.UserService;
@@ -44,15 +45,12 @@ public class UserController {
     private final LmsResponseBuilder responseBuilder;
     private final UserMapper userMapper;
 
-    private User authorizeAccessToUser(User myUser, long targetUserId, boolean modify) {
+    private User authorizeAccessToUser(AuthenticatedUser myUser, long targetUserId, boolean modify) {
         userService.checkHasRole(myUser, User.Role.ROLE_LIBRARIAN);
 
         User targetUser = userService.getById(targetUserId);
-        String roles = targetUser.getRoles();
-
-        boolean isAdmin = roles.contains(User.Role.ROLE_ADMIN.name());
-        boolean isManager = isAdmin ||
-                roles.contains(User.Role.ROLE_LIBRARIAN.name());
+        boolean isAdmin = targetUser.hasRole(User.Role.ROLE_ADMIN);
+        boolean isManager = isAdmin || targetUser.hasRole(User.Role.ROLE_LIBRARIAN);
 
         if ((isManager && modify) || isAdmin) {
             userService.checkHasRole(myUser, User.Role.ROLE_ADMIN);
@@ -95,7 +93,7 @@ public class UserController {
     })
     public ResponseEntity<LmsApiResponse<UserSimple>> updateMyUser(@CurrentUser User myUser,
             @Valid @RequestBody UserUpdateRequest req) {
-        if (!myUser.getEmail().equals(req.getEmail())) {
+        if (!myUser.getNormalizedEmail().equals(User.normalizeEmail(req.getEmail()))) {
             userService.isEmailTaken(req.getEmail());
         }
 
@@ -136,7 +134,7 @@ public class UserController {
             @ApiResponse(responseCode = "404", description = "Not Found - User not found with the provided ID", content = @Content)
     })
     public ResponseEntity<LmsApiResponse<UserSimple>> getUser(
-            @CurrentUser User myUser,
+            @CurrentUser AuthenticatedUser myUser,
             @PathVariable("id") long id) {
         User targetUser = authorizeAccessToUser(myUser, id, false);
 
@@ -151,11 +149,11 @@ public class UserController {
             @ApiResponse(responseCode = "404", description = "Not Found - User not found with the provided ID", content = @Content)
     })
     public ResponseEntity<LmsApiResponse<UserSimple>> updateUser(
-            @CurrentUser User myUser,
+            @CurrentUser AuthenticatedUser myUser,
             @Valid @RequestBody UserUpdateRequest req, @PathVariable("id") long id) {
         User targetUser = authorizeAccessToUser(myUser, id, true);
 
-        if (!targetUser.getEmail().equals(req.getEmail())) {
+        if (!targetUser.getNormalizedEmail().equals(User.normalizeEmail(req.getEmail()))) {
             userService.isEmailTaken(req.getEmail());
         }
 
@@ -171,7 +169,7 @@ public class UserController {
             @ApiResponse(responseCode = "404", description = "Not Found - User not found with the provided ID", content = @Content)
     })
     public ResponseEntity<LmsApiResponse<UserSimple>> deleteUser(
-            @CurrentUser User myUser,
+            @CurrentUser AuthenticatedUser myUser,
             @PathVariable("id") long id) {
         User targetUser = authorizeAccessToUser(myUser, id, true);
         userService.delete(targetUser);
@@ -187,7 +185,7 @@ public class UserController {
             @ApiResponse(responseCode = "404", description = "Not Found - User not found with the provided ID", content = @Content),
             @ApiResponse(responseCode = "400", description = "Bad Request - User is not deactivated", content = @Content)
     })
-    public ResponseEntity<LmsApiResponse<UserDetailed>> reactivateUser(@CurrentUser User myUser,
+    public ResponseEntity<LmsApiResponse<UserDetailed>> reactivateUser(@CurrentUser AuthenticatedUser myUser,
             @PathVariable("id") long id) {
         User reactivatedUser = userService.getById(id);
         userService.checkDeactivated(reactivatedUser);
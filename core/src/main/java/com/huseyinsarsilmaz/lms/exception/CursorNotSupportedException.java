@@ -0,0 +1,9 @@
+package com.huseyinsarsilmaz.lms.exception;
+
+import org.springframework.http.HttpStatus;
+
+public final class CursorNotSupportedException extends LmsException {
+    public CursorNotSupportedException(String operation) {
+        super("cursor.not.supported", HttpStatus.BAD_REQUEST, operation);
+    }
+}
@@ -0,0 +1,9 @@
+package com.huseyinsarsilmaz.lms.exception;
+
+import org.springframework.http.HttpStatus;
+
+public final class InvalidCursorException extends LmsException {
+    public InvalidCursorException() {
+        super("invalid", HttpStatus.BAD_REQUEST, "Cursor");
+    }
+}
@@ -0,0 +1,9 @@
+package com.huseyinsarsilmaz.lms.exception;
+
+import org.springframework.http.HttpStatus;
+
+public final class InvalidDateRangeException extends LmsException {
+    public InvalidDateRangeException(String rangeName) {
+        super("illegal.state", HttpStatus.BAD_REQUEST, rangeName + " start", "on or before its end");
+    }
+}
@@ -0,0 +1,9 @@
+package com.huseyinsarsilmaz.lms.exception;
+
+import org.springframework.http.HttpStatus;
+
+public final class InvalidImportHeaderException extends LmsException {
+    public InvalidImportHeaderException() {
+        super("invalid", HttpStatus.BAD_REQUEST, "CSV header");
+    }
+}
@@ -0,0 +1,9 @@
+package com.huseyinsarsilmaz.lms.exception;
+
+import org.springframework.http.HttpStatus;
+
+public final class InvalidIsbnException extends LmsException {
+    public InvalidIsbnException() {
+        super("invalid", HttpStatus.BAD_REQUEST, "ISBN");
+    }
+}
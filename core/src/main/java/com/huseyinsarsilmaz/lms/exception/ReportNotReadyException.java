@@ -0,0 +1,9 @@
+package com.huseyinsarsilmaz.lms.exception;
+
+import org.springframework.http.HttpStatus;
+
+public final class ReportNotReadyException extends LmsException {
+    public ReportNotReadyException() {
+        super("illegal.state", HttpStatus.CONFLICT, "report export", "finished");
+    }
+}
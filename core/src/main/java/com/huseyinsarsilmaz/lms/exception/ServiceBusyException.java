@@ -0,0 +1,9 @@
+package com.huseyinsarsilmaz.lms.exception;
+
+import org.springframework.http.HttpStatus;
+
+public final class ServiceBusyException extends LmsException {
+    public ServiceBusyException() {
+        super("busy", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
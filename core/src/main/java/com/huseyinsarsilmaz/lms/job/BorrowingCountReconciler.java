@@ -0,0 +1,85 @@
+package com.huseyinsarsilmaz.lms.job;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
+import com.huseyinsarsilmaz.lms.repository.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+// Recounts the borrowing counters of users from their borrowings over id ranges of chunk-size users, each range in
+// its own short transaction. A range first locks its user rows. Every status change also updates the counters of its
+// borrower, so once the locks are held the changes made before are committed and seen by the recount, and the ones
+// still running wait for the range to commit and then add their own change on top of it.
+@Slf4j
+@Component
+public class BorrowingCountReconciler {
+
+    private static final List<Borrowing.Status> ACTIVE_STATUSES = List.of(Borrowing.Status.BORROWED,
+            Borrowing.Status.OVERDUE);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    private final Timer runTimer;
+    private final Counter correctedUsers;
+
+    public BorrowingCountReconciler(UserRepository userRepository, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry, @Value("${borrowing.counts.chunk-size:1000}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+
+        this.runTimer = Timer.builder("lms.users.borrowing-counts.reconcile")
+                .description("Total run time of the borrowing counter reconciliation")
+                .register(meterRegistry);
+        this.correctedUsers = Counter.builder("lms.users.borrowing-counts.corrected")
+                .description("Users whose borrowing counters had drifted and were corrected")
+                .register(meterRegistry);
+    }
+
+    // Number of users corrected
+    public long reconcile() {
+        long start = System.nanoTime();
+
+        long corrected = 0;
+        Long minId = userRepository.findMinId();
+        Long maxId = userRepository.findMaxId();
+        if (minId != null && maxId != null) {
+            for (long fromId = minId; fromId <= maxId; fromId += chunkSize) {
+                corrected += reconcileChunk(fromId, Math.min(fromId + chunkSize - 1, maxId));
+            }
+        }
+
+        long nanos = System.nanoTime() - start;
+        runTimer.record(nanos, TimeUnit.NANOSECONDS);
+        correctedUsers.increment(corrected);
+        if (corrected > 0) {
+            log.warn("Corrected the borrowing counters of {} users in {} ms", corrected,
+                    TimeUnit.NANOSECONDS.toMillis(nanos));
+        } else {
+            log.info("Borrowing counters of all users are correct, checked in {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+        return corrected;
+    }
+
+    private int reconcileChunk(long fromId, long toId) {
+        Integer corrected = transactionTemplate.execute(status -> {
+            userRepository.lockIdsInRange(fromId, toId);
+            return userRepository.reconcileBorrowingCountsInRange(fromId, toId, ACTIVE_STATUSES,
+                    Borrowing.Status.OVERDUE, Borrowing.Status.RETURNED_OVERDUE);
+        });
+        return corrected == null ? 0 : corrected;
+    }
+}
@@ -0,0 +1,138 @@
+package com.huseyinsarsilmaz.lms.job;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.huseyinsarsilmaz.lms.model.entity.JobLock;
+import com.huseyinsarsilmaz.lms.model.entity.JobRun;
+import com.huseyinsarsilmaz.lms.repository.JobLockRepository;
+import com.huseyinsarsilmaz.lms.repository.JobRunRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+// Runs a scheduled job on one node at a time. Every node fires the schedule, the one that takes the lease in
+// job_locks runs the job and the others skip it. A lease held by a crashed node runs out after the lease time, so
+// the lease must be longer than the job ever takes. On completion the lease is cut down to min-hold after the
+// start, which keeps a node whose clock is a little behind from running the same schedule again.
+// Every run is recorded in job_runs with the node and its duration.
+@Slf4j
+@Component
+public class JobLockService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final JobLockRepository jobLockRepository;
+    private final JobRunRepository jobRunRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String node;
+    private final Duration minHold;
+
+    public JobLockService(JobLockRepository jobLockRepository, JobRunRepository jobRunRepository,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${job.lock.node-id:}") String nodeId,
+            @Value("${job.lock.min-hold:30s}") Duration minHold) {
+        this.jobLockRepository = jobLockRepository;
+        this.jobRunRepository = jobRunRepository;
+        // Lock changes commit on their own, also when the caller runs in a transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        // pid@host unless configured
+        this.node = nodeId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : nodeId;
+        this.minHold = minHold;
+    }
+
+    // False when another node holds the lock and the task was skipped. Exceptions of the task are rethrown.
+    public boolean runLocked(String name, Duration lease, Runnable task) {
+        // Millisecond precision survives the round trip through every database, release matches on it
+        Instant lockedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        if (!acquire(name, lockedAt, lockedAt.plus(lease))) {
+            log.debug("Job {} skipped, locked by another node", name);
+            meterRegistry.counter("lms.jobs.skipped", "job", name).increment();
+            return false;
+        }
+
+        long start = System.nanoTime();
+        JobRun.Status status = JobRun.Status.FAILED;
+        String error = null;
+        try {
+            task.run();
+            status = JobRun.Status.SUCCEEDED;
+        } catch (RuntimeException ex) {
+            error = ex.toString();
+            throw ex;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            meterRegistry.timer("lms.jobs.run", "job", name, "outcome", status.name().toLowerCase())
+                    .record(nanos, TimeUnit.NANOSECONDS);
+            release(name, lockedAt);
+            record(name, lockedAt, TimeUnit.NANOSECONDS.toMillis(nanos), status, error);
+        }
+        return true;
+    }
+
+    private boolean acquire(String name, Instant now, Instant until) {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(tx -> {
+                if (jobLockRepository.acquireExpired(name, node, now, until, LocalDateTime.now()) == 1) {
+                    return true;
+                }
+                if (jobLockRepository.existsByName(name)) {
+                    return false;
+                }
+                jobLockRepository.saveAndFlush(JobLock.builder()
+                        .name(name)
+                        .lockedBy(node)
+                        .lockedAt(now)
+                        .lockedUntil(until)
+                        .build());
+                return true;
+            }));
+        } catch (DataIntegrityViolationException ex) {
+            // First run of the job, another node created the lock concurrently and holds it
+            return false;
+        }
+    }
+
+    // Failures are only logged, the lease then runs out on its own
+    private void release(String name, Instant lockedAt) {
+        Instant until = lockedAt.plus(minHold);
+        Instant now = Instant.now();
+        try {
+            transactionTemplate.executeWithoutResult(tx -> jobLockRepository.release(name, node, lockedAt,
+                    until.isAfter(now) ? until : now, LocalDateTime.now()));
+        } catch (RuntimeException ex) {
+            log.warn("Lock of job {} could not be released", name, ex);
+        }
+    }
+
+    private void record(String name, Instant startedAt, long durationMillis, JobRun.Status status, String error) {
+        try {
+            transactionTemplate.executeWithoutResult(tx -> jobRunRepository.save(JobRun.builder()
+                    .jobName(name)
+                    .node(node)
+                    .startedAt(startedAt)
+                    .durationMillis(durationMillis)
+                    .status(status)
+                    .error(error == null || error.length() <= MAX_ERROR_LENGTH ? error
+                            : error.substring(0, MAX_ERROR_LENGTH))
+                    .build()));
+        } catch (RuntimeException ex) {
+            log.warn("Run of job {} could not be recorded", name, ex);
+        }
+        log.info("Job {} {} on {} in {} ms", name, status.name().toLowerCase(), node, durationMillis);
+    }
+}
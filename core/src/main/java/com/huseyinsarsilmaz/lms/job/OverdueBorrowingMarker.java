@@ -0,0 +1,100 @@
+package com.huseyinsarsilmaz.lms.job;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
+import com.huseyinsarsilmaz.lms.repository.BorrowingRepository;
+import com.huseyinsarsilmaz.lms.repository.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+// Moves past due BORROWED borrowings to OVERDUE with set based UPDATEs over id ranges of chunk-size ids, each range
+// in its own short transaction, so no run holds locks on more than one chunk of rows or loads any of them.
+// A failed chunk fails the run, the chunks before it stay committed and the next run picks up the rest.
+// The overdue counters of the borrowers are raised in the transaction of their chunk.
+@Slf4j
+@Component
+public class OverdueBorrowingMarker {
+
+    private final BorrowingRepository borrowingRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    private final Timer chunkTimer;
+    private final Timer runTimer;
+    private final Counter markedRows;
+    private final AtomicLong rowsPerSecond = new AtomicLong();
+
+    public OverdueBorrowingMarker(BorrowingRepository borrowingRepository, UserRepository userRepository,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${borrowing.overdue.chunk-size:5000}") int chunkSize) {
+        this.borrowingRepository = borrowingRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+
+        this.chunkTimer = Timer.builder("lms.borrowings.overdue.chunk")
+                .description("Latency of one id range UPDATE of the overdue job")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("lms.borrowings.overdue.run")
+                .description("Total run time of the overdue job")
+                .register(meterRegistry);
+        this.markedRows = Counter.builder("lms.borrowings.overdue.marked")
+                .description("Borrowings moved to OVERDUE by the overdue job")
+                .register(meterRegistry);
+        Gauge.builder("lms.borrowings.overdue.rate", rowsPerSecond, AtomicLong::get)
+                .description("Rows per second marked by the last run of the overdue job")
+                .register(meterRegistry);
+    }
+
+    // Number of borrowings marked
+    public long markPastDue() {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+
+        long marked = 0;
+        Long minId = borrowingRepository.findMinPastDueIdByStatus(Borrowing.Status.BORROWED, today);
+        Long maxId = borrowingRepository.findMaxPastDueIdByStatus(Borrowing.Status.BORROWED, today);
+        if (minId != null && maxId != null) {
+            for (long fromId = minId; fromId <= maxId; fromId += chunkSize) {
+                marked += markChunk(fromId, Math.min(fromId + chunkSize - 1, maxId), today);
+            }
+        }
+
+        long nanos = System.nanoTime() - start;
+        runTimer.record(nanos, TimeUnit.NANOSECONDS);
+        markedRows.increment(marked);
+        rowsPerSecond.set(nanos == 0 ? marked : marked * TimeUnit.SECONDS.toNanos(1) / nanos);
+        log.info("Marked {} borrowings overdue in {} ms", marked, TimeUnit.NANOSECONDS.toMillis(nanos));
+        return marked;
+    }
+
+    private int markChunk(long fromId, long toId, LocalDate today) {
+        Integer updated = chunkTimer.record(() -> transactionTemplate.execute(status -> {
+            // The database keeps microseconds, the counters find the marked rows by this exact value
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            int marked = borrowingRepository.updatePastDueStatusInRange(fromId, toId, Borrowing.Status.BORROWED,
+                    Borrowing.Status.OVERDUE, today, now);
+            if (marked > 0) {
+                userRepository.addOverdueMarkedInRange(fromId, toId, Borrowing.Status.OVERDUE, now);
+            }
+            return marked;
+        }));
+        return updated == null ? 0 : updated;
+    }
+}
@@ -0,0 +1,238 @@
+package com.huseyinsarsilmaz.lms.job;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
+import com.huseyinsarsilmaz.lms.repository.BorrowingRepository;
+import com.huseyinsarsilmaz.lms.repository.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+// Marks borrowings overdue within a tick of their due date passing instead of waiting for the daily job.
+// The BORROWED borrowings due within the horizon are held in a queue ordered by due date, reloaded on a fixed delay
+// and joined by every new borrowing as it commits. Each tick polls the head of the queue and moves what is past due
+// in small batches. The queue only holds ids: borrowings returned meanwhile are skipped by the UPDATE itself.
+// Anything the engine misses, like borrowings created by another node, is picked up by its next reload and by the
+// daily OverdueBorrowingMarker run. The overdue counters of the borrowers are raised in the transaction of each batch.
+@Slf4j
+@Component
+public class OverdueEngine {
+
+    private static final int FETCH_SIZE = 1000;
+    private static final String LOAD_DUE = "SELECT id, due_date FROM borrowings WHERE status = ? AND due_date < ?"
+            + " ORDER BY due_date, id";
+
+    private record Due(LocalDate dueDate, long id) {
+    }
+
+    private static final Comparator<Due> BY_DUE_DATE = Comparator.comparing(Due::dueDate)
+            .thenComparingLong(Due::id);
+
+    private final BorrowingRepository borrowingRepository;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int horizonDays;
+    private final int maxEntries;
+    private final int batchSize;
+
+    private final Counter markedRows;
+    private final Timer lag;
+
+    private final Object lock = new Object();
+    // Everything below is guarded by lock
+    private PriorityQueue<Due> queue = new PriorityQueue<>(BY_DUE_DATE);
+    // Due dates before this one are all in the queue, null until the first load
+    private LocalDate coveredUntil;
+    // Registrations made while a reload runs, they may be missing from what it reads
+    private List<Due> registeredDuringLoad;
+
+    public OverdueEngine(BorrowingRepository borrowingRepository, UserRepository userRepository,
+            JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${borrowing.overdue.engine.enabled:true}") boolean enabled,
+            @Value("${borrowing.overdue.engine.horizon-days:8}") int horizonDays,
+            @Value("${borrowing.overdue.engine.max-entries:100000}") int maxEntries,
+            @Value("${borrowing.overdue.engine.batch-size:500}") int batchSize) {
+        this.borrowingRepository = borrowingRepository;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.horizonDays = horizonDays;
+        this.maxEntries = maxEntries;
+        this.batchSize = batchSize;
+
+        this.markedRows = Counter.builder("lms.borrowings.overdue.engine.marked")
+                .description("Borrowings moved to OVERDUE by the overdue engine")
+                .register(meterRegistry);
+        this.lag = Timer.builder("lms.borrowings.overdue.engine.lag")
+                .description("Time from a borrowing becoming past due to the engine marking it, per batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("lms.borrowings.overdue.engine.queued", this, OverdueEngine::queued)
+                .description("Borrowings waiting in the queue of the overdue engine")
+                .register(meterRegistry);
+    }
+
+    // Called with every new borrowing, it is queued once its transaction commits
+    public void register(Borrowing borrowing) {
+        if (!enabled) {
+            return;
+        }
+
+        Due due = new Due(borrowing.getDueDate(), borrowing.getId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(due);
+                }
+            });
+        } else {
+            add(due);
+        }
+    }
+
+    private void add(Due due) {
+        synchronized (lock) {
+            if (registeredDuringLoad != null) {
+                registeredDuringLoad.add(due);
+            }
+            if (coveredUntil != null && due.dueDate().isBefore(coveredUntil)) {
+                queue.add(due);
+            }
+        }
+    }
+
+    // Runs once at startup, then on the fixed delay
+    @Scheduled(fixedDelayString = "${borrowing.overdue.engine.reload-interval-ms:3600000}")
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        LocalDate until = LocalDate.now().plusDays(horizonDays);
+        synchronized (lock) {
+            registeredDuringLoad = new ArrayList<>();
+        }
+
+        try {
+            List<Due> loaded = new ArrayList<>();
+            // Postgres only streams with a fetch size inside a transaction
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(LOAD_DUE);
+                statement.setString(1, Borrowing.Status.BORROWED.name());
+                statement.setObject(2, until);
+                statement.setFetchSize(FETCH_SIZE);
+                statement.setMaxRows(maxEntries);
+                return statement;
+            }, (RowCallbackHandler) row -> loaded.add(
+                    new Due(row.getObject("due_date", LocalDate.class), row.getLong("id")))));
+
+            // A full load may have cut its last due date short, that date and later ones wait for a later reload
+            LocalDate loadedUntil = loaded.size() < maxEntries ? until : loaded.get(loaded.size() - 1).dueDate();
+            synchronized (lock) {
+                PriorityQueue<Due> next = new PriorityQueue<>(Math.max(1, loaded.size()), BY_DUE_DATE);
+                next.addAll(loaded);
+                for (Due due : registeredDuringLoad) {
+                    if (due.dueDate().isBefore(loadedUntil)) {
+                        next.add(due);
+                    }
+                }
+                queue = next;
+                coveredUntil = loadedUntil;
+            }
+            log.debug("Overdue engine loaded {} borrowings due before {} in {} ms", loaded.size(), loadedUntil,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException ex) {
+            log.warn("Overdue engine could not be reloaded, the previous queue is kept", ex);
+        } finally {
+            synchronized (lock) {
+                registeredDuringLoad = null;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${borrowing.overdue.engine.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        List<Due> batch;
+        while (!(batch = pollPastDue(today)).isEmpty()) {
+            if (!mark(batch, today)) {
+                return;
+            }
+        }
+    }
+
+    private List<Due> pollPastDue(LocalDate today) {
+        List<Due> batch = new ArrayList<>();
+        synchronized (lock) {
+            while (batch.size() < batchSize && !queue.isEmpty() && queue.peek().dueDate().isBefore(today)) {
+                batch.add(queue.poll());
+            }
+        }
+        return batch;
+    }
+
+    // False when the batch failed, it is queued again for the next tick
+    private boolean mark(List<Due> batch, LocalDate today) {
+        List<Long> ids = batch.stream().map(Due::id).toList();
+        try {
+            Integer updated = transactionTemplate.execute(status -> {
+                // The database keeps microseconds, the counters find the marked rows by this exact value
+                LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+                int marked = borrowingRepository.updatePastDueStatusByIds(ids, Borrowing.Status.BORROWED,
+                        Borrowing.Status.OVERDUE, today, now);
+                if (marked > 0) {
+                    userRepository.addOverdueMarkedByIds(ids, Borrowing.Status.OVERDUE, now);
+                }
+                return marked;
+            });
+            markedRows.increment(updated == null ? 0 : updated);
+            // The batch is polled in due date order, its first borrowing became past due the earliest
+            lag.record(Duration.between(batch.get(0).dueDate().plusDays(1).atStartOfDay(), LocalDateTime.now()));
+            return true;
+        } catch (RuntimeException ex) {
+            log.warn("Overdue engine could not mark {} borrowings, retrying on the next tick", ids.size(), ex);
+            synchronized (lock) {
+                queue.addAll(batch);
+            }
+            return false;
+        }
+    }
+
+    private int queued() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.huseyinsarsilmaz.lms.job;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.huseyinsarsilmaz.lms.exception.NotFoundException;
+import com.huseyinsarsilmaz.lms.exception.ReportNotReadyException;
+import com.huseyinsarsilmaz.lms.exception.ServiceBusyException;
+import com.huseyinsarsilmaz.lms.model.dto.response.BorrowingDetailed;
+import com.huseyinsarsilmaz.lms.model.dto.response.ReportExport;
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
+import com.huseyinsarsilmaz.lms.model.entity.ReportExportRun;
+import com.huseyinsarsilmaz.lms.model.mapper.BorrowingMapper;
+import com.huseyinsarsilmaz.lms.repository.ReportExportRunRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+
+// Writes reports to files on a small pool of background threads. The rows come from a JPA stream read with a fixed
+// fetch size and each one is detached once written, so memory stays at one fetch whatever the size of the report.
+// The file is written under a temporary name and only shows up as SUCCEEDED once complete.
+//
+// The state of every export is kept in report_exports, so status and download requests can reach any node. The files
+// are written to the export directory, which must be storage shared by every node when there is more than one. The
+// node running an export moves its heartbeat on at a fixed delay, an unfinished export whose heartbeat stopped for
+// stale-after was lost with its node and is marked FAILED. Finished exports are dropped with their files after the
+// retention time.
+@Slf4j
+@Component
+public class OverdueReportExporter implements DisposableBean {
+
+    private static final String[] CSV_HEADER = { "id", "borrower_id", "borrower_email", "borrower_name",
+            "borrower_surname", "book_id", "book_title", "book_isbn", "borrow_date", "due_date", "return_date",
+            "status" };
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final BorrowingMapper borrowingMapper;
+    private final ReportExportRunRepository reportExportRunRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate writeTransactionTemplate;
+    private final ObjectWriter jsonWriter;
+    private final Path directory;
+    private final Duration retention;
+    private final Duration staleAfter;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer exportTimer;
+    private final Counter exportedRows;
+
+    // Exports queued or running on this node, their heartbeat is moved on by this node
+    private final Map<String, Export> active = new ConcurrentHashMap<>();
+
+    // Written by the export thread, read by the heartbeat
+    private static final class Export {
+        private final String id;
+        private final ReportFormat format;
+        private final Path file;
+        private volatile ReportExport.Status status = ReportExport.Status.QUEUED;
+        private volatile long rows;
+
+        private Export(String id, ReportFormat format, Path file) {
+            this.id = id;
+            this.format = format;
+            this.file = file;
+        }
+    }
+
+    // A finished export and its file, for the download
+    public record ExportFile(ReportExport export, Path path) {
+    }
+
+    public OverdueReportExporter(BorrowingMapper borrowingMapper, ReportExportRunRepository reportExportRunRepository,
+            EntityManager entityManager, PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${report.export.dir:}") String directory,
+            @Value("${report.export.threads:2}") int threads,
+            @Value("${report.export.queue-capacity:16}") int queueCapacity,
+            @Value("${report.export.retention:1h}") Duration retention,
+            @Value("${report.export.stale-after:1m}") Duration staleAfter) throws IOException {
+        this.borrowingMapper = borrowingMapper;
+        this.reportExportRunRepository = reportExportRunRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        // State changes commit on their own, also when made from the read only transaction of the export
+        this.writeTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.writeTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.jsonWriter = objectMapper.writerFor(BorrowingDetailed.class);
+        this.directory = Files.createDirectories(directory.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "lms-report-exports")
+                : Path.of(directory));
+        this.retention = retention;
+        this.staleAfter = staleAfter;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-export-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.exportTimer = Timer.builder("lms.reports.export")
+                .description("Run time of overdue report exports")
+                .register(meterRegistry);
+        this.exportedRows = Counter.builder("lms.reports.export.rows")
+                .description("Rows written by overdue report exports")
+                .register(meterRegistry);
+    }
+
+    // rows opens the stream of the report, it is called on the export thread inside a read only transaction
+    public ReportExport start(ReportFormat format, Long borrowerId, Supplier<Stream<Borrowing>> rows) {
+        String id = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        ReportExportRun run = writeTransactionTemplate.execute(status -> reportExportRunRepository.save(
+                ReportExportRun.builder()
+                        .exportId(id)
+                        .format(format)
+                        .borrowerId(borrowerId)
+                        .status(ReportExport.Status.QUEUED)
+                        .queuedAt(now)
+                        .heartbeatAt(now)
+                        .build()));
+
+        Export export = new Export(id, format, file(id, format));
+        active.put(id, export);
+        try {
+            executor.execute(() -> run(export, rows));
+        } catch (RejectedExecutionException ex) {
+            active.remove(id);
+            writeTransactionTemplate.executeWithoutResult(status -> reportExportRunRepository.delete(run));
+            throw new ServiceBusyException();
+        }
+        return toDto(run);
+    }
+
+    public ReportExport get(String id) {
+        return toDto(find(id));
+    }
+
+    public ExportFile getFile(String id) {
+        ReportExportRun run = find(id);
+        if (run.getStatus() != ReportExport.Status.SUCCEEDED) {
+            throw new ReportNotReadyException();
+        }
+
+        Path file = file(run.getExportId(), run.getFormat());
+        // Written by a node that does not share the export directory with this one
+        if (!Files.isReadable(file)) {
+            log.warn("Report export file {} is missing, report.export.dir must be shared by every node", file);
+            throw new NotFoundException("Report export file", "id");
+        }
+        return new ExportFile(toDto(run), file);
+    }
+
+    private ReportExportRun find(String id) {
+        return reportExportRunRepository.findByExportId(id)
+                .orElseThrow(() -> new NotFoundException("Report export", "id"));
+    }
+
+    private Path file(String id, ReportFormat format) {
+        return directory.resolve(id + "." + format.getExtension());
+    }
+
+    private static ReportExport toDto(ReportExportRun run) {
+        return new ReportExport(run.getExportId(), run.getFormat(), run.getBorrowerId(), run.getStatus(),
+                run.getRowCount(), run.getQueuedAt(), run.getFinishedAt(), run.getError());
+    }
+
+    private void run(Export export, Supplier<Stream<Borrowing>> rows) {
+        export.status = ReportExport.Status.RUNNING;
+        updateProgress(export);
+        long start = System.nanoTime();
+        ReportExport.Status outcome = ReportExport.Status.FAILED;
+        String error = null;
+        Path part = export.file.resolveSibling(export.file.getFileName() + ".part");
+
+        try {
+            try (Writer writer = Files.newBufferedWriter(part, StandardCharsets.UTF_8)) {
+                if (export.format == ReportFormat.CSV) {
+                    writeCsvRow(writer, CSV_HEADER);
+                }
+                transactionTemplate.executeWithoutResult(status -> {
+                    try (Stream<Borrowing> stream = rows.get()) {
+                        stream.forEach(borrowing -> write(export, writer, borrowing));
+                    }
+                });
+            }
+            Files.move(part, export.file, StandardCopyOption.REPLACE_EXISTING);
+            outcome = ReportExport.Status.SUCCEEDED;
+        } catch (IOException | RuntimeException ex) {
+            log.error("Overdue report export {} failed", export.id, ex);
+            deleteQuietly(part);
+            error = ex.getMessage();
+        } finally {
+            finish(export, outcome, error);
+            long nanos = System.nanoTime() - start;
+            exportTimer.record(nanos, TimeUnit.NANOSECONDS);
+            exportedRows.increment(export.rows);
+            log.info("Overdue report export {} {} with {} rows in {} ms", export.id,
+                    outcome.name().toLowerCase(), export.rows, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    private void updateProgress(Export export) {
+        try {
+            writeTransactionTemplate.executeWithoutResult(status -> reportExportRunRepository.updateProgress(
+                    export.id, export.status, export.rows, Instant.now(), LocalDateTime.now()));
+        } catch (RuntimeException ex) {
+            log.warn("Progress of report export {} could not be saved", export.id, ex);
+        }
+    }
+
+    private void finish(Export export, ReportExport.Status outcome, String error) {
+        active.remove(export.id);
+        String message = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH)
+                : error;
+        try {
+            int updated = writeTransactionTemplate.execute(status -> reportExportRunRepository.finish(export.id,
+                    outcome, export.rows, message, Instant.now(), LocalDateTime.now()));
+            if (updated == 0) {
+                // Marked FAILED meanwhile for a lost heartbeat, or expired
+                log.warn("Report export {} finished after it was given up", export.id);
+            }
+        } catch (RuntimeException ex) {
+            log.error("Outcome of report export {} could not be saved, it fails once its heartbeat is stale",
+                    export.id, ex);
+        }
+    }
+
+    // Also saves the rows written so far, which the status of a running export shows
+    @Scheduled(fixedDelayString = "${report.export.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        active.values().forEach(this::updateProgress);
+    }
+
+    private void write(Export export, Writer writer, Borrowing borrowing) {
+        BorrowingDetailed row = borrowingMapper.toDtoDetailed(borrowing);
+        // Written rows are not needed again, the persistence context only ever holds the current fetch
+        entityManager.detach(borrowing);
+        entityManager.detach(borrowing.getBook());
+        entityManager.detach(borrowing.getBorrower());
+
+        try {
+            if (export.format == ReportFormat.CSV) {
+                writeCsvRow(writer, new String[] {
+                        String.valueOf(row.getId()),
+                        String.valueOf(row.getBorrower().getId()),
+                        row.getBorrower().getEmail(),
+                        row.getBorrower().getName(),
+                        row.getBorrower().getSurname(),
+                        String.valueOf(row.getBook().getId()),
+                        row.getBook().getTitle(),
+                        row.getBook().getIsbn(),
+                        String.valueOf(row.getBorrowDate()),
+                        String.valueOf(row.getDueDate()),
+                        row.getReturnDate() == null ? "" : row.getReturnDate().toString(),
+                        row.getStatus().name() });
+            } else {
+                writer.write(jsonWriter.writeValueAsString(row));
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        export.rows++;
+    }
+
+    // RFC 4180, fields holding a separator, quote or line break are quoted
+    private static void writeCsvRow(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields[i] == null ? "" : fields[i];
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0
+                    || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    // Runs on every node, the statements are safe to repeat and a file removed twice is simply gone
+    @Scheduled(fixedDelayString = "${report.export.cleanup-interval-ms:600000}")
+    public void removeExpired() {
+        Instant now = Instant.now();
+        writeTransactionTemplate.executeWithoutResult(status -> {
+            int stale = reportExportRunRepository.failStale(now.minus(staleAfter), ReportExport.Status.FAILED,
+                    "The node running the export stopped", now, LocalDateTime.now());
+            if (stale > 0) {
+                log.warn("{} report exports were lost with their node", stale);
+            }
+        });
+
+        List<ReportExportRun> expired = reportExportRunRepository.findByFinishedAtBefore(now.minus(retention));
+        if (expired.isEmpty()) {
+            return;
+        }
+        expired.forEach(run -> deleteQuietly(file(run.getExportId(), run.getFormat())));
+        writeTransactionTemplate.executeWithoutResult(status -> reportExportRunRepository.deleteAllInBatch(expired));
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Report export file {} could not be deleted", file, ex);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,33 @@
+package com.huseyinsarsilmaz.lms.migration;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Adds the weighted books.search_vector behind PostgresBookFullTextSearch: title ranks above author, author above
+// description. It is a generated column, so Postgres keeps it current on every write without a trigger.
+// Other databases have no tsvector and use the LIKE fallback instead.
+@Component
+@Order(3)
+public class BookSearchVectorMigration implements SchemaMigration {
+
+    @Override
+    public String name() {
+        return "books.search_vector";
+    }
+
+    @Override
+    public boolean isPending(JdbcTemplate jdbcTemplate) {
+        return SchemaInspector.isPostgres(jdbcTemplate)
+                && !SchemaInspector.columnExists(jdbcTemplate, "books", "search_vector");
+    }
+
+    @Override
+    public void apply(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("ALTER TABLE books ADD COLUMN search_vector tsvector GENERATED ALWAYS AS ("
+                + "setweight(to_tsvector('english', coalesce(title, '')), 'A') || "
+                + "setweight(to_tsvector('english', coalesce(author, '')), 'B') || "
+                + "setweight(to_tsvector('english', coalesce(description, '')), 'C')) STORED");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ix_books_search_vector ON books USING GIN (search_vector)");
+    }
+}
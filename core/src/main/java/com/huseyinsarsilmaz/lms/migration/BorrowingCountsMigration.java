@@ -0,0 +1,48 @@
+package com.huseyinsarsilmaz.lms.migration;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
+
+// Fills the borrowing counters of users created before the columns existed, then makes them NOT NULL.
+// Hibernate adds the columns with a default of 0, which is wrong for every user with borrowings.
+@Component
+@Order(5)
+public class BorrowingCountsMigration implements SchemaMigration {
+
+    private static final String[] COLUMNS = { "active_borrowings", "overdue_borrowings",
+            "returned_overdue_borrowings" };
+
+    @Override
+    public String name() {
+        return "users borrowing counters backfill";
+    }
+
+    @Override
+    public boolean isPending(JdbcTemplate jdbcTemplate) {
+        for (String column : COLUMNS) {
+            if (SchemaInspector.isNullable(jdbcTemplate, "users", column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void apply(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("UPDATE users SET"
+                + " active_borrowings = (SELECT COUNT(*) FROM borrowings b WHERE b.borrower_id = users.id"
+                + " AND b.status IN (?, ?)),"
+                + " overdue_borrowings = (SELECT COUNT(*) FROM borrowings b WHERE b.borrower_id = users.id"
+                + " AND b.status = ?),"
+                + " returned_overdue_borrowings = (SELECT COUNT(*) FROM borrowings b WHERE b.borrower_id = users.id"
+                + " AND b.status = ?)",
+                Borrowing.Status.BORROWED.name(), Borrowing.Status.OVERDUE.name(), Borrowing.Status.OVERDUE.name(),
+                Borrowing.Status.RETURNED_OVERDUE.name());
+        for (String column : COLUMNS) {
+            jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN " + column + " SET NOT NULL");
+        }
+    }
+}
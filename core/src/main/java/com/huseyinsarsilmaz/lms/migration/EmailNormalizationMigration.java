@@ -0,0 +1,38 @@
+package com.huseyinsarsilmaz.lms.migration;
+
+import java.util.List;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Fills users.normalized_email for rows created before the column existed, then makes it NOT NULL.
+// The unique index itself is created by Hibernate from the User mapping.
+@Component
+@Order(2)
+public class EmailNormalizationMigration implements SchemaMigration {
+
+    @Override
+    public String name() {
+        return "users.normalized_email backfill";
+    }
+
+    @Override
+    public boolean isPending(JdbcTemplate jdbcTemplate) {
+        return SchemaInspector.isNullable(jdbcTemplate, "users", "normalized_email");
+    }
+
+    @Override
+    public void apply(JdbcTemplate jdbcTemplate) {
+        List<String> duplicates = jdbcTemplate.queryForList(
+                "SELECT LOWER(TRIM(email)) FROM users GROUP BY LOWER(TRIM(email)) HAVING COUNT(*) > 1",
+                String.class);
+        if (!duplicates.isEmpty()) {
+            throw new IllegalStateException(
+                    "These emails belong to more than one user and must be merged by hand first: " + duplicates);
+        }
+
+        jdbcTemplate.update("UPDATE users SET normalized_email = LOWER(TRIM(email)) WHERE normalized_email IS NULL");
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN normalized_email SET NOT NULL");
+    }
+}
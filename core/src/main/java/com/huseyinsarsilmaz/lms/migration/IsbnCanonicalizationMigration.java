@@ -0,0 +1,93 @@
+package com.huseyinsarsilmaz.lms.migration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+import com.huseyinsarsilmaz.lms.util.IsbnParser;
+
+// Rewrites books.isbn to the canonical ISBN-13 and adds the unique index when missing. Hibernate creates the index
+// itself unless ISBN-10 and ISBN-13 spellings of the same book are stored side by side, so the rows are checked
+// whether or not it exists. ISBNs that do not parse are left as they are.
+@Component
+@Order(4)
+public class IsbnCanonicalizationMigration implements SchemaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+    // A canonical ISBN-13 is 13 digits, and 13 digits are either canonical or no ISBN at all, so only the other
+    // rows can be pending. Once applied these are the few ISBNs that do not parse. TRANSLATE turns every digit into
+    // a zero, which H2 and Postgres both support unlike their regular expression syntax.
+    private static final String SELECT_CANDIDATES = "SELECT isbn FROM books"
+            + " WHERE TRANSLATE(isbn, '0123456789', '0000000000') <> '0000000000000'";
+
+    @Override
+    public String name() {
+        return "books.isbn canonical ISBN-13 with " + Book.ISBN_INDEX;
+    }
+
+    @Override
+    public boolean isPending(JdbcTemplate jdbcTemplate) {
+        return !SchemaInspector.indexExists(jdbcTemplate, "books", Book.ISBN_INDEX)
+                || hasNonCanonicalIsbn(jdbcTemplate);
+    }
+
+    private static boolean hasNonCanonicalIsbn(JdbcTemplate jdbcTemplate) {
+        return Boolean.TRUE.equals(jdbcTemplate.query(SELECT_CANDIDATES, (ResultSetExtractor<Boolean>) rows -> {
+            while (rows.next()) {
+                String isbn = rows.getString("isbn");
+                String canonical = IsbnParser.canonicalize(isbn);
+                if (canonical != null && !canonical.equals(isbn)) {
+                    return true;
+                }
+            }
+            return false;
+        }));
+    }
+
+    @Override
+    public void apply(JdbcTemplate jdbcTemplate) {
+        Map<String, List<Long>> idsByIsbn = new HashMap<>();
+        List<Object[]> updates = new ArrayList<>();
+
+        jdbcTemplate.query("SELECT id, isbn FROM books", (RowCallbackHandler) row -> {
+            long id = row.getLong("id");
+            String isbn = row.getString("isbn");
+            String canonical = IsbnParser.canonicalize(isbn);
+            if (canonical == null) {
+                canonical = isbn;
+            } else if (!canonical.equals(isbn)) {
+                updates.add(new Object[] { canonical, id });
+            }
+            idsByIsbn.computeIfAbsent(canonical, key -> new ArrayList<>(1)).add(id);
+        });
+
+        Set<String> duplicates = new TreeSet<>();
+        idsByIsbn.forEach((isbn, ids) -> {
+            if (ids.size() > 1) {
+                duplicates.add(isbn + " " + ids);
+            }
+        });
+        if (!duplicates.isEmpty()) {
+            throw new IllegalStateException(
+                    "These ISBNs belong to more than one book and must be merged by hand first: " + duplicates);
+        }
+
+        for (int from = 0; from < updates.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate("UPDATE books SET isbn = ? WHERE id = ?",
+                    updates.subList(from, Math.min(from + BATCH_SIZE, updates.size())));
+        }
+        if (!SchemaInspector.indexExists(jdbcTemplate, "books", Book.ISBN_INDEX)) {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX " + Book.ISBN_INDEX + " ON books (isbn)");
+        }
+    }
+}
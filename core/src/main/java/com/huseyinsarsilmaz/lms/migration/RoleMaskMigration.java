@@ -0,0 +1,36 @@
+package com.huseyinsarsilmaz.lms.migration;
+
+import java.util.StringJoiner;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.huseyinsarsilmaz.lms.model.entity.User;
+
+// Moves the comma separated users.roles column into users.role_mask and drops it
+@Component
+@Order(1)
+public class RoleMaskMigration implements SchemaMigration {
+
+    @Override
+    public String name() {
+        return "users.roles to users.role_mask";
+    }
+
+    @Override
+    public boolean isPending(JdbcTemplate jdbcTemplate) {
+        return SchemaInspector.columnExists(jdbcTemplate, "users", "roles");
+    }
+
+    @Override
+    public void apply(JdbcTemplate jdbcTemplate) {
+        StringJoiner mask = new StringJoiner(" + ");
+        for (User.Role role : User.Role.values()) {
+            mask.add("CASE WHEN ',' || roles || ',' LIKE '%," + role.name() + ",%' THEN " + role.bit() + " ELSE 0 END");
+        }
+
+        jdbcTemplate.update("UPDATE users SET role_mask = " + mask + " WHERE roles IS NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE users DROP COLUMN roles");
+    }
+}
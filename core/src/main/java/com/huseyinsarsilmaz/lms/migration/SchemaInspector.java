@@ -0,0 +1,65 @@
+package com.huseyinsarsilmaz.lms.migration;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public final class SchemaInspector {
+
+    private SchemaInspector() {
+    }
+
+    public static boolean isPostgres(JdbcTemplate jdbcTemplate) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> "PostgreSQL"
+                .equals(connection.getMetaData().getDatabaseProductName())));
+    }
+
+    public static boolean columnExists(JdbcTemplate jdbcTemplate, String table, String column) {
+        return Boolean.TRUE.equals(inspectColumn(jdbcTemplate, table, column, ResultSet::next));
+    }
+
+    // False when the column is NOT NULL or does not exist
+    public static boolean isNullable(JdbcTemplate jdbcTemplate, String table, String column) {
+        return Boolean.TRUE.equals(inspectColumn(jdbcTemplate, table, column,
+                columns -> columns.next() && columns.getInt("NULLABLE") == DatabaseMetaData.columnNullable));
+    }
+
+    public static boolean indexExists(JdbcTemplate jdbcTemplate, String table, String index) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table.toLowerCase();
+
+            try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, tableName, false, true)) {
+                while (indexes.next()) {
+                    if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }));
+    }
+
+    private static Boolean inspectColumn(JdbcTemplate jdbcTemplate, String table, String column,
+            ColumnCheck check) {
+        return jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // Postgres folds unquoted names to lower case, H2 to upper case
+            boolean upperCase = metaData.storesUpperCaseIdentifiers();
+            String tableName = upperCase ? table.toUpperCase() : table.toLowerCase();
+            String columnName = upperCase ? column.toUpperCase() : column.toLowerCase();
+
+            try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, tableName, columnName)) {
+                return check.test(columns);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ColumnCheck {
+        boolean test(ResultSet columns) throws SQLException;
+    }
+}
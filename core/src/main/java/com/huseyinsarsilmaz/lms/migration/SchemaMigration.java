@@ -0,0 +1,14 @@
+package com.huseyinsarsilmaz.lms.migration;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Data migration that runs once Hibernate has updated the schema. Implementations must be idempotent,
+// isPending is checked on every startup and apply only runs when it returns true.
+public interface SchemaMigration {
+
+    String name();
+
+    boolean isPending(JdbcTemplate jdbcTemplate);
+
+    void apply(JdbcTemplate jdbcTemplate);
+}
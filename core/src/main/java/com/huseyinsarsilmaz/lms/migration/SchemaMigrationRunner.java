@@ -0,0 +1,43 @@
+package com.huseyinsarsilmaz.lms.migration;
+
+import java.util.List;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+
+// Runs pending migrations after every singleton is created, which is before the web server starts taking requests.
+// Depending on the EntityManagerFactory makes sure Hibernate has already applied its schema update.
+@Slf4j
+@Component
+public class SchemaMigrationRunner implements SmartInitializingSingleton {
+
+    private final List<SchemaMigration> migrations;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public SchemaMigrationRunner(List<SchemaMigration> migrations, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager, EntityManagerFactory entityManagerFactory) {
+        this.migrations = migrations;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (SchemaMigration migration : migrations) {
+            if (!migration.isPending(jdbcTemplate)) {
+                continue;
+            }
+
+            log.info("Applying schema migration {}", migration.name());
+            transactionTemplate.executeWithoutResult(status -> migration.apply(jdbcTemplate));
+            log.info("Schema migration {} is applied", migration.name());
+        }
+    }
+}
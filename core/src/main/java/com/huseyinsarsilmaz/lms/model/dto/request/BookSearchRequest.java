@@ -0,0 +1,36 @@
+package com.huseyinsarsilmaz.lms.model.dto.request;
+
+import java.time.LocalDate;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+import com.huseyinsarsilmaz.lms.validation.StrSize;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Criteria of the combined book search, every one is optional and the given ones must all match
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSearchRequest {
+    @StrSize(entityName = "Book", fieldName = "title", min = 1, max = 255)
+    private String title;
+
+    @StrSize(entityName = "Book", fieldName = "author", min = 1, max = 255)
+    private String author;
+
+    private Book.Genre genre;
+
+    private Boolean available;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate publishedFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate publishedTo;
+}
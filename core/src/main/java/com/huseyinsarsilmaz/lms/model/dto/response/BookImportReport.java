@@ -0,0 +1,33 @@
+package com.huseyinsarsilmaz.lms.model.dto.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of a bulk import. Every received row is either imported, a duplicate of a stored ISBN or of an earlier row,
+// or failed. Only the first errors are listed, errorsTruncated tells whether there were more.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportReport {
+    private long received;
+    private long imported;
+    private long duplicates;
+    private long failed;
+    private List<RowError> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+    private long durationMillis;
+    private double booksPerSecond;
+
+    // line is where the row starts in the body
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+}
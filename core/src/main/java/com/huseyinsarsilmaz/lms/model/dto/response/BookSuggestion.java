@@ -0,0 +1,17 @@
+package com.huseyinsarsilmaz.lms.model.dto.response;
+
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A title or author to complete the search box with, type is the search type that finds its books
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSuggestion {
+    private String text;
+    private Book.SearchType type;
+    private long popularity;
+}
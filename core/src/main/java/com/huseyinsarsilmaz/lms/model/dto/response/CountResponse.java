@@ -0,0 +1,16 @@
+package com.huseyinsarsilmaz.lms.model.dto.response;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A cached total, exact at countedAt and possibly behind by the writes made since
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CountResponse {
+    private long totalItems;
+    private Instant countedAt;
+}
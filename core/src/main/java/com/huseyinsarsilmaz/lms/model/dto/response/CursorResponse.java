@@ -0,0 +1,32 @@
+package com.huseyinsarsilmaz.lms.model.dto.response;
+
+import java.util.List;
+import java.util.function.Function;
+
+import com.huseyinsarsilmaz.lms.util.PageCursor;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Keyset counterpart of PagedResponse. There are no totals, nextCursor is null on the last page.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorResponse<T> {
+    private List<T> items;
+
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+
+    // rows holds up to size + 1 entities, the extra one only tells that there is a next page
+    public static <E, T> CursorResponse<T> of(List<E> rows, int size, Function<E, PageCursor> cursorOf,
+            Function<E, T> mapper) {
+        boolean hasNext = rows.size() > size;
+        List<E> page = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(page.get(page.size() - 1)).encode() : null;
+
+        return new CursorResponse<>(page.stream().map(mapper).toList(), size, hasNext, nextCursor);
+    }
+}
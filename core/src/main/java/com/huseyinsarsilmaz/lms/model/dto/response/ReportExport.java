@@ -0,0 +1,32 @@
+package com.huseyinsarsilmaz.lms.model.dto.response;
+
+import java.time.Instant;
+
+import com.huseyinsarsilmaz.lms.job.ReportFormat;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// State of a background report export, the file can be downloaded once it has SUCCEEDED.
+// While it runs, rows counts what had been written at the last heartbeat of the export.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportExport {
+    private String id;
+    private ReportFormat format;
+    private Long borrowerId;
+    private Status status;
+    private long rows;
+    private Instant createdAt;
+    private Instant finishedAt;
+    private String error;
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+}
@@ -0,0 +1,29 @@
+package com.huseyinsarsilmaz.lms.model.dto.response;
+
+import java.util.List;
+
+import org.springframework.data.domain.Slice;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// PagedResponse without the totals. The page is read with one extra row instead of a COUNT query,
+// totals are served separately by the count endpoints.
+@Data
+@NoArgsConstructor
+public class SliceResponse<T> {
+    private List<T> items;
+
+    private int page;
+    private int size;
+    private boolean hasNext;
+    private boolean hasPrevious;
+
+    public SliceResponse(Slice<T> slice) {
+        this.items = slice.getContent();
+        this.page = slice.getNumber();
+        this.size = slice.getSize();
+        this.hasNext = slice.hasNext();
+        this.hasPrevious = slice.hasPrevious();
+    }
+}
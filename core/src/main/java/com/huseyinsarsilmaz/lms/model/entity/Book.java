@@ -6,6 +6,7 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -19,9 +20,17 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(callSuper = true)
-@Table(name = "books")
+// Composite indexes follow the combined search: genre, then availability, then the publication date range
+@Table(name = "books", indexes = {
+        @Index(name = Book.ISBN_INDEX, columnList = "isbn", unique = true),
+        @Index(name = "ix_books_title_id", columnList = "title, id"),
+        @Index(name = "ix_books_genre_available_published", columnList = "genre, is_available, publication_date"),
+        @Index(name = "ix_books_publication_date", columnList = "publication_date")
+})
 public class Book extends LmsEntity {
 
+    public static final String ISBN_INDEX = "ux_books_isbn";
+
     @Column(nullable = false)
     private String title;
     @Column(nullable = false)
@@ -29,6 +38,7 @@ public class Book extends LmsEntity {
 
     @Column(length = 2048)
     private String description;
+    // Canonical ISBN-13, see IsbnParser
     @Column(nullable = false)
     private String isbn;
     @Column(nullable = false)
@@ -42,6 +52,23 @@ public class Book extends LmsEntity {
     @Column(nullable = false)
     private Boolean isAvailable = true;
 
+    // Detached copy for caches, so a caller changing its book cannot change the cached one
+    public Book copy() {
+        Book copy = Book.builder()
+                .title(title)
+                .author(author)
+                .description(description)
+                .isbn(isbn)
+                .publicationDate(publicationDate)
+                .genre(genre)
+                .isAvailable(isAvailable)
+                .build();
+        copy.setId(getId());
+        copy.setCreatedAt(getCreatedAt());
+        copy.setUpdatedAt(getUpdatedAt());
+        return copy;
+    }
+
     public enum Genre {
         FICTION,
         DRAMA,
@@ -63,6 +90,7 @@ public class Book extends LmsEntity {
         TITLE,
         AUTHOR,
         ISBN,
-        GENRE
+        GENRE,
+        FULL_TEXT
     }
 }
@@ -6,6 +6,7 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -21,7 +22,11 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(callSuper = true)
-@Table(name = "borrowings")
+// status, due_date serves the overdue job, which only looks at the few borrowings still out past their due date
+@Table(name = "borrowings", indexes = {
+        @Index(name = "ix_borrowings_borrower_id_id", columnList = "borrower_id, id"),
+        @Index(name = "ix_borrowings_status_due_date", columnList = "status, due_date")
+})
 public class Borrowing extends LmsEntity {
 
     @ManyToOne(optional = false)
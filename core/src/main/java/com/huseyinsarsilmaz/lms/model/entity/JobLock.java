@@ -0,0 +1,36 @@
+package com.huseyinsarsilmaz.lms.model.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+// Lease on a scheduled job shared by every node, held by lockedBy until lockedUntil. A node that crashes while
+// holding it only blocks the job until the lease runs out.
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@Table(name = "job_locks")
+public class JobLock extends LmsEntity {
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String name;
+
+    @Column(name = "locked_by", nullable = false)
+    private String lockedBy;
+
+    @Column(name = "locked_at", nullable = false)
+    private Instant lockedAt;
+
+    @Column(name = "locked_until", nullable = false)
+    private Instant lockedUntil;
+}
@@ -0,0 +1,50 @@
+package com.huseyinsarsilmaz.lms.model.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+// One run of a locked job, by the node that held the lock
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@Table(name = "job_runs", indexes = @Index(name = "ix_job_runs_job_name_started_at", columnList = "job_name, started_at"))
+public class JobRun extends LmsEntity {
+
+    @Column(name = "job_name", nullable = false, length = 64)
+    private String jobName;
+
+    @Column(nullable = false)
+    private String node;
+
+    @Column(name = "started_at", nullable = false)
+    private Instant startedAt;
+
+    @Column(name = "duration_millis", nullable = false)
+    private long durationMillis;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(length = 1000)
+    private String error;
+
+    public enum Status {
+        SUCCEEDED,
+        FAILED
+    }
+}
@@ -0,0 +1,59 @@
+package com.huseyinsarsilmaz.lms.model.entity;
+
+import java.time.Instant;
+
+import com.huseyinsarsilmaz.lms.job.ReportFormat;
+import com.huseyinsarsilmaz.lms.model.dto.response.ReportExport;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+// A background report export shared by every node, whichever node runs it. heartbeatAt moves on while the export
+// runs, an unfinished export whose heartbeat stopped was lost with its node.
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@Table(name = "report_exports", indexes = @Index(name = "ix_report_exports_finished_at", columnList = "finished_at"))
+public class ReportExportRun extends LmsEntity {
+
+    @Column(name = "export_id", nullable = false, unique = true, length = 36)
+    private String exportId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReportFormat format;
+
+    @Column(name = "borrower_id")
+    private Long borrowerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReportExport.Status status;
+
+    @Column(name = "row_count", nullable = false)
+    private long rowCount;
+
+    @Column(name = "queued_at", nullable = false)
+    private Instant queuedAt;
+
+    @Column(name = "heartbeat_at", nullable = false)
+    private Instant heartbeatAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    @Column(length = 1000)
+    private String error;
+}
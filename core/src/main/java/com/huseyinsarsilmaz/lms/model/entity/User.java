@@ -1,8 +1,17 @@
 package com.huseyinsarsilmaz.lms.model.entity;
 
+import java.util.EnumSet;
+import java.util.Locale;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+
+import org.hibernate.annotations.ColumnDefault;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,15 +24,22 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(callSuper = true)
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = User.NORMALIZED_EMAIL_INDEX, columnList = "normalized_email", unique = true))
 public class User extends LmsEntity {
 
+    public static final String NORMALIZED_EMAIL_INDEX = "ux_users_normalized_email";
+
     @Column(nullable = false)
     private String email;
+    // Lookup key for email, NOT NULL is added by EmailNormalizationMigration once existing rows are filled
+    @Column(name = "normalized_email")
+    private String normalizedEmail;
     @Column(nullable = false)
     private String password;
-    @Column(nullable = false)
-    private String roles;
+    // One bit per Role, see Role.bit()
+    @Column(name = "role_mask", nullable = false)
+    @ColumnDefault("0")
+    private int roleMask;
     @Column(nullable = false)
     private String name;
     @Column(nullable = false)
@@ -31,14 +47,122 @@ public class User extends LmsEntity {
     @Column(nullable = false)
     private String phoneNumber;
 
+    // Bits are persisted, new roles must take a new bit instead of reusing or reordering the existing ones
     public enum Role {
-        ROLE_PATRON,
-        ROLE_LIBRARIAN,
-        ROLE_ADMIN
+        ROLE_PATRON(1),
+        ROLE_LIBRARIAN(1 << 1),
+        ROLE_ADMIN(1 << 2);
+
+        private static final Role[] VALUES = values();
+        private static final int ALL = maskOf(VALUES);
+
+        private final int bit;
+
+        Role(int bit) {
+            this.bit = bit;
+        }
+
+        public int bit() {
+            return bit;
+        }
+
+        public static int maskOf(Role... roles) {
+            int mask = 0;
+            for (Role role : roles) {
+                mask |= role.bit;
+            }
+            return mask;
+        }
+
+        public static EnumSet<Role> fromMask(int mask) {
+            EnumSet<Role> roles = EnumSet.noneOf(Role.class);
+            for (Role role : VALUES) {
+                if ((mask & role.bit) != 0) {
+                    roles.add(role);
+                }
+            }
+            return roles;
+        }
+
+        public static boolean isValidMask(int mask) {
+            return (mask & ~ALL) == 0;
+        }
+
+        // Reads the comma separated form roles were stored and issued in before the bitmask
+        public static int parseMask(String roles) {
+            int mask = 0;
+            for (String role : roles.split(",")) {
+                mask |= valueOf(role.trim()).bit;
+            }
+            return mask;
+        }
     }
 
     @Builder.Default
     @Column(nullable = false)
     private Boolean isActive = true;
 
+    // Bumped whenever previously issued tokens must stop working
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long securityVersion;
+
+    // Borrowings of the user per status, so eligibility checks read one row instead of counting the borrowings.
+    // Never written from the entity: they are only changed by the UPDATEs of UserRepository, in the transaction of
+    // every status change, and recomputed by BorrowingCountReconciler. NOT NULL is added by BorrowingCountsMigration
+    // once existing rows are filled.
+    @Column(name = "active_borrowings", insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private long activeBorrowings;
+    @Column(name = "overdue_borrowings", insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private long overdueBorrowings;
+    @Column(name = "returned_overdue_borrowings", insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private long returnedOverdueBorrowings;
+
+    public static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void onEmailChange() {
+        this.normalizedEmail = normalizeEmail(email);
+    }
+
+    public EnumSet<Role> getRoles() {
+        return Role.fromMask(roleMask);
+    }
+
+    public boolean hasRole(Role role) {
+        return (roleMask & role.bit()) != 0;
+    }
+
+    public void addRole(Role role) {
+        roleMask |= role.bit();
+    }
+
+    // Detached copy so that cached instances are never shared between callers
+    public User copy() {
+        User copy = User.builder()
+                .email(email)
+                .normalizedEmail(normalizedEmail)
+                .password(password)
+                .roleMask(roleMask)
+                .name(name)
+                .surname(surname)
+                .phoneNumber(phoneNumber)
+                .isActive(isActive)
+                .securityVersion(securityVersion)
+                .activeBorrowings(activeBorrowings)
+                .overdueBorrowings(overdueBorrowings)
+                .returnedOverdueBorrowings(returnedOverdueBorrowings)
+                .build();
+        copy.setId(getId());
+        copy.setCreatedAt(getCreatedAt());
+        copy.setUpdatedAt(getUpdatedAt());
+        return copy;
+    }
+
 }
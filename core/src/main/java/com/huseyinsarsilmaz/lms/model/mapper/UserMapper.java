@@ -12,7 +12,12 @@ import org.mapstruct.*;
 public interface UserMapper {
     @Mappings({
             @Mapping(target = "isActive", ignore = true),
-            @Mapping(target = "roles", ignore = true),
+            @Mapping(target = "roleMask", ignore = true),
+            @Mapping(target = "normalizedEmail", ignore = true),
+            @Mapping(target = "securityVersion", ignore = true),
+            @Mapping(target = "activeBorrowings", ignore = true),
+            @Mapping(target = "overdueBorrowings", ignore = true),
+            @Mapping(target = "returnedOverdueBorrowings", ignore = true),
     })
     User toEntity(RegisterRequest req);
 
@@ -20,10 +25,16 @@ public interface UserMapper {
     @Mappings({
             @Mapping(target = "isActive", ignore = true),
             @Mapping(target = "password", ignore = true),
-            @Mapping(target = "roles", ignore = true),
+            @Mapping(target = "roleMask", ignore = true),
+            @Mapping(target = "normalizedEmail", ignore = true),
             @Mapping(target = "id", ignore = true),
             @Mapping(target = "createdAt", ignore = true),
             @Mapping(target = "updatedAt", ignore = true),
+            @Mapping(target = "roles", ignore = true),
+            @Mapping(target = "securityVersion", ignore = true),
+            @Mapping(target = "activeBorrowings", ignore = true),
+            @Mapping(target = "overdueBorrowings", ignore = true),
+            @Mapping(target = "returnedOverdueBorrowings", ignore = true),
     })
     void updateEntity(@MappingTarget User user, UserUpdateRequest req);
 
@@ -1,18 +1,38 @@
 package com.huseyinsarsilmaz.lms.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.huseyinsarsilmaz.lms.model.entity.Book;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book> {
     Optional<Book> findByIsbn(String isbn);
 
+    boolean existsByIsbn(String isbn);
+
+    // Takes the book only while it is available, so concurrent borrows on any node cannot both get it
+    @Modifying
+    @Query("UPDATE Book b SET b.isAvailable = false, b.updatedAt = :now WHERE b.id = :id AND b.isAvailable = true")
+    int markUnavailableIfAvailable(@Param("id") long id, @Param("now") LocalDateTime now);
+
+    // Which of a batch of canonical ISBNs are already stored
+    @Query("SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
     Page<Book> findByTitleContainingIgnoreCase(String title, Pageable pageable);
 
     Page<Book> findByAuthorContainingIgnoreCase(String author, Pageable pageable);
@@ -21,4 +41,60 @@ public interface BookRepository extends JpaRepository<Book, Long> {
 
     Page<Book> findByGenre(Book.Genre genre, Pageable pageable);
 
-}
\ No newline at end of file
+    // Slices read one row past the page instead of running a count query
+    Slice<Book> findSliceByTitleContainingIgnoreCase(String title, Pageable pageable);
+
+    Slice<Book> findSliceByAuthorContainingIgnoreCase(String author, Pageable pageable);
+
+    Slice<Book> findSliceByIsbnContainingIgnoreCase(String isbn, Pageable pageable);
+
+    Slice<Book> findSliceByGenre(Book.Genre genre, Pageable pageable);
+
+    long countByTitleContainingIgnoreCase(String title);
+
+    long countByAuthorContainingIgnoreCase(String author);
+
+    long countByIsbnContainingIgnoreCase(String isbn);
+
+    long countByGenre(Book.Genre genre);
+
+    // Typeahead fallback while the suggestion index is being built
+    List<Book> findByTitleStartingWithIgnoreCaseOrderByTitle(String prefix, Limit limit);
+
+    // Keyset pages ordered by (title, id), the next page starts after the last row of the previous one
+    @Query("SELECT b FROM Book b WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :#{escape(#query)}, '%'))"
+            + " ESCAPE :#{escapeCharacter()} AND (b.title, b.id) > (:title, :id) ORDER BY b.title, b.id")
+    List<Book> findByTitleContainingAfter(@Param("query") String query, @Param("title") String title,
+            @Param("id") long id, Limit limit);
+
+    @Query("SELECT b FROM Book b WHERE LOWER(b.author) LIKE LOWER(CONCAT('%', :#{escape(#query)}, '%'))"
+            + " ESCAPE :#{escapeCharacter()} AND (b.title, b.id) > (:title, :id) ORDER BY b.title, b.id")
+    List<Book> findByAuthorContainingAfter(@Param("query") String query, @Param("title") String title,
+            @Param("id") long id, Limit limit);
+
+    @Query("SELECT b FROM Book b WHERE LOWER(b.isbn) LIKE LOWER(CONCAT('%', :#{escape(#query)}, '%'))"
+            + " ESCAPE :#{escapeCharacter()} AND (b.title, b.id) > (:title, :id) ORDER BY b.title, b.id")
+    List<Book> findByIsbnContainingAfter(@Param("query") String query, @Param("title") String title,
+            @Param("id") long id, Limit limit);
+
+    @Query("SELECT b FROM Book b WHERE b.genre = :genre AND (b.title, b.id) > (:title, :id) ORDER BY b.title, b.id")
+    List<Book> findByGenreAfter(@Param("genre") Book.Genre genre, @Param("title") String title,
+            @Param("id") long id, Limit limit);
+
+    // PostgreSQL only, books.search_vector is added by BookSearchVectorMigration
+    @Query(value = "SELECT b.* FROM books b, websearch_to_tsquery('english', :query) q"
+            + " WHERE b.search_vector @@ q ORDER BY ts_rank_cd(b.search_vector, q) DESC, b.id",
+            countQuery = "SELECT COUNT(*) FROM books b WHERE b.search_vector @@ websearch_to_tsquery('english', :query)",
+            nativeQuery = true)
+    Page<Book> searchFullText(@Param("query") String query, Pageable pageable);
+
+    @Query(value = "SELECT b.* FROM books b, websearch_to_tsquery('english', :query) q"
+            + " WHERE b.search_vector @@ q ORDER BY ts_rank_cd(b.search_vector, q) DESC, b.id",
+            nativeQuery = true)
+    Slice<Book> searchFullTextSlice(@Param("query") String query, Pageable pageable);
+
+    @Query(value = "SELECT COUNT(*) FROM books b WHERE b.search_vector @@ websearch_to_tsquery('english', :query)",
+            nativeQuery = true)
+    long countFullText(@Param("query") String query);
+
+}
@@ -1,18 +1,28 @@
 package com.huseyinsarsilmaz.lms.repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface BorrowingRepository extends JpaRepository<Borrowing, Long> {
     Optional<Borrowing> findByBorrowerIdAndBookId(Long borrowerId, Long bookId);
@@ -30,18 +40,93 @@ public interface BorrowingRepository extends JpaRepository<Borrowing, Long> {
     @Query("SELECT b FROM Borrowing b WHERE b.status = :status AND b.dueDate < :today")
     List<Borrowing> findPastDueByStatus(@Param("status") Borrowing.Status status, @Param("today") LocalDate today);
 
+    // Id bounds of the past due borrowings, walked in id range chunks by OverdueBorrowingMarker
+    @Query("SELECT MIN(b.id) FROM Borrowing b WHERE b.status = :status AND b.dueDate < :today")
+    Long findMinPastDueIdByStatus(@Param("status") Borrowing.Status status, @Param("today") LocalDate today);
+
+    @Query("SELECT MAX(b.id) FROM Borrowing b WHERE b.status = :status AND b.dueDate < :today")
+    Long findMaxPastDueIdByStatus(@Param("status") Borrowing.Status status, @Param("today") LocalDate today);
+
+    // One set based UPDATE per chunk, the rows never enter the persistence context
+    @Modifying
+    @Query("UPDATE Borrowing b SET b.status = :newStatus, b.updatedAt = :now WHERE b.id BETWEEN :fromId AND :toId"
+            + " AND b.status = :status AND b.dueDate < :today")
+    int updatePastDueStatusInRange(@Param("fromId") long fromId, @Param("toId") long toId,
+            @Param("status") Borrowing.Status status, @Param("newStatus") Borrowing.Status newStatus,
+            @Param("today") LocalDate today, @Param("now") LocalDateTime now);
+
+    // Batches of the overdue engine, rows returned or already marked since they were queued are left alone
+    @Modifying
+    @Query("UPDATE Borrowing b SET b.status = :newStatus, b.updatedAt = :now WHERE b.id IN :ids"
+            + " AND b.status = :status AND b.dueDate < :today")
+    int updatePastDueStatusByIds(@Param("ids") Collection<Long> ids, @Param("status") Borrowing.Status status,
+            @Param("newStatus") Borrowing.Status newStatus, @Param("today") LocalDate today,
+            @Param("now") LocalDateTime now);
+
     @Query("SELECT b FROM Borrowing b JOIN FETCH b.book JOIN FETCH b.borrower WHERE b.id = :id")
     Optional<Borrowing> findByIdWithBookAndBorrower(@Param("id") Long id);
 
-    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book WHERE b.borrower.id = :borrowerId")
+    // Explicit count queries, the ones derived from a JOIN FETCH query carry the joins along
+    @Query(value = "SELECT b FROM Borrowing b JOIN FETCH b.book WHERE b.borrower.id = :borrowerId",
+            countQuery = "SELECT COUNT(b) FROM Borrowing b WHERE b.borrower.id = :borrowerId")
     Page<Borrowing> findAllByBorrowerIdWithBook(@Param("borrowerId") Long borrowerId, Pageable pageable);
 
-    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book WHERE b.borrower.id = :borrowerId AND b.status NOT IN (:statuses)")
+    @Query(value = "SELECT b FROM Borrowing b JOIN FETCH b.book WHERE b.borrower.id = :borrowerId AND b.status NOT IN (:statuses)",
+            countQuery = "SELECT COUNT(b) FROM Borrowing b WHERE b.borrower.id = :borrowerId AND b.status NOT IN (:statuses)")
     Page<Borrowing> findAllByBorrowerIdAndStatusNotIn(@Param("borrowerId") Long borrowerId,
             @Param("statuses") List<Borrowing.Status> statuses,
             Pageable pageable);
 
-    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book JOIN FETCH b.borrower WHERE b.status NOT IN (:statuses)")
+    @Query(value = "SELECT b FROM Borrowing b JOIN FETCH b.book JOIN FETCH b.borrower WHERE b.status NOT IN (:statuses)",
+            countQuery = "SELECT COUNT(b) FROM Borrowing b WHERE b.status NOT IN (:statuses)")
     Page<Borrowing> findAllByStatusNotIn(@Param("statuses") List<Borrowing.Status> statuses,
             Pageable pageable);
-}
\ No newline at end of file
+
+    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book WHERE b.borrower.id = :borrowerId")
+    Slice<Borrowing> findSliceByBorrowerIdWithBook(@Param("borrowerId") Long borrowerId, Pageable pageable);
+
+    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book WHERE b.borrower.id = :borrowerId AND b.status NOT IN (:statuses)")
+    Slice<Borrowing> findSliceByBorrowerIdAndStatusNotIn(@Param("borrowerId") Long borrowerId,
+            @Param("statuses") List<Borrowing.Status> statuses,
+            Pageable pageable);
+
+    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book JOIN FETCH b.borrower WHERE b.status NOT IN (:statuses)")
+    Slice<Borrowing> findSliceByStatusNotIn(@Param("statuses") List<Borrowing.Status> statuses,
+            Pageable pageable);
+
+    long countByBorrowerId(Long borrowerId);
+
+    long countByBorrowerIdAndStatusNotIn(Long borrowerId, List<Borrowing.Status> statuses);
+
+    long countByStatusNotIn(List<Borrowing.Status> statuses);
+
+    // Keyset pages: one borrower's rows are ordered by id, the report over every borrower by (borrower, id)
+    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book WHERE b.borrower.id = :borrowerId AND b.id > :id ORDER BY b.id")
+    List<Borrowing> findAllByBorrowerIdWithBookAfter(@Param("borrowerId") Long borrowerId, @Param("id") long id,
+            Limit limit);
+
+    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book WHERE b.borrower.id = :borrowerId AND b.status NOT IN (:statuses)"
+            + " AND b.id > :id ORDER BY b.id")
+    List<Borrowing> findAllByBorrowerIdAndStatusNotInAfter(@Param("borrowerId") Long borrowerId,
+            @Param("statuses") List<Borrowing.Status> statuses, @Param("id") long id, Limit limit);
+
+    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book JOIN FETCH b.borrower WHERE b.status NOT IN (:statuses)"
+            + " AND (b.borrower.id, b.id) > (:borrowerId, :id) ORDER BY b.borrower.id, b.id")
+    List<Borrowing> findAllByStatusNotInAfter(@Param("statuses") List<Borrowing.Status> statuses,
+            @Param("borrowerId") long borrowerId, @Param("id") long id, Limit limit);
+
+    // Report exports read the whole report through a cursor, fetch size rows at a time. Callers hold a transaction
+    // for the stream and detach the rows they are done with.
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book JOIN FETCH b.borrower WHERE b.status NOT IN (:statuses)"
+            + " ORDER BY b.borrower.id, b.id")
+    Stream<Borrowing> streamAllByStatusNotIn(@Param("statuses") List<Borrowing.Status> statuses);
+
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+    @Query("SELECT b FROM Borrowing b JOIN FETCH b.book JOIN FETCH b.borrower WHERE b.borrower.id = :borrowerId"
+            + " AND b.status NOT IN (:statuses) ORDER BY b.id")
+    Stream<Borrowing> streamByBorrowerIdAndStatusNotIn(@Param("borrowerId") Long borrowerId,
+            @Param("statuses") List<Borrowing.Status> statuses);
+}
@@ -0,0 +1,32 @@
+package com.huseyinsarsilmaz.lms.repository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.huseyinsarsilmaz.lms.model.entity.JobLock;
+
+@Repository
+public interface JobLockRepository extends JpaRepository<JobLock, Long> {
+
+    boolean existsByName(String name);
+
+    // Takes the lock when its lease has run out, the row lock makes concurrent attempts take turns
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedBy = :node, l.lockedAt = :now, l.lockedUntil = :until,"
+            + " l.updatedAt = :updatedAt WHERE l.name = :name AND l.lockedUntil <= :now")
+    int acquireExpired(@Param("name") String name, @Param("node") String node, @Param("now") Instant now,
+            @Param("until") Instant until, @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Only shortens the lease this node took at lockedAt, not one another node took after it ran out
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :until, l.updatedAt = :updatedAt"
+            + " WHERE l.name = :name AND l.lockedBy = :node AND l.lockedAt = :lockedAt")
+    int release(@Param("name") String name, @Param("node") String node, @Param("lockedAt") Instant lockedAt,
+            @Param("until") Instant until, @Param("updatedAt") LocalDateTime updatedAt);
+}
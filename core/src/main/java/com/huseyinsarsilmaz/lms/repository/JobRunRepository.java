@@ -0,0 +1,10 @@
+package com.huseyinsarsilmaz.lms.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.huseyinsarsilmaz.lms.model.entity.JobRun;
+
+@Repository
+public interface JobRunRepository extends JpaRepository<JobRun, Long> {
+}
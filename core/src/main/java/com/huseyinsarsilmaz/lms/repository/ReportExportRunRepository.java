@@ -0,0 +1,44 @@
+package com.huseyinsarsilmaz.lms.repository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.huseyinsarsilmaz.lms.model.dto.response.ReportExport;
+import com.huseyinsarsilmaz.lms.model.entity.ReportExportRun;
+
+@Repository
+public interface ReportExportRunRepository extends JpaRepository<ReportExportRun, Long> {
+
+    Optional<ReportExportRun> findByExportId(String exportId);
+
+    List<ReportExportRun> findByFinishedAtBefore(Instant cutoff);
+
+    // Only unfinished exports move on, one failed for a lost heartbeat stays failed
+    @Modifying
+    @Query("UPDATE ReportExportRun r SET r.status = :status, r.rowCount = :rowCount, r.heartbeatAt = :now,"
+            + " r.updatedAt = :updatedAt WHERE r.exportId = :exportId AND r.finishedAt IS NULL")
+    int updateProgress(@Param("exportId") String exportId, @Param("status") ReportExport.Status status,
+            @Param("rowCount") long rowCount, @Param("now") Instant now, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("UPDATE ReportExportRun r SET r.status = :status, r.rowCount = :rowCount, r.heartbeatAt = :now,"
+            + " r.finishedAt = :now, r.error = :error, r.updatedAt = :updatedAt"
+            + " WHERE r.exportId = :exportId AND r.finishedAt IS NULL")
+    int finish(@Param("exportId") String exportId, @Param("status") ReportExport.Status status,
+            @Param("rowCount") long rowCount, @Param("error") String error, @Param("now") Instant now,
+            @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("UPDATE ReportExportRun r SET r.status = :status, r.finishedAt = :now, r.error = :error,"
+            + " r.updatedAt = :updatedAt WHERE r.finishedAt IS NULL AND r.heartbeatAt < :cutoff")
+    int failStale(@Param("cutoff") Instant cutoff, @Param("status") ReportExport.Status status,
+            @Param("error") String error, @Param("now") Instant now, @Param("updatedAt") LocalDateTime updatedAt);
+}
@@ -1,17 +1,94 @@
 package com.huseyinsarsilmaz.lms.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lms.model.entity.User;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByEmail(String email);
+    Optional<User> findByNormalizedEmail(String normalizedEmail);
 
-    Optional<User> findByRoles(String roles);
+    boolean existsByNormalizedEmail(String normalizedEmail);
+
+    boolean existsByRoleMask(int roleMask);
 
     boolean existsByIdAndIsActiveFalse(Long id);
-}
\ No newline at end of file
+
+    @Query("SELECT u.securityVersion FROM User u WHERE u.id = :id")
+    Optional<Long> findSecurityVersionById(@Param("id") Long id);
+
+    @Query("SELECT u.activeBorrowings FROM User u WHERE u.id = :id")
+    Optional<Long> findActiveBorrowingsById(@Param("id") Long id);
+
+    @Query("SELECT u.overdueBorrowings FROM User u WHERE u.id = :id")
+    Optional<Long> findOverdueBorrowingsById(@Param("id") Long id);
+
+    @Query("SELECT u.returnedOverdueBorrowings FROM User u WHERE u.id = :id")
+    Optional<Long> findReturnedOverdueBorrowingsById(@Param("id") Long id);
+
+    @Query("SELECT MIN(u.id) FROM User u")
+    Long findMinId();
+
+    @Query("SELECT MAX(u.id) FROM User u")
+    Long findMaxId();
+
+    // The borrowing counters are derived data, changing them leaves updatedAt alone
+    @Modifying
+    @Query("UPDATE User u SET u.activeBorrowings = u.activeBorrowings + :active,"
+            + " u.overdueBorrowings = u.overdueBorrowings + :overdue,"
+            + " u.returnedOverdueBorrowings = u.returnedOverdueBorrowings + :returnedOverdue WHERE u.id = :id")
+    int addBorrowingCounts(@Param("id") long id, @Param("active") long active, @Param("overdue") long overdue,
+            @Param("returnedOverdue") long returnedOverdue);
+
+    // Counts the borrowings the overdue job just moved to status, told apart by the updatedAt it wrote on them
+    @Modifying
+    @Query("UPDATE User u SET u.overdueBorrowings = u.overdueBorrowings + (SELECT COUNT(b) FROM Borrowing b"
+            + " WHERE b.borrower.id = u.id AND b.id BETWEEN :fromId AND :toId AND b.status = :status"
+            + " AND b.updatedAt = :updatedAt)"
+            + " WHERE u.id IN (SELECT b.borrower.id FROM Borrowing b WHERE b.id BETWEEN :fromId AND :toId"
+            + " AND b.status = :status AND b.updatedAt = :updatedAt)")
+    int addOverdueMarkedInRange(@Param("fromId") long fromId, @Param("toId") long toId,
+            @Param("status") Borrowing.Status status, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("UPDATE User u SET u.overdueBorrowings = u.overdueBorrowings + (SELECT COUNT(b) FROM Borrowing b"
+            + " WHERE b.borrower.id = u.id AND b.id IN :ids AND b.status = :status AND b.updatedAt = :updatedAt)"
+            + " WHERE u.id IN (SELECT b.borrower.id FROM Borrowing b WHERE b.id IN :ids AND b.status = :status"
+            + " AND b.updatedAt = :updatedAt)")
+    int addOverdueMarkedByIds(@Param("ids") Collection<Long> ids, @Param("status") Borrowing.Status status,
+            @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Row locks on the users of the range, held until the transaction ends
+    @Query(value = "SELECT id FROM users WHERE id BETWEEN :fromId AND :toId FOR UPDATE", nativeQuery = true)
+    List<Long> lockIdsInRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Recounts the counters of the range from the borrowings, only the users whose counters drifted are written
+    @Modifying
+    @Query("UPDATE User u SET"
+            + " u.activeBorrowings = (SELECT COUNT(b) FROM Borrowing b WHERE b.borrower.id = u.id"
+            + " AND b.status IN :activeStatuses),"
+            + " u.overdueBorrowings = (SELECT COUNT(b) FROM Borrowing b WHERE b.borrower.id = u.id"
+            + " AND b.status = :overdue),"
+            + " u.returnedOverdueBorrowings = (SELECT COUNT(b) FROM Borrowing b WHERE b.borrower.id = u.id"
+            + " AND b.status = :returnedOverdue)"
+            + " WHERE u.id BETWEEN :fromId AND :toId AND ("
+            + " u.activeBorrowings <> (SELECT COUNT(b) FROM Borrowing b WHERE b.borrower.id = u.id"
+            + " AND b.status IN :activeStatuses)"
+            + " OR u.overdueBorrowings <> (SELECT COUNT(b) FROM Borrowing b WHERE b.borrower.id = u.id"
+            + " AND b.status = :overdue)"
+            + " OR u.returnedOverdueBorrowings <> (SELECT COUNT(b) FROM Borrowing b WHERE b.borrower.id = u.id"
+            + " AND b.status = :returnedOverdue))")
+    int reconcileBorrowingCountsInRange(@Param("fromId") long fromId, @Param("toId") long toId,
+            @Param("activeStatuses") Collection<Borrowing.Status> activeStatuses,
+            @Param("overdue") Borrowing.Status overdue, @Param("returnedOverdue") Borrowing.Status returnedOverdue);
+}
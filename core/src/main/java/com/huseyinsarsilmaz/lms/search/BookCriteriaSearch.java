@@ -0,0 +1,129 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import com.huseyinsarsilmaz.lms.exception.InvalidDateRangeException;
+import com.huseyinsarsilmaz.lms.model.dto.request.BookSearchRequest;
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+import com.huseyinsarsilmaz.lms.repository.BookRepository;
+
+// Combined search over any mix of title, author, genre, availability and publication date. The predicates are
+// planned most selective first:
+// 1. title and author matches the trigram index can count exactly, as an id list when it is short enough,
+// 2. genre, availability and the publication date range, in the column order of ix_books_genre_available_published
+//    and ix_books_publication_date,
+// 3. the title and author matches left, as LIKE scans over the rows the others let through.
+@Component
+public class BookCriteriaSearch {
+
+    private final BookRepository bookRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final long maxIndexedIds;
+
+    public BookCriteriaSearch(BookRepository bookRepository, BookSearchIndex bookSearchIndex,
+            @Value("${book.search.criteria.max-indexed-ids:1000}") long maxIndexedIds) {
+        this.bookRepository = bookRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.maxIndexedIds = maxIndexedIds;
+    }
+
+    public Page<Book> search(BookSearchRequest req, Pageable pageable) {
+        if (req.getPublishedFrom() != null && req.getPublishedTo() != null
+                && req.getPublishedFrom().isAfter(req.getPublishedTo())) {
+            throw new InvalidDateRangeException("publication date range");
+        }
+
+        String title = trimToNull(req.getTitle());
+        String author = trimToNull(req.getAuthor());
+
+        Optional<Set<Long>> titleIds = title == null ? Optional.empty()
+                : indexedIds(BookSearchIndex.Field.TITLE, title);
+        Optional<Set<Long>> authorIds = author == null ? Optional.empty()
+                : indexedIds(BookSearchIndex.Field.AUTHOR, author);
+
+        Set<Long> ids = null;
+        if (titleIds.isPresent()) {
+            ids = titleIds.get();
+        }
+        if (authorIds.isPresent()) {
+            if (ids == null) {
+                ids = authorIds.get();
+            } else {
+                ids.retainAll(authorIds.get());
+            }
+        }
+        if (ids != null && ids.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        List<Specification<Book>> predicates = new ArrayList<>();
+        if (ids != null) {
+            predicates.add(idIn(ids));
+        }
+        if (req.getGenre() != null) {
+            predicates.add(equal("genre", req.getGenre()));
+        }
+        if (req.getAvailable() != null) {
+            predicates.add(equal("isAvailable", req.getAvailable()));
+        }
+        if (req.getPublishedFrom() != null) {
+            predicates.add((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("publicationDate"),
+                    req.getPublishedFrom()));
+        }
+        if (req.getPublishedTo() != null) {
+            predicates.add((root, query, cb) -> cb.lessThanOrEqualTo(root.get("publicationDate"),
+                    req.getPublishedTo()));
+        }
+        if (title != null && titleIds.isEmpty()) {
+            predicates.add(containing("title", title));
+        }
+        if (author != null && authorIds.isEmpty()) {
+            predicates.add(containing("author", author));
+        }
+
+        return bookRepository.findAll(Specification.allOf(predicates), pageable);
+    }
+
+    // Empty when the index cannot answer the query or matches too many books for an IN list to pay off
+    private Optional<Set<Long>> indexedIds(BookSearchIndex.Field field, String query) {
+        OptionalLong count = bookSearchIndex.count(field, query);
+        if (count.isEmpty() || count.getAsLong() > maxIndexedIds) {
+            return Optional.empty();
+        }
+
+        return bookSearchIndex.search(field, query, Pageable.unpaged())
+                .map(page -> new HashSet<>(page.getContent()));
+    }
+
+    private static Specification<Book> idIn(Set<Long> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+
+    private static Specification<Book> equal(String attribute, Object value) {
+        return (root, query, cb) -> cb.equal(root.get(attribute), value);
+    }
+
+    private static Specification<Book> containing(String attribute, String text) {
+        String pattern = "%" + LikeBookFullTextSearch.escape(text.toLowerCase(Locale.ROOT)) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get(attribute)), pattern, LikeBookFullTextSearch.ESCAPE);
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim();
+    }
+}
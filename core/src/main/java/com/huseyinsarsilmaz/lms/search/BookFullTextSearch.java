@@ -0,0 +1,18 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+// Free text search over title, author and description. The query uses web search syntax:
+// plain words must all match, "quoted text" is a phrase, a leading - excludes a word and OR joins alternatives.
+public interface BookFullTextSearch {
+
+    Page<Book> search(String query, Pageable pageable);
+
+    Slice<Book> searchSlice(String query, Pageable pageable);
+
+    long count(String query);
+}
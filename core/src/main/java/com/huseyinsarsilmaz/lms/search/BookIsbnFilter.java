@@ -0,0 +1,109 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.huseyinsarsilmaz.lms.util.BloomFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+// Bloom filter over the stored ISBNs so that checking a new ISBN, the common case while importing, needs no query.
+// Deleted and changed ISBNs stay in the filter as false positives until the next rebuild, which runs on a fixed
+// delay. Until the first rebuild completes every ISBN might exist. The filter only saves queries: an ISBN it misses
+// in a race with a rebuild is still rejected by the unique index on books.isbn.
+@Slf4j
+@Component
+public class BookIsbnFilter {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long expectedIsbns;
+    private final double falsePositiveRate;
+    private final Counter skippedLookups;
+    private final Counter lookups;
+
+    private volatile BloomFilter filter;
+    // The filter being loaded, ISBNs added meanwhile go to both
+    private volatile BloomFilter building;
+
+    public BookIsbnFilter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${book.isbn-filter.expected-isbns:100000}") long expectedIsbns,
+            @Value("${book.isbn-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.expectedIsbns = expectedIsbns;
+        this.falsePositiveRate = falsePositiveRate;
+
+        String description = "ISBN existence checks answered by the Bloom filter alone or passed on to the database";
+        skippedLookups = Counter.builder("lms.books.isbn.filter").description(description)
+                .tag("result", "absent")
+                .register(meterRegistry);
+        lookups = Counter.builder("lms.books.isbn.filter").description(description)
+                .tag("result", "maybe")
+                .register(meterRegistry);
+    }
+
+    // False only when no book has the canonical ISBN
+    public boolean mightExist(String isbn) {
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(isbn)) {
+            skippedLookups.increment();
+            return false;
+        }
+        lookups.increment();
+        return true;
+    }
+
+    public void add(String isbn) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(isbn);
+        }
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(isbn);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${book.isbn-filter.refresh-interval-ms:3600000}")
+    public void rebuild() {
+        long start = System.nanoTime();
+
+        try {
+            Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books", Long.class);
+            // Twice the current count leaves room for the books added before the next rebuild
+            BloomFilter next = new BloomFilter(Math.max(expectedIsbns, count == null ? 0 : count * 2),
+                    falsePositiveRate);
+            building = next;
+
+            // Postgres only streams with a fetch size inside a transaction
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement("SELECT isbn FROM books");
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, (RowCallbackHandler) row -> next.put(row.getString("isbn"))));
+
+            filter = next;
+            log.debug("ISBN filter rebuilt with {} books in {} ms", count,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException ex) {
+            log.warn("ISBN filter could not be rebuilt, the previous one is kept", ex);
+        } finally {
+            building = null;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+// In memory trigram index over book titles, authors and ISBNs answering the containing searches of BookServiceImpl
+// without a database round trip. Every field maps each trigram of its case folded value to the sorted ids holding
+// it, so whole words, prefixes and inner substrings are all found by intersecting the query's trigrams and then
+// checking the few candidates against the stored values.
+//
+// It is built in the background from the books table once the application is ready and follows the writes of
+// BookServiceImpl after they commit. Writes made through other instances never reach it, so it is also rebuilt
+// from the table on a fixed delay. Until it is ready, or for queries it cannot answer (shorter than a trigram,
+// sorted by a column it does not hold), search returns empty and the caller queries the database instead.
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+    public enum Field {
+        TITLE, AUTHOR, ISBN
+    }
+
+    private static final int GRAM_LENGTH = 3;
+    private static final int FETCH_SIZE = 1000;
+    private static final String LOAD_QUERY = "SELECT id, title, author, isbn FROM books ORDER BY id";
+
+    private record Doc(String title, String author, String isbn) {
+
+        private String value(Field field) {
+            return switch (field) {
+                case TITLE -> title;
+                case AUTHOR -> author;
+                case ISBN -> isbn;
+            };
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Field, Timer> queryTimers = new EnumMap<>(Field.class);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Changes that commit while the index is being built, replayed on top of it before it is published
+    private final List<Consumer<Segment>> pending = new ArrayList<>();
+    private volatile boolean enabled;
+    private volatile boolean ready;
+    private boolean building;
+    private Segment segment = new Segment();
+
+    public BookSearchIndex(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry, @Value("${book.search.index.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+
+        for (Field field : Field.values()) {
+            queryTimers.put(field, Timer.builder("lms.search.index.query")
+                    .description("Time spent matching a search against the in memory book index")
+                    .tag("field", field.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("lms.search.index.books", this, index -> index.read(Segment::docCount))
+                .description("Books held by the in memory search index")
+                .register(meterRegistry);
+        Gauge.builder("lms.search.index.memory", this, index -> index.read(Segment::memoryBytes))
+                .description("Estimated heap used by the in memory search index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBuild() {
+        if (!enabled) {
+            return;
+        }
+
+        Thread builder = new Thread(this::build, "book-search-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    // Only refreshes a built index, the first build is started once the application is ready
+    @Scheduled(initialDelayString = "${book.search.index.refresh-interval-ms:300000}",
+            fixedDelayString = "${book.search.index.refresh-interval-ms:300000}")
+    public void rebuild() {
+        if (ready) {
+            build();
+        }
+    }
+
+    void build() {
+        long start = System.nanoTime();
+        boolean refresh = ready;
+        Segment built = new Segment();
+        synchronized (pending) {
+            building = true;
+        }
+
+        try {
+            // Postgres only streams with a fetch size inside a transaction
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(LOAD_QUERY);
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, (RowCallbackHandler) row -> built.put(toIntId(row.getLong("id")), docOf(row))));
+        } catch (RuntimeException ex) {
+            if (refresh) {
+                log.warn("Book search index could not be rebuilt, the previous one is kept", ex);
+                synchronized (pending) {
+                    building = false;
+                    pending.clear();
+                }
+            } else {
+                log.error("Book search index could not be built, searches will use the database", ex);
+                disable();
+            }
+            return;
+        }
+        built.trimToSize();
+
+        lock.writeLock().lock();
+        try {
+            synchronized (pending) {
+                pending.forEach(change -> change.accept(built));
+                pending.clear();
+                segment = built;
+                building = false;
+                ready = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (refresh) {
+            log.debug("Book search index rebuilt with {} books in {} ms", built.docCount(), millis);
+        } else {
+            log.info("Book search index built with {} books in {} ms", built.docCount(), millis);
+        }
+    }
+
+    private static Doc docOf(ResultSet row) throws SQLException {
+        return new Doc(row.getString("title"), row.getString("author"), row.getString("isbn"));
+    }
+
+    // Posting lists hold ints, an id beyond that range would silently collide
+    private static int toIntId(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Book id " + id + " does not fit the search index");
+        }
+        return (int) id;
+    }
+
+    public void index(Book book) {
+        Doc doc = new Doc(book.getTitle(), book.getAuthor(), book.getIsbn());
+        long id = book.getId();
+        afterCommit(current -> current.put(toIntId(id), doc));
+    }
+
+    public void remove(long bookId) {
+        afterCommit(current -> current.remove(toIntId(bookId)));
+    }
+
+    // A rolled back write must not reach the index, so changes are applied once their transaction commits
+    private void afterCommit(Consumer<Segment> change) {
+        if (!enabled) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    private void apply(Consumer<Segment> change) {
+        synchronized (pending) {
+            if (!enabled) {
+                return;
+            }
+            // During a rebuild the change goes to the current segment and is replayed on the new one as well,
+            // replaying a change the load already saw leaves the same document
+            if (building || !ready) {
+                pending.add(change);
+            }
+            if (!ready) {
+                return;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            change.accept(segment);
+        } catch (IllegalStateException ex) {
+            log.error("Book search index is disabled, searches will use the database", ex);
+            disable();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void disable() {
+        synchronized (pending) {
+            enabled = false;
+            ready = false;
+            building = false;
+            pending.clear();
+            segment = new Segment();
+        }
+    }
+
+    // Ids of the requested page of books whose field contains the query, ignoring case, like the
+    // *ContainingIgnoreCase repository queries
+    public Optional<Page<Long>> search(Field field, String query, Pageable pageable) {
+        if (!ready || query.length() < GRAM_LENGTH) {
+            return Optional.empty();
+        }
+        Comparator<Integer> order = comparatorFor(pageable.getSort());
+        if (order == null) {
+            return Optional.empty();
+        }
+
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return Optional.empty();
+            }
+            return Optional.of(segment.page(field, query, order, pageable));
+        } finally {
+            lock.readLock().unlock();
+            queryTimers.get(field).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Number of books whose field contains the query, empty under the same conditions as search
+    public OptionalLong count(Field field, String query) {
+        if (!ready || query.length() < GRAM_LENGTH) {
+            return OptionalLong.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            return ready ? OptionalLong.of(segment.match(field, query).length) : OptionalLong.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Null when the sort uses a column the index does not hold
+    private Comparator<Integer> comparatorFor(Sort sort) {
+        Comparator<Integer> comparator = null;
+
+        for (Sort.Order order : sort) {
+            Comparator<Integer> next = switch (order.getProperty()) {
+                case "id" -> Comparator.naturalOrder();
+                case "title" -> byField(Field.TITLE);
+                case "author" -> byField(Field.AUTHOR);
+                case "isbn" -> byField(Field.ISBN);
+                default -> null;
+            };
+            if (next == null) {
+                return null;
+            }
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+
+        Comparator<Integer> byId = Comparator.naturalOrder();
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+
+    // Only called while the read lock is held
+    private Comparator<Integer> byField(Field field) {
+        return Comparator.comparing(id -> segment.docs[id].value(field), String.CASE_INSENSITIVE_ORDER);
+    }
+
+    private <T> T read(Function<Segment, T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(segment);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The case fold of String.regionMatches(true, ...): upper then lower case, so that for example
+    // the dotless and dotted i of Turkish names match their capitals the same way
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static long gram(CharSequence value, int start) {
+        return (long) fold(value.charAt(start)) << 32
+                | (long) fold(value.charAt(start + 1)) << 16
+                | fold(value.charAt(start + 2));
+    }
+
+    // Sorted distinct trigrams of the value
+    private static long[] grams(String value) {
+        if (value == null || value.length() < GRAM_LENGTH) {
+            return new long[0];
+        }
+
+        long[] grams = new long[value.length() - GRAM_LENGTH + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gram(value, i);
+        }
+        Arrays.sort(grams);
+
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static boolean containsFolded(String value, String query) {
+        if (value == null) {
+            return false;
+        }
+
+        outer: for (int i = 0; i + query.length() <= value.length(); i++) {
+            for (int j = 0; j < query.length(); j++) {
+                if (fold(value.charAt(i + j)) != fold(query.charAt(j))) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // One generation of the index, replaced as a whole when it is rebuilt. Not thread safe on its own.
+    private static final class Segment {
+
+        private final Map<Field, Map<Long, IntPostingList>> postings = new EnumMap<>(Field.class);
+        // Indexed by book id, ids come from an identity column so the array stays dense
+        private Doc[] docs = new Doc[0];
+        private int docCount;
+
+        private Segment() {
+            for (Field field : Field.values()) {
+                postings.put(field, new HashMap<>());
+            }
+        }
+
+        private int docCount() {
+            return docCount;
+        }
+
+        private void put(int id, Doc doc) {
+            Doc previous = id < docs.length ? docs[id] : null;
+            if (doc.equals(previous)) {
+                return;
+            }
+            if (previous != null) {
+                remove(id);
+            }
+
+            if (id >= docs.length) {
+                docs = Arrays.copyOf(docs, Math.max(id + 1, docs.length + (docs.length >> 1)));
+            }
+            docs[id] = doc;
+            docCount++;
+
+            for (Field field : Field.values()) {
+                Map<Long, IntPostingList> fieldPostings = postings.get(field);
+                for (long gram : grams(doc.value(field))) {
+                    fieldPostings.computeIfAbsent(gram, key -> new IntPostingList()).add(id);
+                }
+            }
+        }
+
+        private void remove(int id) {
+            Doc previous = id < docs.length ? docs[id] : null;
+            if (previous == null) {
+                return;
+            }
+            docs[id] = null;
+            docCount--;
+
+            for (Field field : Field.values()) {
+                Map<Long, IntPostingList> fieldPostings = postings.get(field);
+                for (long gram : grams(previous.value(field))) {
+                    IntPostingList list = fieldPostings.get(gram);
+                    if (list != null && list.remove(id) && list.isEmpty()) {
+                        fieldPostings.remove(gram);
+                    }
+                }
+            }
+        }
+
+        private void trimToSize() {
+            postings.values().forEach(fieldPostings -> fieldPostings.values().forEach(IntPostingList::trimToSize));
+        }
+
+        private Page<Long> page(Field field, String query, Comparator<Integer> order, Pageable pageable) {
+            int[] matches = match(field, query);
+
+            List<Integer> sorted = new ArrayList<>(matches.length);
+            for (int id : matches) {
+                sorted.add(id);
+            }
+            sorted.sort(order);
+
+            int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), sorted.size()) : 0;
+            int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), sorted.size()) : sorted.size();
+            List<Long> ids = sorted.subList(from, to).stream().map(Integer::longValue).toList();
+
+            return new PageImpl<>(ids, pageable, matches.length);
+        }
+
+        private int[] match(Field field, String query) {
+            Map<Long, IntPostingList> fieldPostings = postings.get(field);
+            long[] queryGrams = grams(query);
+
+            IntPostingList[] lists = new IntPostingList[queryGrams.length];
+            for (int i = 0; i < queryGrams.length; i++) {
+                lists[i] = fieldPostings.get(queryGrams[i]);
+                if (lists[i] == null) {
+                    return new int[0];
+                }
+            }
+            // Rarest gram first keeps every intersection as small as possible
+            Arrays.sort(lists, Comparator.comparingInt(IntPostingList::size));
+
+            int[] candidates = lists[0].toArray();
+            int size = candidates.length;
+            for (int i = 1; i < lists.length && size > 0; i++) {
+                candidates = IntPostingList.intersect(candidates, size, lists[i]);
+                size = candidates.length;
+            }
+
+            // Sharing every trigram does not make the query a substring, "abcd" and "bcdabc" share abc and bcd
+            int verified = 0;
+            for (int i = 0; i < size; i++) {
+                if (containsFolded(docs[candidates[i]].value(field), query)) {
+                    candidates[verified++] = candidates[i];
+                }
+            }
+            return Arrays.copyOf(candidates, verified);
+        }
+
+        // Rough estimate: posting arrays, map entries with their boxed keys, the doc table and doc strings
+        private long memoryBytes() {
+            long bytes = 16 + 8L * docs.length;
+            for (Map<Long, IntPostingList> fieldPostings : postings.values()) {
+                bytes += 16L * fieldPostings.size();
+                for (IntPostingList list : fieldPostings.values()) {
+                    bytes += 32 + 16 + 24 + list.memoryBytes();
+                }
+            }
+            for (int id = 0; id < docs.length; id++) {
+                Doc doc = docs[id];
+                if (doc != null) {
+                    bytes += 24 + stringBytes(doc.title()) + stringBytes(doc.author()) + stringBytes(doc.isbn());
+                }
+            }
+            return bytes;
+        }
+
+        private static long stringBytes(String value) {
+            return value == null ? 0 : 40 + 2L * value.length();
+        }
+    }
+}
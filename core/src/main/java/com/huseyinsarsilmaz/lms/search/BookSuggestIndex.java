@@ -0,0 +1,423 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import java.sql.PreparedStatement;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.huseyinsarsilmaz.lms.model.dto.response.BookSuggestion;
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+// Typeahead over book titles and authors. Every distinct normalized title and author is one suggestion, ranked by
+// how many times the books carrying it have been borrowed, and reachable from the start of its title (with or
+// without a leading article) or from the start of any word of the author's name.
+//
+// Built in the background like BookSearchIndex and kept current by the writes of BookServiceImpl and the borrowings
+// of BorrowingServiceImpl after they commit. Like BookSearchIndex it is rebuilt from the tables on a fixed delay, so
+// changes made through other instances show up too. Until it is ready suggest returns empty and the caller queries
+// the database instead.
+@Slf4j
+@Component
+public class BookSuggestIndex {
+
+    public static final int MAX_RESULTS = SuggestTrie.MAX_RESULTS;
+
+    private static final int FETCH_SIZE = 1000;
+    private static final String LOAD_BOOKS = "SELECT id, title, author FROM books";
+    private static final String LOAD_BORROWS = "SELECT book_id, COUNT(*) AS borrows FROM borrowings GROUP BY book_id";
+    private static final Set<String> ARTICLES = Set.of("the", "a", "an");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer queryTimer;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Changes that commit while the index is being built, replayed on top of it before it is published
+    private final List<Consumer<Catalog>> pending = new ArrayList<>();
+    private volatile boolean enabled;
+    private volatile boolean ready;
+    private boolean building;
+    private Catalog catalog = new Catalog();
+
+    public BookSuggestIndex(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry, @Value("${book.suggest.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+
+        queryTimer = Timer.builder("lms.suggest.query")
+                .description("Time spent completing a prefix from the in memory suggestion index")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("lms.suggest.terms", this, index -> index.read(current -> current.trie.termCount()))
+                .description("Distinct titles and authors held by the suggestion index")
+                .register(meterRegistry);
+        Gauge.builder("lms.suggest.memory", this, index -> index.read(current -> current.trie.memoryBytes()))
+                .description("Estimated heap used by the suggestion index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBuild() {
+        if (!enabled) {
+            return;
+        }
+
+        Thread builder = new Thread(this::build, "book-suggest-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    // Only refreshes a built index, the first build is started once the application is ready
+    @Scheduled(initialDelayString = "${book.suggest.refresh-interval-ms:300000}",
+            fixedDelayString = "${book.suggest.refresh-interval-ms:300000}")
+    public void rebuild() {
+        if (ready) {
+            build();
+        }
+    }
+
+    void build() {
+        long start = System.nanoTime();
+        boolean refresh = ready;
+        Catalog built = new Catalog();
+        synchronized (pending) {
+            building = true;
+        }
+
+        built.trie.startBulk();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(LOAD_BOOKS);
+                    statement.setFetchSize(FETCH_SIZE);
+                    return statement;
+                }, (RowCallbackHandler) row -> built.put(row.getLong("id"), row.getString("title"),
+                        row.getString("author")));
+                jdbcTemplate.query(LOAD_BORROWS,
+                        (RowCallbackHandler) row -> built.borrow(row.getLong("book_id"), row.getLong("borrows")));
+            });
+        } catch (RuntimeException ex) {
+            if (refresh) {
+                log.warn("Book suggestion index could not be rebuilt, the previous one is kept", ex);
+                synchronized (pending) {
+                    building = false;
+                    pending.clear();
+                }
+            } else {
+                log.error("Book suggestion index could not be built, suggestions will use the database", ex);
+                disable();
+            }
+            return;
+        }
+        built.trie.finishBulk();
+
+        lock.writeLock().lock();
+        try {
+            synchronized (pending) {
+                pending.forEach(change -> change.accept(built));
+                pending.clear();
+                catalog = built;
+                building = false;
+                ready = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (refresh) {
+            log.debug("Book suggestion index rebuilt with {} terms in {} ms", built.trie.termCount(), millis);
+        } else {
+            log.info("Book suggestion index built with {} terms in {} ms", built.trie.termCount(), millis);
+        }
+    }
+
+    public void index(Book book) {
+        long id = book.getId();
+        String title = book.getTitle();
+        String author = book.getAuthor();
+        afterCommit(current -> current.put(id, title, author));
+    }
+
+    public void remove(long bookId) {
+        afterCommit(current -> current.remove(bookId));
+    }
+
+    public void recordBorrow(long bookId) {
+        afterCommit(current -> current.borrow(bookId, 1));
+    }
+
+    // A rolled back write must not reach the index, so changes are applied once their transaction commits
+    private void afterCommit(Consumer<Catalog> change) {
+        if (!enabled) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    private void apply(Consumer<Catalog> change) {
+        synchronized (pending) {
+            if (!enabled) {
+                return;
+            }
+            // During a rebuild the change goes to the current catalog and is replayed on the new one as well. A
+            // borrowing the load already counted is then counted twice until the next rebuild, as on startup
+            if (building || !ready) {
+                pending.add(change);
+            }
+            if (!ready) {
+                return;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            change.accept(catalog);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void disable() {
+        synchronized (pending) {
+            enabled = false;
+            ready = false;
+            building = false;
+            pending.clear();
+            catalog = new Catalog();
+        }
+    }
+
+    // Up to limit titles and authors completing the query, most borrowed first
+    public Optional<List<BookSuggestion>> suggest(String query, int limit) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        String prefix = normalize(query);
+        if (prefix.isEmpty()) {
+            return Optional.of(List.of());
+        }
+
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return Optional.empty();
+            }
+            return Optional.of(catalog.trie.top(prefix, limit).stream()
+                    .map(term -> new BookSuggestion(term.text, term.kind, term.score))
+                    .toList());
+        } finally {
+            lock.readLock().unlock();
+            queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <T> T read(Function<Catalog, T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(catalog);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Accents dropped, lower cased and every run of punctuation or spaces made a single space, so that
+    // "Émile Zola" and "emile zola" and "The Lord of the Rings: The Two Towers" and "the lord of the rings the two"
+    // meet on the same keys
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (space && !normalized.isEmpty()) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    // The first key is the whole normalized value, the others the places a user may start typing it from
+    static String[] keys(Book.SearchType kind, String key) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(key);
+
+        int space = key.indexOf(' ');
+        if (kind == Book.SearchType.TITLE) {
+            if (space > 0 && ARTICLES.contains(key.substring(0, space))) {
+                keys.add(key.substring(space + 1));
+            }
+        } else {
+            while (space >= 0) {
+                keys.add(key.substring(space + 1));
+                space = key.indexOf(' ', space + 1);
+            }
+        }
+        return keys.toArray(String[]::new);
+    }
+
+    private static final class BookEntry {
+        private final SuggestTrie.Term title;
+        private final SuggestTrie.Term author;
+        private long borrows;
+
+        private BookEntry(SuggestTrie.Term title, SuggestTrie.Term author, long borrows) {
+            this.title = title;
+            this.author = author;
+            this.borrows = borrows;
+        }
+    }
+
+    // One generation of the index, replaced as a whole when it is rebuilt. Books sharing a title or an author
+    // share its term, whose score is the sum of their borrowings. Not thread safe on its own.
+    private static final class Catalog {
+
+        private final SuggestTrie trie = new SuggestTrie();
+        private final Map<Book.SearchType, Map<String, SuggestTrie.Term>> terms = new EnumMap<>(Book.SearchType.class);
+        private final Map<Long, BookEntry> books = new HashMap<>();
+
+        private Catalog() {
+            terms.put(Book.SearchType.TITLE, new HashMap<>());
+            terms.put(Book.SearchType.AUTHOR, new HashMap<>());
+        }
+
+        private void put(long id, String title, String author) {
+            String titleKey = normalize(title);
+            String authorKey = normalize(author);
+
+            BookEntry previous = books.get(id);
+            long borrows = 0;
+            if (previous != null) {
+                if (titleKey.equals(keyOf(previous.title)) && authorKey.equals(keyOf(previous.author))) {
+                    return;
+                }
+                borrows = previous.borrows;
+                release(previous.title, borrows);
+                release(previous.author, borrows);
+            }
+
+            books.put(id, new BookEntry(acquire(Book.SearchType.TITLE, title, titleKey, borrows),
+                    acquire(Book.SearchType.AUTHOR, author, authorKey, borrows), borrows));
+        }
+
+        private void remove(long id) {
+            BookEntry previous = books.remove(id);
+            if (previous != null) {
+                release(previous.title, previous.borrows);
+                release(previous.author, previous.borrows);
+            }
+        }
+
+        private void borrow(long id, long count) {
+            BookEntry entry = books.get(id);
+            if (entry == null) {
+                return;
+            }
+            entry.borrows += count;
+            for (SuggestTrie.Term term : new SuggestTrie.Term[] { entry.title, entry.author }) {
+                if (term != null) {
+                    term.score += count;
+                    trie.updated(term);
+                }
+            }
+        }
+
+        private SuggestTrie.Term acquire(Book.SearchType kind, String text, String key, long borrows) {
+            if (key.isEmpty()) {
+                return null;
+            }
+
+            Map<String, SuggestTrie.Term> kindTerms = terms.get(kind);
+            SuggestTrie.Term term = kindTerms.get(key);
+            if (term == null) {
+                term = new SuggestTrie.Term(text, kind, keys(kind, key));
+                term.score = borrows;
+                term.references = 1;
+                kindTerms.put(key, term);
+                trie.add(term);
+            } else {
+                term.references++;
+                if (borrows > 0) {
+                    term.score += borrows;
+                    trie.updated(term);
+                }
+            }
+            return term;
+        }
+
+        private void release(SuggestTrie.Term term, long borrows) {
+            if (term == null) {
+                return;
+            }
+
+            term.references--;
+            term.score -= borrows;
+            if (term.references == 0) {
+                terms.get(term.kind).remove(term.keys[0]);
+                trie.remove(term);
+            } else if (borrows > 0) {
+                trie.updated(term);
+            }
+        }
+
+        private static String keyOf(SuggestTrie.Term term) {
+            return term == null ? "" : term.keys[0];
+        }
+    }
+}
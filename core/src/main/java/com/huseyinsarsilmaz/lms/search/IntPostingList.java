@@ -0,0 +1,101 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import java.util.Arrays;
+
+// Sorted set of ints on a plain int[], 4 bytes per entry instead of the ~20 of a boxed collection.
+// Appending ascending ids is O(1), other inserts and removals shift the tail. Not thread safe.
+final class IntPostingList {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] values = EMPTY;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    boolean add(int value) {
+        if (size == 0 || values[size - 1] < value) {
+            ensureCapacity();
+            values[size++] = value;
+            return true;
+        }
+
+        int position = Arrays.binarySearch(values, 0, size, value);
+        if (position >= 0) {
+            return false;
+        }
+
+        int insertAt = -position - 1;
+        ensureCapacity();
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = value;
+        size++;
+        return true;
+    }
+
+    boolean remove(int value) {
+        int position = Arrays.binarySearch(values, 0, size, value);
+        if (position < 0) {
+            return false;
+        }
+
+        System.arraycopy(values, position + 1, values, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    void trimToSize() {
+        if (values.length != size) {
+            values = size == 0 ? EMPTY : Arrays.copyOf(values, size);
+        }
+    }
+
+    // Bytes held by this list, array header included
+    long memoryBytes() {
+        return 16 + 4L * values.length;
+    }
+
+    // Values of the sorted left array also present in right, in ascending order. Every value is binary searched
+    // in what is left of right, so a rare gram intersected with a common one costs about the size of the rare one.
+    static int[] intersect(int[] left, int leftSize, IntPostingList right) {
+        int[] result = new int[Math.min(leftSize, right.size)];
+        int count = 0;
+        int from = 0;
+
+        for (int i = 0; i < leftSize && from < right.size; i++) {
+            int position = Arrays.binarySearch(right.values, from, right.size, left[i]);
+            if (position >= 0) {
+                result[count++] = left[i];
+                from = position + 1;
+            } else {
+                from = -position - 1;
+            }
+        }
+
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    private void ensureCapacity() {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+    }
+}
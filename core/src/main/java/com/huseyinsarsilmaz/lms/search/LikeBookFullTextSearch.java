@@ -0,0 +1,154 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+import com.huseyinsarsilmaz.lms.repository.BookRepository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+
+// Portable fallback for databases without text search, used by the H2 test profile. Understands the same
+// syntax with substring matching instead of stemming and keeps the requested sort, as there is no ranking.
+@Component
+@ConditionalOnProperty(name = "book.search.full-text", havingValue = "like")
+@RequiredArgsConstructor
+public class LikeBookFullTextSearch implements BookFullTextSearch {
+
+    static final char ESCAPE = '\\';
+
+    private final BookRepository bookRepository;
+
+    record Term(String text, boolean excluded, boolean orWithPrevious) {
+    }
+
+    @Override
+    public Page<Book> search(String query, Pageable pageable) {
+        return bookRepository.findAll(matching(parse(query)), pageable);
+    }
+
+    // The specification executor has no count free paging, a slice over the page keeps the contract
+    @Override
+    public Slice<Book> searchSlice(String query, Pageable pageable) {
+        Page<Book> page = search(query, pageable);
+        return new SliceImpl<>(page.getContent(), pageable, page.hasNext());
+    }
+
+    @Override
+    public long count(String query) {
+        return bookRepository.count(matching(parse(query)));
+    }
+
+    private static Specification<Book> matching(List<Term> terms) {
+        return (root, criteriaQuery, cb) -> {
+            List<Predicate> required = new ArrayList<>();
+            Predicate alternatives = null;
+
+            for (Term term : terms) {
+                Predicate matches = anyField(root, cb, term.text());
+                if (term.excluded()) {
+                    required.add(cb.not(matches));
+                    continue;
+                }
+
+                if (term.orWithPrevious() && alternatives != null) {
+                    alternatives = cb.or(alternatives, matches);
+                } else {
+                    if (alternatives != null) {
+                        required.add(alternatives);
+                    }
+                    alternatives = matches;
+                }
+            }
+
+            if (alternatives != null) {
+                required.add(alternatives);
+            }
+            return required.isEmpty() ? cb.disjunction() : cb.and(required.toArray(Predicate[]::new));
+        };
+    }
+
+    private static Predicate anyField(Root<Book> root, CriteriaBuilder cb, String text) {
+        String pattern = "%" + escape(text) + "%";
+        return cb.or(
+                like(cb, root.get("title"), pattern),
+                like(cb, root.get("author"), pattern),
+                like(cb, root.get("description"), pattern));
+    }
+
+    // Description is optional, a NULL would turn an exclusion into unknown and drop the row
+    private static Predicate like(CriteriaBuilder cb, Expression<String> field, String pattern) {
+        return cb.like(cb.lower(cb.coalesce(field, "")), pattern, ESCAPE);
+    }
+
+    static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                escaped.append(ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    // Splits the query the way websearch_to_tsquery does: words, "phrases", -exclusions and OR
+    static List<Term> parse(String query) {
+        List<Term> terms = new ArrayList<>();
+        String normalized = query.toLowerCase(Locale.ROOT);
+        boolean orPending = false;
+        int i = 0;
+
+        while (i < normalized.length()) {
+            char c = normalized.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            boolean excluded = c == '-';
+            if (excluded) {
+                i++;
+            }
+
+            String text;
+            if (i < normalized.length() && normalized.charAt(i) == '"') {
+                int close = normalized.indexOf('"', i + 1);
+                int end = close < 0 ? normalized.length() : close;
+                text = normalized.substring(i + 1, end).trim().replaceAll("\\s+", " ");
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < normalized.length() && !Character.isWhitespace(normalized.charAt(i))) {
+                    i++;
+                }
+                text = normalized.substring(start, i);
+            }
+
+            if (!excluded && text.equals("or")) {
+                orPending = !terms.isEmpty();
+                continue;
+            }
+            if (!text.isEmpty()) {
+                terms.add(new Term(text, excluded, orPending && !excluded));
+            }
+            orPending = false;
+        }
+
+        return terms;
+    }
+}
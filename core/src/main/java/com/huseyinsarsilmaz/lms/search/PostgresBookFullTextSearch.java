@@ -0,0 +1,44 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+import com.huseyinsarsilmaz.lms.repository.BookRepository;
+
+import lombok.RequiredArgsConstructor;
+
+// Matches books.search_vector through its GIN index, stemmed with the english configuration. Results are
+// ordered by relevance, so the sort of the requested page is not applied.
+@Component
+@ConditionalOnProperty(name = "book.search.full-text", havingValue = "postgres", matchIfMissing = true)
+@RequiredArgsConstructor
+public class PostgresBookFullTextSearch implements BookFullTextSearch {
+
+    private final BookRepository bookRepository;
+
+    @Override
+    public Page<Book> search(String query, Pageable pageable) {
+        return bookRepository.searchFullText(query, unsorted(pageable));
+    }
+
+    @Override
+    public Slice<Book> searchSlice(String query, Pageable pageable) {
+        return bookRepository.searchFullTextSlice(query, unsorted(pageable));
+    }
+
+    @Override
+    public long count(String query) {
+        return bookRepository.countFullText(query);
+    }
+
+    private static Pageable unsorted(Pageable pageable) {
+        return pageable.isPaged()
+                ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize())
+                : Pageable.unpaged();
+    }
+}
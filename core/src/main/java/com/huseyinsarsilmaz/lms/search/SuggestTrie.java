@@ -0,0 +1,364 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+// Radix trie from normalized keys to suggestion terms, answering "the most popular terms under this prefix".
+// Edge labels are not copied: a node's label is [start, end) of any key below it, offsets being depths, so
+// splitting and merging only move offsets. Nodes holding more than HEAVY_SIZE keys keep the top MAX_RESULTS
+// terms of their subtree, recomputed along the changed path on every write, so a lookup is one walk down the
+// prefix plus either a cached list or a scan of at most HEAVY_SIZE keys. Not thread safe.
+final class SuggestTrie {
+
+    static final int MAX_RESULTS = 20;
+    private static final int HEAVY_SIZE = 64;
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Term[] NO_TERMS = new Term[0];
+
+    // Object header, fields and the slot in the parent's children array, compressed references assumed
+    private static final int NODE_BYTES = 48;
+    private static final int TERM_BYTES = 40;
+
+    // Most popular first, then the shorter key, so "dune" comes before "dune messiah" on a tie
+    static final Comparator<Term> RANKING = Comparator.comparingLong((Term term) -> term.score).reversed()
+            .thenComparingInt(term -> term.keys[0].length())
+            .thenComparing(term -> term.keys[0])
+            .thenComparing(term -> term.kind);
+
+    // A suggestion reachable through one or more keys, for example a title with and without its leading article
+    static final class Term {
+        final String text;
+        final Book.SearchType kind;
+        final String[] keys;
+        long score;
+        int references;
+
+        Term(String text, Book.SearchType kind, String[] keys) {
+            this.text = text;
+            this.kind = kind;
+            this.keys = keys;
+        }
+    }
+
+    private static final class Node {
+        private final String source;
+        private int start;
+        private final int end;
+        private Node[] children = NO_CHILDREN;
+        private Term[] terms = NO_TERMS;
+        private int size;
+        private Term[] top;
+
+        private Node(String source, int start, int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        private char first() {
+            return source.charAt(start);
+        }
+    }
+
+    private final Node root = new Node("", 0, 0);
+    private int nodeCount = 1;
+    private int heavyCount;
+    private int termCount;
+    private long textBytes;
+    // Set while loading in bulk, the tops are then computed once by finishBulk
+    private boolean bulk;
+
+    int termCount() {
+        return termCount;
+    }
+
+    long memoryBytes() {
+        return (long) nodeCount * NODE_BYTES
+                + (long) heavyCount * (16 + 4L * MAX_RESULTS)
+                + (long) termCount * TERM_BYTES
+                + textBytes;
+    }
+
+    void startBulk() {
+        bulk = true;
+    }
+
+    void finishBulk() {
+        bulk = false;
+        recomputeAll(root);
+    }
+
+    void add(Term term) {
+        termCount++;
+        textBytes += 40 + term.text.length();
+        for (String key : term.keys) {
+            textBytes += 40 + key.length();
+            insert(key, term);
+        }
+    }
+
+    void remove(Term term) {
+        termCount--;
+        textBytes -= 40 + term.text.length();
+        for (String key : term.keys) {
+            textBytes -= 40 + key.length();
+            delete(key, term);
+        }
+    }
+
+    // The term's score changed, the tops above each of its keys may have to reorder
+    void updated(Term term) {
+        if (bulk) {
+            return;
+        }
+        for (String key : term.keys) {
+            List<Node> path = new ArrayList<>();
+            if (find(key, path) != null) {
+                recompute(path);
+            }
+        }
+    }
+
+    // Up to limit terms having a key that starts with prefix, best ranked first
+    List<Term> top(String prefix, int limit) {
+        Node node = root;
+        int depth = 0;
+
+        while (depth < prefix.length()) {
+            Node child = child(node, prefix.charAt(depth));
+            if (child == null) {
+                return List.of();
+            }
+            int stop = Math.min(child.end, prefix.length());
+            for (int i = depth; i < stop; i++) {
+                if (child.source.charAt(i) != prefix.charAt(i)) {
+                    return List.of();
+                }
+            }
+            node = child;
+            depth = stop;
+        }
+
+        Term[] best = node.top != null ? node.top : select(collect(node, new ArrayList<>()));
+        return Arrays.asList(best).subList(0, Math.min(limit, best.length));
+    }
+
+    private void insert(String key, Term term) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int depth = 0;
+        path.add(node);
+
+        while (depth < key.length()) {
+            int index = childIndex(node, key.charAt(depth));
+            if (index < 0) {
+                Node leaf = new Node(key, depth, key.length());
+                nodeCount++;
+                node.children = insertAt(node.children, -index - 1, leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+
+            Node child = node.children[index];
+            int match = depth;
+            while (match < child.end && match < key.length() && child.source.charAt(match) == key.charAt(match)) {
+                match++;
+            }
+            if (match < child.end) {
+                // The key leaves the label halfway, the shared part becomes a node of its own
+                Node split = new Node(child.source, child.start, match);
+                nodeCount++;
+                split.children = new Node[] { child };
+                split.size = child.size;
+                child.start = match;
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            depth = match;
+            path.add(node);
+        }
+
+        node.terms = Arrays.copyOf(node.terms, node.terms.length + 1);
+        node.terms[node.terms.length - 1] = term;
+        for (Node onPath : path) {
+            onPath.size++;
+        }
+        recompute(path);
+    }
+
+    private void delete(String key, Term term) {
+        List<Node> path = new ArrayList<>();
+        Node node = find(key, path);
+        if (node == null) {
+            return;
+        }
+
+        int position = -1;
+        for (int i = 0; i < node.terms.length; i++) {
+            if (node.terms[i] == term) {
+                position = i;
+                break;
+            }
+        }
+        if (position < 0) {
+            return;
+        }
+        node.terms = node.terms.length == 1 ? NO_TERMS : removeAt(node.terms, position);
+        for (Node onPath : path) {
+            onPath.size--;
+        }
+
+        // Drop the nodes left empty and fold a node with a single child into it
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node current = path.get(i);
+            Node parent = path.get(i - 1);
+            if (current.terms.length > 0 || current.children.length > 1) {
+                continue;
+            }
+
+            int index = childIndex(parent, current.first());
+            if (current.children.length == 0) {
+                parent.children = parent.children.length == 1 ? NO_CHILDREN : removeAt(parent.children, index);
+            } else {
+                Node only = current.children[0];
+                only.start = current.start;
+                parent.children[index] = only;
+            }
+            nodeCount--;
+            if (current.top != null) {
+                heavyCount--;
+            }
+            path.set(i, null);
+        }
+        path.removeIf(onPath -> onPath == null);
+        recompute(path);
+    }
+
+    // The node the key ends at, with the nodes walked through in path, or null when the key is not stored
+    private Node find(String key, List<Node> path) {
+        Node node = root;
+        int depth = 0;
+        path.add(node);
+
+        while (depth < key.length()) {
+            Node child = child(node, key.charAt(depth));
+            if (child == null || child.end > key.length()
+                    || !key.regionMatches(depth, child.source, depth, child.end - depth)) {
+                return null;
+            }
+            node = child;
+            depth = child.end;
+            path.add(node);
+        }
+        return node;
+    }
+
+    // Bottom up, so every node sees the fresh tops of its children
+    private void recompute(List<Node> path) {
+        if (bulk) {
+            return;
+        }
+        for (int i = path.size() - 1; i >= 0; i--) {
+            recomputeTop(path.get(i));
+        }
+    }
+
+    private void recomputeAll(Node node) {
+        for (Node child : node.children) {
+            recomputeAll(child);
+        }
+        recomputeTop(node);
+    }
+
+    // The best of a subtree are among the best of its children, so a heavy node only merges their tops
+    private void recomputeTop(Node node) {
+        if (node.size <= HEAVY_SIZE) {
+            if (node.top != null) {
+                heavyCount--;
+                node.top = null;
+            }
+            return;
+        }
+
+        List<Term> candidates = new ArrayList<>(node.terms.length + node.children.length * MAX_RESULTS);
+        candidates.addAll(Arrays.asList(node.terms));
+        for (Node child : node.children) {
+            if (child.top != null) {
+                candidates.addAll(Arrays.asList(child.top));
+            } else {
+                collect(child, candidates);
+            }
+        }
+
+        if (node.top == null) {
+            heavyCount++;
+        }
+        node.top = select(candidates);
+    }
+
+    private static List<Term> collect(Node node, List<Term> into) {
+        into.addAll(Arrays.asList(node.terms));
+        for (Node child : node.children) {
+            collect(child, into);
+        }
+        return into;
+    }
+
+    // A term reached through two keys of the same subtree appears twice, the ranking puts the copies side by side
+    private static Term[] select(List<Term> candidates) {
+        candidates.sort(RANKING);
+        List<Term> best = new ArrayList<>(Math.min(candidates.size(), MAX_RESULTS));
+        for (Term candidate : candidates) {
+            if (best.size() == MAX_RESULTS) {
+                break;
+            }
+            if (best.isEmpty() || best.get(best.size() - 1) != candidate) {
+                best.add(candidate);
+            }
+        }
+        return best.toArray(Term[]::new);
+    }
+
+    private static Node child(Node node, char first) {
+        int index = childIndex(node, first);
+        return index < 0 ? null : node.children[index];
+    }
+
+    // Children are sorted by the first character of their label, binary search like Arrays.binarySearch
+    private static int childIndex(Node node, char first) {
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char candidate = node.children[middle].first();
+            if (candidate < first) {
+                low = middle + 1;
+            } else if (candidate > first) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static <T> T[] insertAt(T[] array, int index, T value) {
+        T[] grown = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, index, grown, index + 1, array.length - index);
+        grown[index] = value;
+        return grown;
+    }
+
+    private static <T> T[] removeAt(T[] array, int index) {
+        T[] shrunk = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, shrunk, index, array.length - index - 1);
+        return shrunk;
+    }
+}
@@ -0,0 +1,34 @@
+package com.huseyinsarsilmaz.lms.security;
+
+import java.util.List;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.huseyinsarsilmaz.lms.model.entity.User;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+// Principal built from token claims alone, the full User is only loaded when a handler asks for it
+@Getter
+@RequiredArgsConstructor
+public class AuthenticatedUser implements AuthenticatedPrincipal {
+
+    private final long id;
+    private final String email;
+    private final int roleMask;
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return RoleAuthorities.of(roleMask);
+    }
+
+    public boolean hasRole(User.Role role) {
+        return (roleMask & role.bit()) != 0;
+    }
+}
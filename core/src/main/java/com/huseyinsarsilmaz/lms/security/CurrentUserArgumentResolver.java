@@ -11,6 +11,7 @@ import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.method.support.ModelAndViewContainer;
 
 import com.huseyinsarsilmaz.lms.exception.NotFoundException;
+import com.huseyinsarsilmaz.lms.model.entity.User;
 import com.huseyinsarsilmaz.lms.service.UserService;
 
 @Component
@@ -29,13 +30,19 @@ public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolve
             @NonNull org.springframework.web.context.request.NativeWebRequest webRequest,
             @Nullable org.springframework.web.bind.support.WebDataBinderFactory binderFactory) throws Exception {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = (authentication != null) ? authentication.getName() : null;
 
-        if (username == null) {
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser principal)) {
             throw new NotFoundException("User", "email (it's empty)");
+        }
 
+        // Only handlers that really need the entity pay for loading it
+        if (User.class.isAssignableFrom(parameter.getParameterType())) {
+            return userService.getById(principal.getId());
+        }
+        if (VerifiedToken.class.isAssignableFrom(parameter.getParameterType())) {
+            return authentication.getCredentials();
         }
 
-        return userService.getByEmail(username);
+        return principal;
     }
 }
@@ -1,28 +1,24 @@
 package com.huseyinsarsilmaz.lms.security;
 
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.huseyinsarsilmaz.lms.model.entity.User;
 
+import lombok.Getter;
+
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class CustomUserDetails implements UserDetails {
 
-    private final String username;
-    private final String password;
+    @Getter
+    private final User user;
     private final List<GrantedAuthority> authorities;
 
     public CustomUserDetails(User user) {
-        this.username = user.getEmail();
-        this.password = user.getPassword();
-        this.authorities = Stream.of(user.getRoles().split(","))
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+        this.user = user;
+        this.authorities = RoleAuthorities.of(user.getRoleMask());
     }
 
     @Override
@@ -32,12 +28,12 @@ public class CustomUserDetails implements UserDetails {
 
     @Override
     public String getPassword() {
-        return password;
+        return user.getPassword();
     }
 
     @Override
     public String getUsername() {
-        return username;
+        return user.getEmail();
     }
 
-}
\ No newline at end of file
+}
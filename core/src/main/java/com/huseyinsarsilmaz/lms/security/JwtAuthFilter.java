@@ -8,9 +8,9 @@ import lombok.RequiredArgsConstructor;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.CredentialsExpiredException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -25,33 +25,37 @@ import java.io.IOException;
 public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final UserAuthService userAuthService;
+    private final SecurityVersionRegistry securityVersionRegistry;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
             @NonNull FilterChain filterChain)
             throws ServletException, IOException {
         String authHeader = request.getHeader("Authorization");
-        String token = null;
-        String email = null;
+        VerifiedToken verifiedToken = null;
         try {
 
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                token = authHeader.substring(7);
-                email = jwtService.extractEmail(token);
+                verifiedToken = jwtService.verify(authHeader.substring(7));
             }
 
-            if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userAuthService.loadUserByUsername(email);
-
-                if (jwtService.validateToken(token, userDetails)) {
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities());
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+            if (verifiedToken != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                if (!securityVersionRegistry.isCurrent(verifiedToken.userId(), verifiedToken.securityVersion())) {
+                    throw new CredentialsExpiredException("Token is no longer valid");
+                }
+                if (tokenRevocationRegistry.isRevoked(verifiedToken.tokenId())) {
+                    throw new CredentialsExpiredException("Token is revoked");
                 }
+
+                AuthenticatedUser principal = new AuthenticatedUser(verifiedToken.userId(), verifiedToken.subject(),
+                        verifiedToken.roleMask());
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        principal,
+                        verifiedToken,
+                        principal.getAuthorities());
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
 
             filterChain.doFilter(request, response);
@@ -1,75 +1,108 @@
 package com.huseyinsarsilmaz.lms.security;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
-
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
-import java.security.Key;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Function;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.huseyinsarsilmaz.lms.model.entity.User;
+import com.huseyinsarsilmaz.lms.util.Base64Url;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 
 @Component
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    public String secret;
+    private static final long EXPIRATION_SECONDS = 60 * 60;
+    private static final int TOKEN_ID_BYTES = 16;
+    private static final SecureRandom RANDOM = new SecureRandom();
 
-    public String generateToken(String email) {
-        Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, email);
-    }
+    private final JwtCodec codec;
+    // Null when caching is disabled (max size 0)
+    private final Cache<String, VerifiedToken> verifiedTokens;
 
-    private String createToken(Map<String, Object> claims, String email) {
-        return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(email)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60))
-                .signWith(getSignKey(), SignatureAlgorithm.HS256)
-                .compact();
+    public JwtService(@Value("${jwt.secret}") String secret,
+            @Value("${jwt.cache.max-size:10000}") long cacheMaxSize) {
+        this.codec = new JwtCodec(Base64.getDecoder().decode(secret));
+        this.verifiedTokens = cacheMaxSize > 0 ? buildCache(cacheMaxSize) : null;
     }
 
-    private Key getSignKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
+    private static Cache<String, VerifiedToken> buildCache(long maxSize) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String token, VerifiedToken verified, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), verified.expiresAt()).toNanos());
+                    }
 
-    public String extractEmail(String token) {
-        return extractClaim(token, Claims::getSubject);
-    }
+                    @Override
+                    public long expireAfterUpdate(String token, VerifiedToken verified, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(token, verified, currentTime);
+                    }
 
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+                    @Override
+                    public long expireAfterRead(String token, VerifiedToken verified, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    public String generateToken(User user) {
+        long now = Instant.now().getEpochSecond();
+        return codec.encode(new JwtCodec.Claims(
+                user.getEmail(),
+                user.getId(),
+                user.getRoleMask(),
+                user.getSecurityVersion(),
+                now,
+                now + EXPIRATION_SECONDS,
+                newTokenId()));
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private static String newTokenId() {
+        byte[] bytes = new byte[TOKEN_ID_BYTES];
+        RANDOM.nextBytes(bytes);
+        return Base64Url.encodeToString(bytes);
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public VerifiedToken verify(String token) {
+        if (verifiedTokens == null) {
+            return parse(token);
+        }
+
+        VerifiedToken verified = verifiedTokens.get(token, this::parse);
+        // Cache expiry is approximate, an entry can outlive its token for a short moment
+        if (verified.isExpiredAt(Instant.now())) {
+            verifiedTokens.invalidate(token);
+            return parse(token);
+        }
+
+        return verified;
     }
 
-    public Boolean validateToken(String token, UserDetails userDetails) {
-        final String email = extractEmail(token);
-        return (email.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    private VerifiedToken parse(String token) {
+        JwtCodec.Claims claims = codec.decode(token);
+        Instant expiresAt = Instant.ofEpochSecond(claims.expiresAt());
+        if (!expiresAt.isAfter(Instant.now())) {
+            throw new InvalidTokenException("Token is expired");
+        }
+
+        return new VerifiedToken(
+                claims.subject(),
+                claims.userId(),
+                claims.roleMask(),
+                claims.securityVersion(),
+                Instant.ofEpochSecond(claims.issuedAt()),
+                expiresAt,
+                claims.tokenId());
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,149 @@
+package com.huseyinsarsilmaz.lms.security;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.huseyinsarsilmaz.lms.model.dto.response.LmsApiResponse;
+import com.huseyinsarsilmaz.lms.util.LmsResponseBuilder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Runs before JwtAuthFilter so rejected clients never reach token checks, BCrypt or the connection pool.
+// Clients with a valid token are limited per user id, everything else (including login and register) per IP.
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    enum RouteClass {
+        AUTH, READ, WRITE
+    }
+
+    private record Limit(int capacity, double tokensPerSecond) {
+    }
+
+    private record ClientKey(RouteClass routeClass, String client) {
+    }
+
+    private final boolean enabled;
+    private final JwtService jwtService;
+    private final LmsResponseBuilder responseBuilder;
+    private final ObjectMapper objectMapper;
+    private final Map<RouteClass, Limit> limits = new EnumMap<>(RouteClass.class);
+    private final Map<RouteClass, Counter> rejections = new EnumMap<>(RouteClass.class);
+    // Caffeine keeps its entries in a striped ConcurrentHashMap, idle clients are dropped after idle-ttl
+    private final Cache<ClientKey, TokenBucket> buckets;
+
+    public RateLimitFilter(JwtService jwtService, LmsResponseBuilder responseBuilder, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${rate-limit.enabled:true}") boolean enabled,
+            @Value("${rate-limit.auth.capacity:10}") int authCapacity,
+            @Value("${rate-limit.auth.tokens-per-second:0.2}") double authRate,
+            @Value("${rate-limit.read.capacity:100}") int readCapacity,
+            @Value("${rate-limit.read.tokens-per-second:50}") double readRate,
+            @Value("${rate-limit.write.capacity:30}") int writeCapacity,
+            @Value("${rate-limit.write.tokens-per-second:10}") double writeRate,
+            @Value("${rate-limit.max-clients:100000}") long maxClients,
+            @Value("${rate-limit.idle-ttl:10m}") Duration idleTtl) {
+        this.enabled = enabled;
+        this.jwtService = jwtService;
+        this.responseBuilder = responseBuilder;
+        this.objectMapper = objectMapper;
+
+        limits.put(RouteClass.AUTH, new Limit(authCapacity, authRate));
+        limits.put(RouteClass.READ, new Limit(readCapacity, readRate));
+        limits.put(RouteClass.WRITE, new Limit(writeCapacity, writeRate));
+        for (RouteClass routeClass : RouteClass.values()) {
+            rejections.put(routeClass, Counter.builder("lms.ratelimit.rejected")
+                    .description("Requests rejected with 429 by the rate limiter")
+                    .tag("route", routeClass.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+
+        this.buckets = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(idleTtl)
+                .recordStats()
+                .<ClientKey, TokenBucket>build(), "lms.ratelimit.buckets");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain) throws ServletException, IOException {
+        RouteClass routeClass = classify(request);
+        ClientKey key = new ClientKey(routeClass, resolveClient(request, routeClass));
+        long now = System.nanoTime();
+
+        Limit limit = limits.get(routeClass);
+        long waitNanos = buckets.get(key, k -> new TokenBucket(limit.capacity(), limit.tokensPerSecond(), now))
+                .tryTake(now);
+        if (waitNanos > 0) {
+            rejections.get(routeClass).increment();
+            reject(response, waitNanos);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    static RouteClass classify(HttpServletRequest request) {
+        String path = request.getServletPath();
+        if ("/auth/login".equals(path) || "/auth/register".equals(path)) {
+            return RouteClass.AUTH;
+        }
+
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method)
+                ? RouteClass.READ
+                : RouteClass.WRITE;
+    }
+
+    private String resolveClient(HttpServletRequest request, RouteClass routeClass) {
+        String authHeader = request.getHeader("Authorization");
+        if (routeClass != RouteClass.AUTH && authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                // Cached by JwtService, so JwtAuthFilter does not pay for the signature check again
+                return "user:" + jwtService.verify(authHeader.substring(7)).userId();
+            } catch (RuntimeException ex) {
+                // JwtAuthFilter rejects the token, until then the request counts against its IP
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        // Rounded up, a client retrying after this many seconds always finds a token
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        ResponseEntity<LmsApiResponse<String>> body = responseBuilder.fail("too.many.requests",
+                new String[] { String.valueOf(retryAfterSeconds) }, null, HttpStatus.TOO_MANY_REQUESTS);
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(objectMapper.writeValueAsString(body.getBody()));
+    }
+}
@@ -0,0 +1,49 @@
+package com.huseyinsarsilmaz.lms.security;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.huseyinsarsilmaz.lms.repository.UserRepository;
+
+// In memory view of users.security_version, tokens carrying an older version are rejected
+@Component
+public class SecurityVersionRegistry {
+
+    // Stored for deleted users so that none of their tokens can match
+    private static final long NO_USER = -1L;
+
+    private final LoadingCache<Long, Long> versions;
+
+    public SecurityVersionRegistry(UserRepository userRepository,
+            @Value("${jwt.version-cache.max-size:100000}") long maxSize,
+            @Value("${jwt.version-cache.ttl:60s}") Duration ttl) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build(userId -> userRepository.findSecurityVersionById(userId).orElse(NO_USER));
+    }
+
+    public boolean isCurrent(long userId, long securityVersion) {
+        return versions.get(userId) == securityVersion;
+    }
+
+    public void evict(long userId) {
+        versions.invalidate(userId);
+
+        // A request between the eviction and the commit could reload the old version
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    versions.invalidate(userId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.huseyinsarsilmaz.lms.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock free token bucket in its GCRA form: the whole state is the time the bucket will be full again,
+// so taking a token is a single compare and set. Capacity tokens can be taken at once, then one per interval.
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    // Nanotime at which every token taken so far has been refilled
+    private final AtomicLong fullAt;
+
+    public TokenBucket(int capacity, double tokensPerSecond, long nowNanos) {
+        if (capacity < 1 || tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("A token bucket needs a positive capacity and refill rate");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / tokensPerSecond));
+        this.burstNanos = intervalNanos * capacity;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    // Returns 0 when a token was taken, otherwise the nanoseconds until one is available
+    public long tryTake(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, nowNanos) + intervalNanos;
+            long debt = next - nowNanos;
+            if (debt > burstNanos) {
+                return debt - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
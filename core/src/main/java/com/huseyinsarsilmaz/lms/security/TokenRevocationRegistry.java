@@ -0,0 +1,118 @@
+package com.huseyinsarsilmaz.lms.security;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.huseyinsarsilmaz.lms.model.entity.RevokedToken;
+import com.huseyinsarsilmaz.lms.repository.RevokedTokenRepository;
+import com.huseyinsarsilmaz.lms.util.BloomFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+
+// In memory view of revoked_tokens. The Bloom filter answers almost every lookup on its own, the exact set is
+// only consulted when the filter reports a hit. Both are rebuilt from the table on a fixed delay, which also
+// drops tokens that have expired in the meantime and picks up revocations made by other instances.
+@Slf4j
+@Component
+public class TokenRevocationRegistry {
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final long expectedTokens;
+    private final double falsePositiveRate;
+
+    // Revocations made by this instance, merged into every rebuild so a refresh racing a revoke cannot lose it
+    private final Map<String, Instant> localRevocations = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(BloomFilter filter, Set<String> tokenIds) {
+
+        private void add(String tokenId) {
+            tokenIds.add(tokenId);
+            filter.put(tokenId);
+        }
+    }
+
+    public TokenRevocationRegistry(RevokedTokenRepository revokedTokenRepository, MeterRegistry meterRegistry,
+            @Value("${jwt.revocation.expected-tokens:10000}") long expectedTokens,
+            @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.snapshot = newSnapshot(0);
+
+        meterRegistry.gauge("lms.auth.revoked.tokens", this, registry -> registry.snapshot.tokenIds().size());
+    }
+
+    @PostConstruct
+    public void load() {
+        rebuild(Instant.now());
+    }
+
+    // Tokens issued before the jti claim carry no id and can only be cut off through the security version
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+
+        Snapshot current = snapshot;
+        return current.filter().mightContain(tokenId) && current.tokenIds().contains(tokenId);
+    }
+
+    public void revoke(VerifiedToken token) {
+        if (token.tokenId() == null || isRevoked(token.tokenId())) {
+            return;
+        }
+
+        localRevocations.put(token.tokenId(), token.expiresAt());
+        snapshot.add(token.tokenId());
+
+        try {
+            revokedTokenRepository.saveAndFlush(RevokedToken.builder()
+                    .tokenId(token.tokenId())
+                    .expiresAt(token.expiresAt())
+                    .build());
+        } catch (DataIntegrityViolationException ex) {
+            // Revoked concurrently through another instance, the row is already there
+            log.debug("Token {} was already revoked", token.tokenId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval-ms:30000}")
+    @Transactional
+    public void refresh() {
+        Instant now = Instant.now();
+        int pruned = revokedTokenRepository.deleteExpired(now);
+        if (pruned > 0) {
+            log.debug("Pruned {} expired revoked tokens", pruned);
+        }
+
+        rebuild(now);
+    }
+
+    private void rebuild(Instant now) {
+        localRevocations.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+        List<String> tokenIds = revokedTokenRepository.findTokenIdsExpiringAfter(now);
+
+        Snapshot rebuilt = newSnapshot(tokenIds.size() + localRevocations.size());
+        tokenIds.forEach(rebuilt::add);
+        localRevocations.keySet().forEach(rebuilt::add);
+        snapshot = rebuilt;
+    }
+
+    // Twice the current count leaves room for the revocations arriving before the next rebuild
+    private Snapshot newSnapshot(long size) {
+        return new Snapshot(new BloomFilter(Math.max(expectedTokens, size * 2), falsePositiveRate),
+                ConcurrentHashMap.newKeySet());
+    }
+}
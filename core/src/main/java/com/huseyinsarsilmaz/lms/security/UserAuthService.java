@@ -18,9 +18,9 @@ public class UserAuthService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        User user = userService.getByEmail(email);
+        User user = userService.getByEmailForAuthentication(email);
 
         return new CustomUserDetails(user);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package com.huseyinsarsilmaz.lms.security;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+
+// Claims of a token whose signature and expiry have already been checked
+public record VerifiedToken(
+        String subject,
+        long userId,
+        int roleMask,
+        long securityVersion,
+        Instant issuedAt,
+        Instant expiresAt,
+        String tokenId) {
+
+    public List<GrantedAuthority> authorities() {
+        return RoleAuthorities.of(roleMask);
+    }
+
+    public boolean isExpiredAt(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
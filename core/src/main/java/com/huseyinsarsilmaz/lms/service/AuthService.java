@@ -1,8 +1,11 @@
 package com.huseyinsarsilmaz.lms.service;
 
 import com.huseyinsarsilmaz.lms.model.dto.request.LoginRequest;
+import com.huseyinsarsilmaz.lms.security.VerifiedToken;
 
 public interface AuthService {
 
     public String authenticateAndGenerateToken(LoginRequest request);
+
+    public void logout(VerifiedToken token);
 }
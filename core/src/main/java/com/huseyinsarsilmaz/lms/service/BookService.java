@@ -1,16 +1,28 @@
 package com.huseyinsarsilmaz.lms.service;
 
+import java.io.InputStream;
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import com.huseyinsarsilmaz.lms.catalog.BookImportFormat;
 import com.huseyinsarsilmaz.lms.model.dto.request.BookCreateRequest;
+import com.huseyinsarsilmaz.lms.model.dto.request.BookSearchRequest;
 import com.huseyinsarsilmaz.lms.model.dto.request.BookUpdateRequest;
+import com.huseyinsarsilmaz.lms.model.dto.response.BookImportReport;
+import com.huseyinsarsilmaz.lms.model.dto.response.BookSuggestion;
+import com.huseyinsarsilmaz.lms.model.dto.response.CountResponse;
 import com.huseyinsarsilmaz.lms.model.entity.Book;
+import com.huseyinsarsilmaz.lms.util.PageCursor;
 
 public interface BookService {
 
     public Book create(BookCreateRequest req);
 
+    public BookImportReport importBooks(InputStream body, BookImportFormat format);
+
     public void isIsbnTaken(String isbn);
 
     public Book getById(long id);
@@ -21,7 +33,19 @@ public interface BookService {
 
     public Page<Book> searchBooks(Book.SearchType searchType, String query, Pageable pageable);
 
+    public Page<Book> searchBooks(BookSearchRequest req, Pageable pageable);
+
+    public Slice<Book> searchBooksSlice(Book.SearchType searchType, String query, Pageable pageable);
+
+    public CountResponse countBooks(Book.SearchType searchType, String query);
+
+    public List<Book> searchBooksAfter(Book.SearchType searchType, String query, PageCursor cursor, int size);
+
+    public List<BookSuggestion> suggest(String query, int limit);
+
     public Book updateAvailability(Book book, boolean newAvailability);
 
+    public Book claimForBorrowing(long id);
+
     public void checkAvailability(Book book);
 }
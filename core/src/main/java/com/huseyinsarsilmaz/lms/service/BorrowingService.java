@@ -1,13 +1,19 @@
 package com.huseyinsarsilmaz.lms.service;
 
+import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import com.huseyinsarsilmaz.lms.job.OverdueReportExporter;
+import com.huseyinsarsilmaz.lms.job.ReportFormat;
 import com.huseyinsarsilmaz.lms.model.dto.request.BorrowRequest;
-import com.huseyinsarsilmaz.lms.model.dto.response.BorrowingDetailed;
+import com.huseyinsarsilmaz.lms.model.dto.response.CountResponse;
+import com.huseyinsarsilmaz.lms.model.dto.response.ReportExport;
 import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lms.model.entity.User;
+import com.huseyinsarsilmaz.lms.util.PageCursor;
 
 public interface BorrowingService {
 
@@ -15,7 +21,7 @@ public interface BorrowingService {
 
     public Borrowing getById(long id);
 
-    public void checkOwnership(User user, Borrowing borrowing);
+    public void checkOwnership(long userId, Borrowing borrowing);
 
     public void checkReturnable(Borrowing borrowing);
 
@@ -28,6 +34,24 @@ public interface BorrowingService {
 
     public Page<Borrowing> getAllOverdue(Pageable pageable);
 
+    public Slice<Borrowing> getSliceByBorrowerId(long borrowerId, Pageable pageable);
+
+    public Slice<Borrowing> getOverdueSliceByBorrowerId(long borrowerId, Pageable pageable);
+
+    public Slice<Borrowing> getAllOverdueSlice(Pageable pageable);
+
+    public CountResponse countByBorrowerId(long borrowerId);
+
+    public CountResponse countOverdueByBorrowerId(long borrowerId);
+
+    public CountResponse countAllOverdue();
+
+    public List<Borrowing> getByBorrowerIdAfter(long borrowerId, PageCursor cursor, int size);
+
+    public List<Borrowing> getOverdueByBorrowerIdAfter(long borrowerId, PageCursor cursor, int size);
+
+    public List<Borrowing> getAllOverdueAfter(PageCursor cursor, int size);
+
     public void checkBorrowableByBorrowerId(Long borrowerId);
 
     public void checkUserHasActiveBorrowings(User user);
@@ -38,6 +62,10 @@ public interface BorrowingService {
 
     public void checkExcusable(Borrowing borrowing);
 
-    public void printOverdueReport(Page<BorrowingDetailed> page);
+    public ReportExport startOverdueReportExport(ReportFormat format, Long borrowerId);
+
+    public ReportExport getOverdueReportExport(String id);
+
+    public OverdueReportExporter.ExportFile getOverdueReportExportFile(String id);
 
 }
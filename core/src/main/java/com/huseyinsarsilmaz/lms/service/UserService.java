@@ -3,7 +3,9 @@ package com.huseyinsarsilmaz.lms.service;
 import com.huseyinsarsilmaz.lms.model.dto.request.PasswordUpdateRequest;
 import com.huseyinsarsilmaz.lms.model.dto.request.RegisterRequest;
 import com.huseyinsarsilmaz.lms.model.dto.request.UserUpdateRequest;
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lms.model.entity.User;
+import com.huseyinsarsilmaz.lms.security.AuthenticatedUser;
 
 public interface UserService {
 
@@ -13,16 +15,22 @@ public interface UserService {
 
     public User getByEmail(String email);
 
+    public User getByEmailForAuthentication(String email);
+
     public User getById(long id);
 
     public User promote(User user, User.Role newRole);
 
     public void checkHasRole(User user, User.Role requiredRole);
 
+    public void checkHasRole(AuthenticatedUser user, User.Role requiredRole);
+
     public User update(User user, UserUpdateRequest req);
 
     public User updatePassword(User user, PasswordUpdateRequest req);
 
+    public User rehashPassword(User user, String encodedPassword);
+
     public void delete(User user);
 
     public void checkActiveById(Long userId);
@@ -30,4 +38,12 @@ public interface UserService {
     public void checkDeactivated(User user);
 
     public User changeActive(User user, boolean newActive);
+
+    public void updateBorrowingCounts(long userId, Borrowing.Status from, Borrowing.Status to, long borrowings);
+
+    public long getActiveBorrowingCount(long userId);
+
+    public long getOverdueBorrowingCount(long userId);
+
+    public long getReturnedOverdueBorrowingCount(long userId);
 }
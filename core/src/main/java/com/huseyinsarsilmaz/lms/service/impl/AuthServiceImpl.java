@@ -2,25 +2,57 @@ package com.huseyinsarsilmaz.lms.service.impl;
 
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import com.huseyinsarsilmaz.lms.model.dto.request.LoginRequest;
+import com.huseyinsarsilmaz.lms.model.entity.User;
+import com.huseyinsarsilmaz.lms.security.CustomUserDetails;
 import com.huseyinsarsilmaz.lms.security.JwtService;
+import com.huseyinsarsilmaz.lms.security.TokenRevocationRegistry;
+import com.huseyinsarsilmaz.lms.security.VerifiedToken;
 import com.huseyinsarsilmaz.lms.service.AuthService;
+import com.huseyinsarsilmaz.lms.service.UserService;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
 
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    private final PasswordEncoder passwordEncoder;
+    private final UserService userService;
 
     public String authenticateAndGenerateToken(LoginRequest request) {
-        authenticationManager.authenticate(
+        Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword()));
+        User user = ((CustomUserDetails) authentication.getPrincipal()).getUser();
+        rehashIfNeeded(user, request.getPassword());
 
-        return jwtService.generateToken(request.getEmail());
+        return jwtService.generateToken(user);
+    }
+
+    // Moves hashes made with a lower BCrypt cost to the configured one. The password has already matched, so a
+    // busy hasher or a failed save only leaves the upgrade to a later login
+    private void rehashIfNeeded(User user, String rawPassword) {
+        if (!passwordEncoder.upgradeEncoding(user.getPassword())) {
+            return;
+        }
+
+        try {
+            userService.rehashPassword(user, passwordEncoder.encode(rawPassword));
+        } catch (RuntimeException ex) {
+            log.warn("Password hash of user {} could not be upgraded", user.getEmail(), ex);
+        }
+    }
+
+    public void logout(VerifiedToken token) {
+        tokenRevocationRegistry.revoke(token);
     }
 }
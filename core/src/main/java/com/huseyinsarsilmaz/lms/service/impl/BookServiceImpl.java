@@ -1,18 +1,49 @@
 package com.huseyinsarsilmaz.lms.service.impl;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
+import com.huseyinsarsilmaz.lms.catalog.BookImportFormat;
+import com.huseyinsarsilmaz.lms.catalog.BookImporter;
 import com.huseyinsarsilmaz.lms.exception.AlreadyExistsException;
+import com.huseyinsarsilmaz.lms.exception.CursorNotSupportedException;
+import com.huseyinsarsilmaz.lms.exception.InvalidIsbnException;
 import com.huseyinsarsilmaz.lms.exception.NotAvailableException;
 import com.huseyinsarsilmaz.lms.exception.NotFoundException;
 import com.huseyinsarsilmaz.lms.model.dto.request.BookCreateRequest;
+import com.huseyinsarsilmaz.lms.model.dto.request.BookSearchRequest;
 import com.huseyinsarsilmaz.lms.model.dto.request.BookUpdateRequest;
+import com.huseyinsarsilmaz.lms.model.dto.response.BookImportReport;
+import com.huseyinsarsilmaz.lms.model.dto.response.BookSuggestion;
+import com.huseyinsarsilmaz.lms.model.dto.response.CountResponse;
 import com.huseyinsarsilmaz.lms.model.entity.Book;
 import com.huseyinsarsilmaz.lms.model.mapper.BookMapper;
 import com.huseyinsarsilmaz.lms.repository.BookRepository;
+import com.huseyinsarsilmaz.lms.search.BookCriteriaSearch;
+import com.huseyinsarsilmaz.lms.search.BookFullTextSearch;
+import com.huseyinsarsilmaz.lms.search.BookIsbnFilter;
+import com.huseyinsarsilmaz.lms.search.BookSearchIndex;
+import com.huseyinsarsilmaz.lms.search.BookSuggestIndex;
 import com.huseyinsarsilmaz.lms.service.BookService;
+import com.huseyinsarsilmaz.lms.util.BookCache;
+import com.huseyinsarsilmaz.lms.util.CountCache;
+import com.huseyinsarsilmaz.lms.util.IsbnParser;
+import com.huseyinsarsilmaz.lms.util.PageCursor;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -23,65 +54,230 @@ public class BookServiceImpl implements BookService {
 
     private final BookRepository bookRepository;
     private final BookMapper bookMapper;
+    private final BookFullTextSearch bookFullTextSearch;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookCriteriaSearch bookCriteriaSearch;
+    private final BookSuggestIndex bookSuggestIndex;
+    private final BookIsbnFilter bookIsbnFilter;
+    private final BookImporter bookImporter;
+    private final BookCache bookCache;
+    private final CountCache countCache;
+
+    private static String toCanonicalIsbn(String rawIsbn) {
+        String isbn = IsbnParser.canonicalize(rawIsbn);
+        if (isbn == null) {
+            throw new InvalidIsbnException();
+        }
+        return isbn;
+    }
 
-    private String convertToCompactIsbn(String rawIsbn) {
-        return rawIsbn.trim().toUpperCase().replaceAll("[^0-9X]", "");
+    // The unique index on isbn settles requests that claim the same ISBN at the same time
+    private static RuntimeException translateIsbnConflict(DataIntegrityViolationException ex) {
+        String message = ex.getMostSpecificCause().getMessage();
+        if (message != null && message.toLowerCase(Locale.ROOT).contains(Book.ISBN_INDEX)) {
+            return new AlreadyExistsException("Book", "isbn");
+        }
+        return ex;
     }
 
     public Book create(BookCreateRequest req) {
-        String compactIsbn = convertToCompactIsbn(req.getIsbn());
-        isIsbnTaken(compactIsbn);
-        req.setIsbn(compactIsbn);
-        return bookRepository.save(bookMapper.toEntity(req));
+        String isbn = toCanonicalIsbn(req.getIsbn());
+        isIsbnTaken(isbn);
+        req.setIsbn(isbn);
+
+        Book book;
+        try {
+            book = bookRepository.save(bookMapper.toEntity(req));
+        } catch (DataIntegrityViolationException ex) {
+            throw translateIsbnConflict(ex);
+        }
+        bookIsbnFilter.add(isbn);
+        bookSearchIndex.index(book);
+        bookSuggestIndex.index(book);
+        return book;
+    }
+
+    // Not transactional, every batch of the import commits on its own
+    public BookImportReport importBooks(InputStream body, BookImportFormat format) {
+        return bookImporter.importBooks(body, format);
     }
 
+    // Most new ISBNs are ruled out by the filter without a query
     public void isIsbnTaken(String isbn) {
-        if (bookRepository.findByIsbn(isbn).isPresent()) {
+        String canonical = toCanonicalIsbn(isbn);
+        if (bookIsbnFilter.mightExist(canonical) && bookRepository.existsByIsbn(canonical)) {
             throw new AlreadyExistsException("Book", "isbn");
         }
     }
 
     public Book getById(long id) {
-        return bookRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException("Book", "id"));
+        return bookCache.get(id, () -> bookRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Book", "id")));
     }
 
     @Transactional
     public Book update(Book book, BookUpdateRequest req) {
-        req.setIsbn(convertToCompactIsbn(req.getIsbn()));
+        req.setIsbn(toCanonicalIsbn(req.getIsbn()));
         bookMapper.updateEntity(book, req);
-        return bookRepository.save(book);
+        bookCache.evict(book.getId());
+
+        Book updated;
+        try {
+            updated = bookRepository.saveAndFlush(book);
+        } catch (DataIntegrityViolationException ex) {
+            throw translateIsbnConflict(ex);
+        }
+        bookIsbnFilter.add(updated.getIsbn());
+        bookSearchIndex.index(updated);
+        bookSuggestIndex.index(updated);
+        return updated;
     }
 
     @Transactional
     public void delete(Book book) {
         bookRepository.delete(book);
+        bookCache.evict(book.getId());
+        bookSearchIndex.remove(book.getId());
+        bookSuggestIndex.remove(book.getId());
     }
 
     public Page<Book> searchBooks(Book.SearchType searchType, String query, Pageable pageable) {
 
         return switch (searchType) {
-            case TITLE -> bookRepository.findByTitleContainingIgnoreCase(query, pageable);
-            case AUTHOR -> bookRepository.findByAuthorContainingIgnoreCase(query, pageable);
-            case ISBN -> bookRepository.findByIsbnContainingIgnoreCase(convertToCompactIsbn(query), pageable);
+            case TITLE -> searchIndexed(BookSearchIndex.Field.TITLE, query, pageable)
+                    .orElseGet(() -> bookRepository.findByTitleContainingIgnoreCase(query, pageable));
+            case AUTHOR -> searchIndexed(BookSearchIndex.Field.AUTHOR, query, pageable)
+                    .orElseGet(() -> bookRepository.findByAuthorContainingIgnoreCase(query, pageable));
+            case ISBN -> {
+                String compactIsbn = IsbnParser.compact(query);
+                yield searchIndexed(BookSearchIndex.Field.ISBN, compactIsbn, pageable)
+                        .orElseGet(() -> bookRepository.findByIsbnContainingIgnoreCase(compactIsbn, pageable));
+            }
+            case GENRE -> bookRepository.findByGenre(parseGenre(query), pageable);
+            case FULL_TEXT -> bookFullTextSearch.search(query, pageable);
+        };
+    }
+
+    public Page<Book> searchBooks(BookSearchRequest req, Pageable pageable) {
+        return bookCriteriaSearch.search(req, pageable);
+    }
+
+    public Slice<Book> searchBooksSlice(Book.SearchType searchType, String query, Pageable pageable) {
+
+        return switch (searchType) {
+            // The index totals come from memory, its pages are kept as they are
+            case TITLE -> searchIndexed(BookSearchIndex.Field.TITLE, query, pageable)
+                    .<Slice<Book>>map(Function.identity())
+                    .orElseGet(() -> bookRepository.findSliceByTitleContainingIgnoreCase(query, pageable));
+            case AUTHOR -> searchIndexed(BookSearchIndex.Field.AUTHOR, query, pageable)
+                    .<Slice<Book>>map(Function.identity())
+                    .orElseGet(() -> bookRepository.findSliceByAuthorContainingIgnoreCase(query, pageable));
+            case ISBN -> {
+                String compactIsbn = IsbnParser.compact(query);
+                yield searchIndexed(BookSearchIndex.Field.ISBN, compactIsbn, pageable)
+                        .<Slice<Book>>map(Function.identity())
+                        .orElseGet(() -> bookRepository.findSliceByIsbnContainingIgnoreCase(compactIsbn, pageable));
+            }
+            case GENRE -> bookRepository.findSliceByGenre(parseGenre(query), pageable);
+            case FULL_TEXT -> bookFullTextSearch.searchSlice(query, pageable);
+        };
+    }
+
+    public CountResponse countBooks(Book.SearchType searchType, String query) {
+
+        return switch (searchType) {
+            case TITLE -> countCache.get("books:title:" + query.toLowerCase(), () -> bookSearchIndex
+                    .count(BookSearchIndex.Field.TITLE, query)
+                    .orElseGet(() -> bookRepository.countByTitleContainingIgnoreCase(query)));
+            case AUTHOR -> countCache.get("books:author:" + query.toLowerCase(), () -> bookSearchIndex
+                    .count(BookSearchIndex.Field.AUTHOR, query)
+                    .orElseGet(() -> bookRepository.countByAuthorContainingIgnoreCase(query)));
+            case ISBN -> {
+                String compactIsbn = IsbnParser.compact(query);
+                yield countCache.get("books:isbn:" + compactIsbn, () -> bookSearchIndex
+                        .count(BookSearchIndex.Field.ISBN, compactIsbn)
+                        .orElseGet(() -> bookRepository.countByIsbnContainingIgnoreCase(compactIsbn)));
+            }
             case GENRE -> {
-                Book.Genre genre;
-                try {
-                    genre = Book.Genre.valueOf(query.toUpperCase().replace('-', '_'));
-                } catch (IllegalArgumentException e) {
-                    throw new NotFoundException("Genre", "name");
-                }
-                yield bookRepository.findByGenre(genre, pageable);
+                Book.Genre genre = parseGenre(query);
+                yield countCache.get("books:genre:" + genre, () -> bookRepository.countByGenre(genre));
             }
+            case FULL_TEXT -> countCache.get("books:full-text:" + query, () -> bookFullTextSearch.count(query));
+        };
+    }
+
+    // Falls back to a title prefix query, without popularity, until the suggestion index is ready
+    public List<BookSuggestion> suggest(String query, int limit) {
+        int clamped = Math.max(1, Math.min(limit, BookSuggestIndex.MAX_RESULTS));
+
+        return bookSuggestIndex.suggest(query, clamped)
+                .orElseGet(() -> bookRepository.findByTitleStartingWithIgnoreCaseOrderByTitle(query.trim(), Limit.of(clamped))
+                        .stream()
+                        .map(book -> new BookSuggestion(book.getTitle(), Book.SearchType.TITLE, 0))
+                        .toList());
+    }
+
+    // size + 1 rows ordered by (title, id) after the cursor, the extra row tells whether there is a next page
+    public List<Book> searchBooksAfter(Book.SearchType searchType, String query, PageCursor cursor, int size) {
+        String title = cursor.key();
+        long id = cursor.id();
+        Limit limit = Limit.of(size + 1);
+
+        return switch (searchType) {
+            case TITLE -> bookRepository.findByTitleContainingAfter(query, title, id, limit);
+            case AUTHOR -> bookRepository.findByAuthorContainingAfter(query, title, id, limit);
+            case ISBN -> bookRepository.findByIsbnContainingAfter(IsbnParser.compact(query), title, id, limit);
+            case GENRE -> bookRepository.findByGenreAfter(parseGenre(query), title, id, limit);
+            // Results are ranked by relevance, which gives no stable key to continue from
+            case FULL_TEXT -> throw new CursorNotSupportedException("full text search");
         };
     }
 
+    private Book.Genre parseGenre(String query) {
+        try {
+            return Book.Genre.valueOf(query.toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new NotFoundException("Genre", "name");
+        }
+    }
+
+    // Loads the page of ids the index matched in one query, keeping the index order
+    private Optional<Page<Book>> searchIndexed(BookSearchIndex.Field field, String query, Pageable pageable) {
+        return bookSearchIndex.search(field, query, pageable).map(ids -> {
+            Map<Long, Book> books = bookRepository.findAllById(ids.getContent()).stream()
+                    .collect(Collectors.toMap(Book::getId, Function.identity()));
+            // A book deleted since the index answered is left out of the page
+            List<Book> content = ids.getContent().stream().map(books::get).filter(Objects::nonNull).toList();
+            return new PageImpl<>(content, pageable, ids.getTotalElements());
+        });
+    }
+
     @Transactional
     public Book updateAvailability(Book book, boolean newAvailability) {
         if (!book.getIsAvailable().equals(newAvailability)) {
             book.setIsAvailable(newAvailability);
-            return bookRepository.save(book);
+            bookCache.evict(book.getId());
+            Book updated = bookRepository.save(book);
+            bookSearchIndex.index(updated);
+            return updated;
+        }
+        return book;
+    }
+
+    // Borrowing reads and flips is_available in the database, the cached copy can be stale when another node
+    // lent or returned the book
+    @Transactional
+    public Book claimForBorrowing(long id) {
+        if (bookRepository.markUnavailableIfAvailable(id, LocalDateTime.now()) == 0) {
+            if (!bookRepository.existsById(id)) {
+                throw new NotFoundException("Book", "id");
+            }
+            throw new NotAvailableException("Book");
         }
+
+        bookCache.evict(id);
+        Book book = bookRepository.findById(id).orElseThrow(() -> new NotFoundException("Book", "id"));
+        bookSearchIndex.index(book);
         return book;
     }
 
@@ -1,11 +1,14 @@
 package com.huseyinsarsilmaz.lms.service.impl;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -16,16 +19,26 @@ import com.huseyinsarsilmaz.lms.exception.ForbiddenException;
 import com.huseyinsarsilmaz.lms.exception.HasActiveBorrowingsException;
 import com.huseyinsarsilmaz.lms.exception.NotFoundException;
 import com.huseyinsarsilmaz.lms.exception.OverdueException;
+import com.huseyinsarsilmaz.lms.job.BorrowingCountReconciler;
+import com.huseyinsarsilmaz.lms.job.JobLockService;
+import com.huseyinsarsilmaz.lms.job.OverdueBorrowingMarker;
+import com.huseyinsarsilmaz.lms.job.OverdueEngine;
+import com.huseyinsarsilmaz.lms.job.OverdueReportExporter;
+import com.huseyinsarsilmaz.lms.job.ReportFormat;
 import com.huseyinsarsilmaz.lms.model.dto.request.BorrowRequest;
-import com.huseyinsarsilmaz.lms.model.dto.response.BorrowingDetailed;
+import com.huseyinsarsilmaz.lms.model.dto.response.CountResponse;
+import com.huseyinsarsilmaz.lms.model.dto.response.ReportExport;
 import com.huseyinsarsilmaz.lms.model.entity.Book;
 import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lms.model.entity.User;
 import com.huseyinsarsilmaz.lms.model.entity.Borrowing.Status;
 import com.huseyinsarsilmaz.lms.repository.BorrowingRepository;
+import com.huseyinsarsilmaz.lms.search.BookSuggestIndex;
 import com.huseyinsarsilmaz.lms.service.BookService;
 import com.huseyinsarsilmaz.lms.service.BorrowingService;
 import com.huseyinsarsilmaz.lms.service.UserService;
+import com.huseyinsarsilmaz.lms.util.CountCache;
+import com.huseyinsarsilmaz.lms.util.PageCursor;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -38,10 +51,22 @@ public class BorrowingServiceImpl implements BorrowingService {
     private final BorrowingRepository borrowingRepository;
     private final UserService userService;
     private final BookService bookService;
+    private final CountCache countCache;
+    private final BookSuggestIndex bookSuggestIndex;
+    private final OverdueBorrowingMarker overdueBorrowingMarker;
+    private final OverdueEngine overdueEngine;
+    private final JobLockService jobLockService;
+    private final OverdueReportExporter overdueReportExporter;
+    private final BorrowingCountReconciler borrowingCountReconciler;
 
     private static final List<Borrowing.Status> ACTIVE_BORROWING_STATUSES = List
             .of(Borrowing.Status.BORROWED, Borrowing.Status.OVERDUE);
 
+    private static final String MARK_OVERDUE_JOB = "mark-overdue-borrowings";
+    private static final Duration MARK_OVERDUE_LEASE = Duration.ofHours(1);
+    private static final String RECONCILE_COUNTS_JOB = "reconcile-borrowing-counts";
+    private static final Duration RECONCILE_COUNTS_LEASE = Duration.ofHours(1);
+
     private void updateBorrowingStatus(Borrowing borrowing, LocalDate now) {
         if (borrowing.getDueDate().isBefore(now)) {
             borrowing.setStatus(Borrowing.Status.RETURNED_OVERDUE);
@@ -52,14 +77,15 @@ public class BorrowingServiceImpl implements BorrowingService {
 
     private void handleOverdueStatus(Borrowing borrowing) {
         if (borrowing.getStatus() == Borrowing.Status.RETURNED_OVERDUE) {
-            long overdueCount = borrowingRepository.countByBorrowerIdAndStatus(borrowing.getBorrower().getId(),
-                    Borrowing.Status.RETURNED_OVERDUE);
-            if (overdueCount >= 2) {
+            // The counters already include this return, users are deactivated on their third overdue return
+            long overdueCount = userService.getReturnedOverdueBorrowingCount(borrowing.getBorrower().getId());
+            if (overdueCount > 2) {
                 userService.changeActive(borrowing.getBorrower(), false);
             }
         }
     }
 
+    @Transactional
     public Borrowing create(BorrowRequest req) {
         boolean alreadyBorrowed = borrowingRepository.existsByBorrowerIdAndBookIdAndStatusIn(
                 req.getBorrowerId(),
@@ -71,10 +97,7 @@ public class BorrowingServiceImpl implements BorrowingService {
         }
 
         User borrower = userService.getById(req.getBorrowerId());
-        Book book = bookService.getById(req.getBookId());
-
-        bookService.checkAvailability(book);
-        book = bookService.updateAvailability(book, false);
+        Book book = bookService.claimForBorrowing(req.getBookId());
 
         Borrowing newBorrowing = Borrowing.builder()
                 .borrower(borrower)
@@ -85,7 +108,11 @@ public class BorrowingServiceImpl implements BorrowingService {
                 .status(Borrowing.Status.BORROWED)
                 .build();
 
-        return borrowingRepository.save(newBorrowing);
+        Borrowing saved = borrowingRepository.save(newBorrowing);
+        userService.updateBorrowingCounts(borrower.getId(), null, Borrowing.Status.BORROWED, 1);
+        bookSuggestIndex.recordBorrow(book.getId());
+        overdueEngine.register(saved);
+        return saved;
 
     }
 
@@ -98,8 +125,8 @@ public class BorrowingServiceImpl implements BorrowingService {
         return optBorrowing.get();
     }
 
-    public void checkOwnership(User user, Borrowing borrowing) {
-        if (user.getId() != borrowing.getBorrower().getId()) {
+    public void checkOwnership(long userId, Borrowing borrowing) {
+        if (userId != borrowing.getBorrower().getId()) {
             throw new ForbiddenException();
         }
     }
@@ -115,7 +142,9 @@ public class BorrowingServiceImpl implements BorrowingService {
         LocalDate now = LocalDate.now();
         borrowing.setReturnDate(now);
 
+        Borrowing.Status previousStatus = borrowing.getStatus();
         updateBorrowingStatus(borrowing, now);
+        userService.updateBorrowingCounts(borrowing.getBorrower().getId(), previousStatus, borrowing.getStatus(), 1);
         handleOverdueStatus(borrowing);
 
         bookService.updateAvailability(borrowing.getBook(), true);
@@ -129,7 +158,7 @@ public class BorrowingServiceImpl implements BorrowingService {
     }
 
     public void checkUserHasActiveBorrowings(User user) {
-        if (borrowingRepository.countByBorrowerIdAndStatusIn(user.getId(), ACTIVE_BORROWING_STATUSES) > 0) {
+        if (userService.getActiveBorrowingCount(user.getId()) > 0) {
             throw new HasActiveBorrowingsException();
         }
     }
@@ -142,10 +171,53 @@ public class BorrowingServiceImpl implements BorrowingService {
         return borrowingRepository.findAllByStatusNotIn(ACTIVE_BORROWING_STATUSES, pageable);
     }
 
+    public Slice<Borrowing> getSliceByBorrowerId(long borrowerId, Pageable pageable) {
+        return borrowingRepository.findSliceByBorrowerIdWithBook(borrowerId, pageable);
+    }
+
+    public Slice<Borrowing> getOverdueSliceByBorrowerId(long borrowerId, Pageable pageable) {
+        return borrowingRepository.findSliceByBorrowerIdAndStatusNotIn(borrowerId, ACTIVE_BORROWING_STATUSES,
+                pageable);
+    }
+
+    public Slice<Borrowing> getAllOverdueSlice(Pageable pageable) {
+        return borrowingRepository.findSliceByStatusNotIn(ACTIVE_BORROWING_STATUSES, pageable);
+    }
+
+    public CountResponse countByBorrowerId(long borrowerId) {
+        return countCache.get("borrowings:borrower:" + borrowerId,
+                () -> borrowingRepository.countByBorrowerId(borrowerId));
+    }
+
+    public CountResponse countOverdueByBorrowerId(long borrowerId) {
+        return countCache.get("borrowings:overdue:" + borrowerId,
+                () -> borrowingRepository.countByBorrowerIdAndStatusNotIn(borrowerId, ACTIVE_BORROWING_STATUSES));
+    }
+
+    public CountResponse countAllOverdue() {
+        return countCache.get("borrowings:overdue",
+                () -> borrowingRepository.countByStatusNotIn(ACTIVE_BORROWING_STATUSES));
+    }
+
+    // The *After methods return size + 1 rows, the extra row tells whether there is a next page
+    public List<Borrowing> getByBorrowerIdAfter(long borrowerId, PageCursor cursor, int size) {
+        return borrowingRepository.findAllByBorrowerIdWithBookAfter(borrowerId, cursor.id(), Limit.of(size + 1));
+    }
+
+    public List<Borrowing> getOverdueByBorrowerIdAfter(long borrowerId, PageCursor cursor, int size) {
+        return borrowingRepository.findAllByBorrowerIdAndStatusNotInAfter(borrowerId, ACTIVE_BORROWING_STATUSES,
+                cursor.id(), Limit.of(size + 1));
+    }
+
+    public List<Borrowing> getAllOverdueAfter(PageCursor cursor, int size) {
+        return borrowingRepository.findAllByStatusNotInAfter(ACTIVE_BORROWING_STATUSES, cursor.longKey(),
+                cursor.id(), Limit.of(size + 1));
+    }
+
     public void checkBorrowableByBorrowerId(Long borrowerId) {
         userService.checkActiveById(borrowerId);
 
-        if (borrowingRepository.existsByBorrowerIdAndStatus(borrowerId, Borrowing.Status.OVERDUE)) {
+        if (userService.getOverdueBorrowingCount(borrowerId) > 0) {
             throw new OverdueException();
         }
     }
@@ -160,11 +232,15 @@ public class BorrowingServiceImpl implements BorrowingService {
         }
         log.info("The overdue borrowings of user {} is excused", user.getEmail());
         borrowingRepository.saveAll(overdueBorrowings);
+        userService.updateBorrowingCounts(user.getId(), Status.RETURNED_OVERDUE, Status.RETURNED_EXCUSED,
+                overdueBorrowings.size());
     }
 
     @Transactional
     public Borrowing excuseBorrowing(Borrowing borrowing) {
+        Status previousStatus = borrowing.getStatus();
         borrowing.setStatus(Status.RETURNED_EXCUSED);
+        userService.updateBorrowingCounts(borrowing.getBorrower().getId(), previousStatus, Status.RETURNED_EXCUSED, 1);
 
         return borrowingRepository.save(borrowing);
     }
@@ -175,42 +251,32 @@ public class BorrowingServiceImpl implements BorrowingService {
         }
     }
 
+    // Reconciles whatever the overdue engine missed, on one node. Not transactional, every chunk of the marker
+    // commits on its own.
     @Scheduled(cron = "0 0 19 * * *")
-    @Transactional
     public void markOverdueBorrowings() {
-        List<Borrowing> borrowings = borrowingRepository.findPastDueByStatus(Borrowing.Status.BORROWED,
-                LocalDate.now());
-
-        for (Borrowing borrowing : borrowings) {
-            borrowing.setStatus(Borrowing.Status.OVERDUE);
-        }
+        jobLockService.runLocked(MARK_OVERDUE_JOB, MARK_OVERDUE_LEASE, overdueBorrowingMarker::markPastDue);
+    }
 
-        borrowingRepository.saveAll(borrowings);
+    // Corrects counters that drifted from the borrowings, like after changes made by the reactive module or by hand
+    @Scheduled(cron = "0 30 3 * * *")
+    public void reconcileBorrowingCounts() {
+        jobLockService.runLocked(RECONCILE_COUNTS_JOB, RECONCILE_COUNTS_LEASE, borrowingCountReconciler::reconcile);
     }
 
-    public void printOverdueReport(Page<BorrowingDetailed> page) {
-        System.out.println("======= OVERDUE BORROWINGS REPORT =======");
-        System.out.printf("Page %d of %d | Total Elements: %d%n",
-                page.getNumber() + 1, page.getTotalPages(), page.getTotalElements());
-        System.out.println("-----------------------------------------");
+    public ReportExport startOverdueReportExport(ReportFormat format, Long borrowerId) {
+        return overdueReportExporter.start(format, borrowerId,
+                () -> borrowerId == null ? borrowingRepository.streamAllByStatusNotIn(ACTIVE_BORROWING_STATUSES)
+                        : borrowingRepository.streamByBorrowerIdAndStatusNotIn(borrowerId,
+                                ACTIVE_BORROWING_STATUSES));
+    }
 
-        if (page.isEmpty()) {
-            System.out.println("No overdue borrowings found.");
-            return;
-        }
+    public ReportExport getOverdueReportExport(String id) {
+        return overdueReportExporter.get(id);
+    }
 
-        for (BorrowingDetailed borrowing : page.getContent()) {
-            System.out.printf("ID: %d%n", borrowing.getId());
-            System.out.printf("Borrower: %s%n", borrowing.getBorrower().getName()); // Adjust according to UserSimple
-                                                                                    // fields
-            System.out.printf("Book: %s%n", borrowing.getBook().getTitle()); // Adjust according to BookSimple fields
-            System.out.printf("Borrow Date: %s%n", borrowing.getBorrowDate());
-            System.out.printf("Due Date: %s%n", borrowing.getDueDate());
-            System.out.printf("Return Date: %s%n",
-                    borrowing.getReturnDate() != null ? borrowing.getReturnDate() : "Not Returned");
-            System.out.printf("Status: %s%n", borrowing.getStatus());
-            System.out.println("-----------------------------------------");
-        }
+    public OverdueReportExporter.ExportFile getOverdueReportExportFile(String id) {
+        return overdueReportExporter.getFile(id);
     }
 
-}
\ No newline at end of file
+}
@@ -1,9 +1,8 @@
 package com.huseyinsarsilmaz.lms.service.impl;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Locale;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -17,10 +16,14 @@ import com.huseyinsarsilmaz.lms.exception.PassordNotMatchedException;
 import com.huseyinsarsilmaz.lms.model.dto.request.PasswordUpdateRequest;
 import com.huseyinsarsilmaz.lms.model.dto.request.RegisterRequest;
 import com.huseyinsarsilmaz.lms.model.dto.request.UserUpdateRequest;
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lms.model.entity.User;
 import com.huseyinsarsilmaz.lms.model.mapper.UserMapper;
 import com.huseyinsarsilmaz.lms.repository.UserRepository;
+import com.huseyinsarsilmaz.lms.security.AuthenticatedUser;
+import com.huseyinsarsilmaz.lms.security.SecurityVersionRegistry;
 import com.huseyinsarsilmaz.lms.service.UserService;
+import com.huseyinsarsilmaz.lms.util.UserCache;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -33,66 +36,109 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final UserMapper userMapper;
+    private final SecurityVersionRegistry securityVersionRegistry;
+    private final UserCache userCache;
     private static final String SECRET_ADMIN_CODE = "aHN5bnNhcnNpbG1heg==";
 
-    private static final String ADMIN_ROLE = "ROLE_ADMIN,ROLE_LIBRARIAN,ROLE_PATRON";
+    private static final int ADMIN_ROLES = User.Role.maskOf(User.Role.ROLE_ADMIN, User.Role.ROLE_LIBRARIAN,
+            User.Role.ROLE_PATRON);
 
-    private Set<String> parseRoles(String rolesCsv) {
-        return new HashSet<>(Arrays.asList(rolesCsv.split(",")));
+    // Invalidates every token issued to the user before this change
+    private void bumpSecurityVersion(User user) {
+        user.setSecurityVersion(user.getSecurityVersion() + 1);
+        securityVersionRegistry.evict(user.getId());
+    }
+
+    private User saveAndEvict(User user) {
+        userCache.evict(user);
+        return userRepository.save(user);
+    }
+
+    // The unique index on normalized_email settles requests that claim the same email at the same time
+    private static RuntimeException translateEmailConflict(DataIntegrityViolationException ex) {
+        String message = ex.getMostSpecificCause().getMessage();
+        if (message != null && message.toLowerCase(Locale.ROOT).contains(User.NORMALIZED_EMAIL_INDEX)) {
+            return new AlreadyExistsException(User.class.getSimpleName(), "email");
+        }
+        return ex;
     }
 
     public void isEmailTaken(String email) {
-        if (userRepository.findByEmail(email).isPresent()) {
+        if (userRepository.existsByNormalizedEmail(User.normalizeEmail(email))) {
             throw new AlreadyExistsException(User.class.getSimpleName(), "email");
         }
     }
 
     public User register(RegisterRequest req) {
+        // Fast path that spares hashing the password, the unique index below is what actually guards the email
         isEmailTaken(req.getEmail());
         User user = userMapper.toEntity(req);
         user.setPassword(passwordEncoder.encode(req.getPassword()));
         if (req.getSecretCode() != null) {
-            if (!SECRET_ADMIN_CODE.equals(req.getSecretCode()) || userRepository.findByRoles(ADMIN_ROLE).isPresent()) {
+            if (!SECRET_ADMIN_CODE.equals(req.getSecretCode()) || userRepository.existsByRoleMask(ADMIN_ROLES)) {
                 throw new ForbiddenException();
             }
-            user.setRoles(ADMIN_ROLE);
+            user.setRoleMask(ADMIN_ROLES);
         } else {
-            user.setRoles(User.Role.ROLE_PATRON.name());
+            user.setRoleMask(User.Role.ROLE_PATRON.bit());
+        }
+
+        try {
+            user = userRepository.save(user);
+        } catch (DataIntegrityViolationException ex) {
+            throw translateEmailConflict(ex);
         }
 
         log.info("A new user registered into system: " + user.getEmail());
-        return userRepository.save(user);
+        return user;
     }
 
     public User getByEmail(String email) {
-        return userRepository.findByEmail(email)
-                .orElseThrow(() -> new NotFoundException("User", "email"));
+        return userCache.getByEmail(email).orElseGet(() -> {
+            User user = userRepository.findByNormalizedEmail(User.normalizeEmail(email))
+                    .orElseThrow(() -> new NotFoundException("User", "email"));
+            userCache.put(user);
+            return user;
+        });
     }
 
+    // Login checks the password hash and the active flag, which another node can change without evicting here
+    public User getByEmailForAuthentication(String email) {
+        User user = userRepository.findByNormalizedEmail(User.normalizeEmail(email))
+                .orElseThrow(() -> new NotFoundException("User", "email"));
+        userCache.put(user);
+        return user;
+    }
 
     public User getById(long id) {
-        return userRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException("User", "id"));
+        return userCache.getById(id).orElseGet(() -> {
+            User user = userRepository.findById(id)
+                    .orElseThrow(() -> new NotFoundException("User", "id"));
+            userCache.put(user);
+            return user;
+        });
     }
 
     @Transactional
     public User promote(User user, User.Role newRole) {
-        Set<String> roles = parseRoles(user.getRoles());
-        if (newRole == User.Role.ROLE_ADMIN || newRole == User.Role.ROLE_PATRON || roles.contains(newRole.name())) {
+        if (newRole == User.Role.ROLE_ADMIN || newRole == User.Role.ROLE_PATRON || user.hasRole(newRole)) {
             throw new UserPromotionException();
         }
 
-        roles.add(newRole.name());
-
-        user.setRoles(String.join(",", roles));
+        user.addRole(newRole);
+        bumpSecurityVersion(user);
         log.info("User {} is promoted", user.getEmail());
-        return userRepository.save(user);
+        return saveAndEvict(user);
     }
 
     public void checkHasRole(User user, User.Role requiredRole) {
-        Set<String> roles = parseRoles(user.getRoles());
+        if (!user.hasRole(requiredRole)) {
+            throw new ForbiddenException();
+        }
+    }
 
-        if (!roles.contains(requiredRole.name())) {
+    public void checkHasRole(AuthenticatedUser user, User.Role requiredRole) {
+        if (!user.hasRole(requiredRole)) {
             throw new ForbiddenException();
         }
     }
@@ -101,12 +147,20 @@ public class UserServiceImpl implements UserService {
     public User update(User user, UserUpdateRequest req) {
         userMapper.updateEntity(user, req);
 
-        return userRepository.save(user);
+        try {
+            User updated = saveAndEvict(user);
+            userRepository.flush();
+            return updated;
+        } catch (DataIntegrityViolationException ex) {
+            throw translateEmailConflict(ex);
+        }
     }
 
     @Transactional
     public void delete(User user) {
         userRepository.delete(user);
+        userCache.evict(user);
+        securityVersionRegistry.evict(user.getId());
     }
 
     public void checkActiveById(Long userId) {
@@ -118,7 +172,41 @@ public class UserServiceImpl implements UserService {
     @Transactional
     public User changeActive(User user, boolean newActive) {
         user.setIsActive(newActive);
-        return userRepository.save(user);
+        bumpSecurityVersion(user);
+        return saveAndEvict(user);
+    }
+
+    // Moves borrowings of the user from one status to another in its counters, from is null for new borrowings.
+    // Must run in the transaction that changes the borrowings.
+    public void updateBorrowingCounts(long userId, Borrowing.Status from, Borrowing.Status to, long borrowings) {
+        long active = borrowings * (isActive(to) - isActive(from));
+        long overdue = borrowings * (is(to, Borrowing.Status.OVERDUE) - is(from, Borrowing.Status.OVERDUE));
+        long returnedOverdue = borrowings
+                * (is(to, Borrowing.Status.RETURNED_OVERDUE) - is(from, Borrowing.Status.RETURNED_OVERDUE));
+
+        if (active != 0 || overdue != 0 || returnedOverdue != 0) {
+            userRepository.addBorrowingCounts(userId, active, overdue, returnedOverdue);
+        }
+    }
+
+    private static int isActive(Borrowing.Status status) {
+        return is(status, Borrowing.Status.BORROWED) + is(status, Borrowing.Status.OVERDUE);
+    }
+
+    private static int is(Borrowing.Status status, Borrowing.Status counted) {
+        return status == counted ? 1 : 0;
+    }
+
+    public long getActiveBorrowingCount(long userId) {
+        return userRepository.findActiveBorrowingsById(userId).orElse(0L);
+    }
+
+    public long getOverdueBorrowingCount(long userId) {
+        return userRepository.findOverdueBorrowingsById(userId).orElse(0L);
+    }
+
+    public long getReturnedOverdueBorrowingCount(long userId) {
+        return userRepository.findReturnedOverdueBorrowingsById(userId).orElse(0L);
     }
 
     public void checkDeactivated(User user) {
@@ -134,6 +222,15 @@ public class UserServiceImpl implements UserService {
         }
 
         user.setPassword(passwordEncoder.encode(req.getNewPassword()));
-        return userRepository.save(user);
+        bumpSecurityVersion(user);
+        return saveAndEvict(user);
+    }
+
+    // Same password under a stronger hash, so issued tokens stay valid
+    @Transactional
+    public User rehashPassword(User user, String encodedPassword) {
+        user.setPassword(encodedPassword);
+        log.info("Password hash of user {} is upgraded", user.getEmail());
+        return saveAndEvict(user);
     }
 }
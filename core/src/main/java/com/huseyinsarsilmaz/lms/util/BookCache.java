@@ -0,0 +1,90 @@
+package com.huseyinsarsilmaz.lms.util;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Bounded read-through cache of books by id. Every change made through BookService evicts the book, once right
+// away and again when its transaction completes. Loads run inside the cache, so an eviction that arrives while the
+// old row is being loaded waits for the load and then removes it instead of leaving it cached.
+// Books changed by another application sharing the database stay cached until the ttl expires.
+@Component
+public class BookCache {
+
+    // Null when the cache is disabled (max size 0)
+    private final Cache<Long, Book> booksById;
+    private final Timer hits;
+    private final Timer misses;
+
+    public BookCache(MeterRegistry meterRegistry,
+            @Value("${book.cache.max-size:10000}") long maxSize,
+            @Value("${book.cache.ttl:10m}") Duration ttl) {
+        if (maxSize > 0) {
+            this.booksById = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(ttl)
+                    .recordStats()
+                    .<Long, Book>build(), "books.by-id");
+        } else {
+            this.booksById = null;
+        }
+
+        String description = "Book lookups by id, answered by the cache or loaded from the database";
+        this.hits = Timer.builder("lms.books.lookup").description(description)
+                .tag("result", "hit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.misses = Timer.builder("lms.books.lookup").description(description)
+                .tag("result", "miss")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    // A copy of the cached book, loaded and cached first when missing. Exceptions of the loader are not cached.
+    public Book get(long id, Supplier<Book> loader) {
+        long start = System.nanoTime();
+        if (booksById == null) {
+            Book book = loader.get();
+            misses.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return book;
+        }
+
+        boolean[] loaded = { false };
+        Book cached = booksById.get(id, key -> {
+            loaded[0] = true;
+            return loader.get().copy();
+        });
+        (loaded[0] ? misses : hits).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return cached.copy();
+    }
+
+    public void evict(long id) {
+        if (booksById == null) {
+            return;
+        }
+        booksById.invalidate(id);
+
+        // A lookup between the eviction and the commit could cache the old row again
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    booksById.invalidate(id);
+                }
+            });
+        }
+    }
+}
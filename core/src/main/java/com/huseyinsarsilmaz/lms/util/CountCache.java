@@ -0,0 +1,46 @@
+package com.huseyinsarsilmaz.lms.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.huseyinsarsilmaz.lms.model.dto.response.CountResponse;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Totals for the count endpoints. Entries are not evicted on writes, a count is only refreshed once it
+// is older than the ttl, so repeated page loads of the same listing share one COUNT query.
+@Component
+public class CountCache {
+
+    // Null when caching is disabled (max size 0)
+    private final Cache<String, CountResponse> counts;
+
+    public CountCache(MeterRegistry meterRegistry,
+            @Value("${pagination.count-cache.max-size:10000}") long maxSize,
+            @Value("${pagination.count-cache.ttl:1m}") Duration ttl) {
+        if (maxSize > 0) {
+            this.counts = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(ttl)
+                    .recordStats()
+                    .<String, CountResponse>build(), "pagination.counts");
+        } else {
+            this.counts = null;
+        }
+    }
+
+    public CountResponse get(String key, LongSupplier counter) {
+        if (counts == null) {
+            return new CountResponse(counter.getAsLong(), Instant.now());
+        }
+
+        return counts.get(key, k -> new CountResponse(counter.getAsLong(), Instant.now()));
+    }
+}
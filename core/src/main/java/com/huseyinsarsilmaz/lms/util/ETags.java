@@ -0,0 +1,83 @@
+package com.huseyinsarsilmaz.lms.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
+import com.huseyinsarsilmaz.lms.model.entity.LmsEntity;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+// Conditional GETs answered from the loaded entities, before they are mapped or serialized. Strong tags are built
+// from the ids and updatedAt of everything a response shows, so any change to it changes the tag. Handlers return
+// null when the client's copy is current and Spring answers 304 without a body.
+public final class ETags {
+
+    // Responses are per user and must be revalidated before every reuse
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ETags() {
+    }
+
+    // Honors If-None-Match and, without it, If-Modified-Since against the entity's updatedAt
+    public static boolean notModified(ServletWebRequest request, LmsEntity entity) {
+        setCacheControl(request);
+        String etag = "\"" + entity.getId() + "-" + micros(entity.getUpdatedAt()) + "\"";
+        return request.checkNotModified(etag, lastModified(entity.getUpdatedAt()));
+    }
+
+    // A page of borrowings as shown with their books and borrowers. values holds whatever else the response carries,
+    // like the total of a page or whether a slice has a next one. Only If-None-Match is honored, a list can change
+    // without any of its rows getting newer.
+    public static boolean notModified(ServletWebRequest request, List<Borrowing> borrowings, long... values) {
+        setCacheControl(request);
+        long hash = FNV_OFFSET;
+        for (long value : values) {
+            hash = mix(hash, value);
+        }
+        for (Borrowing borrowing : borrowings) {
+            hash = mix(hash, borrowing);
+            hash = mix(hash, borrowing.getBook());
+            hash = mix(hash, borrowing.getBorrower());
+        }
+        return request.checkNotModified("\"" + Long.toHexString(hash) + "\"");
+    }
+
+    private static void setCacheControl(ServletWebRequest request) {
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        }
+    }
+
+    // Microseconds, the precision the database keeps, so a reloaded entity has the same tag
+    private static long micros(LocalDateTime time) {
+        return time == null ? 0 : time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    // updatedAt is written in the server's zone by LmsEntity
+    private static long lastModified(LocalDateTime time) {
+        return time == null ? -1 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static long mix(long hash, LmsEntity entity) {
+        return mix(mix(hash, entity.getId()), micros(entity.getUpdatedAt()));
+    }
+
+    // FNV-1a over the eight bytes of the value
+    private static long mix(long hash, long value) {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            hash ^= (value >>> shift) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,126 @@
+package com.huseyinsarsilmaz.lms.util;
+
+// ISBN-10 and ISBN-13 parsing in one pass over the characters, without regexes or intermediate strings.
+// Hyphens and single spaces may separate the digits, the check digit is verified and ISBN-10s are mapped to
+// their 978 ISBN-13, so every way of writing a book's ISBN has the same canonical form.
+public final class IsbnParser {
+
+    public static final long INVALID = -1;
+
+    // 9, 7 and 8 under the ISBN-13 weights 1, 3, 1
+    private static final int PREFIX_978_SUM = 9 + 7 * 3 + 8;
+    private static final long PREFIX_978 = 978_000_000_000L;
+
+    private IsbnParser() {
+    }
+
+    // The 13 digits of the canonical ISBN-13 as a number, or INVALID
+    public static long parse(CharSequence value) {
+        if (value == null) {
+            return INVALID;
+        }
+
+        int start = 0;
+        int end = value.length();
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+
+        long digits = 0;
+        int count = 0;
+        // ISBN-10 weighted sum, and the sum of its first nine digits under the ISBN-13 weights they get after 978
+        int sum10 = 0;
+        int sum13 = 0;
+        int bodySum13 = 0;
+        boolean checkX = false;
+        boolean separator = true;
+
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (count == 13 || checkX) {
+                    return INVALID;
+                }
+                int digit = c - '0';
+                if (count < 10) {
+                    sum10 += (10 - count) * digit;
+                }
+                if (count < 9) {
+                    bodySum13 += (count % 2 == 0 ? 3 : 1) * digit;
+                }
+                sum13 += (count % 2 == 0 ? 1 : 3) * digit;
+                digits = digits * 10 + digit;
+                count++;
+                separator = false;
+            } else if (c == 'X' || c == 'x') {
+                // Only an ISBN-10 check digit can be X, standing for 10
+                if (count != 9) {
+                    return INVALID;
+                }
+                sum10 += 10;
+                checkX = true;
+                count++;
+                separator = false;
+            } else if ((c == '-' || c == ' ') && !separator) {
+                separator = true;
+            } else {
+                return INVALID;
+            }
+        }
+        if (separator) {
+            return INVALID;
+        }
+
+        if (count == 10) {
+            if (sum10 % 11 != 0) {
+                return INVALID;
+            }
+            long body = checkX ? digits : digits / 10;
+            int check = (10 - (PREFIX_978_SUM + bodySum13) % 10) % 10;
+            return (PREFIX_978 + body) * 10 + check;
+        }
+
+        if (count == 13) {
+            long prefix = digits / 10_000_000_000L;
+            if ((prefix != 978 && prefix != 979) || sum13 % 10 != 0) {
+                return INVALID;
+            }
+            return digits;
+        }
+
+        return INVALID;
+    }
+
+    public static boolean isValid(CharSequence value) {
+        return parse(value) != INVALID;
+    }
+
+    // The canonical ISBN-13, or null when the value is not a valid ISBN
+    public static String canonicalize(CharSequence value) {
+        long isbn = parse(value);
+        return isbn == INVALID ? null : Long.toString(isbn);
+    }
+
+    // Search form of a possibly partial ISBN: the canonical ISBN-13 when it is a whole one, otherwise its digits
+    // and X as typed, without separators
+    public static String compact(String value) {
+        long isbn = parse(value);
+        if (isbn != INVALID) {
+            return Long.toString(isbn);
+        }
+
+        StringBuilder compact = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9' || c == 'X') {
+                compact.append(c);
+            } else if (c == 'x') {
+                compact.append('X');
+            }
+        }
+        return compact.toString();
+    }
+}
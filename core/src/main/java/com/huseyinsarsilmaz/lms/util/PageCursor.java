@@ -0,0 +1,44 @@
+package com.huseyinsarsilmaz.lms.util;
+
+import java.nio.charset.StandardCharsets;
+
+import com.huseyinsarsilmaz.lms.exception.InvalidCursorException;
+
+// Position after the last row of a keyset page: its sort key and id. Clients get it as an opaque Base64URL
+// string and send it back as is, an empty cursor asks for the first page.
+public record PageCursor(String key, long id) {
+
+    public static final int MAX_SIZE = 100;
+    // Sorts before every key and id, so the first page goes through the same (key, id) > (?, ?) query
+    public static final PageCursor FIRST = new PageCursor("", 0);
+
+    public String encode() {
+        return Base64Url.encodeToString((id + ":" + key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return FIRST;
+        }
+
+        try {
+            String value = new String(Base64Url.decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(':');
+            return new PageCursor(value.substring(separator + 1), Long.parseLong(value.substring(0, separator)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    public long longKey() {
+        try {
+            return key.isEmpty() ? 0 : Long.parseLong(key);
+        } catch (NumberFormatException ex) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+}
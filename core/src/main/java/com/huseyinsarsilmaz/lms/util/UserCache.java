@@ -0,0 +1,156 @@
+package com.huseyinsarsilmaz.lms.util;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.huseyinsarsilmaz.lms.model.entity.User;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Two tier user lookup cache: a memo living as long as the current request and a bounded tier shared by all requests
+@Component
+public class UserCache {
+
+    private static final String REQUEST_ATTRIBUTE = UserCache.class.getName();
+
+    // Null when the shared tier is disabled (max size 0)
+    private final Cache<Long, User> usersById;
+    private final Cache<String, Long> idsByEmail;
+    private final Counter requestHits;
+
+    public UserCache(MeterRegistry meterRegistry,
+            @Value("${user.cache.max-size:10000}") long maxSize,
+            @Value("${user.cache.ttl:5m}") Duration ttl) {
+        if (maxSize > 0) {
+            this.usersById = CaffeineCacheMetrics.monitor(meterRegistry, buildCache(maxSize, ttl), "users.by-id");
+            this.idsByEmail = CaffeineCacheMetrics.monitor(meterRegistry, buildCache(maxSize, ttl), "users.by-email");
+        } else {
+            this.usersById = null;
+            this.idsByEmail = null;
+        }
+        this.requestHits = Counter.builder("users.request.hits")
+                .description("User lookups answered by the per request memo")
+                .register(meterRegistry);
+    }
+
+    private static <K, V> Cache<K, V> buildCache(long maxSize, Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .<K, V>build();
+    }
+
+    public Optional<User> getById(long id) {
+        Map<Long, User> memo = requestMemo();
+        if (memo != null && memo.containsKey(id)) {
+            requestHits.increment();
+            return Optional.of(memo.get(id));
+        }
+
+        if (usersById == null) {
+            return Optional.empty();
+        }
+
+        User cached = usersById.getIfPresent(id);
+        if (cached == null) {
+            return Optional.empty();
+        }
+
+        User user = cached.copy();
+        if (memo != null) {
+            memo.put(id, user);
+        }
+        return Optional.of(user);
+    }
+
+    public Optional<User> getByEmail(String email) {
+        if (idsByEmail == null) {
+            return Optional.empty();
+        }
+
+        String normalizedEmail = User.normalizeEmail(email);
+        Long id = idsByEmail.getIfPresent(normalizedEmail);
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        // The mapping can outlive its user entry, so it is only trusted when the emails still match
+        Optional<User> user = getById(id);
+        if (user.isPresent() && !normalizedEmail.equals(User.normalizeEmail(user.get().getEmail()))) {
+            idsByEmail.invalidate(normalizedEmail);
+            return Optional.empty();
+        }
+        return user;
+    }
+
+    public void put(User user) {
+        Map<Long, User> memo = requestMemo();
+        if (memo != null) {
+            memo.put(user.getId(), user);
+        }
+
+        if (usersById != null) {
+            usersById.put(user.getId(), user.copy());
+            idsByEmail.put(User.normalizeEmail(user.getEmail()), user.getId());
+        }
+    }
+
+    public void evict(User user) {
+        evictNow(user.getId());
+
+        // A lookup between the eviction and the commit could cache the old row again
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictNow(user.getId());
+                }
+            });
+        }
+    }
+
+    private void evictNow(long id) {
+        Map<Long, User> memo = requestMemo();
+        if (memo != null) {
+            memo.remove(id);
+        }
+
+        if (usersById != null) {
+            User cached = usersById.asMap().remove(id);
+            if (cached != null) {
+                idsByEmail.invalidate(User.normalizeEmail(cached.getEmail()));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, User> requestMemo() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            // Scheduled jobs and other non request threads only use the shared tier
+            return null;
+        }
+
+        Map<Long, User> memo = (Map<Long, User>) attributes.getAttribute(REQUEST_ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        if (memo == null) {
+            memo = new HashMap<>();
+            attributes.setAttribute(REQUEST_ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+        }
+        return memo;
+    }
+}
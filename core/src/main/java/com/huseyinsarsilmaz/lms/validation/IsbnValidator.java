@@ -6,7 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 
-import java.util.regex.Pattern;
+import com.huseyinsarsilmaz.lms.util.IsbnParser;
 
 public class IsbnValidator implements ConstraintValidator<Isbn, String> {
 
@@ -16,11 +16,6 @@ public class IsbnValidator implements ConstraintValidator<Isbn, String> {
     @Autowired
     private MessageSource messageSource;
 
-    // Matches with ISBN-10 and ISBN-13 standarts
-    // Hyphened form 978-3-16-148410-0 and compact form 9783161484100, both valid
-    private static final Pattern ISBN_PATTERN = Pattern.compile(
-            "^(?:\\d{9}[\\dX]|97[89](?:[- ]?\\d){10})$");
-
     @Override
     public void initialize(Isbn constraintAnnotation) {
         this.entityName = constraintAnnotation.entityName();
@@ -33,7 +28,9 @@ public class IsbnValidator implements ConstraintValidator<Isbn, String> {
             return true;
         }
 
-        if (!ISBN_PATTERN.matcher(value).matches()) {
+        // ISBN-10 or ISBN-13 with a matching check digit
+        // Hyphened form 978-3-16-148410-0 and compact form 9783161484100, both valid
+        if (!IsbnParser.isValid(value)) {
             context.disableDefaultConstraintViolation();
 
             String messageTemplate = messageSource.getMessage("fail.isbn", null, LocaleContextHolder.getLocale());
@@ -0,0 +1,84 @@
+package com.huseyinsarsilmaz.lms.catalog;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+import com.huseyinsarsilmaz.lms.exception.InvalidImportHeaderException;
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+public class CsvBookRowReaderTest {
+
+    private static CsvBookRowReader reader(String csv) throws IOException {
+        return new CsvBookRowReader(new StringReader(csv));
+    }
+
+    @Test
+    public void testNext_whenFieldsAreQuoted_thenCommasQuotesAndLineBreaksKept() throws IOException {
+        CsvBookRowReader rows = reader("\uFEFFTitle,Author,Description,ISBN,Publication Date,Genre\r\n"
+                + "\"Dune, Messiah\",Frank Herbert,\"He said \"\"spice\"\"\r\non two lines\",0-306-40615-2,"
+                + "1969-10-15,science-fiction\r\n");
+
+        BookRow row = rows.next();
+
+        assertEquals(2, row.line());
+        assertEquals("genre", row.invalidField());
+        assertNull(rows.next());
+    }
+
+    @Test
+    public void testNext_whenColumnsAreReordered_thenMappedByHeader() throws IOException {
+        CsvBookRowReader rows = reader("genre,isbn,publication_date,title,author,description,shelf\n"
+                + "FICTION,0-306-40615-2,1965-08-01,\"Dune\",Frank Herbert,\"Sand, \"\"spice\"\"\nand worms\",B12\n"
+                + "\n"
+                + "DRAMA,9780804429573,2001-01-01,Second,Someone,Short\n");
+
+        BookRow first = rows.next();
+        assertEquals(2, first.line());
+        assertNull(first.invalidField());
+        assertEquals("Dune", first.request().getTitle());
+        assertEquals("Sand, \"spice\"\nand worms", first.request().getDescription());
+        assertEquals("0-306-40615-2", first.request().getIsbn());
+        assertEquals(LocalDate.of(1965, 8, 1), first.request().getPublicationDate());
+        assertEquals(Book.Genre.FICTION, first.request().getGenre());
+
+        BookRow second = rows.next();
+        assertEquals(5, second.line());
+        assertEquals("Second", second.request().getTitle());
+        assertNull(rows.next());
+    }
+
+    @Test
+    public void testNext_whenDateDoesNotParse_thenInvalidRow() throws IOException {
+        CsvBookRowReader rows = reader("title,author,description,isbn,publicationDate,genre\n"
+                + "Dune,Frank Herbert,Desert planet,0-306-40615-2,01/08/1965,FICTION");
+
+        BookRow row = rows.next();
+
+        assertNull(row.request());
+        assertEquals("publication date", row.invalidField());
+    }
+
+    @Test
+    public void testNext_whenValuesAreBlank_thenNull() throws IOException {
+        CsvBookRowReader rows = reader("title,author,description,isbn,publicationDate,genre\n"
+                + " ,Frank Herbert,,0-306-40615-2,,\n");
+
+        BookRow row = rows.next();
+
+        assertNull(row.request().getTitle());
+        assertNull(row.request().getDescription());
+        assertNull(row.request().getPublicationDate());
+        assertNull(row.request().getGenre());
+    }
+
+    @Test
+    public void testConstructor_whenColumnIsMissing_thenThrows() {
+        assertThrows(InvalidImportHeaderException.class, () -> reader("title,author,isbn\n"));
+        assertThrows(InvalidImportHeaderException.class, () -> reader(""));
+    }
+}
@@ -84,7 +84,7 @@ class AuthControllerIntegrationTest {
         userRepository.save(User.builder()
                 .email(EXISTING_EMAIL)
                 .password(passwordEncoder.encode(PASSWORD))
-                .roles("ROLE_PATRON")
+                .roleMask(User.Role.ROLE_PATRON.bit())
                 .phoneNumber("1111111111")
                 .name("Exist")
                 .surname("User")
@@ -149,4 +149,25 @@ class AuthControllerIntegrationTest {
 
         assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
     }
+
+    @Test
+    void testLogout_whenTokenIsRevoked_thenUnauthorized() throws Exception {
+        ResponseEntity<String> loginResponse = restTemplate.postForEntity(baseUrl + "/login",
+                createEntity(new LoginRequest(EXISTING_EMAIL, PASSWORD)), String.class);
+        LmsApiResponse<LoginResponse> apiResponse = objectMapper.readValue(loginResponse.getBody(),
+                new TypeReference<>() {
+                });
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(apiResponse.getData().getToken());
+        HttpEntity<Void> authorized = new HttpEntity<>(headers);
+        String meUrl = "http://localhost:" + port + "/api/users/me";
+
+        assertEquals(HttpStatus.OK,
+                restTemplate.exchange(meUrl, HttpMethod.GET, authorized, String.class).getStatusCode());
+        assertEquals(HttpStatus.OK,
+                restTemplate.exchange(baseUrl + "/logout", HttpMethod.POST, authorized, String.class).getStatusCode());
+        assertEquals(HttpStatus.UNAUTHORIZED,
+                restTemplate.exchange(meUrl, HttpMethod.GET, authorized, String.class).getStatusCode());
+    }
 }
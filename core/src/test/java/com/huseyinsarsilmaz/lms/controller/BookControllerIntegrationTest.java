@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.List;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -12,12 +13,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.huseyinsarsilmaz.lms.model.dto.request.BookCreateRequest;
 import com.huseyinsarsilmaz.lms.model.dto.request.BookUpdateRequest;
 import com.huseyinsarsilmaz.lms.model.dto.response.LmsApiResponse;
+import com.huseyinsarsilmaz.lms.model.dto.response.BookImportReport;
 import com.huseyinsarsilmaz.lms.model.dto.response.BookSimple;
+import com.huseyinsarsilmaz.lms.model.dto.response.BookSuggestion;
+import com.huseyinsarsilmaz.lms.model.dto.response.PagedResponse;
 
 import com.huseyinsarsilmaz.lms.model.entity.Book;
 import com.huseyinsarsilmaz.lms.model.entity.User;
 import com.huseyinsarsilmaz.lms.repository.BookRepository;
 import com.huseyinsarsilmaz.lms.repository.UserRepository;
+import com.huseyinsarsilmaz.lms.search.BookSearchIndex;
+import com.huseyinsarsilmaz.lms.search.BookSuggestIndex;
 import com.huseyinsarsilmaz.lms.security.JwtService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -25,6 +31,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.*;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.lang.NonNull;
@@ -51,6 +58,12 @@ class BookControllerIntegrationTest {
         @Autowired
         private ObjectMapper objectMapper;
 
+        @Autowired
+        private BookSearchIndex bookSearchIndex;
+
+        @Autowired
+        private BookSuggestIndex bookSuggestIndex;
+
         private final RestTemplate restTemplate = new RestTemplate();
 
         private String baseUrl;
@@ -59,8 +72,8 @@ class BookControllerIntegrationTest {
         private User librarianUser;
         private User patronUser;
 
-        private static final String EXISTING_ISBN = "1234567890";
-        private static final String DUPLICATE_ISBN = "9783161484109";
+        private static final String EXISTING_ISBN = "9781234567897";
+        private static final String DUPLICATE_ISBN = "9780134685991";
         private static final String NON_EXISTENT_USER = "notexists@hotmail.com";
         private static final String LIBRARIAN_EMAIL = "huseyinsarsilmaz@hotmail.com";
         private static final String PATRON_EMAIL = "huseyinsarsilmaz2@hotmail.com";
@@ -75,7 +88,7 @@ class BookControllerIntegrationTest {
 
         private HttpEntity<String> createEntity(Object request, String email) {
                 HttpHeaders headers = new HttpHeaders();
-                headers.set("Authorization", "Bearer " + jwtService.generateToken(email));
+                headers.set("Authorization", "Bearer " + TestTokens.createToken(jwtService, userRepository, email));
                 headers.setContentType(MediaType.APPLICATION_JSON);
                 String json = request != null ? toJson(request) : null;
                 return new HttpEntity<>(json, headers);
@@ -101,6 +114,25 @@ class BookControllerIntegrationTest {
                                 Book.Genre.FICTION);
         }
 
+        private HttpEntity<String> createImportEntity(String body, MediaType contentType, String email) {
+                HttpHeaders headers = new HttpHeaders();
+                headers.set("Authorization", "Bearer " + TestTokens.createToken(jwtService, userRepository, email));
+                headers.setContentType(contentType);
+                return new HttpEntity<>(body, headers);
+        }
+
+        // The repository writes of setUp bypass the indexes like the writes of another node, the rebuild picks them up
+        private void refreshIndexes() throws InterruptedException {
+                long deadline = System.currentTimeMillis() + 10_000;
+                while (bookSearchIndex.search(BookSearchIndex.Field.TITLE, "code", PageRequest.of(0, 10)).isEmpty()
+                                || bookSuggestIndex.suggest("how", 10).isEmpty()) {
+                        assertTrue(System.currentTimeMillis() < deadline, "Book indexes were not built");
+                        Thread.sleep(50);
+                }
+                bookSearchIndex.rebuild();
+                bookSuggestIndex.rebuild();
+        }
+
         private ResponseEntity<String> sendRequest(String path, HttpMethod method, HttpEntity<String> entity) {
                 return restTemplate.exchange(baseUrl + path, method, entity, String.class);
         }
@@ -131,7 +163,7 @@ class BookControllerIntegrationTest {
                 librarianUser = userRepository.save(User.builder()
                                 .email(LIBRARIAN_EMAIL)
                                 .password("MTIzNDU2Nzg")
-                                .roles("ROLE_LIBRARIAN,ROLE_PATRON")
+                                .roleMask(User.Role.maskOf(User.Role.ROLE_LIBRARIAN, User.Role.ROLE_PATRON))
                                 .phoneNumber("1234567891")
                                 .name("Hüseyin")
                                 .surname("Sarsılmaz")
@@ -141,7 +173,7 @@ class BookControllerIntegrationTest {
                 patronUser = userRepository.save(User.builder()
                                 .email(PATRON_EMAIL)
                                 .password("MTIzNDU2Nzg")
-                                .roles("ROLE_PATRON")
+                                .roleMask(User.Role.ROLE_PATRON.bit())
                                 .phoneNumber("1234567892")
                                 .name("Hüseyinn")
                                 .surname("Sarsılmazz")
@@ -162,6 +194,63 @@ class BookControllerIntegrationTest {
                 assertEquals(savedBook.getTitle(), apiResponse.getData().getTitle());
         }
 
+        @Test
+        void testGetBook_whenETagMatches_thenNotModified() {
+                ResponseEntity<String> first = sendRequest("/" + savedBook.getId(), HttpMethod.GET,
+                                createEntity(null, patronUser.getEmail()));
+                String etag = first.getHeaders().getETag();
+                assertNotNull(etag);
+
+                HttpEntity<String> entity = createEntity(null, patronUser.getEmail());
+                HttpHeaders headers = new HttpHeaders();
+                headers.addAll(entity.getHeaders());
+                headers.setIfNoneMatch(etag);
+                ResponseEntity<String> response = sendRequest("/" + savedBook.getId(), HttpMethod.GET,
+                                new HttpEntity<>(null, headers));
+
+                assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+                assertNull(response.getBody());
+                assertEquals(etag, response.getHeaders().getETag());
+        }
+
+        @Test
+        void testGetBook_whenNotModifiedSinceGivenDate_thenNotModified() {
+                ResponseEntity<String> first = sendRequest("/" + savedBook.getId(), HttpMethod.GET,
+                                createEntity(null, patronUser.getEmail()));
+                long lastModified = first.getHeaders().getLastModified();
+                assertTrue(lastModified > 0);
+
+                HttpEntity<String> entity = createEntity(null, patronUser.getEmail());
+                HttpHeaders headers = new HttpHeaders();
+                headers.addAll(entity.getHeaders());
+                headers.setIfModifiedSince(lastModified);
+                ResponseEntity<String> response = sendRequest("/" + savedBook.getId(), HttpMethod.GET,
+                                new HttpEntity<>(null, headers));
+
+                assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        }
+
+        @Test
+        void testGetBook_whenBookChangedSinceETag_thenFullResponse() {
+                ResponseEntity<String> first = sendRequest("/" + savedBook.getId(), HttpMethod.GET,
+                                createEntity(null, patronUser.getEmail()));
+                String etag = first.getHeaders().getETag();
+
+                BookUpdateRequest req = createValidUpdateRequest(savedBook.getIsbn());
+                sendRequest("/" + savedBook.getId(), HttpMethod.PUT, createEntity(req, librarianUser.getEmail()));
+
+                HttpEntity<String> entity = createEntity(null, patronUser.getEmail());
+                HttpHeaders headers = new HttpHeaders();
+                headers.addAll(entity.getHeaders());
+                headers.setIfNoneMatch(etag);
+                ResponseEntity<String> response = sendRequest("/" + savedBook.getId(), HttpMethod.GET,
+                                new HttpEntity<>(null, headers));
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                assertNotEquals(etag, response.getHeaders().getETag());
+                assertTrue(response.getBody().contains(req.getTitle()));
+        }
+
         @Test
         void testGetBook_whenBookDoesNotExist() {
                 HttpEntity<String> entity = createEntity(null, patronUser.getEmail());
@@ -197,6 +286,30 @@ class BookControllerIntegrationTest {
                 assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
         }
 
+        @Test
+        void testCreateBook_whenIsbn10OfExistingBookIsGiven() {
+                BookCreateRequest req = createValidBookRequest("123456789-X");
+                HttpEntity<String> entity = createEntity(req, librarianUser.getEmail());
+                ResponseEntity<String> response = restTemplate.postForEntity(baseUrl, entity, String.class);
+
+                assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        }
+
+        @Test
+        void testCreateBook_whenIsbn10IsGiven_thenStoredAsIsbn13() throws JsonProcessingException {
+                BookCreateRequest req = createValidBookRequest("0-306-40615-2");
+                HttpEntity<String> entity = createEntity(req, librarianUser.getEmail());
+                ResponseEntity<String> response = restTemplate.postForEntity(baseUrl, entity, String.class);
+
+                assertEquals(HttpStatus.CREATED, response.getStatusCode());
+
+                LmsApiResponse<BookSimple> apiResponse = objectMapper.readValue(response.getBody(),
+                                new TypeReference<>() {
+                });
+
+                assertEquals("9780306406157", apiResponse.getData().getIsbn());
+        }
+
         @Test
         void testCreateBook_whenRequestIsValid() throws JsonProcessingException {
                 BookCreateRequest req = createValidBookRequest("9783161484100");
@@ -311,7 +424,7 @@ class BookControllerIntegrationTest {
 
         @Test
         void testCreateBook_whenTitleIsBlank() {
-                BookCreateRequest req = createValidBookRequest("978-3-16-148410-1");
+                BookCreateRequest req = createValidBookRequest("978-0-13-235088-4");
                 req.setTitle(" ");
                 HttpEntity<String> entity = createEntity(req, librarianUser.getEmail());
 
@@ -322,7 +435,7 @@ class BookControllerIntegrationTest {
 
         @Test
         void testCreateBook_whenDescriptionTooShort() {
-                BookCreateRequest req = createValidBookRequest("978-3-16-148410-2");
+                BookCreateRequest req = createValidBookRequest("0-306-40615-2");
                 req.setDescription("Short");
                 HttpEntity<String> entity = createEntity(req, librarianUser.getEmail());
 
@@ -341,9 +454,19 @@ class BookControllerIntegrationTest {
                 assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         }
 
+        @Test
+        void testCreateBook_whenIsbnCheckDigitIsWrong() {
+                BookCreateRequest req = createValidBookRequest("9783161484109");
+                HttpEntity<String> entity = createEntity(req, librarianUser.getEmail());
+
+                ResponseEntity<String> response = restTemplate.postForEntity(baseUrl, entity, String.class);
+
+                assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        }
+
         @Test
         void testCreateBook_whenPublicationDateIsInFuture() {
-                BookCreateRequest req = createValidBookRequest("978-3-16-148410-3");
+                BookCreateRequest req = createValidBookRequest("978-0-13-468599-1");
                 req.setPublicationDate(LocalDate.now().plusDays(10));
                 HttpEntity<String> entity = createEntity(req, librarianUser.getEmail());
 
@@ -383,4 +506,124 @@ class BookControllerIntegrationTest {
                 assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         }
 
+        @Test
+        void testImportBooks_whenCsvHasDuplicateAndInvalidRows() throws JsonProcessingException {
+                String csv = "title,author,description,isbn,publicationDate,genre\r\n"
+                                + "Dune,Frank Herbert,\"Spice, sand and \"\"worms\"\"\",0-306-40615-2,1965-08-01,fiction\r\n"
+                                + "Dune again,Frank Herbert,The same book twice,9780306406157,1965-08-01,FICTION\r\n"
+                                + "Stored,Someone,Already in the catalog," + EXISTING_ISBN + ",2000-01-01,DRAMA\r\n"
+                                + "Undated,Someone,The date does not parse,9780804429573,someday,DRAMA\r\n";
+                HttpEntity<String> entity = createImportEntity(csv, MediaType.parseMediaType("text/csv"),
+                                librarianUser.getEmail());
+
+                ResponseEntity<String> response = restTemplate.postForEntity(baseUrl + "/import", entity, String.class);
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                BookImportReport report = objectMapper.readValue(response.getBody(),
+                                new TypeReference<LmsApiResponse<BookImportReport>>() {
+                                }).getData();
+                assertEquals(4, report.getReceived());
+                assertEquals(1, report.getImported());
+                assertEquals(2, report.getDuplicates());
+                assertEquals(1, report.getFailed());
+                assertTrue(report.getErrors().stream()
+                                .anyMatch(error -> error.getLine() == 5 && error.getMessage().contains("publication date")));
+
+                Book imported = bookRepository.findByIsbn("9780306406157").orElseThrow();
+                assertEquals("Spice, sand and \"worms\"", imported.getDescription());
+                assertTrue(bookRepository.findByIsbn("9780804429573").isEmpty());
+        }
+
+        @Test
+        void testImportBooks_whenNdjsonIsGiven() throws JsonProcessingException {
+                BookCreateRequest missingTitle = createValidBookRequest("9780804429573");
+                missingTitle.setTitle(null);
+                String ndjson = toJson(createValidBookRequest("979-10-343-0452-3")) + "\n\n" + toJson(missingTitle) + "\n";
+                HttpEntity<String> entity = createImportEntity(ndjson, MediaType.APPLICATION_NDJSON,
+                                librarianUser.getEmail());
+
+                ResponseEntity<String> response = restTemplate.postForEntity(baseUrl + "/import", entity, String.class);
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                BookImportReport report = objectMapper.readValue(response.getBody(),
+                                new TypeReference<LmsApiResponse<BookImportReport>>() {
+                                }).getData();
+                assertEquals(2, report.getReceived());
+                assertEquals(1, report.getImported());
+                assertEquals(1, report.getFailed());
+                assertEquals(3, report.getErrors().get(0).getLine());
+                assertTrue(bookRepository.findByIsbn("9791034304523").isPresent());
+        }
+
+        @Test
+        void testImportBooks_whenCsvHeaderMissesColumn() {
+                HttpEntity<String> entity = createImportEntity("title,author\r\nDune,Frank Herbert\r\n",
+                                MediaType.parseMediaType("text/csv"), librarianUser.getEmail());
+
+                ResponseEntity<String> response = restTemplate.postForEntity(baseUrl + "/import", entity, String.class);
+
+                assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        }
+
+        @Test
+        void testImportBooks_whenUserRoleIsNotLibrarian() {
+                HttpEntity<String> entity = createImportEntity("title,author,description,isbn,publicationDate,genre\r\n",
+                                MediaType.parseMediaType("text/csv"), patronUser.getEmail());
+
+                ResponseEntity<String> response = restTemplate.postForEntity(baseUrl + "/import", entity, String.class);
+
+                assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+                assertEquals(1, bookRepository.count());
+        }
+
+        @Test
+        void testSearchBooks_whenBookCreated_thenServedFromIndex() throws Exception {
+                refreshIndexes();
+                BookCreateRequest req = createValidBookRequest(DUPLICATE_ISBN);
+                sendRequest("", HttpMethod.POST, createEntity(req, librarianUser.getEmail()));
+
+                ResponseEntity<String> response = sendRequest("/search?type=TITLE&query=space", HttpMethod.GET,
+                                createEntity(null, patronUser.getEmail()));
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                PagedResponse<BookSimple> page = objectMapper.readValue(response.getBody(),
+                                new TypeReference<LmsApiResponse<PagedResponse<BookSimple>>>() {
+                                }).getData();
+                assertEquals(1, page.getTotalItems());
+                assertEquals(req.getTitle(), page.getItems().get(0).getTitle());
+                assertEquals(1, bookSearchIndex.search(BookSearchIndex.Field.TITLE, "space", PageRequest.of(0, 10))
+                                .orElseThrow().getTotalElements());
+        }
+
+        @Test
+        void testSearchBooks_whenBookDeleted_thenNotFound() throws Exception {
+                refreshIndexes();
+                sendRequest("/" + savedBook.getId(), HttpMethod.DELETE, createEntity(null, librarianUser.getEmail()));
+
+                ResponseEntity<String> response = sendRequest("/search?type=TITLE&query=code", HttpMethod.GET,
+                                createEntity(null, patronUser.getEmail()));
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                PagedResponse<BookSimple> page = objectMapper.readValue(response.getBody(),
+                                new TypeReference<LmsApiResponse<PagedResponse<BookSimple>>>() {
+                                }).getData();
+                assertEquals(0, page.getTotalItems());
+        }
+
+        @Test
+        void testSuggestBooks_whenBookCreated_thenSuggested() throws Exception {
+                refreshIndexes();
+                BookCreateRequest req = createValidBookRequest(DUPLICATE_ISBN);
+                sendRequest("", HttpMethod.POST, createEntity(req, librarianUser.getEmail()));
+
+                ResponseEntity<String> response = sendRequest("/suggest?q=how to go", HttpMethod.GET,
+                                createEntity(null, patronUser.getEmail()));
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                List<BookSuggestion> suggestions = objectMapper.readValue(response.getBody(),
+                                new TypeReference<LmsApiResponse<List<BookSuggestion>>>() {
+                                }).getData();
+                assertTrue(suggestions.stream().anyMatch(s -> s.getText().equalsIgnoreCase(req.getTitle())));
+        }
+
 }
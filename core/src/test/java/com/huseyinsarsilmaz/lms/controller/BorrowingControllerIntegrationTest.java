@@ -5,18 +5,28 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.huseyinsarsilmaz.lms.job.BorrowingCountReconciler;
+import com.huseyinsarsilmaz.lms.job.OverdueEngine;
+import com.huseyinsarsilmaz.lms.job.OverdueReportExporter;
+import com.huseyinsarsilmaz.lms.job.ReportFormat;
 import com.huseyinsarsilmaz.lms.model.dto.request.BorrowRequest;
 import com.huseyinsarsilmaz.lms.model.dto.response.LmsApiResponse;
 import com.huseyinsarsilmaz.lms.model.dto.response.BorrowingDetailed;
 import com.huseyinsarsilmaz.lms.model.dto.response.BorrowingSimple;
+import com.huseyinsarsilmaz.lms.model.dto.response.CountResponse;
 import com.huseyinsarsilmaz.lms.model.dto.response.PagedResponse;
+import com.huseyinsarsilmaz.lms.model.dto.response.ReportExport;
+import com.huseyinsarsilmaz.lms.model.dto.response.SliceResponse;
 import com.huseyinsarsilmaz.lms.model.entity.Book;
 import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
+import com.huseyinsarsilmaz.lms.model.entity.ReportExportRun;
 import com.huseyinsarsilmaz.lms.model.entity.User;
 import com.huseyinsarsilmaz.lms.repository.BookRepository;
 import com.huseyinsarsilmaz.lms.repository.BorrowingRepository;
+import com.huseyinsarsilmaz.lms.repository.ReportExportRunRepository;
 import com.huseyinsarsilmaz.lms.repository.UserRepository;
 import com.huseyinsarsilmaz.lms.security.JwtService;
+import com.huseyinsarsilmaz.lms.service.BookService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,7 +40,10 @@ import org.springframework.web.client.DefaultResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -53,6 +66,21 @@ class BorrowingControllerIntegrationTest {
         @Autowired
         private BorrowingRepository borrowingRepository;
 
+        @Autowired
+        private BorrowingCountReconciler borrowingCountReconciler;
+
+        @Autowired
+        private OverdueEngine overdueEngine;
+
+        @Autowired
+        private BookService bookService;
+
+        @Autowired
+        private OverdueReportExporter overdueReportExporter;
+
+        @Autowired
+        private ReportExportRunRepository reportExportRunRepository;
+
         private final RestTemplate restTemplate = new RestTemplate();
         private final ObjectMapper objectMapper = new ObjectMapper()
                         .registerModule(new JavaTimeModule())
@@ -79,7 +107,7 @@ class BorrowingControllerIntegrationTest {
 
         private HttpEntity<String> createEntity(Object request, String email) {
                 HttpHeaders headers = new HttpHeaders();
-                headers.set("Authorization", "Bearer " + jwtService.generateToken(email));
+                headers.set("Authorization", "Bearer " + TestTokens.createToken(jwtService, userRepository, email));
                 headers.setContentType(MediaType.APPLICATION_JSON);
                 String json = request != null ? toJson(request) : null;
                 return new HttpEntity<>(json, headers);
@@ -96,6 +124,8 @@ class BorrowingControllerIntegrationTest {
                 clearDatabase();
                 createUsers();
                 createBorrowedBookAndBorrowing();
+                // Fixtures are saved through the repositories, which leave the borrowing counters of users alone
+                borrowingCountReconciler.reconcile();
         }
 
         private void configureRestTemplate() {
@@ -117,7 +147,7 @@ class BorrowingControllerIntegrationTest {
                 patronUser = userRepository.save(User.builder()
                                 .email(PATRON_EMAIL)
                                 .password("password")
-                                .roles("ROLE_PATRON")
+                                .roleMask(User.Role.ROLE_PATRON.bit())
                                 .phoneNumber("1111111111")
                                 .name("Patron")
                                 .surname("User")
@@ -127,7 +157,7 @@ class BorrowingControllerIntegrationTest {
                 librarianUser = userRepository.save(User.builder()
                                 .email(LIBRARIAN_EMAIL)
                                 .password("password")
-                                .roles("ROLE_LIBRARIAN")
+                                .roleMask(User.Role.ROLE_LIBRARIAN.bit())
                                 .phoneNumber("2222222222")
                                 .name("Librarian")
                                 .surname("User")
@@ -183,6 +213,67 @@ class BorrowingControllerIntegrationTest {
                 assertEquals(borrowedBook.getTitle(), apiResponse.getData().getItems().get(0).getBook().getTitle());
         }
 
+        @Test
+        void testGetMyBorrowingHistory_whenTotalIsNotRequested() throws JsonProcessingException {
+                HttpEntity<String> entity = authEntity(PATRON_EMAIL);
+                ResponseEntity<String> response = sendRequest("/my?total=false", HttpMethod.GET, entity);
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+
+                LmsApiResponse<SliceResponse<BorrowingDetailed>> apiResponse = objectMapper.readValue(
+                                response.getBody(),
+                                new TypeReference<>() {
+                                });
+
+                assertEquals(1, apiResponse.getData().getItems().size());
+                assertFalse(apiResponse.getData().isHasNext());
+                assertFalse(response.getBody().contains("totalItems"));
+        }
+
+        @Test
+        void testGetMyBorrowingHistory_whenETagMatches_thenNotModified() {
+                String etag = sendRequest("/my", HttpMethod.GET, authEntity(PATRON_EMAIL)).getHeaders().getETag();
+                assertNotNull(etag);
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.addAll(authEntity(PATRON_EMAIL).getHeaders());
+                headers.setIfNoneMatch(etag);
+                ResponseEntity<String> response = sendRequest("/my", HttpMethod.GET, new HttpEntity<>(null, headers));
+
+                assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+                assertNull(response.getBody());
+        }
+
+        @Test
+        void testGetMyBorrowingHistory_whenBorrowedBookChanged_thenETagChanges() {
+                String etag = sendRequest("/my", HttpMethod.GET, authEntity(PATRON_EMAIL)).getHeaders().getETag();
+
+                borrowedBook.setTitle("Renamed Title");
+                bookRepository.save(borrowedBook);
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.addAll(authEntity(PATRON_EMAIL).getHeaders());
+                headers.setIfNoneMatch(etag);
+                ResponseEntity<String> response = sendRequest("/my", HttpMethod.GET, new HttpEntity<>(null, headers));
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                assertTrue(response.getBody().contains("Renamed Title"));
+        }
+
+        @Test
+        void testCountMyBorrowings() throws JsonProcessingException {
+                HttpEntity<String> entity = authEntity(PATRON_EMAIL);
+                ResponseEntity<String> response = sendRequest("/my/count", HttpMethod.GET, entity);
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+
+                LmsApiResponse<CountResponse> apiResponse = objectMapper.readValue(
+                                response.getBody(),
+                                new TypeReference<>() {
+                                });
+
+                assertEquals(1, apiResponse.getData().getTotalItems());
+                assertNotNull(apiResponse.getData().getCountedAt());
+        }
+
         @Test
         void testGetBorrowingHistory_whenMyUserNotExists() {
                 HttpEntity<String> entity = authEntity(NON_EXISTENT_EMAIL);
@@ -314,6 +405,131 @@ class BorrowingControllerIntegrationTest {
                 assertEquals(newBook.getTitle(), apiResponse.getData().getItems().get(1).getBook().getTitle());
         }
 
+        private String startReportExport(String query) throws JsonProcessingException {
+                ResponseEntity<String> response = sendRequest("/report/exports" + query, HttpMethod.POST,
+                                authEntity(LIBRARIAN_EMAIL));
+                assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+
+                LmsApiResponse<ReportExport> apiResponse = objectMapper.readValue(response.getBody(),
+                                new TypeReference<>() {
+                                });
+                return apiResponse.getData().getId();
+        }
+
+        private ReportExport awaitReportExport(String id) throws Exception {
+                for (int attempt = 0; attempt < 100; attempt++) {
+                        ResponseEntity<String> response = sendRequest("/report/exports/" + id, HttpMethod.GET,
+                                        authEntity(LIBRARIAN_EMAIL));
+                        assertEquals(HttpStatus.OK, response.getStatusCode());
+
+                        LmsApiResponse<ReportExport> apiResponse = objectMapper.readValue(response.getBody(),
+                                        new TypeReference<>() {
+                                        });
+                        ReportExport export = apiResponse.getData();
+                        if (export.getStatus() == ReportExport.Status.SUCCEEDED
+                                        || export.getStatus() == ReportExport.Status.FAILED) {
+                                return export;
+                        }
+                        Thread.sleep(50);
+                }
+                return fail("Report export " + id + " did not finish");
+        }
+
+        @Test
+        void testReportExport_whenCsv() throws Exception {
+                borrowing.setStatus(Borrowing.Status.RETURNED_OVERDUE);
+                borrowing.setReturnDate(LocalDate.now());
+                borrowingRepository.save(borrowing);
+
+                String id = startReportExport("");
+                ReportExport export = awaitReportExport(id);
+                assertEquals(ReportExport.Status.SUCCEEDED, export.getStatus());
+                assertEquals(1, export.getRows());
+
+                ResponseEntity<String> response = sendRequest("/report/exports/" + id + "/file", HttpMethod.GET,
+                                authEntity(LIBRARIAN_EMAIL));
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                assertTrue(MediaType.parseMediaType("text/csv").isCompatibleWith(response.getHeaders().getContentType()));
+                String[] lines = response.getBody().split("\r\n");
+                assertEquals(2, lines.length);
+                assertTrue(lines[0].startsWith("id,borrower_id,borrower_email"));
+                assertTrue(lines[1].startsWith(borrowing.getId() + "," + patronUser.getId() + "," + PATRON_EMAIL));
+                assertTrue(lines[1].contains(borrowedBook.getTitle()));
+                assertTrue(lines[1].endsWith("RETURNED_OVERDUE"));
+        }
+
+        @Test
+        void testReportExport_whenNdjsonForBorrower() throws Exception {
+                borrowing.setStatus(Borrowing.Status.RETURNED_TIMELY);
+                borrowing.setReturnDate(LocalDate.now());
+                borrowingRepository.save(borrowing);
+
+                String id = startReportExport("?format=NDJSON&borrowerId=" + librarianUser.getId());
+                assertEquals(0, awaitReportExport(id).getRows());
+
+                id = startReportExport("?format=NDJSON&borrowerId=" + patronUser.getId());
+                assertEquals(1, awaitReportExport(id).getRows());
+
+                ResponseEntity<String> response = sendRequest("/report/exports/" + id + "/file", HttpMethod.GET,
+                                authEntity(LIBRARIAN_EMAIL));
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                BorrowingDetailed row = objectMapper.readValue(response.getBody().trim(), BorrowingDetailed.class);
+                assertEquals(borrowing.getId(), row.getId());
+                assertEquals(borrowedBook.getTitle(), row.getBook().getTitle());
+                assertEquals(LocalDate.now(), row.getReturnDate());
+        }
+
+        @Test
+        void testReportExport_whenNodeRunningItStopped_thenFailed() throws JsonProcessingException {
+                // Started by a node that stopped without finishing it
+                Instant longAgo = Instant.now().minus(Duration.ofHours(1));
+                ReportExportRun run = reportExportRunRepository.save(ReportExportRun.builder()
+                                .exportId(UUID.randomUUID().toString())
+                                .format(ReportFormat.CSV)
+                                .status(ReportExport.Status.RUNNING)
+                                .queuedAt(longAgo)
+                                .heartbeatAt(longAgo)
+                                .build());
+
+                overdueReportExporter.removeExpired();
+
+                ResponseEntity<String> response = sendRequest("/report/exports/" + run.getExportId(), HttpMethod.GET,
+                                authEntity(LIBRARIAN_EMAIL));
+                LmsApiResponse<ReportExport> apiResponse = objectMapper.readValue(response.getBody(),
+                                new TypeReference<>() {
+                                });
+                assertEquals(ReportExport.Status.FAILED, apiResponse.getData().getStatus());
+                assertNotNull(apiResponse.getData().getFinishedAt());
+        }
+
+        @Test
+        void testReportExport_whenUserRoleIsNotLibrarian() {
+                ResponseEntity<String> response = sendRequest("/report/exports", HttpMethod.POST,
+                                authEntity(PATRON_EMAIL));
+
+                assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        }
+
+        @Test
+        void testReportExport_whenBorrowerNotExists() {
+                ResponseEntity<String> response = sendRequest("/report/exports?borrowerId=99999", HttpMethod.POST,
+                                authEntity(LIBRARIAN_EMAIL));
+
+                assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        }
+
+        @Test
+        void testReportExport_whenExportNotExists() {
+                ResponseEntity<String> response = sendRequest("/report/exports/unknown", HttpMethod.GET,
+                                authEntity(LIBRARIAN_EMAIL));
+                assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+
+                response = sendRequest("/report/exports/unknown/file", HttpMethod.GET, authEntity(LIBRARIAN_EMAIL));
+                assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        }
+
         @Test
         void shouldReturnUnauthorized_whenUserDoesNotExist_onBorrowingCreation() throws JsonProcessingException {
                 BorrowRequest req = new BorrowRequest(null, borrowedBook.getId());
@@ -352,6 +568,7 @@ class BorrowingControllerIntegrationTest {
                 borrowing.setDueDate(LocalDate.now().minusDays(10));
                 borrowing.setStatus(Borrowing.Status.OVERDUE);
                 borrowingRepository.save(borrowing);
+                borrowingCountReconciler.reconcile();
 
                 BorrowRequest req = new BorrowRequest(null, borrowedBook.getId());
                 HttpEntity<String> entity = createEntity(req, patronUser.getEmail());
@@ -390,6 +607,29 @@ class BorrowingControllerIntegrationTest {
                 assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
         }
 
+        @Test
+        void shouldReturnConflict_whenCachedBookWasLentElsewhere() {
+                Book book = bookRepository.save(Book.builder()
+                                .isbn("1234567890124")
+                                .title("Book Title")
+                                .publicationDate(LocalDate.now())
+                                .genre(Book.Genre.ADVENTURE)
+                                .author("Author Name")
+                                .isAvailable(true)
+                                .build());
+                assertTrue(bookService.getById(book.getId()).getIsAvailable());
+                // Lent through another node, the cached copy still says available
+                book.setIsAvailable(false);
+                bookRepository.save(book);
+
+                BorrowRequest req = new BorrowRequest(null, book.getId());
+                HttpEntity<String> entity = createEntity(req, patronUser.getEmail());
+
+                ResponseEntity<String> response = restTemplate.postForEntity(baseUrl, entity, String.class);
+
+                assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+        }
+
         @Test
         void shouldCreateBorrowing_whenValidRequestSameUser() throws JsonProcessingException {
                 Book book = bookRepository.save(Book.builder()
@@ -415,6 +655,7 @@ class BorrowingControllerIntegrationTest {
 
                 assertNotNull(apiResponse.getData());
                 assertEquals(book.getTitle(), apiResponse.getData().getBook().getTitle());
+                assertEquals(2L, userRepository.findActiveBorrowingsById(patronUser.getId()).orElseThrow());
         }
 
         @Test
@@ -506,6 +747,7 @@ class BorrowingControllerIntegrationTest {
                 assertNotNull(apiResponse.getData());
                 assertEquals(borrowedBook.getTitle(), apiResponse.getData().getBook().getTitle());
                 assertEquals(Borrowing.Status.RETURNED_TIMELY, apiResponse.getData().getStatus());
+                assertEquals(0L, userRepository.findActiveBorrowingsById(patronUser.getId()).orElseThrow());
         }
 
         @Test
@@ -552,6 +794,7 @@ class BorrowingControllerIntegrationTest {
         void shouldExcuseBorrowing_whenValidRequest() throws JsonProcessingException {
                 borrowing.setStatus(Borrowing.Status.RETURNED_OVERDUE);
                 borrowingRepository.save(borrowing);
+                borrowingCountReconciler.reconcile();
 
                 HttpEntity<String> entity = createEntity(null, librarianUser.getEmail());
 
@@ -567,6 +810,22 @@ class BorrowingControllerIntegrationTest {
                 assertNotNull(apiResponse.getData());
                 assertEquals(borrowing.getId(), apiResponse.getData().getId());
                 assertEquals(Borrowing.Status.RETURNED_EXCUSED, apiResponse.getData().getStatus());
+                assertEquals(0L, userRepository.findReturnedOverdueBorrowingsById(patronUser.getId()).orElseThrow());
+        }
+
+        @Test
+        void shouldMarkBorrowingOverdue_whenDueDatePassed() {
+                borrowing.setDueDate(LocalDate.now().minusDays(1));
+                borrowingRepository.save(borrowing);
+                borrowingCountReconciler.reconcile();
+
+                // Saved behind the engine's back like a borrowing of another node, its reload picks it up
+                overdueEngine.reload();
+                overdueEngine.tick();
+
+                assertEquals(Borrowing.Status.OVERDUE,
+                                borrowingRepository.findById(borrowing.getId()).orElseThrow().getStatus());
+                assertEquals(1L, userRepository.findOverdueBorrowingsById(patronUser.getId()).orElseThrow());
         }
 
 }
@@ -0,0 +1,21 @@
+package com.huseyinsarsilmaz.lms.controller;
+
+import com.huseyinsarsilmaz.lms.model.entity.User;
+import com.huseyinsarsilmaz.lms.repository.UserRepository;
+import com.huseyinsarsilmaz.lms.security.JwtService;
+
+final class TestTokens {
+
+        private TestTokens() {
+        }
+
+        static String createToken(JwtService jwtService, UserRepository userRepository, String email) {
+                User user = userRepository.findByNormalizedEmail(User.normalizeEmail(email)).orElseGet(() -> {
+                        // Never persisted, the token points to a user that does not exist
+                        User missingUser = User.builder().email(email).roleMask(User.Role.ROLE_PATRON.bit()).build();
+                        missingUser.setId(Long.MAX_VALUE);
+                        return missingUser;
+                });
+                return jwtService.generateToken(user);
+        }
+}
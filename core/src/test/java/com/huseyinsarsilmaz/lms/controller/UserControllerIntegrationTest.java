@@ -65,21 +65,17 @@ class UserControllerIntegrationTest {
 
         private HttpEntity<String> createEntity(Object request, String email) {
                 HttpHeaders headers = new HttpHeaders();
-                headers.set("Authorization", "Bearer " + createToken(email));
+                headers.set("Authorization", "Bearer " + TestTokens.createToken(jwtService, userRepository, email));
                 headers.setContentType(MediaType.APPLICATION_JSON);
                 String json = request != null ? toJson(request) : null;
                 return new HttpEntity<>(json, headers);
         }
 
-        private String createToken(String email) {
-                return jwtService.generateToken(email);
-        }
-
         private User createUser(String email, String roles, String name, String surname, String phone) {
                 return userRepository.save(User.builder()
                                 .email(email)
                                 .password("MTIzNDU2Nzg")
-                                .roles(roles)
+                                .roleMask(User.Role.parseMask(roles))
                                 .phoneNumber(phone)
                                 .name(name)
                                 .surname(surname)
@@ -133,7 +129,7 @@ class UserControllerIntegrationTest {
 
         @Test
         void testPromote_whenMyUserNotExists() {
-                String fakeToken = createToken("nonexistent@hotmail.com");
+                String fakeToken = TestTokens.createToken(jwtService, userRepository, "nonexistent@hotmail.com");
 
                 PromoteRequest request = new PromoteRequest(patronUser.getEmail(), User.Role.ROLE_LIBRARIAN);
 
@@ -209,6 +205,23 @@ class UserControllerIntegrationTest {
                 assertEquals(patronUser.getEmail(), apiResponse.getData().getEmail());
         }
 
+        @Test
+        void testPromote_whenPromotedUserUsesOldToken() {
+                HttpEntity<String> oldEntity = createEntity(null, patronUser.getEmail());
+                PromoteRequest request = new PromoteRequest(patronUser.getEmail(), User.Role.ROLE_LIBRARIAN);
+
+                ResponseEntity<String> promoteResponse = restTemplate.postForEntity(baseUrl + "/promote",
+                                createEntity(request, adminUser.getEmail()), String.class);
+                assertEquals(HttpStatus.OK, promoteResponse.getStatusCode());
+
+                ResponseEntity<String> oldTokenResponse = sendRequest("/me", HttpMethod.GET, oldEntity);
+                assertEquals(HttpStatus.UNAUTHORIZED, oldTokenResponse.getStatusCode());
+
+                ResponseEntity<String> newTokenResponse = sendRequest("/me", HttpMethod.GET,
+                                createEntity(null, patronUser.getEmail()));
+                assertEquals(HttpStatus.OK, newTokenResponse.getStatusCode());
+        }
+
         @Test
         void testGetMyUser_whenMyUserDoesNotExist() {
                 HttpEntity<String> entity = createEntity(null, "ghostuser@example.com");
@@ -278,7 +291,7 @@ class UserControllerIntegrationTest {
 
         @Test
         void testDeleteMyUser_whenMyUserDoesNotExist() {
-                String fakeToken = createToken("ghostuser@example.com");
+                String fakeToken = TestTokens.createToken(jwtService, userRepository, "ghostuser@example.com");
                 HttpEntity<String> entity = createEntity(null, fakeToken);
                 ResponseEntity<String> response = sendRequest("/me", HttpMethod.DELETE, entity);
 
@@ -426,7 +439,7 @@ class UserControllerIntegrationTest {
                 User deactivatedUser = userRepository.save(User.builder()
                                 .email("deactivated@example.com")
                                 .password("MTIzNDU2Nzg")
-                                .roles("ROLE_PATRON")
+                                .roleMask(User.Role.ROLE_PATRON.bit())
                                 .name("Deactivated")
                                 .surname("User")
                                 .phoneNumber("1111111111")
@@ -0,0 +1,115 @@
+package com.huseyinsarsilmaz.lms.job;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.huseyinsarsilmaz.lms.model.entity.JobLock;
+import com.huseyinsarsilmaz.lms.model.entity.JobRun;
+import com.huseyinsarsilmaz.lms.repository.JobLockRepository;
+import com.huseyinsarsilmaz.lms.repository.JobRunRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// The lock commits in its own transactions, so the test must not run in one
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@DataJpaTest(properties = { "job.lock.node-id=node-1", "job.lock.min-hold=0s" })
+@Import({ JobLockService.class, SimpleMeterRegistry.class })
+public class JobLockServiceTest {
+
+    private static final String JOB = "test-job";
+    private static final Duration LEASE = Duration.ofMinutes(5);
+
+    @Autowired
+    private JobLockService jobLockService;
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    @Autowired
+    private JobRunRepository jobRunRepository;
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        jobLockRepository.deleteAll();
+        jobRunRepository.deleteAll();
+    }
+
+    private void lockedByOtherNode(Instant until) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        jobLockRepository.save(JobLock.builder()
+                .name(JOB)
+                .lockedBy("node-2")
+                .lockedAt(now.minus(LEASE))
+                .lockedUntil(until)
+                .build());
+    }
+
+    @Test
+    public void testRunLocked_recordsRunAndReleases() {
+        assertTrue(jobLockService.runLocked(JOB, LEASE, runs::incrementAndGet));
+        // Released, so the next schedule runs again
+        assertTrue(jobLockService.runLocked(JOB, LEASE, runs::incrementAndGet));
+
+        assertEquals(2, runs.get());
+        List<JobRun> recorded = jobRunRepository.findAll();
+        assertEquals(2, recorded.size());
+        assertTrue(recorded.stream().allMatch(run -> run.getJobName().equals(JOB)
+                && run.getNode().equals("node-1") && run.getStatus() == JobRun.Status.SUCCEEDED));
+
+        JobLock lock = jobLockRepository.findAll().get(0);
+        assertEquals("node-1", lock.getLockedBy());
+        assertFalse(lock.getLockedUntil().isAfter(Instant.now()));
+    }
+
+    @Test
+    public void testRunLocked_whenLockedByAnotherNode() {
+        lockedByOtherNode(Instant.now().plus(LEASE));
+
+        assertFalse(jobLockService.runLocked(JOB, LEASE, runs::incrementAndGet));
+
+        assertEquals(0, runs.get());
+        assertEquals(0, jobRunRepository.count());
+        assertEquals("node-2", jobLockRepository.findAll().get(0).getLockedBy());
+    }
+
+    @Test
+    public void testRunLocked_takesOverExpiredLease() {
+        lockedByOtherNode(Instant.now().minusSeconds(1));
+
+        assertTrue(jobLockService.runLocked(JOB, LEASE, runs::incrementAndGet));
+
+        assertEquals(1, runs.get());
+        assertEquals("node-1", jobLockRepository.findAll().get(0).getLockedBy());
+    }
+
+    @Test
+    public void testRunLocked_whenTaskFails() {
+        assertThrows(IllegalStateException.class, () -> jobLockService.runLocked(JOB, LEASE, () -> {
+            throw new IllegalStateException("broken");
+        }));
+
+        JobRun run = jobRunRepository.findAll().get(0);
+        assertEquals(JobRun.Status.FAILED, run.getStatus());
+        assertTrue(run.getError().contains("broken"));
+        assertTrue(jobLockService.runLocked(JOB, LEASE, runs::incrementAndGet));
+    }
+}
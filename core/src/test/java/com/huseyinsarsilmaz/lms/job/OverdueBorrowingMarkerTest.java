@@ -0,0 +1,107 @@
+package com.huseyinsarsilmaz.lms.job;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
+import com.huseyinsarsilmaz.lms.repository.BorrowingRepository;
+import com.huseyinsarsilmaz.lms.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class OverdueBorrowingMarkerTest {
+
+    @Mock
+    private BorrowingRepository borrowingRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OverdueBorrowingMarker marker;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        marker = new OverdueBorrowingMarker(borrowingRepository, userRepository, transactionManager, meterRegistry,
+                5);
+    }
+
+    private void stubRange(Long minId, Long maxId) {
+        when(borrowingRepository.findMinPastDueIdByStatus(eq(Borrowing.Status.BORROWED), any(LocalDate.class)))
+                .thenReturn(minId);
+        when(borrowingRepository.findMaxPastDueIdByStatus(eq(Borrowing.Status.BORROWED), any(LocalDate.class)))
+                .thenReturn(maxId);
+    }
+
+    private void stubChunk(long fromId, long toId, int updated) {
+        when(borrowingRepository.updatePastDueStatusInRange(eq(fromId), eq(toId), eq(Borrowing.Status.BORROWED),
+                eq(Borrowing.Status.OVERDUE), any(), any())).thenReturn(updated);
+    }
+
+    @Test
+    public void testMarkPastDue_walksIdRangeInChunks() {
+        stubRange(1L, 12L);
+        stubChunk(1, 5, 5);
+        stubChunk(6, 10, 2);
+        stubChunk(11, 12, 1);
+
+        long marked = marker.markPastDue();
+
+        assertEquals(8, marked);
+        InOrder inOrder = inOrder(borrowingRepository);
+        inOrder.verify(borrowingRepository).updatePastDueStatusInRange(eq(1L), eq(5L), any(), any(), any(), any());
+        inOrder.verify(borrowingRepository).updatePastDueStatusInRange(eq(6L), eq(10L), any(), any(), any(), any());
+        inOrder.verify(borrowingRepository).updatePastDueStatusInRange(eq(11L), eq(12L), any(), any(), any(), any());
+        // Every chunk commits on its own
+        verify(transactionManager, times(3)).commit(any());
+        assertEquals(3, meterRegistry.get("lms.borrowings.overdue.chunk").timer().count());
+        assertEquals(8.0, meterRegistry.get("lms.borrowings.overdue.marked").counter().count());
+    }
+
+    @Test
+    public void testMarkPastDue_raisesOverdueCountersOfMarkedChunks() {
+        stubRange(1L, 10L);
+        stubChunk(1, 5, 3);
+        stubChunk(6, 10, 0);
+
+        marker.markPastDue();
+
+        // The counters find the marked rows by the updatedAt the chunk wrote
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(borrowingRepository).updatePastDueStatusInRange(eq(1L), eq(5L), any(), any(), any(), now.capture());
+        verify(userRepository).addOverdueMarkedInRange(1L, 5L, Borrowing.Status.OVERDUE, now.getValue());
+        assertEquals(0, now.getValue().getNano() % 1000);
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    public void testMarkPastDue_whenNothingPastDue() {
+        stubRange(null, null);
+
+        long marked = marker.markPastDue();
+
+        assertEquals(0, marked);
+        verify(borrowingRepository, never()).updatePastDueStatusInRange(anyLong(), anyLong(), any(), any(), any(),
+                any());
+        verifyNoInteractions(transactionManager);
+        assertEquals(1, meterRegistry.get("lms.borrowings.overdue.run").timer().count());
+    }
+}
@@ -0,0 +1,152 @@
+package com.huseyinsarsilmaz.lms.job;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
+import com.huseyinsarsilmaz.lms.repository.BorrowingRepository;
+import com.huseyinsarsilmaz.lms.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class OverdueEngineTest {
+
+    @Mock
+    private BorrowingRepository borrowingRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OverdueEngine engine;
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        engine = new OverdueEngine(borrowingRepository, userRepository, jdbcTemplate, transactionManager,
+                meterRegistry, true, 8, 1000, 2);
+    }
+
+    // Answers the reload query with the given ids and due dates
+    private void load(long[] ids, LocalDate... dueDates) throws Exception {
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (int i = 0; i < ids.length; i++) {
+                ResultSet row = mock(ResultSet.class);
+                when(row.getLong("id")).thenReturn(ids[i]);
+                when(row.getObject("due_date", LocalDate.class)).thenReturn(dueDates[i]);
+                handler.processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        engine.reload();
+    }
+
+    private Borrowing borrowing(long id, LocalDate dueDate) {
+        Borrowing borrowing = Borrowing.builder().dueDate(dueDate).status(Borrowing.Status.BORROWED).build();
+        borrowing.setId(id);
+        return borrowing;
+    }
+
+    private double queued() {
+        return meterRegistry.get("lms.borrowings.overdue.engine.queued").gauge().value();
+    }
+
+    @Test
+    public void testTick_marksPastDueInBatchesByDueDate() throws Exception {
+        load(new long[] { 1, 2, 3, 4 }, today.minusDays(1), today.minusDays(1), today, today.minusDays(3));
+        when(borrowingRepository.updatePastDueStatusByIds(anyList(), eq(Borrowing.Status.BORROWED),
+                eq(Borrowing.Status.OVERDUE), eq(today), any())).thenReturn(2, 1);
+
+        engine.tick();
+
+        InOrder inOrder = inOrder(borrowingRepository);
+        inOrder.verify(borrowingRepository).updatePastDueStatusByIds(eq(List.of(4L, 1L)), any(), any(), any(), any());
+        inOrder.verify(borrowingRepository).updatePastDueStatusByIds(eq(List.of(2L)), any(), any(), any(), any());
+        inOrder.verifyNoMoreInteractions();
+        verify(userRepository).addOverdueMarkedByIds(eq(List.of(4L, 1L)), eq(Borrowing.Status.OVERDUE), any());
+        verify(userRepository).addOverdueMarkedByIds(eq(List.of(2L)), eq(Borrowing.Status.OVERDUE), any());
+        assertEquals(3.0, meterRegistry.get("lms.borrowings.overdue.engine.marked").counter().count());
+        // Due today, not past due yet
+        assertEquals(1.0, queued());
+    }
+
+    @Test
+    public void testRegister_queuesWithinHorizon() throws Exception {
+        load(new long[0]);
+        when(borrowingRepository.updatePastDueStatusByIds(eq(List.of(9L)), any(), any(), any(), any()))
+                .thenReturn(1);
+
+        engine.register(borrowing(9, today.minusDays(1)));
+        engine.register(borrowing(10, today.plusDays(7)));
+        // Beyond the horizon, left to a later reload
+        engine.register(borrowing(11, today.plusDays(30)));
+        assertEquals(2.0, queued());
+
+        engine.tick();
+
+        verify(borrowingRepository).updatePastDueStatusByIds(eq(List.of(9L)), any(), any(), any(), any());
+        assertEquals(1.0, queued());
+    }
+
+    @Test
+    public void testRegister_beforeFirstLoad() {
+        engine.register(borrowing(9, today.minusDays(1)));
+
+        engine.tick();
+
+        assertEquals(0.0, queued());
+        verifyNoInteractions(borrowingRepository);
+    }
+
+    @Test
+    public void testTick_requeuesFailedBatch() throws Exception {
+        load(new long[] { 1 }, today.minusDays(1));
+        when(borrowingRepository.updatePastDueStatusByIds(eq(List.of(1L)), any(), any(), any(), any()))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(1);
+
+        engine.tick();
+        assertEquals(1.0, queued());
+
+        engine.tick();
+        assertEquals(0.0, queued());
+        verify(borrowingRepository, times(2)).updatePastDueStatusByIds(eq(List.of(1L)), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testDisabled() {
+        engine = new OverdueEngine(borrowingRepository, userRepository, jdbcTemplate, transactionManager,
+                new SimpleMeterRegistry(), false, 8, 1000, 2);
+
+        engine.reload();
+        engine.register(borrowing(9, today.minusDays(1)));
+        engine.tick();
+
+        verifyNoInteractions(jdbcTemplate, borrowingRepository, userRepository, transactionManager);
+    }
+}
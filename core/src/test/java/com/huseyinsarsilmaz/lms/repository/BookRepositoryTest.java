@@ -3,9 +3,11 @@ package com.huseyinsarsilmaz.lms.repository;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 import com.huseyinsarsilmaz.lms.model.entity.Book;
+import com.huseyinsarsilmaz.lms.search.LikeBookFullTextSearch;
 
 import jakarta.transaction.Transactional;
 
@@ -17,6 +19,7 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
@@ -83,6 +86,14 @@ public class BookRepositoryTest {
         assertEquals(2, result.getTotalElements());
     }
 
+    @Test
+    public void testFindByTitleStartingWithIgnoreCaseOrderByTitle() {
+        List<Book> result = bookRepository.findByTitleStartingWithIgnoreCaseOrderByTitle("HOW", Limit.of(1));
+        assertEquals(1, result.size());
+        assertEquals("How to fly into space", result.get(0).getTitle());
+        assertTrue(bookRepository.findByTitleStartingWithIgnoreCaseOrderByTitle("code", Limit.of(10)).isEmpty());
+    }
+
     @Test
     public void testFindByTitleContainingIgnoreCase_whenNotFound() {
         Page<Book> result = bookRepository.findByTitleContainingIgnoreCase("the great gatsby", Pageable.ofSize(10));
@@ -123,4 +134,38 @@ public class BookRepositoryTest {
         Page<Book> result = bookRepository.findByGenre(genre, Pageable.ofSize(10));
         assertEquals(expectedCount, result.getTotalElements());
     }
+
+    @Test
+    public void testFindByAuthorContainingAfter_whenPagedByCursor() {
+        List<Book> firstPage = bookRepository.findByAuthorContainingAfter("elon", "", 0, Limit.of(1));
+        assertEquals(1, firstPage.size());
+        assertEquals("How to fly into space", firstPage.get(0).getTitle());
+
+        Book last = firstPage.get(0);
+        List<Book> secondPage = bookRepository.findByAuthorContainingAfter("elon", last.getTitle(), last.getId(),
+                Limit.of(1));
+        assertEquals(1, secondPage.size());
+        assertEquals(book1.getId(), secondPage.get(0).getId());
+
+        assertTrue(bookRepository.findByAuthorContainingAfter("elon", book1.getTitle(), book1.getId(), Limit.of(1))
+                .isEmpty());
+    }
+
+    @Test
+    public void testFindByTitleContainingAfter_whenQueryHasWildcard() {
+        List<Book> result = bookRepository.findByTitleContainingAfter("%", "", 0, Limit.of(10));
+        assertTrue(result.isEmpty());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "elon space, 1",
+            "'\"how to\" -space', 1",
+            "ronaldo or fly, 2",
+            "gatsby, 0"
+    })
+    public void testFullTextFallback(String query, int expectedCount) {
+        Page<Book> result = new LikeBookFullTextSearch(bookRepository).search(query, Pageable.ofSize(10));
+        assertEquals(expectedCount, result.getTotalElements());
+    }
 }
@@ -4,9 +4,14 @@ import jakarta.transaction.Transactional;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,7 +20,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.ActiveProfiles;
 
 import com.huseyinsarsilmaz.lms.model.entity.Book;
@@ -52,7 +59,7 @@ public class BorrowingRepositoryTest {
         user.setName("name");
         user.setSurname("surname");
         user.setPassword("12345678");
-        user.setRoles("ROLE_PATRON");
+        user.setRoleMask(User.Role.ROLE_PATRON.bit());
         user.setPhoneNumber("5051112233");
         user.setIsActive(true);
         return userRepository.save(user);
@@ -191,6 +198,141 @@ public class BorrowingRepositoryTest {
         assertTrue(result.stream().allMatch(borrowing -> LocalDate.now().isAfter(borrowing.getDueDate())));
     }
 
+    @Test
+    public void testFindMinAndMaxPastDueIdByStatus() {
+        List<Borrowing> pastDue = borrowingRepository.findPastDueByStatus(Borrowing.Status.BORROWED, LocalDate.now());
+        long minId = pastDue.stream().mapToLong(Borrowing::getId).min().getAsLong();
+        long maxId = pastDue.stream().mapToLong(Borrowing::getId).max().getAsLong();
+
+        assertEquals(minId, borrowingRepository.findMinPastDueIdByStatus(Borrowing.Status.BORROWED, LocalDate.now()));
+        assertEquals(maxId, borrowingRepository.findMaxPastDueIdByStatus(Borrowing.Status.BORROWED, LocalDate.now()));
+    }
+
+    @Test
+    public void testFindMinPastDueIdByStatus_whenNotFound() {
+        assertNull(borrowingRepository.findMinPastDueIdByStatus(Borrowing.Status.OVERDUE, LocalDate.now()));
+    }
+
+    @Test
+    public void testUpdatePastDueStatusInRange() {
+        int updated = borrowingRepository.updatePastDueStatusInRange(0, Long.MAX_VALUE, Borrowing.Status.BORROWED,
+                Borrowing.Status.OVERDUE, LocalDate.now(), LocalDateTime.now());
+
+        assertEquals(3, updated);
+        assertEquals(2, borrowingRepository.countByBorrowerIdAndStatus(user1.getId(), Borrowing.Status.OVERDUE));
+        assertEquals(2, borrowingRepository.countByBorrowerIdAndStatus(user1.getId(), Borrowing.Status.BORROWED));
+        assertEquals(1, borrowingRepository.countByBorrowerIdAndStatus(user2.getId(), Borrowing.Status.OVERDUE));
+    }
+
+    @Test
+    public void testUpdatePastDueStatusInRange_outsideRange() {
+        long maxId = borrowingRepository.findMaxPastDueIdByStatus(Borrowing.Status.BORROWED, LocalDate.now());
+
+        int updated = borrowingRepository.updatePastDueStatusInRange(maxId + 1, Long.MAX_VALUE,
+                Borrowing.Status.BORROWED, Borrowing.Status.OVERDUE, LocalDate.now(), LocalDateTime.now());
+
+        assertEquals(0, updated);
+    }
+
+    @Test
+    public void testUpdatePastDueStatusByIds_skipsNotPastDue() {
+        List<Long> ids = borrowingRepository.findPastDueByStatus(Borrowing.Status.BORROWED, LocalDate.now()).stream()
+                .map(Borrowing::getId)
+                .collect(Collectors.toCollection(ArrayList::new));
+        // Not due yet
+        ids.add(borrowing1.getId());
+
+        int updated = borrowingRepository.updatePastDueStatusByIds(ids, Borrowing.Status.BORROWED,
+                Borrowing.Status.OVERDUE, LocalDate.now(), LocalDateTime.now());
+
+        assertEquals(3, updated);
+        assertEquals(2, borrowingRepository.countByBorrowerIdAndStatus(user1.getId(), Borrowing.Status.BORROWED));
+    }
+
+    @Test
+    public void testAddOverdueMarkedInRange_countsOnlyRowsMarkedByTheUpdate() {
+        // Overdue since before, already counted
+        createBorrowing(user3, book2, Borrowing.Status.OVERDUE, LocalDate.now().minusDays(5));
+        LocalDateTime now = LocalDateTime.now().plusSeconds(1).truncatedTo(ChronoUnit.MICROS);
+        borrowingRepository.updatePastDueStatusInRange(0, Long.MAX_VALUE, Borrowing.Status.BORROWED,
+                Borrowing.Status.OVERDUE, LocalDate.now(), now);
+
+        int users = userRepository.addOverdueMarkedInRange(0, Long.MAX_VALUE, Borrowing.Status.OVERDUE, now);
+
+        assertEquals(2, users);
+        assertEquals(2L, userRepository.findOverdueBorrowingsById(user1.getId()).orElseThrow());
+        assertEquals(1L, userRepository.findOverdueBorrowingsById(user2.getId()).orElseThrow());
+        assertEquals(0L, userRepository.findOverdueBorrowingsById(user3.getId()).orElseThrow());
+    }
+
+    @Test
+    public void testAddOverdueMarkedByIds() {
+        List<Long> ids = borrowingRepository.findPastDueByStatus(Borrowing.Status.BORROWED, LocalDate.now()).stream()
+                .map(Borrowing::getId)
+                .toList();
+        LocalDateTime now = LocalDateTime.now().plusSeconds(1).truncatedTo(ChronoUnit.MICROS);
+        borrowingRepository.updatePastDueStatusByIds(ids, Borrowing.Status.BORROWED, Borrowing.Status.OVERDUE,
+                LocalDate.now(), now);
+
+        userRepository.addOverdueMarkedByIds(ids, Borrowing.Status.OVERDUE, now);
+
+        assertEquals(2L, userRepository.findOverdueBorrowingsById(user1.getId()).orElseThrow());
+        assertEquals(1L, userRepository.findOverdueBorrowingsById(user2.getId()).orElseThrow());
+    }
+
+    @Test
+    public void testAddBorrowingCounts() {
+        userRepository.addBorrowingCounts(user1.getId(), 2, 1, 0);
+        userRepository.addBorrowingCounts(user1.getId(), -1, -1, 1);
+
+        assertEquals(1L, userRepository.findActiveBorrowingsById(user1.getId()).orElseThrow());
+        assertEquals(0L, userRepository.findOverdueBorrowingsById(user1.getId()).orElseThrow());
+        assertEquals(1L, userRepository.findReturnedOverdueBorrowingsById(user1.getId()).orElseThrow());
+        assertEquals(0L, userRepository.findActiveBorrowingsById(user2.getId()).orElseThrow());
+    }
+
+    @Test
+    public void testReconcileBorrowingCountsInRange() {
+        createBorrowing(user2, book2, Borrowing.Status.OVERDUE, LocalDate.now().minusDays(5));
+        createBorrowing(user2, createBook("Returned Book"), Borrowing.Status.RETURNED_OVERDUE,
+                LocalDate.now().minusDays(5));
+
+        userRepository.lockIdsInRange(0, Long.MAX_VALUE);
+        int corrected = userRepository.reconcileBorrowingCountsInRange(0, Long.MAX_VALUE, ACTIVE_STATUSES,
+                Borrowing.Status.OVERDUE, Borrowing.Status.RETURNED_OVERDUE);
+
+        // user3 has no borrowings, its zero counters are right already
+        assertEquals(2, corrected);
+        assertEquals(4L, userRepository.findActiveBorrowingsById(user1.getId()).orElseThrow());
+        assertEquals(0L, userRepository.findOverdueBorrowingsById(user1.getId()).orElseThrow());
+        assertEquals(2L, userRepository.findActiveBorrowingsById(user2.getId()).orElseThrow());
+        assertEquals(1L, userRepository.findOverdueBorrowingsById(user2.getId()).orElseThrow());
+        assertEquals(1L, userRepository.findReturnedOverdueBorrowingsById(user2.getId()).orElseThrow());
+        assertEquals(0, userRepository.reconcileBorrowingCountsInRange(0, Long.MAX_VALUE, ACTIVE_STATUSES,
+                Borrowing.Status.OVERDUE, Borrowing.Status.RETURNED_OVERDUE));
+    }
+
+    @Test
+    public void testStreamAllByStatusNotIn() {
+        createBorrowing(user2, book2, Borrowing.Status.RETURNED_TIMELY, LocalDate.now().minusDays(1));
+        createBorrowing(user1, createBook("Returned Book"), Borrowing.Status.RETURNED_OVERDUE,
+                LocalDate.now().minusDays(1));
+
+        try (Stream<Borrowing> stream = borrowingRepository.streamAllByStatusNotIn(ACTIVE_STATUSES)) {
+            List<Borrowing> result = stream.toList();
+            assertEquals(2, result.size());
+            // Ordered by borrower like the cursor report
+            assertEquals(user1.getId(), result.get(0).getBorrower().getId());
+            assertEquals(user2.getId(), result.get(1).getBorrower().getId());
+        }
+
+        try (Stream<Borrowing> stream = borrowingRepository.streamByBorrowerIdAndStatusNotIn(user2.getId(),
+                ACTIVE_STATUSES)) {
+            assertEquals(List.of(Borrowing.Status.RETURNED_TIMELY),
+                    stream.map(Borrowing::getStatus).toList());
+        }
+    }
+
     @Test
     public void testFindByIdWithBookAndBorrower_whenFound() {
         Optional<Borrowing> result = borrowingRepository.findByIdWithBookAndBorrower(borrowing1.getId());
@@ -242,4 +384,41 @@ public class BorrowingRepositoryTest {
         Page<Borrowing> result = borrowingRepository.findAllByStatusNotIn(ACTIVE_STATUSES, Pageable.ofSize(10));
         assertEquals(0, result.getContent().size());
     }
+
+    @Test
+    public void testFindAllByBorrowerIdWithBook_whenPaged_thenCountsWithoutJoins() {
+        Page<Borrowing> result = borrowingRepository.findAllByBorrowerIdWithBook(user1.getId(), Pageable.ofSize(3));
+        assertEquals(4, result.getTotalElements());
+        assertEquals(2, result.getTotalPages());
+    }
+
+    @Test
+    public void testFindSliceByBorrowerIdWithBook() {
+        Slice<Borrowing> first = borrowingRepository.findSliceByBorrowerIdWithBook(user1.getId(), PageRequest.of(0, 3));
+        assertEquals(3, first.getContent().size());
+        assertTrue(first.hasNext());
+
+        Slice<Borrowing> last = borrowingRepository.findSliceByBorrowerIdWithBook(user1.getId(), PageRequest.of(1, 3));
+        assertEquals(1, last.getContent().size());
+        assertFalse(last.hasNext());
+    }
+
+    @Test
+    public void testFindSliceByStatusNotIn() {
+        Slice<Borrowing> result = borrowingRepository.findSliceByStatusNotIn(RETURNED_STATUSES, PageRequest.of(0, 5));
+        assertEquals(5, result.getContent().size());
+        assertFalse(result.hasNext());
+    }
+
+    @Test
+    public void testCountByBorrowerId() {
+        assertEquals(4, borrowingRepository.countByBorrowerId(user1.getId()));
+        assertEquals(0, borrowingRepository.countByBorrowerId(user3.getId()));
+    }
+
+    @Test
+    public void testCountByStatusNotIn() {
+        assertEquals(5, borrowingRepository.countByStatusNotIn(RETURNED_STATUSES));
+        assertEquals(1, borrowingRepository.countByBorrowerIdAndStatusNotIn(user2.getId(), RETURNED_STATUSES));
+    }
 }
@@ -14,6 +14,7 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.Optional;
@@ -38,7 +39,7 @@ public class UserRepositoryTest {
         user.setName("name");
         user.setSurname("surname");
         user.setPassword("12345678");
-        user.setRoles("ROLE_PATRON");
+        user.setRoleMask(User.Role.ROLE_PATRON.bit());
         user.setPhoneNumber("5051112233");
         user.setIsActive(isActive);
         return userRepository.save(user);
@@ -66,20 +67,33 @@ public class UserRepositoryTest {
     }
 
     @Test
-    public void testFindByEmail_whenUserFound() {
-        Optional<User> optUser = userRepository.findByEmail(activeUser.getEmail());
+    public void testFindByNormalizedEmail_whenUserFound() {
+        Optional<User> optUser = userRepository
+                .findByNormalizedEmail(User.normalizeEmail(" HuseyinSarsilmaz@Hotmail.com"));
 
         assertTrue(optUser.isPresent());
         assertEquals(activeUser.getEmail(), optUser.get().getEmail());
     }
 
     @Test
-    public void testFindByEmail_whenUserNotFound() {
-        Optional<User> optUser = userRepository.findByEmail(NON_EXISTENT_EMAIL);
+    public void testFindByNormalizedEmail_whenUserNotFound() {
+        Optional<User> optUser = userRepository.findByNormalizedEmail(NON_EXISTENT_EMAIL);
 
         assertFalse(optUser.isPresent());
     }
 
+    @Test
+    public void testExistsByNormalizedEmail() {
+        assertTrue(userRepository.existsByNormalizedEmail(activeUser.getNormalizedEmail()));
+        assertFalse(userRepository.existsByNormalizedEmail(NON_EXISTENT_EMAIL));
+    }
+
+    @Test
+    public void testSave_whenEmailDiffersOnlyInCase() {
+        assertThrows(DataIntegrityViolationException.class,
+                () -> createUser("HuseyinSarsilmaz@hotmail.com", true));
+    }
+
     @ParameterizedTest
     @CsvSource({
             "active, false",
@@ -0,0 +1,149 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.huseyinsarsilmaz.lms.exception.InvalidDateRangeException;
+import com.huseyinsarsilmaz.lms.model.dto.request.BookSearchRequest;
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+import com.huseyinsarsilmaz.lms.repository.BookRepository;
+
+import jakarta.transaction.Transactional;
+
+@Transactional
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@DataJpaTest
+public class BookCriteriaSearchTest {
+
+    private static final Pageable BY_TITLE = PageRequest.of(0, 10, Sort.by("title"));
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private BookSearchIndex index;
+    private BookCriteriaSearch search;
+    private Book biography;
+
+    @BeforeEach
+    public void setUp() {
+        createBook("The Hobbit", "J. R. R. Tolkien", Book.Genre.FANTASY, true, LocalDate.of(1937, 9, 21));
+        createBook("The Silmarillion", "J. R. R. Tolkien", Book.Genre.FANTASY, false, LocalDate.of(1977, 9, 15));
+        createBook("The Fellowship of the Ring", "J. R. R. Tolkien", Book.Genre.FANTASY, true,
+                LocalDate.of(1954, 7, 29));
+        createBook("A Game of Thrones", "George R. R. Martin", Book.Genre.FANTASY, true, LocalDate.of(1996, 8, 1));
+        biography = createBook("Tolkien: A Biography", "Humphrey Carpenter", Book.Genre.BIOGRAPHY, true,
+                LocalDate.of(1977, 5, 1));
+
+        // Answers nothing unless stubbed, so every text criterion falls back to LIKE
+        index = mock(BookSearchIndex.class);
+        search = new BookCriteriaSearch(bookRepository, index, 1000);
+    }
+
+    private Book createBook(String title, String author, Book.Genre genre, boolean available, LocalDate published) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setIsbn(String.valueOf(bookRepository.count() + 1_000_000_000L));
+        book.setGenre(genre);
+        book.setIsAvailable(available);
+        book.setPublicationDate(published);
+        return bookRepository.save(book);
+    }
+
+    private List<String> titles(BookSearchRequest req) {
+        return search.search(req, BY_TITLE).getContent().stream().map(Book::getTitle).toList();
+    }
+
+    @Test
+    public void testSearch_whenCriteriaAreCombined_thenAllMustMatch() {
+        BookSearchRequest req = BookSearchRequest.builder()
+                .author("tolkien")
+                .genre(Book.Genre.FANTASY)
+                .available(true)
+                .build();
+
+        assertEquals(List.of("The Fellowship of the Ring", "The Hobbit"), titles(req));
+    }
+
+    @Test
+    public void testSearch_whenDateRangeIsGiven_thenBoundsAreInclusive() {
+        BookSearchRequest req = BookSearchRequest.builder()
+                .publishedFrom(LocalDate.of(1954, 7, 29))
+                .publishedTo(LocalDate.of(1977, 9, 15))
+                .build();
+
+        assertEquals(List.of("The Fellowship of the Ring", "The Silmarillion", "Tolkien: A Biography"), titles(req));
+    }
+
+    @Test
+    public void testSearch_whenNoCriteria_thenEveryBookMatches() {
+        assertEquals(5, search.search(new BookSearchRequest(), BY_TITLE).getTotalElements());
+    }
+
+    @Test
+    public void testSearch_whenTextIsIndexed_thenIdsReplaceLike() {
+        when(index.count(BookSearchIndex.Field.TITLE, "tolkien")).thenReturn(OptionalLong.of(1));
+        when(index.search(eq(BookSearchIndex.Field.TITLE), eq("tolkien"), any()))
+                .thenReturn(Optional.of(new PageImpl<>(List.of(biography.getId()))));
+        BookSearchRequest req = BookSearchRequest.builder()
+                .title("tolkien")
+                .genre(Book.Genre.BIOGRAPHY)
+                .build();
+
+        assertEquals(List.of("Tolkien: A Biography"), titles(req));
+    }
+
+    @Test
+    public void testSearch_whenIndexMatchesTooMany_thenLikeIsUsed() {
+        when(index.count(BookSearchIndex.Field.AUTHOR, "tolkien")).thenReturn(OptionalLong.of(1001));
+        BookSearchRequest req = BookSearchRequest.builder().author("tolkien").available(false).build();
+
+        assertEquals(List.of("The Silmarillion"), titles(req));
+        verify(index, never()).search(any(), any(), any());
+    }
+
+    @Test
+    public void testSearch_whenIndexMatchesNothing_thenEmptyPage() {
+        when(index.count(BookSearchIndex.Field.AUTHOR, "pratchett")).thenReturn(OptionalLong.of(0));
+        when(index.search(eq(BookSearchIndex.Field.AUTHOR), eq("pratchett"), any()))
+                .thenReturn(Optional.of(Page.empty()));
+        BookSearchRequest req = BookSearchRequest.builder().author("pratchett").build();
+
+        assertTrue(search.search(req, BY_TITLE).isEmpty());
+    }
+
+    @Test
+    public void testSearch_whenWildcardInText_thenMatchedLiterally() {
+        assertTrue(titles(BookSearchRequest.builder().title("%").build()).isEmpty());
+    }
+
+    @Test
+    public void testSearch_whenDateRangeIsInverted_thenThrows() {
+        BookSearchRequest req = BookSearchRequest.builder()
+                .publishedFrom(LocalDate.of(2000, 1, 1))
+                .publishedTo(LocalDate.of(1990, 1, 1))
+                .build();
+
+        assertThrows(InvalidDateRangeException.class, () -> search.search(req, BY_TITLE));
+    }
+}
@@ -0,0 +1,150 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BookSearchIndexTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private BookSearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        // The mocked JdbcTemplate streams no rows, so the index starts empty
+        jdbcTemplate = mock(JdbcTemplate.class);
+        index = new BookSearchIndex(jdbcTemplate, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), true);
+        index.build();
+
+        index.index(book(1L, "How to write code", "Hüseyin Sarsılmaz", "9780134685991"));
+        index.index(book(2L, "Jumping Jacks", "Jack the Jumper", "1230134685992"));
+        index.index(book(3L, "Clean Code", "Robert Martin", "9780132350884"));
+    }
+
+    private static Book book(Long id, String title, String author, String isbn) {
+        Book book = Book.builder().title(title).author(author).isbn(isbn).build();
+        book.setId(id);
+        return book;
+    }
+
+    private List<Long> search(BookSearchIndex.Field field, String query) {
+        return index.search(field, query, Pageable.unpaged()).orElseThrow().getContent();
+    }
+
+    @Test
+    public void testSearch_whenQueryIsInnerSubstring_thenMatchesIgnoringCase() {
+        assertEquals(List.of(1L, 3L), search(BookSearchIndex.Field.TITLE, "CODE"));
+        assertEquals(List.of(2L), search(BookSearchIndex.Field.AUTHOR, "jump"));
+        assertEquals(List.of(1L), search(BookSearchIndex.Field.AUTHOR, "SARSIL"));
+        assertEquals(List.of(1L, 2L), search(BookSearchIndex.Field.ISBN, "0134685"));
+    }
+
+    @Test
+    public void testSearch_whenQuerySharesTrigramsButIsNoSubstring_thenNoMatch() {
+        index.index(book(4L, "bcdabc", "Anonymous", "1111111111111"));
+
+        assertEquals(List.of(), search(BookSearchIndex.Field.TITLE, "abcd"));
+    }
+
+    @Test
+    public void testSearch_whenBookIsUpdatedOrRemoved_thenIndexFollows() {
+        index.index(book(3L, "Clean Architecture", "Robert Martin", "9780134494166"));
+        index.remove(1L);
+
+        assertEquals(List.of(), search(BookSearchIndex.Field.TITLE, "code"));
+        assertEquals(List.of(3L), search(BookSearchIndex.Field.TITLE, "architect"));
+    }
+
+    @Test
+    public void testSearch_whenPagedAndSortedByTitle() {
+        Page<Long> sorted = index.search(BookSearchIndex.Field.ISBN, "978", PageRequest.of(1, 1, Sort.by("title")))
+                .orElseThrow();
+        assertEquals(List.of(1L), sorted.getContent());
+        assertEquals(2, sorted.getTotalElements());
+    }
+
+    @Test
+    public void testCount_whenQueryIsIndexed_thenMatchesSearch() {
+        assertEquals(OptionalLong.of(2), index.count(BookSearchIndex.Field.TITLE, "code"));
+        assertEquals(OptionalLong.of(0), index.count(BookSearchIndex.Field.AUTHOR, "tolkien"));
+        assertEquals(OptionalLong.empty(), index.count(BookSearchIndex.Field.TITLE, "co"));
+    }
+
+    @Test
+    public void testSearch_whenQueryIsShorterThanTrigram_thenDatabaseIsUsed() {
+        assertEquals(Optional.empty(), index.search(BookSearchIndex.Field.TITLE, "co", Pageable.unpaged()));
+    }
+
+    @Test
+    public void testSearch_whenSortedByUnindexedColumn_thenDatabaseIsUsed() {
+        assertEquals(Optional.empty(),
+                index.search(BookSearchIndex.Field.TITLE, "code", PageRequest.of(0, 10, Sort.by("publicationDate"))));
+    }
+
+    @Test
+    public void testSearch_whenIndexIsNotBuilt_thenDatabaseIsUsed() {
+        BookSearchIndex notBuilt = new BookSearchIndex(mock(JdbcTemplate.class),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), true);
+
+        assertEquals(Optional.empty(), notBuilt.search(BookSearchIndex.Field.TITLE, "code", Pageable.unpaged()));
+    }
+
+    @Test
+    public void testRebuild_whenTableChangedThroughAnotherInstance_thenIndexFollowsTable() throws SQLException {
+        // The table as another instance left it: book 1 deleted, book 2 renamed and book 5 created
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("id")).thenReturn(2L, 3L, 5L);
+        when(row.getString("title")).thenReturn("Jumping Jills", "Clean Code", "Dune");
+        when(row.getString("author")).thenReturn("Jack the Jumper", "Robert Martin", "Frank Herbert");
+        when(row.getString("isbn")).thenReturn("1230134685992", "9780132350884", "9780441172719");
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (int i = 0; i < 3; i++) {
+                handler.processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        index.rebuild();
+
+        assertEquals(List.of(3L), search(BookSearchIndex.Field.TITLE, "code"));
+        assertEquals(List.of(2L), search(BookSearchIndex.Field.TITLE, "jills"));
+        assertEquals(List.of(), search(BookSearchIndex.Field.TITLE, "jacks"));
+        assertEquals(List.of(5L), search(BookSearchIndex.Field.AUTHOR, "herbert"));
+    }
+
+    @Test
+    public void testRebuild_whenIndexIsNotBuilt_thenWaitsForStartup() {
+        BookSearchIndex notBuilt = new BookSearchIndex(jdbcTemplate, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), true);
+
+        notBuilt.rebuild();
+
+        assertEquals(Optional.empty(), notBuilt.search(BookSearchIndex.Field.TITLE, "code", Pageable.unpaged()));
+    }
+}
@@ -0,0 +1,171 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.huseyinsarsilmaz.lms.model.dto.response.BookSuggestion;
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BookSuggestIndexTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private BookSuggestIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        // The mocked JdbcTemplate streams no rows, so the index starts empty
+        jdbcTemplate = mock(JdbcTemplate.class);
+        index = new BookSuggestIndex(jdbcTemplate, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), true);
+        index.build();
+
+        index.index(book(1L, "The Hobbit", "J.R.R. Tolkien"));
+        index.index(book(2L, "Dune", "Frank Herbert"));
+        index.index(book(3L, "Dune Messiah", "Frank Herbert"));
+        index.index(book(4L, "Thérèse Raquin", "Émile Zola"));
+    }
+
+    private static Book book(Long id, String title, String author) {
+        Book book = Book.builder().title(title).author(author).build();
+        book.setId(id);
+        return book;
+    }
+
+    private List<String> suggest(String query, int limit) {
+        return index.suggest(query, limit).orElseThrow().stream().map(BookSuggestion::getText).toList();
+    }
+
+    @Test
+    public void testSuggest_whenNotBuilt_thenEmpty() {
+        BookSuggestIndex building = new BookSuggestIndex(mock(JdbcTemplate.class),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), true);
+
+        assertTrue(building.suggest("dune", 10).isEmpty());
+    }
+
+    @Test
+    public void testSuggest_whenPrefixDiffersInCaseAccentsAndPunctuation_thenMatches() {
+        assertEquals(List.of("Thérèse Raquin"), suggest("THERESE", 10));
+        assertEquals(List.of("Émile Zola"), suggest("emile", 10));
+        assertEquals(List.of("J.R.R. Tolkien"), suggest("j r r tol", 10));
+    }
+
+    @Test
+    public void testSuggest_whenPrefixStartsALaterWord_thenMatchesArticlelessTitlesAndAuthorNames() {
+        assertEquals(List.of("The Hobbit"), suggest("hob", 10));
+        assertEquals(List.of("J.R.R. Tolkien"), suggest("tolk", 10));
+        assertEquals(List.of("Émile Zola"), suggest("zola", 10));
+        // Only authors are matched from any word
+        assertEquals(List.of(), suggest("messiah", 10));
+    }
+
+    @Test
+    public void testSuggest_whenBooksAreBorrowed_thenMostBorrowedComeFirst() {
+        assertEquals(List.of("Dune", "Dune Messiah"), suggest("dune", 10));
+
+        index.recordBorrow(3L);
+        index.recordBorrow(3L);
+
+        List<BookSuggestion> suggestions = index.suggest("dune", 10).orElseThrow();
+        assertEquals("Dune Messiah", suggestions.get(0).getText());
+        assertEquals(Book.SearchType.TITLE, suggestions.get(0).getType());
+        assertEquals(2, suggestions.get(0).getPopularity());
+        assertEquals(List.of("Frank Herbert"), suggest("herb", 10));
+        assertEquals(2, index.suggest("herb", 10).orElseThrow().get(0).getPopularity());
+    }
+
+    @Test
+    public void testSuggest_whenTitleIsShared_thenRemovedWithItsLastBook() {
+        index.index(book(5L, "Dune", "Someone Else"));
+        index.recordBorrow(2L);
+        index.recordBorrow(5L);
+        assertEquals(2, index.suggest("dune", 1).orElseThrow().get(0).getPopularity());
+
+        index.remove(2L);
+        assertEquals(List.of("Dune", "Dune Messiah"), suggest("dune", 10));
+        assertEquals(1, index.suggest("dune", 1).orElseThrow().get(0).getPopularity());
+
+        index.remove(5L);
+        assertEquals(List.of("Dune Messiah"), suggest("dune", 10));
+        assertEquals(List.of(), suggest("someone", 10));
+    }
+
+    @Test
+    public void testSuggest_whenTitleIsUpdated_thenOldTitleIsGoneAndBorrowsCarryOver() {
+        index.recordBorrow(1L);
+        index.index(book(1L, "The Lord of the Rings", "J.R.R. Tolkien"));
+
+        assertEquals(List.of(), suggest("hobbit", 10));
+        List<BookSuggestion> suggestions = index.suggest("lord", 10).orElseThrow();
+        assertEquals("The Lord of the Rings", suggestions.get(0).getText());
+        assertEquals(1, suggestions.get(0).getPopularity());
+    }
+
+    @Test
+    public void testSuggest_whenPrefixCoversManyTitles_thenRankedTopIsKeptAcrossChanges() {
+        for (long id = 100; id < 300; id++) {
+            index.index(book(id, "Book " + id, "Author " + id));
+        }
+        for (int i = 0; i < 5; i++) {
+            index.recordBorrow(157L);
+        }
+        index.recordBorrow(242L);
+
+        assertEquals(List.of("Book 157", "Book 242", "Book 100"), suggest("book", 3));
+        assertEquals(20, suggest("book", 50).size());
+        assertEquals(10, suggest("book 15", 20).size());
+
+        index.remove(157L);
+        assertEquals(List.of("Book 242", "Book 100"), suggest("book", 2));
+        assertEquals(List.of("Book 150", "Book 151"), suggest("book 15", 2));
+    }
+
+    @Test
+    public void testRebuild_whenTablesChangedThroughAnotherInstance_thenIndexFollowsTables() throws SQLException {
+        // Only Dune is left and Neuromancer was added and borrowed three times through another instance
+        ResultSet bookRow = mock(ResultSet.class);
+        when(bookRow.getLong("id")).thenReturn(2L, 5L);
+        when(bookRow.getString("title")).thenReturn("Dune", "Neuromancer");
+        when(bookRow.getString("author")).thenReturn("Frank Herbert", "William Gibson");
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(bookRow);
+            handler.processRow(bookRow);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        ResultSet borrowRow = mock(ResultSet.class);
+        when(borrowRow.getLong("book_id")).thenReturn(5L);
+        when(borrowRow.getLong("borrows")).thenReturn(3L);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(borrowRow);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        index.rebuild();
+
+        assertEquals(List.of(), suggest("hobbit", 10));
+        assertEquals(List.of("Dune"), suggest("dune", 10));
+        List<BookSuggestion> suggestions = index.suggest("neuro", 10).orElseThrow();
+        assertEquals("Neuromancer", suggestions.get(0).getText());
+        assertEquals(3, suggestions.get(0).getPopularity());
+    }
+}
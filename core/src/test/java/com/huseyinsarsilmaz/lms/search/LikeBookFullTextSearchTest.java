@@ -0,0 +1,38 @@
+package com.huseyinsarsilmaz.lms.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.huseyinsarsilmaz.lms.search.LikeBookFullTextSearch.Term;
+
+public class LikeBookFullTextSearchTest {
+
+    @Test
+    public void testParse_whenQueryHasWords_thenEveryWordIsRequired() {
+        assertEquals(List.of(new Term("clean", false, false), new Term("code", false, false)),
+                LikeBookFullTextSearch.parse("  Clean   CODE "));
+    }
+
+    @Test
+    public void testParse_whenQueryHasPhrase_thenPhraseIsOneTerm() {
+        assertEquals(List.of(new Term("write code", false, false)),
+                LikeBookFullTextSearch.parse("\"write   code\""));
+    }
+
+    @Test
+    public void testParse_whenQueryHasExclusionAndOr() {
+        assertEquals(List.of(
+                new Term("java", false, false),
+                new Term("kotlin", false, true),
+                new Term("android", true, false)),
+                LikeBookFullTextSearch.parse("java or kotlin -android"));
+    }
+
+    @Test
+    public void testParse_whenQueryIsBlank_thenNoTerms() {
+        assertTrue(LikeBookFullTextSearch.parse("   ").isEmpty());
+    }
+}
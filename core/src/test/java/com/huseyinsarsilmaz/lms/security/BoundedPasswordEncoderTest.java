@@ -0,0 +1,90 @@
+package com.huseyinsarsilmaz.lms.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.huseyinsarsilmaz.lms.exception.ServiceBusyException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BoundedPasswordEncoderTest {
+
+    private BoundedPasswordEncoder encoder;
+    private ExecutorService callers;
+
+    @AfterEach
+    public void tearDown() {
+        if (encoder != null) {
+            encoder.destroy();
+        }
+        if (callers != null) {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEncodeAndMatches() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 1, 1, new SimpleMeterRegistry());
+
+        String encoded = encoder.encode("12345678");
+
+        assertTrue(encoder.matches("12345678", encoded));
+        assertFalse(encoder.matches("87654321", encoded));
+    }
+
+    @Test
+    public void testUpgradeEncoding_whenStrengthIncreased() {
+        String weakHash = new BCryptPasswordEncoder(4).encode("12345678");
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(5), 1, 1, new SimpleMeterRegistry());
+
+        assertTrue(encoder.upgradeEncoding(weakHash));
+    }
+
+    @Test
+    public void testEncode_whenQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        encoder = new BoundedPasswordEncoder(blockingEncoder(started, release), 1, 1, new SimpleMeterRegistry());
+        callers = Executors.newFixedThreadPool(2);
+
+        // One task occupies the only thread and a second one fills the queue
+        callers.submit(() -> encoder.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> encoder.encode("second"));
+        while (encoder.queueSize() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(ServiceBusyException.class, () -> encoder.encode("third"));
+        release.countDown();
+    }
+
+    private static PasswordEncoder blockingEncoder(CountDownLatch started, CountDownLatch release) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+    }
+}
@@ -0,0 +1,176 @@
+package com.huseyinsarsilmaz.lms.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.huseyinsarsilmaz.lms.model.entity.User;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+public class JwtServiceTest {
+
+    private static final String SECRET = "9d5e3d4f5e5085e6e0cd79d4975c202f17ec7a62b0e4c0100a40b8d18f13e458";
+    private static final String EMAIL = "huseyinsarsilmaz@hotmail.com";
+
+    private static final Key KEY = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+
+    private JwtService jwtService;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        jwtService = new JwtService(SECRET, 100);
+
+        user = User.builder()
+                .email(EMAIL)
+                .roleMask(User.Role.maskOf(User.Role.ROLE_LIBRARIAN, User.Role.ROLE_PATRON))
+                .securityVersion(3)
+                .build();
+        user.setId(7L);
+    }
+
+    @Test
+    public void testVerify_whenTokenIsValid() {
+        String token = jwtService.generateToken(user);
+
+        VerifiedToken verified = jwtService.verify(token);
+
+        assertEquals(EMAIL, verified.subject());
+        assertEquals(7L, verified.userId());
+        assertEquals(3L, verified.securityVersion());
+        assertEquals(List.of("ROLE_PATRON", "ROLE_LIBRARIAN"),
+                verified.authorities().stream().map(GrantedAuthority::getAuthority).toList());
+        assertTrue(verified.expiresAt().isAfter(verified.issuedAt()));
+        assertNotNull(verified.tokenId());
+    }
+
+    @Test
+    public void testGenerateToken_whenCalledTwice_thenTokenIdsDiffer() {
+        assertNotEquals(jwtService.verify(jwtService.generateToken(user)).tokenId(),
+                jwtService.verify(jwtService.generateToken(user)).tokenId());
+    }
+
+    @Test
+    public void testVerify_whenTokenIsCached() {
+        String token = jwtService.generateToken(user);
+
+        assertSame(jwtService.verify(token), jwtService.verify(token));
+    }
+
+    @Test
+    public void testVerify_whenCacheIsDisabled() {
+        JwtService nonCachingJwtService = new JwtService(SECRET, 0);
+        String token = nonCachingJwtService.generateToken(user);
+
+        assertEquals(EMAIL, nonCachingJwtService.verify(token).subject());
+    }
+
+    @Test
+    public void testVerify_whenSignatureIsTampered() {
+        String token = jwtService.generateToken(user);
+        int signatureStart = token.lastIndexOf('.') + 1;
+        char replacement = token.charAt(signatureStart) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, signatureStart) + replacement + token.substring(signatureStart + 1);
+
+        assertThrows(InvalidTokenException.class, () -> jwtService.verify(tampered));
+    }
+
+    @Test
+    public void testVerify_whenClaimsAreMissing() {
+        String token = Jwts.builder()
+                .setSubject(EMAIL)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(KEY, SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThrows(InvalidTokenException.class, () -> jwtService.verify(token));
+    }
+
+    @Test
+    public void testVerify_whenTokenIsExpired() {
+        String token = Jwts.builder()
+                .setSubject(EMAIL)
+                .setIssuedAt(new Date(System.currentTimeMillis() - 2000))
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(KEY, SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThrows(InvalidTokenException.class, () -> jwtService.verify(token));
+    }
+
+    @Test
+    public void testVerify_whenTokenCarriesLegacyRoles() {
+        String token = Jwts.builder()
+                .claim("uid", 7L)
+                .claim("roles", "ROLE_PATRON")
+                .claim("ver", 3L)
+                .setSubject(EMAIL)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(KEY, SignatureAlgorithm.HS256)
+                .compact();
+
+        VerifiedToken verified = jwtService.verify(token);
+
+        assertEquals(EMAIL, verified.subject());
+        assertEquals(7L, verified.userId());
+        assertEquals(3L, verified.securityVersion());
+        assertEquals(List.of("ROLE_PATRON"),
+                verified.authorities().stream().map(GrantedAuthority::getAuthority).toList());
+        assertNull(verified.tokenId());
+    }
+
+    @Test
+    public void testGenerateToken_whenReadByJjwt() {
+        String token = jwtService.generateToken(user);
+
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(KEY)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+
+        assertEquals(EMAIL, claims.getSubject());
+        assertEquals(7L, claims.get("uid", Long.class));
+        assertEquals(User.Role.maskOf(User.Role.ROLE_LIBRARIAN, User.Role.ROLE_PATRON),
+                claims.get("roles", Integer.class));
+        assertEquals(3L, claims.get("ver", Long.class));
+        assertNotNull(claims.getId());
+        assertTrue(claims.getExpiration().after(claims.getIssuedAt()));
+    }
+
+    @Test
+    public void testVerify_whenAlgorithmIsNone() {
+        String token = jwtService.generateToken(user);
+        String unsigned = "eyJhbGciOiJub25lIn0" + token.substring(token.indexOf('.'), token.lastIndexOf('.') + 1);
+
+        assertThrows(InvalidTokenException.class, () -> jwtService.verify(unsigned));
+    }
+
+    @Test
+    public void testVerify_whenRoleMaskIsUnknown() {
+        String token = Jwts.builder()
+                .claim("uid", 7L)
+                .claim("roles", 1 << 10)
+                .claim("ver", 3L)
+                .setSubject(EMAIL)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(KEY, SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThrows(InvalidTokenException.class, () -> jwtService.verify(token));
+    }
+}
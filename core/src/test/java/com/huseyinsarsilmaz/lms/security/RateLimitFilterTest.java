@@ -0,0 +1,131 @@
+package com.huseyinsarsilmaz.lms.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.Locale;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huseyinsarsilmaz.lms.model.entity.User;
+import com.huseyinsarsilmaz.lms.util.LmsResponseBuilder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RateLimitFilterTest {
+
+    private static final String SECRET = "9d5e3d4f5e5085e6e0cd79d4975c202f17ec7a62b0e4c0100a40b8d18f13e458";
+
+    private JwtService jwtService;
+    private LmsResponseBuilder responseBuilder;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        jwtService = new JwtService(SECRET, 100);
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.addMessage("fail.too.many.requests", Locale.getDefault(),
+                "Too many requests, please try again in {0} seconds");
+        responseBuilder = new LmsResponseBuilder(messageSource);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private RateLimitFilter createFilter(boolean enabled) {
+        return new RateLimitFilter(jwtService, responseBuilder, new ObjectMapper(), meterRegistry, enabled,
+                2, 0.001, 3, 0.001, 1, 0.001, 1000, Duration.ofMinutes(1));
+    }
+
+    private MockHttpServletResponse send(RateLimitFilter filter, MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method, String path, String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api" + path);
+        request.setContextPath("/api");
+        request.setServletPath(path);
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+
+    private String tokenFor(long userId) {
+        User user = User.builder()
+                .email("user" + userId + "@hotmail.com")
+                .roleMask(User.Role.ROLE_PATRON.bit())
+                .build();
+        user.setId(userId);
+        return "Bearer " + jwtService.generateToken(user);
+    }
+
+    @Test
+    public void testFilter_whenAuthBurstIsExceeded() throws Exception {
+        RateLimitFilter filter = createFilter(true);
+
+        assertEquals(200, send(filter, request("POST", "/auth/login", "10.0.0.1")).getStatus());
+        assertEquals(200, send(filter, request("POST", "/auth/login", "10.0.0.1")).getStatus());
+        MockHttpServletResponse rejected = send(filter, request("POST", "/auth/login", "10.0.0.1"));
+
+        assertEquals(429, rejected.getStatus());
+        assertNotNull(rejected.getHeader("Retry-After"));
+        assertTrue(rejected.getContentAsString().contains("\"status\":false"));
+        assertEquals(1.0, meterRegistry.get("lms.ratelimit.rejected").tag("route", "auth").counter().count());
+
+        // Another IP has its own bucket
+        assertEquals(200, send(filter, request("POST", "/auth/login", "10.0.0.2")).getStatus());
+    }
+
+    @Test
+    public void testFilter_whenUsersShareAnIp() throws Exception {
+        RateLimitFilter filter = createFilter(true);
+        String firstUser = tokenFor(1L);
+        String secondUser = tokenFor(2L);
+
+        MockHttpServletRequest first = request("POST", "/borrowings", "10.0.0.1");
+        first.addHeader("Authorization", firstUser);
+        assertEquals(200, send(filter, first).getStatus());
+
+        MockHttpServletRequest firstAgain = request("POST", "/borrowings", "10.0.0.1");
+        firstAgain.addHeader("Authorization", firstUser);
+        assertEquals(429, send(filter, firstAgain).getStatus());
+
+        MockHttpServletRequest second = request("POST", "/borrowings", "10.0.0.1");
+        second.addHeader("Authorization", secondUser);
+        assertEquals(200, send(filter, second).getStatus());
+    }
+
+    @Test
+    public void testFilter_whenReadAndWriteAreLimitedSeparately() throws Exception {
+        RateLimitFilter filter = createFilter(true);
+
+        assertEquals(200, send(filter, request("POST", "/books", "10.0.0.1")).getStatus());
+        assertEquals(429, send(filter, request("POST", "/books", "10.0.0.1")).getStatus());
+        assertEquals(200, send(filter, request("GET", "/books", "10.0.0.1")).getStatus());
+    }
+
+    @Test
+    public void testFilter_whenDisabled() throws Exception {
+        RateLimitFilter filter = createFilter(false);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, send(filter, request("POST", "/auth/login", "10.0.0.1")).getStatus());
+        }
+    }
+
+    @Test
+    public void testTokenBucket_whenTokensAreRefilled() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+
+        assertEquals(0, bucket.tryTake(0));
+        assertEquals(0, bucket.tryTake(0));
+        assertEquals(1_000_000_000L, bucket.tryTake(0));
+        assertEquals(500_000_000L, bucket.tryTake(500_000_000L));
+        assertEquals(0, bucket.tryTake(1_000_000_000L));
+    }
+}
@@ -0,0 +1,94 @@
+package com.huseyinsarsilmaz.lms.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.huseyinsarsilmaz.lms.exception.ServiceBusyException;
+import com.huseyinsarsilmaz.lms.model.dto.request.LoginRequest;
+import com.huseyinsarsilmaz.lms.model.entity.User;
+import com.huseyinsarsilmaz.lms.security.CustomUserDetails;
+import com.huseyinsarsilmaz.lms.security.JwtService;
+import com.huseyinsarsilmaz.lms.security.TokenRevocationRegistry;
+import com.huseyinsarsilmaz.lms.service.impl.AuthServiceImpl;
+
+@ExtendWith(MockitoExtension.class)
+public class AuthServiceTest {
+
+    private static final String EMAIL = "huseyinsarsilmaz@hotmail.com";
+    private static final String PASSWORD = "12345678";
+    private static final String WEAK_HASH = "$2a$04$weakhash";
+    private static final String TOKEN = "token";
+
+    @Mock
+    private AuthenticationManager authenticationManager;
+
+    @Mock
+    private JwtService jwtService;
+
+    @Mock
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private AuthServiceImpl authService;
+
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        user = new User();
+        user.setId(1L);
+        user.setEmail(EMAIL);
+        user.setPassword(WEAK_HASH);
+        user.setRoleMask(User.Role.ROLE_PATRON.bit());
+
+        CustomUserDetails userDetails = new CustomUserDetails(user);
+        when(authenticationManager.authenticate(any())).thenReturn(
+                UsernamePasswordAuthenticationToken.authenticated(userDetails, null, userDetails.getAuthorities()));
+        when(jwtService.generateToken(user)).thenReturn(TOKEN);
+    }
+
+    @Test
+    public void testAuthenticate_whenHashIsCurrent_thenDoesNotRehash() {
+        when(passwordEncoder.upgradeEncoding(WEAK_HASH)).thenReturn(false);
+
+        assertEquals(TOKEN, authService.authenticateAndGenerateToken(new LoginRequest(EMAIL, PASSWORD)));
+        verify(passwordEncoder, never()).encode(anyString());
+        verify(userService, never()).rehashPassword(any(), anyString());
+    }
+
+    @Test
+    public void testAuthenticate_whenHashIsWeak_thenRehashes() {
+        when(passwordEncoder.upgradeEncoding(WEAK_HASH)).thenReturn(true);
+        when(passwordEncoder.encode(PASSWORD)).thenReturn("STRONGER_HASH");
+
+        assertEquals(TOKEN, authService.authenticateAndGenerateToken(new LoginRequest(EMAIL, PASSWORD)));
+        verify(userService).rehashPassword(user, "STRONGER_HASH");
+    }
+
+    @Test
+    public void testAuthenticate_whenHasherIsBusy_thenStillIssuesToken() {
+        when(passwordEncoder.upgradeEncoding(WEAK_HASH)).thenReturn(true);
+        when(passwordEncoder.encode(PASSWORD)).thenThrow(new ServiceBusyException());
+
+        assertEquals(TOKEN, authService.authenticateAndGenerateToken(new LoginRequest(EMAIL, PASSWORD)));
+        verify(userService, never()).rehashPassword(any(), anyString());
+    }
+}
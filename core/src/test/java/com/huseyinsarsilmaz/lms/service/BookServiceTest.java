@@ -7,8 +7,12 @@ import static org.mockito.Mockito.*;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Stream;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -19,21 +23,40 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 
+import com.huseyinsarsilmaz.lms.catalog.BookImporter;
 import com.huseyinsarsilmaz.lms.exception.AlreadyExistsException;
+import com.huseyinsarsilmaz.lms.exception.CursorNotSupportedException;
+import com.huseyinsarsilmaz.lms.exception.InvalidIsbnException;
 import com.huseyinsarsilmaz.lms.exception.NotAvailableException;
 import com.huseyinsarsilmaz.lms.exception.NotFoundException;
 import com.huseyinsarsilmaz.lms.model.dto.request.BookCreateRequest;
 import com.huseyinsarsilmaz.lms.model.dto.request.BookUpdateRequest;
+import com.huseyinsarsilmaz.lms.model.dto.response.BookSuggestion;
+import com.huseyinsarsilmaz.lms.model.dto.response.CountResponse;
 import com.huseyinsarsilmaz.lms.model.entity.Book;
 import com.huseyinsarsilmaz.lms.model.mapper.BookMapper;
 import com.huseyinsarsilmaz.lms.repository.BookRepository;
+import com.huseyinsarsilmaz.lms.search.BookCriteriaSearch;
+import com.huseyinsarsilmaz.lms.search.BookFullTextSearch;
+import com.huseyinsarsilmaz.lms.search.BookIsbnFilter;
+import com.huseyinsarsilmaz.lms.search.BookSearchIndex;
+import com.huseyinsarsilmaz.lms.search.BookSuggestIndex;
 
 import com.huseyinsarsilmaz.lms.service.impl.BookServiceImpl;
+import com.huseyinsarsilmaz.lms.util.BookCache;
+import com.huseyinsarsilmaz.lms.util.CountCache;
+import com.huseyinsarsilmaz.lms.util.PageCursor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 public class BookServiceTest {
@@ -44,6 +67,31 @@ public class BookServiceTest {
     @Mock
     private BookMapper bookMapper;
 
+    @Mock
+    private BookFullTextSearch bookFullTextSearch;
+
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private BookCriteriaSearch bookCriteriaSearch;
+
+    @Mock
+    private BookSuggestIndex bookSuggestIndex;
+
+    @Mock
+    private BookIsbnFilter bookIsbnFilter;
+
+    @Mock
+    private BookImporter bookImporter;
+
+    @Mock
+    private CountCache countCache;
+
+    // Disabled, every lookup goes to the repository
+    @Spy
+    private BookCache bookCache = new BookCache(new SimpleMeterRegistry(), 0, Duration.ofMinutes(1));
+
     @InjectMocks
     private BookServiceImpl bookService;
 
@@ -55,7 +103,8 @@ public class BookServiceTest {
                 Arguments.of(Book.SearchType.TITLE, "code", (Function<Book, ?>) Book::getTitle),
                 Arguments.of(Book.SearchType.AUTHOR, "Sarsılmaz", (Function<Book, ?>) Book::getAuthor),
                 Arguments.of(Book.SearchType.ISBN, "123", (Function<Book, ?>) Book::getIsbn),
-                Arguments.of(Book.SearchType.GENRE, "poetry", (Function<Book, ?>) Book::getGenre));
+                Arguments.of(Book.SearchType.GENRE, "poetry", (Function<Book, ?>) Book::getGenre),
+                Arguments.of(Book.SearchType.FULL_TEXT, "\"write code\" java", (Function<Book, ?>) Book::getTitle));
     }
 
     @BeforeEach
@@ -105,20 +154,56 @@ public class BookServiceTest {
                 () -> assertEquals(req.getTitle(), createdBook.getTitle()),
                 () -> assertEquals(req.getAuthor(), createdBook.getAuthor()),
                 () -> assertEquals(req.getIsbn(), createdBook.getIsbn()));
+        verify(bookIsbnFilter).add("9780134685991");
+    }
+
+    @Test
+    public void testCreateBook_shouldStoreIsbn10AsIsbn13() {
+        BookCreateRequest req = createBookCreateRequest();
+        req.setIsbn("0-13-468599-7");
+        when(bookMapper.toEntity(any(BookCreateRequest.class))).thenReturn(book1);
+        when(bookRepository.save(eq(book1))).thenReturn(book1);
+
+        bookService.create(req);
+
+        assertEquals("9780134685991", req.getIsbn());
     }
 
     @Test
     public void testIsIsbnTaken_shouldThrowExceptionWhenIsbnExists() {
-        when(bookRepository.findByIsbn(eq("9780134685991"))).thenReturn(Optional.of(book1));
+        when(bookIsbnFilter.mightExist("9780134685991")).thenReturn(true);
+        when(bookRepository.existsByIsbn(eq("9780134685991"))).thenReturn(true);
 
         assertThrows(AlreadyExistsException.class, () -> bookService.isIsbnTaken("9780134685991"));
     }
 
+    @Test
+    public void testIsIsbnTaken_shouldThrowExceptionWhenIsbn10OfExistingIsbn13IsGiven() {
+        when(bookIsbnFilter.mightExist("9780134685991")).thenReturn(true);
+        when(bookRepository.existsByIsbn(eq("9780134685991"))).thenReturn(true);
+
+        assertThrows(AlreadyExistsException.class, () -> bookService.isIsbnTaken("0134685997"));
+    }
+
     @Test
     public void testIsIsbnTaken_shouldNotThrowWhenIsbnDoesNotExist() {
-        when(bookRepository.findByIsbn(eq("9780134686000"))).thenReturn(Optional.empty());
+        when(bookIsbnFilter.mightExist("9780132350884")).thenReturn(true);
+        when(bookRepository.existsByIsbn(eq("9780132350884"))).thenReturn(false);
+
+        assertDoesNotThrow(() -> bookService.isIsbnTaken("9780132350884"));
+    }
+
+    @Test
+    public void testIsIsbnTaken_shouldNotQueryWhenFilterRulesIsbnOut() {
+        when(bookIsbnFilter.mightExist("9780132350884")).thenReturn(false);
 
-        assertDoesNotThrow(() -> bookService.isIsbnTaken("9780134686000"));
+        assertDoesNotThrow(() -> bookService.isIsbnTaken("9780132350884"));
+        verify(bookRepository, never()).existsByIsbn(any());
+    }
+
+    @Test
+    public void testIsIsbnTaken_shouldThrowWhenCheckDigitIsWrong() {
+        assertThrows(InvalidIsbnException.class, () -> bookService.isIsbnTaken("9780134685992"));
     }
 
     @Test
@@ -159,15 +244,16 @@ public class BookServiceTest {
             return null;
         }).when(bookMapper).updateEntity(eq(book1), eq(req));
 
-        when(bookRepository.save(eq(book1))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(bookRepository.saveAndFlush(eq(book1))).thenAnswer(invocation -> invocation.getArgument(0));
 
         Book updatedBook = bookService.update(book1, req);
 
         assertAll("Update Book",
                 () -> assertEquals(req.getTitle(), updatedBook.getTitle()),
                 () -> assertEquals(req.getAuthor(), updatedBook.getAuthor()),
-                () -> assertEquals(req.getIsbn(), updatedBook.getIsbn()),
+                () -> assertEquals("9780134685991", updatedBook.getIsbn()),
                 () -> assertEquals(book1.getId(), updatedBook.getId()));
+        verify(bookCache).evict(1L);
     }
 
     @Test
@@ -176,6 +262,7 @@ public class BookServiceTest {
 
         assertDoesNotThrow(() -> bookService.delete(book1));
         verify(bookRepository).delete(book1);
+        verify(bookCache).evict(1L);
     }
 
     @ParameterizedTest
@@ -212,15 +299,75 @@ public class BookServiceTest {
                 when(bookRepository.findByGenre(eq(Book.Genre.POETRY), any(Pageable.class)))
                         .thenReturn(expectedPage);
                 break;
+            case FULL_TEXT:
+                when(bookFullTextSearch.search(eq(query), any(Pageable.class))).thenReturn(expectedPage);
+                break;
         }
     }
 
+    @Test
+    public void testSearchBooks_shouldHydrateIndexedIdsInIndexOrder() {
+        Pageable pageable = Pageable.ofSize(10);
+        when(bookSearchIndex.search(BookSearchIndex.Field.TITLE, "jump", pageable))
+                .thenReturn(Optional.of(new PageImpl<>(List.of(2L, 1L), pageable, 12)));
+        when(bookRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(book1, book2));
+
+        Page<Book> result = bookService.searchBooks(Book.SearchType.TITLE, "jump", pageable);
+
+        assertEquals(List.of(book2, book1), result.getContent());
+        assertEquals(12, result.getTotalElements());
+        verify(bookRepository, never()).findByTitleContainingIgnoreCase(any(), any());
+    }
+
+    @Test
+    public void testCountBooks_shouldUseIndexWhenItCanAnswer() {
+        when(countCache.get(eq("books:title:jump"), any()))
+                .thenAnswer(invocation -> new CountResponse(invocation.<LongSupplier>getArgument(1).getAsLong(),
+                        Instant.now()));
+        when(bookSearchIndex.count(BookSearchIndex.Field.TITLE, "Jump")).thenReturn(OptionalLong.of(12));
+
+        CountResponse result = bookService.countBooks(Book.SearchType.TITLE, "Jump");
+
+        assertEquals(12, result.getTotalItems());
+        verify(bookRepository, never()).countByTitleContainingIgnoreCase(any());
+    }
+
+    @Test
+    public void testSearchBooksSlice_shouldNotCountWhenIndexIsNotReady() {
+        Pageable pageable = Pageable.ofSize(10);
+        Slice<Book> expected = new SliceImpl<>(List.of(book1), pageable, true);
+        when(bookSearchIndex.search(BookSearchIndex.Field.AUTHOR, "doe", pageable)).thenReturn(Optional.empty());
+        when(bookRepository.findSliceByAuthorContainingIgnoreCase("doe", pageable)).thenReturn(expected);
+
+        Slice<Book> result = bookService.searchBooksSlice(Book.SearchType.AUTHOR, "doe", pageable);
+
+        assertSame(expected, result);
+        verify(bookRepository, never()).countByAuthorContainingIgnoreCase(any());
+    }
+
     @Test
     public void testSearchBooks_shouldThrowNotFoundExceptionWhenInvalidGenre() {
         assertThrows(NotFoundException.class,
                 () -> bookService.searchBooks(Book.SearchType.GENRE, "WRONG-genre", Pageable.unpaged()));
     }
 
+    @Test
+    public void testSearchBooksAfter_shouldFetchOneExtraRowPastTheCursor() {
+        when(bookRepository.findByGenreAfter(Book.Genre.FANTASY, "Dune", 4L, Limit.of(11)))
+                .thenReturn(List.of(book1));
+
+        List<Book> result = bookService.searchBooksAfter(Book.SearchType.GENRE, "fantasy",
+                new PageCursor("Dune", 4L), 10);
+
+        assertEquals(List.of(book1), result);
+    }
+
+    @Test
+    public void testSearchBooksAfter_shouldRejectFullText() {
+        assertThrows(CursorNotSupportedException.class,
+                () -> bookService.searchBooksAfter(Book.SearchType.FULL_TEXT, "java", PageCursor.FIRST, 10));
+    }
+
     @Test
     public void testChangeAvailability_shouldReturnUpdatedBookWhenAvailabilityChanges() {
         book1.setIsAvailable(false);
@@ -230,6 +377,7 @@ public class BookServiceTest {
 
         assertTrue(updatedBook.getIsAvailable());
         verify(bookRepository).save(book1);
+        verify(bookCache).evict(1L);
     }
 
     @Test
@@ -238,6 +386,56 @@ public class BookServiceTest {
 
         assertTrue(updatedBook.getIsAvailable());
         verify(bookRepository, never()).save(any(Book.class));
+        verify(bookCache, never()).evict(anyLong());
+    }
+
+    @Test
+    public void testSuggest_whenIndexIsReady_thenUsesIndexWithClampedLimit() {
+        List<BookSuggestion> suggestions = List.of(new BookSuggestion("How to write code", Book.SearchType.TITLE, 3));
+        when(bookSuggestIndex.suggest("how", BookSuggestIndex.MAX_RESULTS)).thenReturn(Optional.of(suggestions));
+
+        assertEquals(suggestions, bookService.suggest("how", 500));
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    public void testSuggest_whenIndexIsNotReady_thenFallsBackToTitlePrefixQuery() {
+        when(bookSuggestIndex.suggest(" how ", 1)).thenReturn(Optional.empty());
+        when(bookRepository.findByTitleStartingWithIgnoreCaseOrderByTitle("how", Limit.of(1)))
+                .thenReturn(List.of(book1));
+
+        List<BookSuggestion> result = bookService.suggest(" how ", 0);
+
+        assertEquals(List.of(new BookSuggestion("How to write code", Book.SearchType.TITLE, 0)), result);
+    }
+
+    @Test
+    public void testClaimForBorrowing_whenBookIsAvailable_thenReadsBookFromRepository() {
+        when(bookRepository.markUnavailableIfAvailable(eq(1L), any())).thenReturn(1);
+        book1.setIsAvailable(false);
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book1));
+
+        assertSame(book1, bookService.claimForBorrowing(1L));
+        verify(bookCache).evict(1L);
+        verify(bookSearchIndex).index(book1);
+        verify(bookCache, never()).get(anyLong(), any());
+    }
+
+    @Test
+    public void testClaimForBorrowing_whenBookIsNotAvailable_thenThrowsNotAvailable() {
+        when(bookRepository.markUnavailableIfAvailable(eq(1L), any())).thenReturn(0);
+        when(bookRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(NotAvailableException.class, () -> bookService.claimForBorrowing(1L));
+        verify(bookCache, never()).evict(anyLong());
+    }
+
+    @Test
+    public void testClaimForBorrowing_whenBookDoesNotExist_thenThrowsNotFound() {
+        when(bookRepository.markUnavailableIfAvailable(eq(999L), any())).thenReturn(0);
+        when(bookRepository.existsById(999L)).thenReturn(false);
+
+        assertThrows(NotFoundException.class, () -> bookService.claimForBorrowing(999L));
     }
 
     @Test
@@ -9,6 +9,8 @@ import static org.mockito.Mockito.*;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import java.time.LocalDate;
 
@@ -30,14 +32,23 @@ import com.huseyinsarsilmaz.lms.exception.ForbiddenException;
 import com.huseyinsarsilmaz.lms.exception.HasActiveBorrowingsException;
 import com.huseyinsarsilmaz.lms.exception.NotFoundException;
 import com.huseyinsarsilmaz.lms.exception.OverdueException;
+import com.huseyinsarsilmaz.lms.job.BorrowingCountReconciler;
+import com.huseyinsarsilmaz.lms.job.JobLockService;
+import com.huseyinsarsilmaz.lms.job.OverdueBorrowingMarker;
+import com.huseyinsarsilmaz.lms.job.OverdueEngine;
+import com.huseyinsarsilmaz.lms.job.OverdueReportExporter;
+import com.huseyinsarsilmaz.lms.job.ReportFormat;
 
 import com.huseyinsarsilmaz.lms.model.dto.request.BorrowRequest;
+import com.huseyinsarsilmaz.lms.model.dto.response.ReportExport;
 import com.huseyinsarsilmaz.lms.model.entity.Book;
 import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lms.model.entity.User;
 import com.huseyinsarsilmaz.lms.model.mapper.BorrowingMapper;
 import com.huseyinsarsilmaz.lms.repository.BorrowingRepository;
+import com.huseyinsarsilmaz.lms.search.BookSuggestIndex;
 import com.huseyinsarsilmaz.lms.service.impl.BorrowingServiceImpl;
+import com.huseyinsarsilmaz.lms.util.CountCache;
 
 @ExtendWith(MockitoExtension.class)
 public class BorrowingServiceTest {
@@ -50,6 +61,20 @@ public class BorrowingServiceTest {
     private BookService bookService;
     @Mock
     private BorrowingMapper borrowingMapper;
+    @Mock
+    private CountCache countCache;
+    @Mock
+    private BookSuggestIndex bookSuggestIndex;
+    @Mock
+    private OverdueBorrowingMarker overdueBorrowingMarker;
+    @Mock
+    private OverdueEngine overdueEngine;
+    @Mock
+    private JobLockService jobLockService;
+    @Mock
+    private OverdueReportExporter overdueReportExporter;
+    @Mock
+    private BorrowingCountReconciler borrowingCountReconciler;
 
     @InjectMocks
     private BorrowingServiceImpl borrowingService;
@@ -88,9 +113,7 @@ public class BorrowingServiceTest {
         when(borrowingRepository.existsByBorrowerIdAndBookIdAndStatusIn(anyLong(), anyLong(), anyList()))
                 .thenReturn(false);
         when(userService.getById(1L)).thenReturn(user);
-        when(bookService.getById(1L)).thenReturn(book);
-        doNothing().when(bookService).checkAvailability(book);
-        when(bookService.updateAvailability(book, false)).thenReturn(book);
+        when(bookService.claimForBorrowing(1L)).thenReturn(book);
         when(borrowingRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
         Borrowing result = borrowingService.create(req);
@@ -99,6 +122,9 @@ public class BorrowingServiceTest {
         assertEquals(user, result.getBorrower());
         assertEquals(book, result.getBook());
         assertEquals(Borrowing.Status.BORROWED, result.getStatus());
+        verify(bookSuggestIndex).recordBorrow(1L);
+        verify(overdueEngine).register(result);
+        verify(userService).updateBorrowingCounts(1L, null, Borrowing.Status.BORROWED, 1);
     }
 
     @Test
@@ -132,7 +158,7 @@ public class BorrowingServiceTest {
 
     @Test
     void testCheckOwnership_whenOwner() {
-        assertDoesNotThrow(() -> borrowingService.checkOwnership(user, borrowing));
+        assertDoesNotThrow(() -> borrowingService.checkOwnership(user.getId(), borrowing));
     }
 
     @Test
@@ -140,7 +166,7 @@ public class BorrowingServiceTest {
         User other = new User();
         other.setId(99L);
 
-        assertThrows(ForbiddenException.class, () -> borrowingService.checkOwnership(other, borrowing));
+        assertThrows(ForbiddenException.class, () -> borrowingService.checkOwnership(other.getId(), borrowing));
     }
 
     @Test
@@ -167,18 +193,22 @@ public class BorrowingServiceTest {
         assertNotNull(result.getReturnDate());
         assertEquals(Borrowing.Status.RETURNED_TIMELY, result.getStatus());
         assertTrue(book.getIsAvailable());
+        verify(userService).updateBorrowingCounts(1L, Borrowing.Status.BORROWED, Borrowing.Status.RETURNED_TIMELY, 1);
+        verify(userService, never()).getReturnedOverdueBorrowingCount(anyLong());
     }
 
     @Test
     void testReturnBorrowing_whenOverdueAndNotSuspended() {
-        when(borrowingRepository.countByBorrowerIdAndStatus(user.getId(), Borrowing.Status.RETURNED_OVERDUE))
-                .thenReturn(1L);
+        borrowing.setStatus(Borrowing.Status.OVERDUE);
+        // Second overdue return, counted already
+        when(userService.getReturnedOverdueBorrowingCount(user.getId())).thenReturn(2L);
         when(bookService.updateAvailability(book, true)).thenReturn(book);
         when(borrowingRepository.save(borrowing)).thenReturn(borrowing);
 
         Borrowing result = borrowingService.returnBorrowing(borrowing);
 
         assertEquals(Borrowing.Status.RETURNED_OVERDUE, result.getStatus());
+        verify(userService).updateBorrowingCounts(1L, Borrowing.Status.OVERDUE, Borrowing.Status.RETURNED_OVERDUE, 1);
         verify(userService, never()).changeActive(user, false);
     }
 
@@ -186,8 +216,8 @@ public class BorrowingServiceTest {
     void testReturnBorrowing_whenOverdueAndSuspended() {
         book.setIsAvailable(false);
 
-        when(borrowingRepository.countByBorrowerIdAndStatus(user.getId(), Borrowing.Status.RETURNED_OVERDUE))
-                .thenReturn(2L);
+        // Third overdue return, counted already
+        when(userService.getReturnedOverdueBorrowingCount(user.getId())).thenReturn(3L);
         when(bookService.updateAvailability(book, true)).thenAnswer(inv -> {
             book.setIsAvailable(true);
             return book;
@@ -217,16 +247,17 @@ public class BorrowingServiceTest {
 
     @Test
     void testCheckUserHasActiveBorrowings_whenHas() {
-        when(borrowingRepository.countByBorrowerIdAndStatusIn(anyLong(), anyList())).thenReturn(1L);
+        when(userService.getActiveBorrowingCount(1L)).thenReturn(1L);
 
         assertThrows(HasActiveBorrowingsException.class, () -> borrowingService.checkUserHasActiveBorrowings(user));
     }
 
     @Test
     void testCheckUserHasActiveBorrowings_whenHasNot() {
-        when(borrowingRepository.countByBorrowerIdAndStatusIn(anyLong(), anyList())).thenReturn(0L);
+        when(userService.getActiveBorrowingCount(1L)).thenReturn(0L);
 
         assertDoesNotThrow(() -> borrowingService.checkUserHasActiveBorrowings(user));
+        verifyNoInteractions(borrowingRepository);
     }
 
     @Test
@@ -253,16 +284,17 @@ public class BorrowingServiceTest {
 
     @Test
     void testCheckBorrowableByBorrowerId_whenOverdue() {
-        when(borrowingRepository.existsByBorrowerIdAndStatus(1L, Borrowing.Status.OVERDUE)).thenReturn(true);
+        when(userService.getOverdueBorrowingCount(1L)).thenReturn(1L);
 
         assertThrows(OverdueException.class, () -> borrowingService.checkBorrowableByBorrowerId(1L));
     }
 
     @Test
     void testCheckBorrowableByBorrowerId_whenBorrowable() {
-        when(borrowingRepository.existsByBorrowerIdAndStatus(1L, Borrowing.Status.OVERDUE)).thenReturn(false);
+        when(userService.getOverdueBorrowingCount(1L)).thenReturn(0L);
 
         assertDoesNotThrow(() -> borrowingService.checkBorrowableByBorrowerId(1L));
+        verifyNoInteractions(borrowingRepository);
     }
 
     @Test
@@ -276,6 +308,8 @@ public class BorrowingServiceTest {
 
         assertEquals(Borrowing.Status.RETURNED_EXCUSED, borrowing.getStatus());
         verify(borrowingRepository).saveAll(anyList());
+        verify(userService).updateBorrowingCounts(1L, Borrowing.Status.RETURNED_OVERDUE,
+                Borrowing.Status.RETURNED_EXCUSED, 1);
     }
 
     @Test
@@ -287,6 +321,8 @@ public class BorrowingServiceTest {
         Borrowing result = borrowingService.excuseBorrowing(borrowing);
 
         assertEquals(Borrowing.Status.RETURNED_EXCUSED, result.getStatus());
+        verify(userService).updateBorrowingCounts(1L, Borrowing.Status.RETURNED_OVERDUE,
+                Borrowing.Status.RETURNED_EXCUSED, 1);
     }
 
     @Test
@@ -305,12 +341,48 @@ public class BorrowingServiceTest {
 
     @Test
     void testMarkOverdueBorrowings() {
-        when(borrowingRepository.findPastDueByStatus(Borrowing.Status.BORROWED, LocalDate.now()))
-                .thenReturn(List.of(borrowing));
+        when(jobLockService.runLocked(eq("mark-overdue-borrowings"), any(), any())).thenAnswer(inv -> {
+            inv.<Runnable>getArgument(2).run();
+            return true;
+        });
 
         borrowingService.markOverdueBorrowings();
 
-        assertEquals(Borrowing.Status.OVERDUE, borrowing.getStatus());
-        verify(borrowingRepository).saveAll(anyList());
+        verify(overdueBorrowingMarker).markPastDue();
+        verifyNoInteractions(borrowingRepository);
+    }
+
+    @Test
+    void testStartOverdueReportExport_forBorrower() {
+        ReportExport export = new ReportExport();
+        when(overdueReportExporter.start(eq(ReportFormat.NDJSON), eq(1L), any())).thenAnswer(inv -> {
+            inv.<Supplier<Stream<Borrowing>>>getArgument(2).get();
+            return export;
+        });
+
+        assertSame(export, borrowingService.startOverdueReportExport(ReportFormat.NDJSON, 1L));
+        verify(borrowingRepository).streamByBorrowerIdAndStatusNotIn(eq(1L), anyList());
+        verify(borrowingRepository, never()).streamAllByStatusNotIn(anyList());
+    }
+
+    @Test
+    void testMarkOverdueBorrowings_whenLockedByAnotherNode() {
+        when(jobLockService.runLocked(eq("mark-overdue-borrowings"), any(), any())).thenReturn(false);
+
+        borrowingService.markOverdueBorrowings();
+
+        verifyNoInteractions(overdueBorrowingMarker);
+    }
+
+    @Test
+    void testReconcileBorrowingCounts() {
+        when(jobLockService.runLocked(eq("reconcile-borrowing-counts"), any(), any())).thenAnswer(inv -> {
+            inv.<Runnable>getArgument(2).run();
+            return true;
+        });
+
+        borrowingService.reconcileBorrowingCounts();
+
+        verify(borrowingCountReconciler).reconcile();
     }
 }
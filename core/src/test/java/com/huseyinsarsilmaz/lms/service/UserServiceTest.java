@@ -7,6 +7,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import java.sql.SQLException;
 import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +16,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import com.huseyinsarsilmaz.lms.exception.AlreadyExistsException;
@@ -24,11 +26,14 @@ import com.huseyinsarsilmaz.lms.exception.UserNotDeactivatedException;
 import com.huseyinsarsilmaz.lms.exception.UserPromotionException;
 import com.huseyinsarsilmaz.lms.model.dto.request.RegisterRequest;
 import com.huseyinsarsilmaz.lms.model.dto.request.UserUpdateRequest;
+import com.huseyinsarsilmaz.lms.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lms.model.entity.User;
 import com.huseyinsarsilmaz.lms.model.mapper.UserMapper;
 import com.huseyinsarsilmaz.lms.repository.UserRepository;
 import com.huseyinsarsilmaz.lms.security.JwtService;
+import com.huseyinsarsilmaz.lms.security.SecurityVersionRegistry;
 import com.huseyinsarsilmaz.lms.service.impl.UserServiceImpl;
+import com.huseyinsarsilmaz.lms.util.UserCache;
 
 @ExtendWith(MockitoExtension.class)
 public class UserServiceTest {
@@ -49,6 +54,12 @@ public class UserServiceTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private SecurityVersionRegistry securityVersionRegistry;
+
+    @Mock
+    private UserCache userCache;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -60,20 +71,20 @@ public class UserServiceTest {
         user.setId(USER_ID);
         user.setEmail(EMAIL);
         user.setPassword(ENCODED_PASSWORD);
-        user.setRoles("ROLE_PATRON");
+        user.setRoleMask(User.Role.ROLE_PATRON.bit());
         user.setName("Hüseyin");
         user.setSurname("Sarsılmaz");
     }
 
     @Test
     public void testIsEmailTaken_whenEmailExists() {
-        when(userRepository.findByEmail(eq(EMAIL))).thenReturn(Optional.of(user));
+        when(userRepository.existsByNormalizedEmail(eq(EMAIL))).thenReturn(true);
         assertThrows(AlreadyExistsException.class, () -> userService.isEmailTaken(EMAIL));
     }
 
     @Test
     public void testIsEmailTaken_whenEmailNotExists() {
-        when(userRepository.findByEmail(eq("testnotexist@hotmail.com"))).thenReturn(Optional.empty());
+        when(userRepository.existsByNormalizedEmail(eq("testnotexist@hotmail.com"))).thenReturn(false);
         assertDoesNotThrow(() -> userService.isEmailTaken("testnotexist@hotmail.com"));
     }
 
@@ -105,22 +116,48 @@ public class UserServiceTest {
         verify(userRepository).save(any(User.class));
     }
 
+    @Test
+    public void testRegister_whenEmailIsTakenConcurrently() {
+        RegisterRequest req = new RegisterRequest();
+        req.setEmail(EMAIL);
+        req.setPassword("12345678");
+
+        when(userMapper.toEntity(eq(req))).thenReturn(new User());
+        when(passwordEncoder.encode(anyString())).thenReturn(ENCODED_PASSWORD);
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement",
+                new SQLException("duplicate key value violates unique constraint \"ux_users_normalized_email\"")));
+
+        assertThrows(AlreadyExistsException.class, () -> userService.register(req));
+    }
+
     @Test
     public void testGetByEmail_whenUserExists() {
-        when(userRepository.findByEmail(eq(EMAIL))).thenReturn(Optional.of(user));
+        when(userRepository.findByNormalizedEmail(eq(EMAIL))).thenReturn(Optional.of(user));
 
-        User result = userService.getByEmail(EMAIL);
+        User result = userService.getByEmail(EMAIL.toUpperCase());
         assertNotNull(result);
         assertEquals(EMAIL, result.getEmail());
+        verify(userCache).put(user);
     }
 
     @Test
     public void testGetByEmail_whenUserNotFound() {
-        when(userRepository.findByEmail(eq("testnotexist@hotmail.com"))).thenReturn(Optional.empty());
+        when(userRepository.findByNormalizedEmail(eq("testnotexist@hotmail.com"))).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> userService.getByEmail("testnotexist@hotmail.com"));
     }
 
+    @Test
+    public void testGetByEmailForAuthentication_thenBypassesSharedCache() {
+        when(userRepository.findByNormalizedEmail(eq(EMAIL))).thenReturn(Optional.of(user));
+
+        User result = userService.getByEmailForAuthentication(EMAIL);
+        assertSame(user, result);
+        verify(userCache, never()).getByEmail(anyString());
+        verify(userCache).put(user);
+    }
+
     @Test
     public void testGetById_whenUserExists() {
         when(userRepository.findById(eq(USER_ID))).thenReturn(Optional.of(user));
@@ -130,6 +167,15 @@ public class UserServiceTest {
         assertEquals(USER_ID, result.getId());
     }
 
+    @Test
+    public void testGetById_whenUserIsCached() {
+        when(userCache.getById(eq(USER_ID))).thenReturn(Optional.of(user));
+
+        User result = userService.getById(USER_ID);
+        assertEquals(USER_ID, result.getId());
+        verify(userRepository, never()).findById(anyLong());
+    }
+
     @Test
     public void testGetById_whenUserNotFound() {
         when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
@@ -151,7 +197,7 @@ public class UserServiceTest {
 
     @Test
     public void testPromote_whenRoleAlreadyExists() {
-        user.setRoles("ROLE_PATRON,ROLE_LIBRARIAN");
+        user.setRoleMask(User.Role.maskOf(User.Role.ROLE_PATRON, User.Role.ROLE_LIBRARIAN));
 
         assertThrows(UserPromotionException.class, () -> userService.promote(user, User.Role.ROLE_LIBRARIAN));
         verify(userRepository, never()).save(any(User.class));
@@ -159,26 +205,28 @@ public class UserServiceTest {
 
     @Test
     public void testPromote_whenNewRoleAddedSuccessfully() {
-        user.setRoles("ROLE_PATRON");
+        user.setRoleMask(User.Role.ROLE_PATRON.bit());
 
         when(userRepository.save(any(User.class))).thenAnswer(i -> i.getArgument(0));
 
         User promotedUser = userService.promote(user, User.Role.ROLE_LIBRARIAN);
 
-        assertTrue(promotedUser.getRoles().contains("ROLE_PATRON"));
-        assertTrue(promotedUser.getRoles().contains("ROLE_LIBRARIAN"));
+        assertTrue(promotedUser.hasRole(User.Role.ROLE_PATRON));
+        assertTrue(promotedUser.hasRole(User.Role.ROLE_LIBRARIAN));
+        assertEquals(1L, promotedUser.getSecurityVersion());
+        verify(securityVersionRegistry).evict(USER_ID);
         verify(userRepository).save(user);
     }
 
     @Test
     public void testCheckHasRole_whenRoleMatches() {
-        user.setRoles("ROLE_PATRON,ROLE_LIBRARIAN");
+        user.setRoleMask(User.Role.maskOf(User.Role.ROLE_PATRON, User.Role.ROLE_LIBRARIAN));
         assertDoesNotThrow(() -> userService.checkHasRole(user, User.Role.ROLE_PATRON));
     }
 
     @Test
     public void testCheckHasRole_whenRoleDoesNotMatch() {
-        user.setRoles("ROLE_PATRON");
+        user.setRoleMask(User.Role.ROLE_PATRON.bit());
         assertThrows(ForbiddenException.class, () -> userService.checkHasRole(user, User.Role.ROLE_LIBRARIAN));
     }
 
@@ -217,6 +265,7 @@ public class UserServiceTest {
 
         assertDoesNotThrow(() -> userService.delete(user));
         verify(userRepository).delete(user);
+        verify(securityVersionRegistry).evict(USER_ID);
     }
 
     @Test
@@ -227,9 +276,23 @@ public class UserServiceTest {
         User updatedUser = userService.changeActive(user, true);
 
         assertTrue(updatedUser.getIsActive());
+        assertEquals(1L, updatedUser.getSecurityVersion());
+        verify(userCache).evict(user);
         verify(userRepository).save(user);
     }
 
+    @Test
+    public void testRehashPassword() {
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        User updatedUser = userService.rehashPassword(user, "STRONGER_HASH");
+
+        assertEquals("STRONGER_HASH", updatedUser.getPassword());
+        assertEquals(0L, updatedUser.getSecurityVersion());
+        verify(securityVersionRegistry, never()).evict(anyLong());
+        verify(userCache).evict(user);
+    }
+
     @Test
     public void testCheckDeactivated_whenUserIsDeactivated() {
         when(userRepository.existsByIdAndIsActiveFalse(eq(USER_ID))).thenReturn(true);
@@ -245,4 +308,48 @@ public class UserServiceTest {
         assertThrows(UserNotDeactivatedException.class, () -> userService.checkDeactivated(user));
         verify(userRepository).existsByIdAndIsActiveFalse(USER_ID);
     }
+
+    @Test
+    public void testUpdateBorrowingCounts_whenBorrowed() {
+        userService.updateBorrowingCounts(USER_ID, null, Borrowing.Status.BORROWED, 1);
+
+        verify(userRepository).addBorrowingCounts(USER_ID, 1, 0, 0);
+    }
+
+    @Test
+    public void testUpdateBorrowingCounts_whenOverdueReturned() {
+        userService.updateBorrowingCounts(USER_ID, Borrowing.Status.OVERDUE, Borrowing.Status.RETURNED_OVERDUE, 1);
+
+        verify(userRepository).addBorrowingCounts(USER_ID, -1, -1, 1);
+    }
+
+    @Test
+    public void testUpdateBorrowingCounts_whenExcused() {
+        userService.updateBorrowingCounts(USER_ID, Borrowing.Status.RETURNED_OVERDUE,
+                Borrowing.Status.RETURNED_EXCUSED, 3);
+
+        verify(userRepository).addBorrowingCounts(USER_ID, 0, 0, -3);
+    }
+
+    @Test
+    public void testUpdateBorrowingCounts_whenMarkedOverdue() {
+        userService.updateBorrowingCounts(USER_ID, Borrowing.Status.BORROWED, Borrowing.Status.OVERDUE, 1);
+
+        verify(userRepository).addBorrowingCounts(USER_ID, 0, 1, 0);
+    }
+
+    @Test
+    public void testUpdateBorrowingCounts_whenNoBorrowingsMoved() {
+        userService.updateBorrowingCounts(USER_ID, Borrowing.Status.RETURNED_OVERDUE,
+                Borrowing.Status.RETURNED_EXCUSED, 0);
+
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    public void testGetOverdueBorrowingCount_whenUserNotExists() {
+        when(userRepository.findOverdueBorrowingsById(USER_ID)).thenReturn(Optional.empty());
+
+        assertEquals(0L, userService.getOverdueBorrowingCount(USER_ID));
+    }
 }
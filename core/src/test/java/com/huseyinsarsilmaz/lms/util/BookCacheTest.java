@@ -0,0 +1,118 @@
+package com.huseyinsarsilmaz.lms.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.huseyinsarsilmaz.lms.exception.NotFoundException;
+import com.huseyinsarsilmaz.lms.model.entity.Book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BookCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BookCache bookCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bookCache = new BookCache(meterRegistry, 100, Duration.ofMinutes(10));
+        loads = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Book load(boolean available) {
+        loads.incrementAndGet();
+        Book book = Book.builder()
+                .title("How to write code")
+                .author("Hüseyin Sarsılmaz")
+                .isbn("9780134685991")
+                .publicationDate(LocalDate.of(2017, 6, 17))
+                .genre(Book.Genre.BIOGRAPHY)
+                .isAvailable(available)
+                .build();
+        book.setId(1L);
+        return book;
+    }
+
+    @Test
+    public void testGet_whenCached_thenLoadedOnceAndCopied() {
+        Book first = bookCache.get(1L, () -> load(true));
+        Book second = bookCache.get(1L, () -> load(true));
+
+        assertEquals(1, loads.get());
+        assertNotSame(first, second);
+        assertEquals(first.getId(), second.getId());
+        assertEquals(first.getTitle(), second.getTitle());
+        assertEquals(1, meterRegistry.get("lms.books.lookup").tag("result", "hit").timer().count());
+        assertEquals(1, meterRegistry.get("lms.books.lookup").tag("result", "miss").timer().count());
+    }
+
+    @Test
+    public void testGet_whenCallerChangesBook_thenCachedBookUnchanged() {
+        bookCache.get(1L, () -> load(true)).setIsAvailable(false);
+
+        assertTrue(bookCache.get(1L, () -> load(true)).getIsAvailable());
+    }
+
+    @Test
+    public void testEvict_thenNextGetLoadsAgain() {
+        bookCache.get(1L, () -> load(true));
+        bookCache.evict(1L);
+
+        assertFalse(bookCache.get(1L, () -> load(false)).getIsAvailable());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testEvict_whenInTransaction_thenEvictedAgainAfterCompletion() {
+        TransactionSynchronizationManager.initSynchronization();
+        bookCache.get(1L, () -> load(true));
+        bookCache.evict(1L);
+        // Read before the commit, still the old row
+        bookCache.get(1L, () -> load(true));
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        assertFalse(bookCache.get(1L, () -> load(false)).getIsAvailable());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testGet_whenLoaderThrows_thenNothingCached() {
+        assertThrows(NotFoundException.class, () -> bookCache.get(1L, () -> {
+            throw new NotFoundException("Book", "id");
+        }));
+
+        bookCache.get(1L, () -> load(true));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testGet_whenDisabled_thenAlwaysLoads() {
+        BookCache disabled = new BookCache(meterRegistry, 0, Duration.ofMinutes(10));
+
+        disabled.get(1L, () -> load(true));
+        disabled.get(1L, () -> load(true));
+
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,62 @@
+package com.huseyinsarsilmaz.lms.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class IsbnParserTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "9780134685991, 9780134685991",
+            "978-0-13-468599-1, 9780134685991",
+            "978 0 13 468599 1, 9780134685991",
+            "0134685997, 9780134685991",
+            "0-13-468599-7, 9780134685991",
+            "080442957X, 9780804429573",
+            "080442957x, 9780804429573",
+            "0-306-40615-2, 9780306406157",
+            "9791034304523, 9791034304523"
+    })
+    public void testCanonicalize_whenValid_thenIsbn13(String value, String expected) {
+        assertEquals(expected, IsbnParser.canonicalize(value));
+        assertEquals(Long.parseLong(expected), IsbnParser.parse(value));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "9780134685992",
+            "0134685998",
+            "9770134685992",
+            "1234567890",
+            "X134685997",
+            "97801346859910",
+            "978013468599",
+            "-9780134685991",
+            "9780134685991-",
+            "978--0134685991",
+            "978_0134685991",
+            "08044295X7"
+    })
+    public void testCanonicalize_whenInvalid_thenNull(String value) {
+        assertNull(IsbnParser.canonicalize(value));
+        assertEquals(IsbnParser.INVALID, IsbnParser.parse(value));
+        assertFalse(IsbnParser.isValid(value));
+    }
+
+    @Test
+    public void testCanonicalize_whenNull_thenNull() {
+        assertNull(IsbnParser.canonicalize(null));
+    }
+
+    @Test
+    public void testCompact_whenPartial_thenDigitsAndXOnly() {
+        assertEquals("9780134685991", IsbnParser.compact(" 0-13-468599-7 "));
+        assertEquals("978013", IsbnParser.compact("978-013"));
+        assertEquals("57X", IsbnParser.compact("57x"));
+    }
+}
@@ -0,0 +1,45 @@
+package com.huseyinsarsilmaz.lms.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.huseyinsarsilmaz.lms.exception.InvalidCursorException;
+
+public class PageCursorTest {
+
+    @Test
+    public void testDecode_whenEncoded_thenRoundTrips() {
+        PageCursor cursor = new PageCursor("Dune: Part 1", 42);
+
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    public void testDecode_whenEmpty_thenFirstPage() {
+        assertEquals(PageCursor.FIRST, PageCursor.decode(""));
+        assertEquals(PageCursor.FIRST, PageCursor.decode(null));
+    }
+
+    @Test
+    public void testDecode_whenMalformed_thenThrows() {
+        assertThrows(InvalidCursorException.class, () -> PageCursor.decode("not a cursor"));
+        assertThrows(InvalidCursorException.class,
+                () -> PageCursor.decode(Base64Url.encodeToString("no-separator".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void testLongKey_whenKeyIsNotNumeric_thenThrows() {
+        assertEquals(15L, new PageCursor("15", 3).longKey());
+        assertThrows(InvalidCursorException.class, () -> new PageCursor("title", 3).longKey());
+    }
+
+    @Test
+    public void testClampSize() {
+        assertEquals(1, PageCursor.clampSize(0));
+        assertEquals(20, PageCursor.clampSize(20));
+        assertEquals(PageCursor.MAX_SIZE, PageCursor.clampSize(10_000));
+    }
+}
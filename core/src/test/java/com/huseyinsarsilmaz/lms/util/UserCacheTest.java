@@ -0,0 +1,79 @@
+package com.huseyinsarsilmaz.lms.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.huseyinsarsilmaz.lms.model.entity.User;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class UserCacheTest {
+
+    private static final String EMAIL = "huseyinsarsilmaz@hotmail.com";
+
+    private UserCache userCache;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        userCache = new UserCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+
+        user = User.builder()
+                .email(EMAIL)
+                .roleMask(User.Role.ROLE_PATRON.bit())
+                .name("Hüseyin")
+                .surname("Sarsılmaz")
+                .build();
+        user.setId(1L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testGet_whenSharedTierHit() {
+        userCache.put(user);
+
+        User cached = userCache.getById(1L).orElseThrow();
+        assertNotSame(user, cached);
+        assertEquals(EMAIL, cached.getEmail());
+        assertEquals(1L, userCache.getByEmail(EMAIL).orElseThrow().getId());
+    }
+
+    @Test
+    public void testGet_whenRequestMemoHit() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        userCache.put(user);
+
+        assertSame(user, userCache.getById(1L).orElseThrow());
+    }
+
+    @Test
+    public void testEvict_whenEmailChanged() {
+        userCache.put(user);
+        user.setEmail("huseyinsarsilmaz2@hotmail.com");
+
+        userCache.evict(user);
+
+        assertTrue(userCache.getById(1L).isEmpty());
+        assertTrue(userCache.getByEmail(EMAIL).isEmpty());
+    }
+
+    @Test
+    public void testGet_whenSharedTierIsDisabled() {
+        UserCache disabledCache = new UserCache(new SimpleMeterRegistry(), 0, Duration.ofMinutes(5));
+        disabledCache.put(user);
+
+        assertTrue(disabledCache.getById(1L).isEmpty());
+    }
+}
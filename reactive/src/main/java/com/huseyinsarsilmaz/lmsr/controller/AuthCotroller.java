@@ -1,10 +1,8 @@
 package com.huseyinsarsilmaz.lmsr.controller;
 
-import java.util.Arrays;
-import java.util.List;
-
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -12,35 +10,68 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.huseyinsarsilmaz.lmsr.model.dto.request.LoginRequest;
 import com.huseyinsarsilmaz.lmsr.model.dto.response.LoginResponse;
+import com.huseyinsarsilmaz.lmsr.model.entity.User;
 import com.huseyinsarsilmaz.lmsr.security.JwtService;
+import com.huseyinsarsilmaz.lmsr.security.PasswordHasher;
+import com.huseyinsarsilmaz.lmsr.security.TokenRevocationRegistry;
+import com.huseyinsarsilmaz.lmsr.security.VerifiedToken;
 import com.huseyinsarsilmaz.lmsr.service.UserService;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/api/auth")
+@Slf4j
 @RequiredArgsConstructor
 public class AuthCotroller {
 
     private final JwtService jwtService;
     private final UserService userService;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
 
     @PostMapping("/login")
     public Mono<ResponseEntity<LoginResponse>> login(@Valid @RequestBody Mono<LoginRequest> req) {
         return req
                 .flatMap(loginRequest -> userService.getUserByEmail(loginRequest.getEmail())
                         .switchIfEmpty(Mono.error(new RuntimeException("There is no user with this email")))
-                        .flatMap(user -> {
-                            if (!passwordEncoder.matches(loginRequest.getPassword(), user.getPassword())) {
-                                return Mono.error(new RuntimeException("The password is wrong"));
-                            }
-
-                            List<String> roles = Arrays.asList(user.getRoles().split(","));
-                            String token = jwtService.generateToken(user.getEmail(), roles);
-                            return Mono.just(ResponseEntity.ok(new LoginResponse(token)));
-                        }));
+                        .flatMap(user -> passwordHasher.matches(loginRequest.getPassword(), user.getPassword())
+                                .flatMap(matches -> {
+                                    if (!matches) {
+                                        return Mono.error(new RuntimeException("The password is wrong"));
+                                    }
+
+                                    String token = jwtService.generateToken(user);
+                                    return rehashIfNeeded(user, loginRequest.getPassword())
+                                            .thenReturn(ResponseEntity.ok(new LoginResponse(token)));
+                                })));
+    }
+
+    @PostMapping("/logout")
+    public Mono<ResponseEntity<Void>> logout() {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(authentication -> authentication.getCredentials() instanceof VerifiedToken)
+                .flatMap(authentication -> tokenRevocationRegistry
+                        .revoke((VerifiedToken) authentication.getCredentials()))
+                .thenReturn(ResponseEntity.noContent().<Void>build());
+    }
+
+    // Moves hashes made with a lower BCrypt cost to the configured one, one login at a time. The password has
+    // already matched, so a busy hasher or a failed save only leaves the upgrade to a later login
+    private Mono<Void> rehashIfNeeded(User user, String rawPassword) {
+        if (!passwordHasher.upgradeEncoding(user.getPassword())) {
+            return Mono.empty();
+        }
+
+        return passwordHasher.encode(rawPassword)
+                .flatMap(encoded -> userService.rehashPassword(user, encoded))
+                .onErrorResume(ex -> {
+                    log.warn("Password hash of user {} could not be upgraded", user.getEmail(), ex);
+                    return Mono.empty();
+                });
     }
 }
\ No newline at end of file
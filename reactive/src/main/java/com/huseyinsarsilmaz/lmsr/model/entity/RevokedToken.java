@@ -0,0 +1,30 @@
+package com.huseyinsarsilmaz.lmsr.model.entity;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Shares the revoked_tokens table created by core
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "revoked_tokens")
+public class RevokedToken {
+
+    @Id
+    private Long id;
+
+    private String tokenId;
+    private Instant expiresAt;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
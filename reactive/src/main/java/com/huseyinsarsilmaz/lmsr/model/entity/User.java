@@ -1,6 +1,8 @@
 package com.huseyinsarsilmaz.lmsr.model.entity;
 
 import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Locale;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.relational.core.mapping.Table;
@@ -18,11 +20,16 @@ import lombok.NoArgsConstructor;
 public class User {
 
     private String email;
+    // Unique lookup key maintained by core, see normalizeEmail
+    private String normalizedEmail;
     private String password;
-    private String roles;
+    // One bit per Role, shared with the users.role_mask column written by core
+    private int roleMask;
     private String name;
     private String surname;
     private String phoneNumber;
+    // Raised by every change that must end the sessions of the user, tokens carry the version they were issued with
+    private long securityVersion;
 
     @Id
     private Long id;
@@ -30,13 +37,54 @@ public class User {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Bits must stay in line with the core User.Role
     public enum Role {
-        ROLE_PATRON,
-        ROLE_LIBRARIAN,
-        ROLE_ADMIN
+        ROLE_PATRON(1),
+        ROLE_LIBRARIAN(1 << 1),
+        ROLE_ADMIN(1 << 2);
+
+        private static final Role[] VALUES = values();
+        private static final int ALL = maskOf(VALUES);
+
+        private final int bit;
+
+        Role(int bit) {
+            this.bit = bit;
+        }
+
+        public int bit() {
+            return bit;
+        }
+
+        public static int maskOf(Role... roles) {
+            int mask = 0;
+            for (Role role : roles) {
+                mask |= role.bit;
+            }
+            return mask;
+        }
+
+        public static EnumSet<Role> fromMask(int mask) {
+            EnumSet<Role> roles = EnumSet.noneOf(Role.class);
+            for (Role role : VALUES) {
+                if ((mask & role.bit) != 0) {
+                    roles.add(role);
+                }
+            }
+            return roles;
+        }
+
+        public static boolean isValidMask(int mask) {
+            return (mask & ~ALL) == 0;
+        }
     }
 
     @Builder.Default
     private Boolean isActive = true;
 
+    // Must match the core User.normalizeEmail
+    public static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
 }
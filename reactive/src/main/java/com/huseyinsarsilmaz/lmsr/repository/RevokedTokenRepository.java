@@ -0,0 +1,17 @@
+package com.huseyinsarsilmaz.lmsr.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import com.huseyinsarsilmaz.lmsr.model.entity.RevokedToken;
+
+import reactor.core.publisher.Flux;
+
+// Pruning expired rows is left to core, which owns the table
+public interface RevokedTokenRepository extends ReactiveCrudRepository<RevokedToken, Long> {
+
+    @Query("SELECT token_id FROM revoked_tokens WHERE expires_at > :now")
+    Flux<String> findTokenIdsExpiringAfter(Instant now);
+}
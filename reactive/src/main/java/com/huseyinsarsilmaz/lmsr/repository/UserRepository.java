@@ -1,5 +1,7 @@
 package com.huseyinsarsilmaz.lmsr.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 
 import com.huseyinsarsilmaz.lmsr.model.entity.User;
@@ -7,6 +9,25 @@ import com.huseyinsarsilmaz.lmsr.model.entity.User;
 import reactor.core.publisher.Mono;
 
 public interface UserRepository extends ReactiveCrudRepository<User, Long> {
-    Mono<User> findByEmail(String email);
+    Mono<User> findByNormalizedEmail(String normalizedEmail);
+
+    @Query("SELECT security_version FROM users WHERE id = :id")
+    Mono<Long> findSecurityVersionById(Long id);
+
+    @Modifying
+    @Query("UPDATE users SET is_active = :active, security_version = security_version + 1, updated_at = NOW()"
+            + " WHERE id = :id")
+    Mono<Integer> updateActive(Long id, boolean active);
+
+    @Modifying
+    @Query("UPDATE users SET password = :password, updated_at = NOW() WHERE id = :id")
+    Mono<Integer> updatePassword(Long id, String password);
+
+    // The borrowing counters core keeps on users, see the User entity of core
+    @Modifying
+    @Query("UPDATE users SET active_borrowings = active_borrowings + :active,"
+            + " overdue_borrowings = overdue_borrowings + :overdue,"
+            + " returned_overdue_borrowings = returned_overdue_borrowings + :returnedOverdue WHERE id = :id")
+    Mono<Integer> addBorrowingCounts(Long id, long active, long overdue, long returnedOverdue);
 
 }
\ No newline at end of file
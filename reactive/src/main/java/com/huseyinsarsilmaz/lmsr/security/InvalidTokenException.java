@@ -0,0 +1,9 @@
+package com.huseyinsarsilmaz.lmsr.security;
+
+import org.springframework.security.core.AuthenticationException;
+
+public class InvalidTokenException extends AuthenticationException {
+    public InvalidTokenException(String message) {
+        super(message);
+    }
+}
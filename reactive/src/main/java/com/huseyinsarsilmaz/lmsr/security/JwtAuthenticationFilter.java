@@ -1,60 +1,81 @@
 package com.huseyinsarsilmaz.lmsr.security;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import reactor.core.publisher.Mono;
 
 @Component
 public class JwtAuthenticationFilter implements WebFilter {
 
-    private final JwtService jwtService;
+    private final JwtVerifier jwtVerifier;
+    private final SecurityVersionRegistry securityVersionRegistry;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    private final Timer eventLoopTimer;
 
-    public JwtAuthenticationFilter(JwtService jwtService) {
-        this.jwtService = jwtService;
+    public JwtAuthenticationFilter(JwtVerifier jwtVerifier, SecurityVersionRegistry securityVersionRegistry,
+            TokenRevocationRegistry tokenRevocationRegistry, MeterRegistry meterRegistry) {
+        this.jwtVerifier = jwtVerifier;
+        this.securityVersionRegistry = securityVersionRegistry;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+        this.eventLoopTimer = Timer.builder("lmsr.auth.event-loop")
+                .description("Time the authentication filter spends on the cache lookups and the revocation check")
+                .register(meterRegistry);
     }
 
     @Override
     public @NonNull Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        long start = System.nanoTime();
         String token = exchange.getRequest().getHeaders().getFirst("Authorization");
 
-        if (token != null && token.startsWith("Bearer ")) {
-            String jwtToken = token.substring(7);
-            String username = jwtService.extractEmail(jwtToken);
-
-            if (username != null) {
-                return Mono.just(jwtService.validateToken(jwtToken, username))
-                        .flatMap(valid -> {
-                            if (valid) {
-                                List<String> roles = jwtService.extractRoles(jwtToken);
+        if (token == null || !token.startsWith("Bearer ")) {
+            return chain.filter(exchange);
+        }
 
-                                List<GrantedAuthority> authorities = roles.stream()
-                                        .map(SimpleGrantedAuthority::new)
-                                        .collect(Collectors.toList());
+        Mono<VerifiedToken> verifiedToken = jwtVerifier.verify(token.substring(7));
+        // The cache lookup above runs here, the revocation check runs once the token is available
+        long lookupNanos = System.nanoTime() - start;
 
-                                Authentication auth = new UsernamePasswordAuthenticationToken(username, null,
-                                        authorities);
+        // An invalid, outdated or revoked token leaves the request unauthenticated, the security chain then rejects it
+        Mono<Optional<Authentication>> authentication = verifiedToken
+                .flatMap(verified -> securityVersionRegistry
+                        .isCurrent(verified.userId(), verified.securityVersion())
+                        .map(current -> {
+                            long authenticateStart = System.nanoTime();
+                            Optional<Authentication> result = current ? authenticate(verified) : Optional.empty();
+                            eventLoopTimer.record(lookupNanos + System.nanoTime() - authenticateStart,
+                                    TimeUnit.NANOSECONDS);
+                            return result;
+                        }))
+                .onErrorResume(InvalidTokenException.class, ex -> {
+                    eventLoopTimer.record(lookupNanos, TimeUnit.NANOSECONDS);
+                    return Mono.just(Optional.empty());
+                });
 
-                                return chain.filter(exchange)
-                                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth));
-                            }
+        return authentication.flatMap(auth -> auth
+                .map(value -> chain.filter(exchange)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(value)))
+                .orElseGet(() -> chain.filter(exchange)));
+    }
 
-                            return chain.filter(exchange);
-                        });
-            }
+    private Optional<Authentication> authenticate(VerifiedToken verified) {
+        if (tokenRevocationRegistry.isRevoked(verified.tokenId())) {
+            return Optional.empty();
         }
 
-        return chain.filter(exchange);
+        return Optional.of(new UsernamePasswordAuthenticationToken(verified.subject(), verified,
+                verified.authorities()));
     }
 
 }
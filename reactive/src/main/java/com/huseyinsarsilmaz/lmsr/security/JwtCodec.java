@@ -0,0 +1,328 @@
+package com.huseyinsarsilmaz.lmsr.security;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.huseyinsarsilmaz.lmsr.model.entity.User;
+import com.huseyinsarsilmaz.lmsr.util.Base64Url;
+
+// HS256 compact JWT codec for the fixed claim set issued by JwtService, wire compatible with jjwt.
+// Every thread keeps its own Mac and scratch buffers, so encoding and decoding only allocate the results.
+public class JwtCodec {
+
+    // {"alg":"HS256"}, the exact header jjwt writes for our tokens
+    private static final String HEADER = "eyJhbGciOiJIUzI1NiJ9";
+    private static final byte[] HEADER_BYTES = HEADER.getBytes(StandardCharsets.US_ASCII);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_LENGTH = 32;
+    private static final int MAX_TOKEN_LENGTH = 8192;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Scratch> scratch;
+
+    // tokenId is the jti claim, null for tokens issued before it was added
+    public record Claims(String subject, long userId, int roleMask, long securityVersion, long issuedAt,
+            long expiresAt, String tokenId) {
+    }
+
+    public JwtCodec(byte[] keyBytes) {
+        if (keyBytes.length < SIGNATURE_LENGTH) {
+            throw new IllegalArgumentException("The signing key must be at least 256 bits");
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(newMac()));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 is not available", ex);
+        }
+    }
+
+    public String encode(Claims claims) {
+        Scratch buffers = scratch.get();
+        Buffer payload = buffers.json;
+        payload.reset();
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(payload)) {
+            generator.writeStartObject();
+            generator.writeNumberField("uid", claims.userId());
+            generator.writeNumberField("roles", claims.roleMask());
+            generator.writeNumberField("ver", claims.securityVersion());
+            generator.writeStringField("sub", claims.subject());
+            generator.writeNumberField("iat", claims.issuedAt());
+            generator.writeNumberField("exp", claims.expiresAt());
+            if (claims.tokenId() != null) {
+                generator.writeStringField("jti", claims.tokenId());
+            }
+            generator.writeEndObject();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Token claims could not be written", ex);
+        }
+
+        int signingLength = HEADER.length() + 1 + Base64Url.encodedLength(payload.count);
+        byte[] token = buffers.token(signingLength + 1 + Base64Url.encodedLength(SIGNATURE_LENGTH));
+
+        int position = HEADER_BYTES.length;
+        System.arraycopy(HEADER_BYTES, 0, token, 0, position);
+        token[position++] = '.';
+        position += Base64Url.encode(payload.bytes, 0, payload.count, token, position);
+
+        sign(buffers, token, signingLength);
+        token[position++] = '.';
+        position += Base64Url.encode(buffers.expected, 0, SIGNATURE_LENGTH, token, position);
+
+        return new String(token, 0, position, StandardCharsets.US_ASCII);
+    }
+
+    public Claims decode(String token) {
+        if (token.length() > MAX_TOKEN_LENGTH) {
+            throw new InvalidTokenException("Token is too long");
+        }
+
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (firstDot <= 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            throw new InvalidTokenException("Token is malformed");
+        }
+
+        Scratch buffers = scratch.get();
+        verifySignature(buffers, token, secondDot);
+
+        // The header is checked after the signature, only the key holder can produce a signed one anyway
+        if (firstDot != HEADER.length() || !token.startsWith(HEADER)) {
+            checkHeader(buffers, token, firstDot);
+        }
+
+        int payloadLength = decodeSegment(buffers, token, firstDot + 1, secondDot);
+        return parseClaims(buffers.segment, payloadLength);
+    }
+
+    private void verifySignature(Scratch buffers, String token, int signingLength) {
+        if (Base64Url.decodedLength(signingLength + 1, token.length()) != SIGNATURE_LENGTH) {
+            throw new InvalidTokenException("Token signature is invalid");
+        }
+
+        byte[] signingInput = buffers.token(signingLength);
+        for (int i = 0; i < signingLength; i++) {
+            char c = token.charAt(i);
+            if (c >= 128) {
+                throw new InvalidTokenException("Token is malformed");
+            }
+            signingInput[i] = (byte) c;
+        }
+
+        try {
+            Base64Url.decode(token, signingLength + 1, token.length(), buffers.signature, 0);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidTokenException("Token signature is invalid");
+        }
+
+        sign(buffers, signingInput, signingLength);
+        if (!MessageDigest.isEqual(buffers.expected, buffers.signature)) {
+            throw new InvalidTokenException("Token signature is invalid");
+        }
+    }
+
+    private static void sign(Scratch buffers, byte[] input, int length) {
+        try {
+            buffers.mac.update(input, 0, length);
+            buffers.mac.doFinal(buffers.expected, 0);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Token could not be signed", ex);
+        }
+    }
+
+    private static void checkHeader(Scratch buffers, String token, int headerEnd) {
+        int length = decodeSegment(buffers, token, 0, headerEnd);
+        String algorithm = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(buffers.segment, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidTokenException("Token header is malformed");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if ("alg".equals(name)) {
+                    algorithm = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException ex) {
+            throw new InvalidTokenException("Token header is malformed");
+        }
+
+        if (!"HS256".equals(algorithm)) {
+            throw new InvalidTokenException("Token algorithm is not supported");
+        }
+    }
+
+    private static int decodeSegment(Scratch buffers, String token, int start, int end) {
+        int length = Base64Url.decodedLength(start, end);
+        if (length < 0) {
+            throw new InvalidTokenException("Token is malformed");
+        }
+
+        try {
+            return Base64Url.decode(token, start, end, buffers.segment(length), 0);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidTokenException("Token is malformed");
+        }
+    }
+
+    private static Claims parseClaims(byte[] payload, int length) {
+        String subject = null;
+        int roleMask = 0;
+        Long userId = null;
+        Long securityVersion = null;
+        Long issuedAt = null;
+        Long expiresAt = null;
+        String tokenId = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(payload, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidTokenException("Token claims are malformed");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                switch (name) {
+                    case "sub" -> subject = parser.getValueAsString();
+                    case "roles" -> roleMask = readRoleMask(parser);
+                    case "uid" -> userId = readLong(parser);
+                    case "ver" -> securityVersion = readLong(parser);
+                    case "iat" -> issuedAt = readLong(parser);
+                    case "exp" -> expiresAt = readLong(parser);
+                    case "jti" -> tokenId = parser.getValueAsString();
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException ex) {
+            throw new InvalidTokenException("Token claims are malformed");
+        }
+
+        // Tokens issued before the security version was added cannot be checked against it and are refused
+        if (subject == null || userId == null || securityVersion == null || issuedAt == null || expiresAt == null) {
+            throw new InvalidTokenException("Token does not carry the required claims");
+        }
+
+        return new Claims(subject, userId, roleMask, securityVersion, issuedAt, expiresAt, tokenId);
+    }
+
+    // Tokens issued before the bitmask carry the roles as an array of names, unknown names are ignored as before
+    private static int readRoleMask(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            int roleMask = parser.getIntValue();
+            if (!User.Role.isValidMask(roleMask)) {
+                throw new InvalidTokenException("Token carries an unknown role");
+            }
+            return roleMask;
+        }
+
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return 0;
+        }
+
+        int roleMask = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                roleMask |= roleBit(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return roleMask;
+    }
+
+    private static int roleBit(String name) {
+        try {
+            return User.Role.valueOf(name).bit();
+        } catch (IllegalArgumentException ex) {
+            return 0;
+        }
+    }
+
+    private static long readLong(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT -> parser.getLongValue();
+            case VALUE_NUMBER_FLOAT -> (long) parser.getDoubleValue();
+            default -> throw new InvalidTokenException("Token claims are malformed");
+        };
+    }
+
+    private static final class Scratch {
+        private final Mac mac;
+        private final byte[] expected = new byte[SIGNATURE_LENGTH];
+        private final byte[] signature = new byte[SIGNATURE_LENGTH];
+        private final Buffer json = new Buffer();
+        private byte[] token = new byte[512];
+        private byte[] segment = new byte[512];
+
+        private Scratch(Mac mac) {
+            this.mac = mac;
+        }
+
+        private byte[] token(int length) {
+            if (token.length < length) {
+                token = new byte[Math.max(length, token.length * 2)];
+            }
+            return token;
+        }
+
+        private byte[] segment(int length) {
+            if (segment.length < length) {
+                segment = new byte[Math.max(length, segment.length * 2)];
+            }
+            return segment;
+        }
+    }
+
+    // Growable byte sink the JSON generator writes into, reused between tokens
+    private static final class Buffer extends OutputStream {
+        private byte[] bytes = new byte[256];
+        private int count;
+
+        private void reset() {
+            count = 0;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (count + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(count + extra, bytes.length * 2));
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+    }
+}
@@ -1,91 +1,61 @@
 package com.huseyinsarsilmaz.lmsr.security;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
-
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.security.Key;
-import java.util.Collections;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+
+import com.huseyinsarsilmaz.lmsr.model.entity.User;
+import com.huseyinsarsilmaz.lmsr.util.Base64Url;
 
 @Component
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    public String secret;
-
-    public String generateToken(String email, List<String> roles) {
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("roles", roles);
-        return createToken(claims, email);
-    }
-
-    private String createToken(Map<String, Object> claims, String email) {
-        return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(email)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60))
-                .signWith(getSignKey(), SignatureAlgorithm.HS256)
-                .compact();
-    }
-
-    private Key getSignKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-
-    public String extractEmail(String token) {
-        return extractClaim(token, Claims::getSubject);
-    }
+    private static final long EXPIRATION_SECONDS = 60 * 60;
+    private static final int TOKEN_ID_BYTES = 16;
+    private static final SecureRandom RANDOM = new SecureRandom();
 
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
+    private final JwtCodec codec;
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    public JwtService(@Value("${jwt.secret}") String secret) {
+        this.codec = new JwtCodec(Base64.getDecoder().decode(secret));
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public String generateToken(User user) {
+        long now = Instant.now().getEpochSecond();
+        return codec.encode(new JwtCodec.Claims(
+                user.getEmail(),
+                user.getId(),
+                user.getRoleMask(),
+                user.getSecurityVersion(),
+                now,
+                now + EXPIRATION_SECONDS,
+                newTokenId()));
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private static String newTokenId() {
+        byte[] bytes = new byte[TOKEN_ID_BYTES];
+        RANDOM.nextBytes(bytes);
+        return Base64Url.encodeToString(bytes);
     }
 
-    public Boolean validateToken(String token, String email) {
-        return (email.equals(extractEmail(token)) && !isTokenExpired(token));
-    }
-
-    public List<String> extractRoles(String token) {
-        Claims claims = extractAllClaims(token);
-        Object roles = claims.get("roles");
-
-        if (roles instanceof List<?>) {
-            return ((List<?>) roles).stream()
-                    .filter(String.class::isInstance)
-                    .map(String.class::cast)
-                    .collect(Collectors.toList());
+    // Checks the signature and expiry once and reads every claim the filter needs from the same parse
+    public VerifiedToken parse(String token) {
+        JwtCodec.Claims claims = codec.decode(token);
+        Instant expiresAt = Instant.ofEpochSecond(claims.expiresAt());
+        if (!expiresAt.isAfter(Instant.now())) {
+            throw new InvalidTokenException("Token is expired");
         }
 
-        return Collections.emptyList();
+        return new VerifiedToken(
+                claims.subject(),
+                claims.userId(),
+                claims.roleMask(),
+                claims.securityVersion(),
+                expiresAt,
+                claims.tokenId());
     }
 
-}
\ No newline at end of file
+}
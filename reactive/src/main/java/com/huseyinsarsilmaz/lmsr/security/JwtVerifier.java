@@ -0,0 +1,73 @@
+package com.huseyinsarsilmaz.lmsr.security;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// Verifies each token once, cache hits are answered inline and misses are parsed off the event loop
+@Component
+public class JwtVerifier {
+
+    private final JwtService jwtService;
+    private final Cache<String, VerifiedToken> verifiedTokens;
+    private final Timer parseTimer;
+
+    public JwtVerifier(JwtService jwtService, MeterRegistry meterRegistry,
+            @Value("${jwt.cache.max-size:10000}") long cacheMaxSize) {
+        this.jwtService = jwtService;
+        this.verifiedTokens = CaffeineCacheMetrics.monitor(meterRegistry, buildCache(cacheMaxSize),
+                "jwt.verified-tokens");
+        this.parseTimer = Timer.builder("lmsr.auth.jwt.parse")
+                .description("Signature check and claim parsing of tokens missing from the cache")
+                .register(meterRegistry);
+    }
+
+    private static Cache<String, VerifiedToken> buildCache(long maxSize) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String token, VerifiedToken verified, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), verified.expiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, VerifiedToken verified, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(token, verified, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, VerifiedToken verified, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public Mono<VerifiedToken> verify(String token) {
+        VerifiedToken cached = verifiedTokens.getIfPresent(token);
+        // Cache expiry is approximate, an entry can outlive its token for a short moment
+        if (cached != null && !cached.isExpiredAt(Instant.now())) {
+            return Mono.just(cached);
+        }
+
+        return Mono.fromCallable(() -> parseTimer.recordCallable(() -> jwtService.parse(token)))
+                .subscribeOn(Schedulers.parallel())
+                .doOnNext(verified -> verifiedTokens.put(token, verified));
+    }
+}
@@ -0,0 +1,36 @@
+package com.huseyinsarsilmaz.lmsr.security;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import com.huseyinsarsilmaz.lmsr.model.entity.User;
+
+// One immutable authority list per role mask, built once and shared by every authentication with the same roles
+public final class RoleAuthorities {
+
+    private static final int MASK_COUNT = 1 << User.Role.values().length;
+    private static final List<List<GrantedAuthority>> BY_MASK = buildAll();
+
+    private RoleAuthorities() {
+    }
+
+    private static List<List<GrantedAuthority>> buildAll() {
+        List<List<GrantedAuthority>> byMask = new ArrayList<>(MASK_COUNT);
+        for (int mask = 0; mask < MASK_COUNT; mask++) {
+            byMask.add(User.Role.fromMask(mask).stream()
+                    .<GrantedAuthority>map(role -> new SimpleGrantedAuthority(role.name()))
+                    .toList());
+        }
+        return List.copyOf(byMask);
+    }
+
+    public static List<GrantedAuthority> of(int roleMask) {
+        if (roleMask < 0 || roleMask >= MASK_COUNT) {
+            throw new IllegalArgumentException("Unknown role mask: " + roleMask);
+        }
+        return BY_MASK.get(roleMask);
+    }
+}
@@ -0,0 +1,46 @@
+package com.huseyinsarsilmaz.lmsr.security;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.huseyinsarsilmaz.lmsr.repository.UserRepository;
+
+import reactor.core.publisher.Mono;
+
+// In memory view of users.security_version, tokens carrying an older version are rejected. Cached versions are
+// answered inline, misses are read without blocking the event loop. Changes made through core reach this instance
+// once the entry expires.
+@Component
+public class SecurityVersionRegistry {
+
+    // Stored for deleted users so that none of their tokens can match
+    private static final long NO_USER = -1L;
+
+    private final UserRepository userRepository;
+    private final AsyncCache<Long, Long> versions;
+
+    public SecurityVersionRegistry(UserRepository userRepository,
+            @Value("${jwt.version-cache.max-size:100000}") long maxSize,
+            @Value("${jwt.version-cache.ttl:60s}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+    }
+
+    public Mono<Boolean> isCurrent(long userId, long securityVersion) {
+        return Mono.fromFuture(versions.get(userId, (id, executor) -> userRepository.findSecurityVersionById(id)
+                .defaultIfEmpty(NO_USER)
+                .toFuture()))
+                .map(version -> version == securityVersion);
+    }
+
+    public void evict(long userId) {
+        versions.synchronous().invalidate(userId);
+    }
+}
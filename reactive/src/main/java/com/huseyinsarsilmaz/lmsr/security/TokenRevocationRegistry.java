@@ -0,0 +1,103 @@
+package com.huseyinsarsilmaz.lmsr.security;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.huseyinsarsilmaz.lmsr.model.entity.RevokedToken;
+import com.huseyinsarsilmaz.lmsr.repository.RevokedTokenRepository;
+import com.huseyinsarsilmaz.lmsr.util.BloomFilter;
+
+import reactor.core.publisher.Mono;
+
+// In memory view of revoked_tokens, checked inline on the event loop. The Bloom filter answers almost every
+// lookup on its own and the exact set is only consulted on a filter hit. Both are rebuilt on a fixed delay.
+@Component
+public class TokenRevocationRegistry {
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final long expectedTokens;
+    private final double falsePositiveRate;
+
+    // Revocations made by this instance, merged into every rebuild so a refresh racing a revoke cannot lose it
+    private final Map<String, Instant> localRevocations = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(BloomFilter filter, Set<String> tokenIds) {
+
+        private void add(String tokenId) {
+            tokenIds.add(tokenId);
+            filter.put(tokenId);
+        }
+    }
+
+    public TokenRevocationRegistry(RevokedTokenRepository revokedTokenRepository,
+            @Value("${jwt.revocation.expected-tokens:10000}") long expectedTokens,
+            @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.snapshot = newSnapshot(0);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+
+        Snapshot current = snapshot;
+        return current.filter().mightContain(tokenId) && current.tokenIds().contains(tokenId);
+    }
+
+    public Mono<Void> revoke(VerifiedToken token) {
+        if (token.tokenId() == null || isRevoked(token.tokenId())) {
+            return Mono.empty();
+        }
+
+        localRevocations.put(token.tokenId(), token.expiresAt());
+        snapshot.add(token.tokenId());
+
+        LocalDateTime now = LocalDateTime.now();
+        return revokedTokenRepository.save(RevokedToken.builder()
+                .tokenId(token.tokenId())
+                .expiresAt(token.expiresAt())
+                .createdAt(now)
+                .updatedAt(now)
+                .build())
+                // Revoked concurrently through another instance, the row is already there
+                .onErrorResume(DataIntegrityViolationException.class, ex -> Mono.empty())
+                .then();
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${jwt.revocation.refresh-interval-ms:30000}")
+    public Mono<Void> refresh() {
+        Instant now = Instant.now();
+        return revokedTokenRepository.findTokenIdsExpiringAfter(now)
+                .collectList()
+                .doOnNext(tokenIds -> rebuild(tokenIds, now))
+                .then();
+    }
+
+    private void rebuild(List<String> tokenIds, Instant now) {
+        localRevocations.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+
+        Snapshot rebuilt = newSnapshot(tokenIds.size() + localRevocations.size());
+        tokenIds.forEach(rebuilt::add);
+        localRevocations.keySet().forEach(rebuilt::add);
+        snapshot = rebuilt;
+    }
+
+    // Twice the current count leaves room for the revocations arriving before the next rebuild
+    private Snapshot newSnapshot(long size) {
+        return new Snapshot(new BloomFilter(Math.max(expectedTokens, size * 2), falsePositiveRate),
+                ConcurrentHashMap.newKeySet());
+    }
+}
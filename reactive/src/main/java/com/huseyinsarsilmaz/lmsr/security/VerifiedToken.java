@@ -0,0 +1,24 @@
+package com.huseyinsarsilmaz.lmsr.security;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+
+// Claims of a token whose signature and expiry have already been checked
+public record VerifiedToken(
+        String subject,
+        long userId,
+        int roleMask,
+        long securityVersion,
+        Instant expiresAt,
+        String tokenId) {
+
+    public List<GrantedAuthority> authorities() {
+        return RoleAuthorities.of(roleMask);
+    }
+
+    public boolean isExpiredAt(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
@@ -1,5 +1,6 @@
 package com.huseyinsarsilmaz.lmsr.service;
 
+import com.huseyinsarsilmaz.lmsr.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lmsr.model.entity.User;
 
 import reactor.core.publisher.Mono;
@@ -11,4 +12,8 @@ public interface UserService {
     public Mono<User> getUserById(Long id);
 
     public Mono<User> changeActive(Mono<User> userMono, boolean active);
+
+    public Mono<Void> rehashPassword(User user, String encodedPassword);
+
+    public Mono<Void> updateBorrowingCounts(Long userId, Borrowing.Status from, Borrowing.Status to);
 }
@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.util.List;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 
 import com.huseyinsarsilmaz.lmsr.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lmsr.repository.BorrowingRepository;
@@ -22,6 +23,7 @@ public class BorrowingServiceImpl implements BorrowingService {
     private final BorrowingRepository borrowingRepository;
     private final BookService bookService;
     private final UserService userService;
+    private final TransactionalOperator transactionalOperator;
 
     private void updateBorrowingStatus(Borrowing borrowing, LocalDate now) {
         if (borrowing.getDueDate().isBefore(now)) {
@@ -47,22 +49,32 @@ public class BorrowingServiceImpl implements BorrowingService {
         return Mono.empty();
     }
 
+    // The borrowing, the book and the counters of the borrower change in one transaction. A borrowing that is
+    // already returned is left as it is, so returning it again changes nothing.
     public Mono<Borrowing> returnBorrowing(Borrowing borrowing) {
         return borrowingRepository.findById(borrowing.getId())
                 .switchIfEmpty(
                         Mono.error(new RuntimeException("Borrowing not found with id " + borrowing.getId())))
                 .flatMap(existingBorrowing -> {
+                    if (existingBorrowing.isReturned()) {
+                        return Mono.just(existingBorrowing);
+                    }
+
                     LocalDate now = LocalDate.now();
                     existingBorrowing.setReturnDate(now);
 
+                    Borrowing.Status previousStatus = existingBorrowing.getStatus();
                     updateBorrowingStatus(existingBorrowing, now);
 
                     return handleOverdueStatus(existingBorrowing)
                             .then(bookService.updateAvailability(
                                     bookService.getBookById(existingBorrowing.getBookId()),
                                     true))
-                            .then(borrowingRepository.save(existingBorrowing));
-                });
+                            .then(borrowingRepository.save(existingBorrowing))
+                            .flatMap(saved -> userService.updateBorrowingCounts(saved.getBorrowerId(),
+                                    previousStatus, saved.getStatus()).thenReturn(saved));
+                })
+                .as(transactionalOperator::transactional);
     }
 
     public Flux<Borrowing> returnBorrowings(List<Long> borrowingIds) {
@@ -2,8 +2,10 @@ package com.huseyinsarsilmaz.lmsr.service.impl;
 
 import org.springframework.stereotype.Service;
 
+import com.huseyinsarsilmaz.lmsr.model.entity.Borrowing;
 import com.huseyinsarsilmaz.lmsr.model.entity.User;
 import com.huseyinsarsilmaz.lmsr.repository.UserRepository;
+import com.huseyinsarsilmaz.lmsr.security.SecurityVersionRegistry;
 import com.huseyinsarsilmaz.lmsr.service.UserService;
 
 import lombok.RequiredArgsConstructor;
@@ -14,19 +16,46 @@ import reactor.core.publisher.Mono;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
+    private final SecurityVersionRegistry securityVersionRegistry;
 
     public Mono<User> getUserByEmail(String email) {
-        return userRepository.findByEmail(email);
+        return userRepository.findByNormalizedEmail(User.normalizeEmail(email));
     }
 
     public Mono<User> getUserById(Long id) {
         return userRepository.findById(id);
     }
 
+    // Raises the security version with the flag like core, so tokens issued before a deactivation stop working
     public Mono<User> changeActive(Mono<User> userMono, boolean active) {
-        return userMono.flatMap(user -> {
-            user.setIsActive(active);
-            return userRepository.save(user);
-        });
+        return userMono.flatMap(user -> userRepository.updateActive(user.getId(), active)
+                .doOnNext(updated -> securityVersionRegistry.evict(user.getId()))
+                .then(userRepository.findById(user.getId())));
+    }
+
+    // Only the password column is written so columns this module does not map are left alone
+    public Mono<Void> rehashPassword(User user, String encodedPassword) {
+        return userRepository.updatePassword(user.getId(), encodedPassword).then();
+    }
+
+    // Moves a borrowing of the user from one status to another in its counters, like the core UserService.
+    // Must run in the transaction that changes the borrowing.
+    public Mono<Void> updateBorrowingCounts(Long userId, Borrowing.Status from, Borrowing.Status to) {
+        long active = isActive(to) - isActive(from);
+        long overdue = is(to, Borrowing.Status.OVERDUE) - is(from, Borrowing.Status.OVERDUE);
+        long returnedOverdue = is(to, Borrowing.Status.RETURNED_OVERDUE) - is(from, Borrowing.Status.RETURNED_OVERDUE);
+
+        if (active == 0 && overdue == 0 && returnedOverdue == 0) {
+            return Mono.empty();
+        }
+        return userRepository.addBorrowingCounts(userId, active, overdue, returnedOverdue).then();
+    }
+
+    private static int isActive(Borrowing.Status status) {
+        return is(status, Borrowing.Status.BORROWED) + is(status, Borrowing.Status.OVERDUE);
+    }
+
+    private static int is(Borrowing.Status status, Borrowing.Status counted) {
+        return status == counted ? 1 : 0;
     }
 }
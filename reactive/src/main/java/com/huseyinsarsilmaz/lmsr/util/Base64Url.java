@@ -0,0 +1,118 @@
+package com.huseyinsarsilmaz.lmsr.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Unpadded Base64URL (RFC 4648 section 5) working on array and string ranges, so callers can reuse their buffers
+public final class Base64Url {
+
+    private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final int[] VALUES = new int[128];
+
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = i;
+        }
+    }
+
+    private Base64Url() {
+    }
+
+    public static int encodedLength(int length) {
+        return (length / 3) * 4 + (length % 3 == 0 ? 0 : length % 3 + 1);
+    }
+
+    // Returns the number of bytes needed for the characters in [start, end), or -1 when the length is impossible
+    public static int decodedLength(int start, int end) {
+        int length = end - start;
+        if (length % 4 == 1) {
+            return -1;
+        }
+        return (length / 4) * 3 + (length % 4 == 0 ? 0 : length % 4 - 1);
+    }
+
+    public static int encode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+        int end = offset + length;
+        int out = dstOffset;
+        int i = offset;
+
+        for (; i + 2 < end; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            dst[out++] = ALPHABET[bits >>> 18];
+            dst[out++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[out++] = ALPHABET[(bits >>> 6) & 0x3f];
+            dst[out++] = ALPHABET[bits & 0x3f];
+        }
+
+        int remaining = end - i;
+        if (remaining == 1) {
+            int bits = (src[i] & 0xff) << 16;
+            dst[out++] = ALPHABET[bits >>> 18];
+            dst[out++] = ALPHABET[(bits >>> 12) & 0x3f];
+        } else if (remaining == 2) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8;
+            dst[out++] = ALPHABET[bits >>> 18];
+            dst[out++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[out++] = ALPHABET[(bits >>> 6) & 0x3f];
+        }
+
+        return out - dstOffset;
+    }
+
+    public static String encodeToString(byte[] src) {
+        byte[] dst = new byte[encodedLength(src.length)];
+        encode(src, 0, src.length, dst, 0);
+        return new String(dst, StandardCharsets.US_ASCII);
+    }
+
+    // Decodes the characters in [start, end) into dst and returns the number of bytes written
+    public static int decode(CharSequence src, int start, int end, byte[] dst, int dstOffset) {
+        if (decodedLength(start, end) < 0) {
+            throw new IllegalArgumentException("Invalid Base64URL length");
+        }
+
+        int out = dstOffset;
+        int i = start;
+
+        for (; i + 3 < end; i += 4) {
+            int bits = value(src.charAt(i)) << 18 | value(src.charAt(i + 1)) << 12
+                    | value(src.charAt(i + 2)) << 6 | value(src.charAt(i + 3));
+            dst[out++] = (byte) (bits >>> 16);
+            dst[out++] = (byte) (bits >>> 8);
+            dst[out++] = (byte) bits;
+        }
+
+        int remaining = end - i;
+        if (remaining == 2) {
+            int bits = value(src.charAt(i)) << 18 | value(src.charAt(i + 1)) << 12;
+            dst[out++] = (byte) (bits >>> 16);
+        } else if (remaining == 3) {
+            int bits = value(src.charAt(i)) << 18 | value(src.charAt(i + 1)) << 12 | value(src.charAt(i + 2)) << 6;
+            dst[out++] = (byte) (bits >>> 16);
+            dst[out++] = (byte) (bits >>> 8);
+        }
+
+        return out - dstOffset;
+    }
+
+    public static byte[] decode(CharSequence src) {
+        int length = decodedLength(0, src.length());
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid Base64URL length");
+        }
+
+        byte[] dst = new byte[length];
+        decode(src, 0, src.length(), dst, 0);
+        return dst;
+    }
+
+    private static int value(char c) {
+        int value = c < 128 ? VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid Base64URL character");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,134 @@
+package com.huseyinsarsilmaz.lmsr.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.server.WebFilterChain;
+
+import com.huseyinsarsilmaz.lmsr.repository.RevokedTokenRepository;
+import com.huseyinsarsilmaz.lmsr.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class JwtAuthenticationFilterTest {
+
+    private static final long USER_ID = 7L;
+
+    private JwtService jwtService;
+    private UserRepository userRepository;
+    private SecurityVersionRegistry securityVersionRegistry;
+    private SimpleMeterRegistry meterRegistry;
+    private JwtAuthenticationFilter filter;
+
+    private final AtomicReference<Authentication> seenAuthentication = new AtomicReference<>();
+    private final WebFilterChain chain = exchange -> ReactiveSecurityContextHolder.getContext()
+            .map(SecurityContext::getAuthentication)
+            .doOnNext(seenAuthentication::set)
+            .then();
+
+    @BeforeEach
+    void setUp() {
+        jwtService = mock(JwtService.class);
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findSecurityVersionById(USER_ID)).thenReturn(Mono.just(0L));
+        securityVersionRegistry = new SecurityVersionRegistry(userRepository, 100, Duration.ofMinutes(1));
+        meterRegistry = new SimpleMeterRegistry();
+        JwtVerifier jwtVerifier = new JwtVerifier(jwtService, meterRegistry, 100);
+        TokenRevocationRegistry revocationRegistry = new TokenRevocationRegistry(
+                mock(RevokedTokenRepository.class), 100, 0.01);
+        filter = new JwtAuthenticationFilter(jwtVerifier, securityVersionRegistry, revocationRegistry,
+                meterRegistry);
+    }
+
+    private static VerifiedToken verifiedToken(String tokenId) {
+        return new VerifiedToken("test@test.com", USER_ID, 1, 0, Instant.now().plus(1, ChronoUnit.HOURS), tokenId);
+    }
+
+    private MockServerWebExchange exchangeWithToken(String token) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/books")
+                .header("Authorization", "Bearer " + token));
+    }
+
+    @Test
+    void testFilter_whenTokenIsCached_thenParsesOnlyOnce() {
+        when(jwtService.parse("valid")).thenReturn(verifiedToken("token-id"));
+
+        StepVerifier.create(filter.filter(exchangeWithToken("valid"), chain)).verifyComplete();
+        StepVerifier.create(filter.filter(exchangeWithToken("valid"), chain)).verifyComplete();
+
+        verify(jwtService, times(1)).parse("valid");
+        verify(userRepository, times(1)).findSecurityVersionById(USER_ID);
+        assertEquals("test@test.com", seenAuthentication.get().getName());
+        assertEquals(2, meterRegistry.get("lmsr.auth.event-loop").timer().count());
+    }
+
+    @Test
+    void testFilter_whenTokenIsInvalid_thenLeavesRequestUnauthenticated() {
+        when(jwtService.parse("invalid")).thenThrow(new InvalidTokenException("Token is expired"));
+
+        StepVerifier.create(filter.filter(exchangeWithToken("invalid"), chain)).verifyComplete();
+
+        assertNull(seenAuthentication.get());
+        assertEquals(1, meterRegistry.get("lmsr.auth.event-loop").timer().count());
+    }
+
+    @Test
+    void testFilter_whenTokenIsRevoked_thenLeavesRequestUnauthenticated() {
+        VerifiedToken verified = verifiedToken("revoked-id");
+        when(jwtService.parse("revoked")).thenReturn(verified);
+        RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+        when(repository.save(any())).thenReturn(Mono.empty());
+        TokenRevocationRegistry revocationRegistry = new TokenRevocationRegistry(repository, 100, 0.01);
+        filter = new JwtAuthenticationFilter(new JwtVerifier(jwtService, meterRegistry, 100),
+                securityVersionRegistry, revocationRegistry, meterRegistry);
+
+        StepVerifier.create(revocationRegistry.revoke(verified)).verifyComplete();
+        StepVerifier.create(filter.filter(exchangeWithToken("revoked"), chain)).verifyComplete();
+
+        assertNull(seenAuthentication.get());
+    }
+
+    @Test
+    void testFilter_whenSecurityVersionWasRaised_thenLeavesRequestUnauthenticated() {
+        when(jwtService.parse("outdated")).thenReturn(verifiedToken("token-id"));
+        StepVerifier.create(filter.filter(exchangeWithToken("outdated"), chain)).verifyComplete();
+        assertEquals("test@test.com", seenAuthentication.get().getName());
+
+        // The user was deactivated, which raises the version and evicts it
+        when(userRepository.findSecurityVersionById(USER_ID)).thenReturn(Mono.just(1L));
+        securityVersionRegistry.evict(USER_ID);
+        seenAuthentication.set(null);
+        StepVerifier.create(filter.filter(exchangeWithToken("outdated"), chain)).verifyComplete();
+
+        assertNull(seenAuthentication.get());
+    }
+
+    @Test
+    void testFilter_whenUserIsDeleted_thenLeavesRequestUnauthenticated() {
+        when(jwtService.parse("orphan")).thenReturn(verifiedToken("token-id"));
+        when(userRepository.findSecurityVersionById(USER_ID)).thenReturn(Mono.empty());
+
+        StepVerifier.create(filter.filter(exchangeWithToken("orphan"), chain)).verifyComplete();
+
+        assertNull(seenAuthentication.get());
+    }
+}
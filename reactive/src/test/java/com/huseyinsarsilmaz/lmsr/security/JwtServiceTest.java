@@ -0,0 +1,126 @@
+package com.huseyinsarsilmaz.lmsr.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.huseyinsarsilmaz.lmsr.model.entity.User;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "9d5e3d4f5e5085e6e0cd79d4975c202f17ec7a62b0e4c0100a40b8d18f13e458";
+    private static final String EMAIL = "huseyinsarsilmaz@hotmail.com";
+    private static final long USER_ID = 7L;
+
+    private static final Key KEY = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+
+    private JwtService jwtService;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService(SECRET);
+    }
+
+    @Test
+    void testParse_whenTokenWasIssuedByJjwt() {
+        // The shape of the tokens issued before JwtCodec, with the roles as an array of names
+        String token = Jwts.builder()
+                .claim("uid", USER_ID)
+                .claim("roles", List.of("ROLE_PATRON", "ROLE_LIBRARIAN"))
+                .claim("ver", 3)
+                .setSubject(EMAIL)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(KEY, SignatureAlgorithm.HS256)
+                .compact();
+
+        VerifiedToken verified = jwtService.parse(token);
+
+        assertEquals(EMAIL, verified.subject());
+        assertEquals(USER_ID, verified.userId());
+        assertEquals(3, verified.securityVersion());
+        assertEquals(User.Role.maskOf(User.Role.ROLE_PATRON, User.Role.ROLE_LIBRARIAN), verified.roleMask());
+        assertEquals(List.of("ROLE_PATRON", "ROLE_LIBRARIAN"),
+                verified.authorities().stream().map(GrantedAuthority::getAuthority).toList());
+        assertNull(verified.tokenId());
+    }
+
+    @Test
+    void testParse_whenJjwtTokenCarriesUnknownRole() {
+        String token = Jwts.builder()
+                .claim("uid", USER_ID)
+                .claim("roles", List.of("ROLE_PATRON", "ROLE_GUEST"))
+                .claim("ver", 0)
+                .setSubject(EMAIL)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(KEY, SignatureAlgorithm.HS256)
+                .compact();
+
+        assertEquals(User.Role.ROLE_PATRON.bit(), jwtService.parse(token).roleMask());
+    }
+
+    @Test
+    void testParse_whenJjwtTokenIsExpired() {
+        String token = Jwts.builder()
+                .claim("uid", USER_ID)
+                .claim("roles", List.of("ROLE_PATRON"))
+                .claim("ver", 0)
+                .setSubject(EMAIL)
+                .setIssuedAt(new Date(System.currentTimeMillis() - 2000))
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(KEY, SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThrows(InvalidTokenException.class, () -> jwtService.parse(token));
+    }
+
+    @Test
+    void testGenerateToken_whenReadByJjwt() {
+        int roleMask = User.Role.maskOf(User.Role.ROLE_LIBRARIAN, User.Role.ROLE_PATRON);
+        String token = jwtService.generateToken(User.builder()
+                .id(USER_ID)
+                .email(EMAIL)
+                .roleMask(roleMask)
+                .securityVersion(2)
+                .build());
+
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(KEY)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+
+        assertEquals(EMAIL, claims.getSubject());
+        assertEquals(roleMask, claims.get("roles", Integer.class));
+        assertEquals(USER_ID, claims.get("uid", Long.class));
+        assertEquals(2L, claims.get("ver", Long.class));
+        assertNotNull(claims.getId());
+        assertTrue(claims.getExpiration().after(claims.getIssuedAt()));
+    }
+
+    @Test
+    void testParse_whenTokenCarriesNoSecurityVersion() {
+        String token = Jwts.builder()
+                .claim("roles", List.of("ROLE_PATRON"))
+                .setSubject(EMAIL)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(KEY, SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThrows(InvalidTokenException.class, () -> jwtService.parse(token));
+    }
+}
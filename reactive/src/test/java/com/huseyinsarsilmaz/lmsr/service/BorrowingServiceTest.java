@@ -0,0 +1,105 @@
+package com.huseyinsarsilmaz.lmsr.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.huseyinsarsilmaz.lmsr.model.entity.Book;
+import com.huseyinsarsilmaz.lmsr.model.entity.Borrowing;
+import com.huseyinsarsilmaz.lmsr.repository.BorrowingRepository;
+import com.huseyinsarsilmaz.lmsr.repository.UserRepository;
+import com.huseyinsarsilmaz.lmsr.security.SecurityVersionRegistry;
+import com.huseyinsarsilmaz.lmsr.service.impl.BorrowingServiceImpl;
+import com.huseyinsarsilmaz.lmsr.service.impl.UserServiceImpl;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class BorrowingServiceTest {
+
+    private static final long BORROWER_ID = 3L;
+
+    private BorrowingRepository borrowingRepository;
+    private BookService bookService;
+    private UserRepository userRepository;
+    private TransactionalOperator transactionalOperator;
+    private BorrowingService borrowingService;
+
+    @BeforeEach
+    void setUp() {
+        borrowingRepository = mock(BorrowingRepository.class);
+        bookService = mock(BookService.class);
+        userRepository = mock(UserRepository.class);
+        transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(bookService.getBookById(anyLong())).thenReturn(Mono.just(new Book()));
+        when(bookService.updateAvailability(any(), anyBoolean())).thenReturn(Mono.empty());
+        when(borrowingRepository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(borrowingRepository.countByBorrowerIdAndStatus(anyLong(), any())).thenReturn(Mono.just(0L));
+        when(userRepository.addBorrowingCounts(anyLong(), anyLong(), anyLong(), anyLong())).thenReturn(Mono.just(1));
+
+        UserService userService = new UserServiceImpl(userRepository, mock(SecurityVersionRegistry.class));
+        borrowingService = new BorrowingServiceImpl(borrowingRepository, bookService, userService,
+                transactionalOperator);
+    }
+
+    private Borrowing borrowing(Borrowing.Status status, LocalDate dueDate) {
+        Borrowing borrowing = Borrowing.builder()
+                .id(1L)
+                .borrowerId(BORROWER_ID)
+                .bookId(2L)
+                .borrowDate(dueDate.minusDays(7))
+                .dueDate(dueDate)
+                .status(status)
+                .build();
+        when(borrowingRepository.findById(1L)).thenReturn(Mono.just(borrowing));
+        return borrowing;
+    }
+
+    @Test
+    void testReturnBorrowing_whenBorrowed_thenMovesCountersInTransaction() {
+        Borrowing borrowing = borrowing(Borrowing.Status.BORROWED, LocalDate.now().plusDays(1));
+
+        StepVerifier.create(borrowingService.returnBorrowing(borrowing))
+                .assertNext(saved -> assertEquals(Borrowing.Status.RETURNED_TIMELY, saved.getStatus()))
+                .verifyComplete();
+
+        verify(userRepository).addBorrowingCounts(BORROWER_ID, -1, 0, 0);
+        verify(transactionalOperator).transactional(any(Mono.class));
+    }
+
+    @Test
+    void testReturnBorrowing_whenOverdue_thenMovesOverdueToReturnedOverdue() {
+        Borrowing borrowing = borrowing(Borrowing.Status.OVERDUE, LocalDate.now().minusDays(1));
+
+        StepVerifier.create(borrowingService.returnBorrowing(borrowing))
+                .assertNext(saved -> assertEquals(Borrowing.Status.RETURNED_OVERDUE, saved.getStatus()))
+                .verifyComplete();
+
+        verify(userRepository).addBorrowingCounts(BORROWER_ID, -1, -1, 1);
+    }
+
+    @Test
+    void testReturnBorrowing_whenAlreadyReturned_thenChangesNothing() {
+        Borrowing borrowing = borrowing(Borrowing.Status.RETURNED_OVERDUE, LocalDate.now().minusDays(1));
+
+        StepVerifier.create(borrowingService.returnBorrowing(borrowing))
+                .assertNext(saved -> assertEquals(Borrowing.Status.RETURNED_OVERDUE, saved.getStatus()))
+                .verifyComplete();
+
+        verify(borrowingRepository, never()).save(any());
+        verify(bookService, never()).updateAvailability(any(), anyBoolean());
+        verify(userRepository, never()).addBorrowingCounts(anyLong(), anyLong(), anyLong(), anyLong());
+    }
+}